@@ -0,0 +1,99 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.buffer.Buffer;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBuffer;
+import org.dei.perla.lang.query.expression.*;
+import org.dei.perla.lang.query.statement.WindowSize;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sliding window aggregation. Every invocation adds a new sample to the
+ * buffer and evaluates the aggregate over the last {@code window} samples.
+ *
+ * <p> The {@code mode} parameter selects how the aggregate is computed:
+ * <ul>
+ *     <li>incremental: value maintained by the {@link ArrayBuffer}</li>
+ *     <li>rescan: full scan of the {@link ArrayBuffer} window</li>
+ *     <li>columnar: full scan of the {@link ColumnarBuffer} columns</li>
+ * </ul>
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregateBenchmark {
+
+    @Param({"sum", "avg", "min", "max", "count"})
+    public String aggregate;
+
+    @Param({"16", "256"})
+    public int window;
+
+    @Param({"incremental", "rescan", "columnar"})
+    public String mode;
+
+    private Aggregate agg;
+    private Buffer buf;
+    private long seq;
+
+    @Setup
+    public void setup() throws Exception {
+        Expression hum = new AttributeReference("humidity",
+                SyntheticData.HUMIDITY.getType(),
+                SyntheticData.ATTRIBUTES.indexOf(SyntheticData.HUMIDITY));
+        WindowSize ws = new WindowSize(window);
+        switch (aggregate) {
+            case "sum":
+                agg = new SumAggregate(hum, ws, Constant.TRUE);
+                break;
+            case "avg":
+                agg = new AvgAggregate(hum, ws, Constant.TRUE);
+                break;
+            case "min":
+                agg = new MinAggregate(hum, ws, Constant.TRUE);
+                break;
+            case "max":
+                agg = new MaxAggregate(hum, ws, Constant.TRUE);
+                break;
+            default:
+                agg = new CountAggregate(ws, Constant.TRUE);
+        }
+
+        if (mode.equals("columnar")) {
+            buf = new ColumnarBuffer(SyntheticData.ATTRIBUTES);
+        } else {
+            buf = new ArrayBuffer(SyntheticData.ATTRIBUTES);
+        }
+        for (seq = 0; seq < window; seq++) {
+            buf.add(SyntheticData.sample(SyntheticData.ATTRIBUTES, seq));
+        }
+    }
+
+    @Benchmark
+    public Object slide() throws Exception {
+        buf.add(SyntheticData.sample(SyntheticData.ATTRIBUTES, seq++));
+        BufferView v = buf.createView();
+        Object res;
+        if (mode.equals("incremental")) {
+            res = agg.run(null, v);
+        } else {
+            // Sub-views do not expose incrementally computed aggregates
+            BufferView sub = v.subView(v.size());
+            res = agg.run(null, sub);
+            sub.release();
+        }
+        // Keep only the samples in the aggregation window
+        v.get(window - 1);
+        v.release();
+        return res;
+    }
+
+}
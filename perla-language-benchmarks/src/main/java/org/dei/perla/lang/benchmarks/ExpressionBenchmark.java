@@ -0,0 +1,69 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.lang.query.expression.ClosureCompiler;
+import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of filter-heavy WHERE clauses, comparing the tree-walking
+ * interpreter with the {@link ClosureCompiler}.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private static final String[] FILTERS = new String[]{
+            // Simple comparison
+            "temperature:integer > 20",
+            // Conjunction of integer and float comparisons
+            "temperature:integer > 12 AND humidity:float < 50.0 " +
+                    "AND temperature:integer <= 35",
+            // Arithmetic and three-valued logic
+            "temperature:integer * 2 + 3 > 40 OR " +
+                    "humidity:float / 2.0 BETWEEN 5.0 AND 20.0 " +
+                    "AND NOT alarm:boolean"
+    };
+
+    @Param({"interpreter", "closure"})
+    public String compiler;
+
+    @Param({"0", "1", "2"})
+    public int filter;
+
+    private Expression where;
+    private Object[][] samples;
+
+    @Setup
+    public void setup() {
+        SelectionStatement s = SyntheticData.parse("EVERY ONE " +
+                "SELECT temperature:integer " +
+                "SAMPLING EVERY 1 seconds " +
+                "WHERE " + FILTERS[filter]);
+        ExpressionCompiler c = compiler.equals("closure") ?
+                new ClosureCompiler() : ExpressionCompiler.INTERPRETER;
+        where = s.compile(c).getWhere();
+        samples = SyntheticData.samples(s.getAttributes(), BATCH);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void where(Blackhole bh) {
+        for (Object[] s : samples) {
+            bh.consume(where.run(s, null));
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.buffer.Buffer;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.CircularBuffer;
+import org.dei.perla.lang.executor.buffer.ColumnarBuffer;
+import org.dei.perla.lang.executor.buffer.RingBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sample ingestion throughput of the {@link Buffer} implementations.
+ *
+ * <p> Every invocation adds a batch of samples, after which the buffer is
+ * trimmed to the last {@code WINDOW} samples through a view release, as the
+ * {@code SelectionExecutor} does. Sample timestamps keep increasing across
+ * invocations. The {@code outOfOrder} parameter swaps the timestamps of
+ * every 8th pair of samples, exercising the insertion sort. The {@code
+ * circular} buffer type measures the raw {@link CircularBuffer}, without
+ * locking and views.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestionBenchmark {
+
+    private static final int BATCH = 1024;
+    private static final int WINDOW = 64;
+
+    @Param({"array", "columnar", "ring", "circular"})
+    public String buffer;
+
+    @Param({"false", "true"})
+    public boolean outOfOrder;
+
+    private Object[][] samples;
+    private long[] offsets;
+    private int tsIdx;
+    private long base;
+    private Buffer buf;
+    private CircularBuffer circular;
+
+    @Setup
+    public void setup() {
+        samples = SyntheticData.samples(SyntheticData.ATTRIBUTES, BATCH);
+        tsIdx = SyntheticData.ATTRIBUTES.indexOf(Attribute.TIMESTAMP);
+        offsets = new long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            offsets[i] = i;
+        }
+        if (outOfOrder) {
+            for (int i = 0; i + 1 < BATCH; i += 8) {
+                offsets[i] = i + 1;
+                offsets[i + 1] = i;
+            }
+        }
+        base = 0;
+        if (buffer.equals("array")) {
+            buf = new ArrayBuffer(SyntheticData.ATTRIBUTES);
+        } else if (buffer.equals("columnar")) {
+            buf = new ColumnarBuffer(SyntheticData.ATTRIBUTES);
+        } else if (buffer.equals("ring")) {
+            buf = new RingBuffer(SyntheticData.ATTRIBUTES);
+        } else {
+            circular = new CircularBuffer(SyntheticData.ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Creates a new batch of samples, whose timestamps follow those of the
+     * samples added during the previous invocation. New arrays are required,
+     * since the buffers retain references to the samples they store.
+     */
+    @Setup(Level.Invocation)
+    public void nextBatch() {
+        for (int i = 0; i < BATCH; i++) {
+            samples[i] = samples[i].clone();
+            samples[i][tsIdx] = Instant.ofEpochMilli(base + offsets[i]);
+        }
+        base += BATCH;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object add() throws Exception {
+        if (circular != null) {
+            // Raw CircularBuffer insertion, without locking and views
+            for (Object[] s : samples) {
+                circular.add(s);
+            }
+            circular.deleteLast(circular.size() - WINDOW);
+            return circular;
+        }
+
+        for (Object[] s : samples) {
+            buf.add(s);
+        }
+        BufferView v = buf.createView();
+        v.get(WINDOW - 1);
+        v.release();
+        return buf;
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.lang.executor.statement.QueryHandler;
+import org.dei.perla.lang.executor.statement.SelectionExecutor;
+import org.dei.perla.lang.query.expression.ClosureCompiler;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link SelectionExecutor} pipeline driven by a {@link
+ * SyntheticFpc}. Every invocation emits the samples required to complete
+ * one EVERY cycle (half of them are discarded by the WHERE clause) and
+ * waits until the selection result reaches the query handler.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    private static final int EVERY = 32;
+
+    @Param({"interpreter", "closure"})
+    public String compiler;
+
+    private SyntheticFpc fpc;
+    private SelectionExecutor exec;
+    private final Semaphore results = new Semaphore(0);
+
+    @Setup
+    public void setup() throws Exception {
+        SelectionStatement s = SyntheticData.parse("EVERY 32 SAMPLES " +
+                "SELECT temperature:integer, AVG(humidity:float, 32 SAMPLES) " +
+                "SAMPLING EVERY 1 seconds " +
+                "WHERE temperature:integer >= 10");
+        if (compiler.equals("closure")) {
+            s = s.compile(new ClosureCompiler());
+        } else {
+            s = s.compile(ExpressionCompiler.INTERPRETER);
+        }
+
+        fpc = new SyntheticFpc();
+        exec = new SelectionExecutor(s, fpc, new ResultHandler());
+        exec.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        exec.stop();
+    }
+
+    @Benchmark
+    public void cycle() throws InterruptedException {
+        // Only even samples satisfy the WHERE clause
+        for (int i = 0; i < EVERY * 2; i++) {
+            fpc.emit();
+        }
+        results.acquire();
+    }
+
+
+    /**
+     * Query handler that signals the arrival of each result record
+     */
+    private final class ResultHandler
+            implements QueryHandler<SelectionStatement, Object[]> {
+
+        @Override
+        public void error(SelectionStatement source, Throwable cause) {
+            throw new RuntimeException(cause);
+        }
+
+        @Override
+        public void data(SelectionStatement source, Object[] value) {
+            results.release();
+        }
+
+    }
+
+}
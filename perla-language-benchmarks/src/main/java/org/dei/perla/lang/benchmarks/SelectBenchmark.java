@@ -0,0 +1,68 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single EVERY cycle of the selection clause: the samples
+ * gathered since the previous cycle are added to the buffer, after which
+ * {@code Select.select()} is run on a new view.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectBenchmark {
+
+    private static final int EVERY = 32;
+
+    private static final String[] QUERIES = new String[]{
+            // Plain projection
+            "EVERY 32 SAMPLES " +
+                    "SELECT temperature:integer, humidity:float " +
+                    "UP TO 32 SAMPLES " +
+                    "SAMPLING EVERY 1 seconds",
+            // Aggregates and having
+            "EVERY 32 SAMPLES " +
+                    "SELECT AVG(humidity:float, 32 SAMPLES), " +
+                    "MAX(temperature:integer, 32 SAMPLES), " +
+                    "COUNT(*, 1 seconds) " +
+                    "HAVING temperature:integer > 10 " +
+                    "SAMPLING EVERY 1 seconds"
+    };
+
+    @Param({"0", "1"})
+    public int query;
+
+    private SelectionStatement stmt;
+    private ArrayBuffer buf;
+    private long seq;
+
+    @Setup
+    public void setup() {
+        stmt = SyntheticData.parse(QUERIES[query]);
+        buf = new ArrayBuffer(stmt.getAttributes());
+        seq = 0;
+    }
+
+    @Benchmark
+    public List<Object[]> cycle() throws Exception {
+        for (int i = 0; i < EVERY; i++) {
+            buf.add(SyntheticData.sample(stmt.getAttributes(), seq++));
+        }
+        BufferView v = buf.createView();
+        List<Object[]> res = stmt.select(v);
+        v.release();
+        return res;
+    }
+
+}
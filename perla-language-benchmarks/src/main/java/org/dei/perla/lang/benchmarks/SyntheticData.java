@@ -0,0 +1,118 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.parser.ParseException;
+import org.dei.perla.lang.parser.ParserAST;
+import org.dei.perla.lang.parser.ParserContext;
+import org.dei.perla.lang.parser.ast.SelectionStatementAST;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deterministic synthetic samples and query utilities shared by all
+ * benchmark suites.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+public final class SyntheticData {
+
+    public static final Attribute TEMPERATURE =
+            Attribute.create("temperature", DataType.INTEGER);
+    public static final Attribute HUMIDITY =
+            Attribute.create("humidity", DataType.FLOAT);
+    public static final Attribute ALARM =
+            Attribute.create("alarm", DataType.BOOLEAN);
+    public static final Attribute ROOM =
+            Attribute.create("room", DataType.STRING);
+
+    /**
+     * Attributes produced by the {@link SyntheticFpc}
+     */
+    public static final List<Attribute> ATTRIBUTES =
+            Arrays.asList(new Attribute[]{
+                    Attribute.TIMESTAMP,
+                    TEMPERATURE,
+                    HUMIDITY,
+                    ALARM,
+                    ROOM
+            });
+
+    private SyntheticData() { }
+
+    /**
+     * Creates the i-th synthetic sample. Timestamps are spaced one
+     * millisecond apart, temperatures alternate between odd (below 10) and
+     * even (above 10) values.
+     *
+     * @param atts sample structure
+     * @param i sample sequence number
+     * @return new sample
+     */
+    public static Object[] sample(List<Attribute> atts, long i) {
+        Object[] s = new Object[atts.size()];
+        for (int j = 0; j < s.length; j++) {
+            s[j] = value(atts.get(j), i);
+        }
+        return s;
+    }
+
+    /**
+     * Creates an array of consecutive synthetic samples
+     *
+     * @param atts sample structure
+     * @param count number of samples
+     * @return new samples, from the oldest to the newest
+     */
+    public static Object[][] samples(List<Attribute> atts, int count) {
+        Object[][] s = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            s[i] = sample(atts, i);
+        }
+        return s;
+    }
+
+    private static Object value(Attribute a, long i) {
+        DataType t = a.getType();
+        if (a.equals(Attribute.TIMESTAMP)) {
+            return Instant.ofEpochMilli(i);
+        } else if (t == DataType.INTEGER) {
+            return i % 2 == 0 ? (int) (10 + i % 30) : (int) (i % 10);
+        } else if (t == DataType.FLOAT) {
+            return (i % 1000) / 10f;
+        } else if (t == DataType.BOOLEAN) {
+            return i % 7 == 0;
+        } else if (t == DataType.STRING) {
+            return "room-" + (i % 16);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Parses and compiles a selection statement
+     *
+     * @param query query text
+     * @return executable selection statement
+     */
+    public static SelectionStatement parse(String query) {
+        ParserContext ctx = new ParserContext();
+        ParserAST p = new ParserAST(new StringReader(query));
+        SelectionStatement s;
+        try {
+            SelectionStatementAST ast = p.SelectionStatement(ctx);
+            s = ast.compile(ctx);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Cannot parse query", e);
+        }
+        if (ctx.hasErrors()) {
+            throw new IllegalArgumentException(ctx.getErrorDescription());
+        }
+        return s;
+    }
+
+}
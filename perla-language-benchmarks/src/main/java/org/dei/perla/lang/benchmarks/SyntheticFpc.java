@@ -0,0 +1,134 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.Fpc;
+import org.dei.perla.core.fpc.Sample;
+import org.dei.perla.core.fpc.Task;
+import org.dei.perla.core.fpc.TaskHandler;
+import org.dei.perla.core.fpc.base.SamplePipeline;
+import org.dei.perla.core.utils.AsyncUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Offline stand-in for a real {@link Fpc}. Samples are not produced on a
+ * timer: every invocation of {@code emit()} synchronously delivers a new
+ * synthetic sample to all running periodic and event tasks, allowing the
+ * benchmarks to drive the query runtime at full speed.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+public final class SyntheticFpc implements Fpc {
+
+    private final List<Attribute> atts = SyntheticData.ATTRIBUTES;
+    private final List<SyntheticTask> tasks = new CopyOnWriteArrayList<>();
+    private long seq = 0;
+
+    /**
+     * Delivers a new sample to all running tasks. This method is not thread
+     * safe, and is expected to be invoked by a single benchmark thread.
+     */
+    public void emit() {
+        Object[] s = SyntheticData.sample(atts, seq++);
+        for (SyntheticTask t : tasks) {
+            t.handler.data(t, t.pipeline.run(s));
+        }
+    }
+
+    @Override
+    public int getId() {
+        return 0;
+    }
+
+    @Override
+    public String getType() {
+        return "SyntheticFpc";
+    }
+
+    @Override
+    public Collection<Attribute> getAttributes() {
+        return atts;
+    }
+
+    @Override
+    public Task set(Map<Attribute, Object> values, boolean strict,
+            TaskHandler handler) {
+        throw new UnsupportedOperationException(
+                "'set' operation not supported by SyntheticFpc");
+    }
+
+    @Override
+    public Task get(List<Attribute> atts, boolean strict,
+            TaskHandler handler) {
+        SyntheticTask t = new SyntheticTask(atts, handler);
+        AsyncUtils.runInNewThread(() -> {
+            Sample s = t.pipeline.run(SyntheticData.sample(this.atts, seq));
+            handler.data(t, s);
+            handler.complete(t);
+        });
+        return t;
+    }
+
+    @Override
+    public Task get(List<Attribute> atts, boolean strict, long periodMs,
+            TaskHandler handler) {
+        SyntheticTask t = new SyntheticTask(atts, handler);
+        tasks.add(t);
+        return t;
+    }
+
+    @Override
+    public Task async(List<Attribute> atts, boolean strict,
+            TaskHandler handler) {
+        SyntheticTask t = new SyntheticTask(atts, handler);
+        tasks.add(t);
+        return t;
+    }
+
+    @Override
+    public void stop(Consumer<Fpc> handler) {
+        tasks.forEach(Task::stop);
+        handler.accept(this);
+    }
+
+
+    /**
+     * Synthetic sampling task
+     */
+    private final class SyntheticTask implements Task {
+
+        private final List<Attribute> atts;
+        private final TaskHandler handler;
+        private final SamplePipeline pipeline;
+        private volatile boolean running = true;
+
+        private SyntheticTask(List<Attribute> atts, TaskHandler handler) {
+            this.atts = atts;
+            this.handler = handler;
+            pipeline = new SamplePipeline(SyntheticFpc.this.atts, atts);
+        }
+
+        @Override
+        public List<Attribute> getAttributes() {
+            return atts;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+            tasks.remove(this);
+            handler.complete(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.dei.perla.lang.benchmarks;
+
+import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.buffer.Buffer;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Window extraction cost: view creation, time window boundary lookup and
+ * sub-view creation on a buffer holding {@code size} samples spaced one
+ * millisecond apart. Views are released without accessing any sample, so
+ * the buffer content never changes.
+ *
+ * @author Guido Rota 27/01/16.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowBenchmark {
+
+    @Param({"array", "columnar"})
+    public String buffer;
+
+    @Param({"4096"})
+    public int size;
+
+    @Param({"10", "1000"})
+    public long windowMs;
+
+    private Buffer buf;
+    private Duration window;
+
+    @Setup
+    public void setup() {
+        if (buffer.equals("array")) {
+            buf = new ArrayBuffer(SyntheticData.ATTRIBUTES);
+        } else {
+            buf = new ColumnarBuffer(SyntheticData.ATTRIBUTES);
+        }
+        for (Object[] s : SyntheticData.samples(SyntheticData.ATTRIBUTES,
+                size)) {
+            buf.add(s);
+        }
+        window = Duration.ofMillis(windowMs);
+    }
+
+    @Benchmark
+    public int samplesIn() throws Exception {
+        BufferView v = buf.createView();
+        int count = v.samplesIn(window);
+        v.release();
+        return count;
+    }
+
+    @Benchmark
+    public int subView() throws Exception {
+        BufferView v = buf.createView();
+        BufferView sub = v.subView(window);
+        int count = sub.size();
+        sub.release();
+        v.release();
+        return count;
+    }
+
+}
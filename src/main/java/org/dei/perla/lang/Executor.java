@@ -2,23 +2,21 @@
 
 import org.dei.perla.core.PerLaSystem;
 import org.dei.perla.core.utils.Errors;
-import org.dei.perla.lang.database.DatabaseClass;
 import org.dei.perla.lang.executor.CreationManager;
 
 import org.dei.perla.lang.executor.InsertionManager;
 import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.executor.QueryScheduler;
 import org.dei.perla.lang.executor.SelectionManager;
 
 import org.dei.perla.lang.executor.SetManager;
+import org.dei.perla.lang.executor.metrics.Instrumentation;
 import org.dei.perla.lang.executor.statement.QueryHandler;
-import org.dei.perla.lang.parser.ParseException;
-import org.dei.perla.lang.parser.ParserAST;
-import org.dei.perla.lang.parser.ParserContext;
-import org.dei.perla.lang.parser.ast.StatementAST;
+import org.dei.perla.lang.parser.StatementCache;
+import org.dei.perla.lang.persistence.StreamDriver;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 import org.dei.perla.lang.query.statement.*;
 
-import java.io.StringReader;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,16 +34,73 @@ public final class Executor {
     private SelectionManager sm;
     private InsertionManager im;
     private SetManager setm;
+    private final StatementCache cache = new StatementCache();
+    private volatile ExpressionCompiler compiler =
+            ExpressionCompiler.INTERPRETER;
     
     public Executor(PerLaSystem perla) {
+        this(perla, QueryScheduler.getDefault());
+    }
+
+    /**
+     * Creates a new {@code Executor} whose queries are run on the {@link
+     * QueryScheduler} passed as parameter. The same {@link QueryScheduler}
+     * can be shared among different {@code Executor}s.
+     *
+     * @param perla PerLa system
+     * @param scheduler scheduler employed to run the queries
+     */
+    public Executor(PerLaSystem perla, QueryScheduler scheduler) {
         this.perla = perla;
         this.queries= new HashMap<String,List<Statement>>();
         this.cm = new CreationManager(perla.getRegistry());
-        this.sm= new SelectionManager(perla.getRegistry());
-        this.im= new InsertionManager();
+        this.sm= new SelectionManager(perla.getRegistry(), scheduler);
+        this.im= new InsertionManager(sm);
         this.setm = new SetManager(perla.getRegistry());
     }
 
+    /**
+     * Sets the {@link ExpressionCompiler} employed to compile the
+     * expressions of the selection statements executed from now on. By
+     * default, expressions are interpreted.
+     *
+     * @param compiler expression compiler
+     */
+    public void setExpressionCompiler(ExpressionCompiler compiler) {
+        if (compiler == null) {
+            throw new NullPointerException("compiler cannot be null");
+        }
+        this.compiler = compiler;
+    }
+
+    /**
+     * Sets the {@link Instrumentation} employed to observe the execution of
+     * the selection statements started from now on. By default, executions
+     * are not instrumented.
+     *
+     * @param instrumentation execution instrumentation
+     */
+    public void setInstrumentation(Instrumentation instrumentation) {
+        if (instrumentation == null) {
+            throw new NullPointerException("instrumentation cannot be null");
+        }
+        sm.setInstrumentation(instrumentation);
+    }
+
+    /**
+     * Sets the {@link StreamDriver} employed to open the target streams of
+     * the insertion statements executed from now on. Insertion statements
+     * cannot be executed until a {@link StreamDriver} is set.
+     *
+     * @param driver stream driver
+     */
+    public void setStreamDriver(StreamDriver driver) {
+        if (driver == null) {
+            throw new NullPointerException("driver cannot be null");
+        }
+        im.setStreamDriver(driver);
+    }
+
     public StatementTask execute(Statement s, StatementHandler h) throws QueryException{
     	 if (s instanceof SelectionStatement) {
              SelectionStatement sel = (SelectionStatement) s;
@@ -72,62 +127,40 @@ public final class Executor {
     public StatementTask execute(String query, StatementHandler h)
             throws QueryException {
         Statement s = parseQuery(query);
-        SelectionStatement sels  = (SelectionStatement)s;
-            
-        
         return execute(s, h);
     }
     
     public StatementTask execute(String query, StatementHandler h, String tableName)
             throws QueryException {
         Statement s = parseQuery(query);
-        SelectionStatement sels  = (SelectionStatement)s;
-        /*
-         * CREO LA TABELLA
-        
-        DatabaseClass db=new DatabaseClass();
-        try {
-			db.connect();
-			db.createTable(sels.getAttributes(), tableName );
-			db.closeConnection();
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-        
-         */
-        
         return execute(s, h);
     }
 
-    public Statement parseQuery(String query) throws QueryException {
-        ParserContext ctx = new ParserContext();
-        ParserAST p = new ParserAST(new StringReader(query));
-        StatementAST ast;
-        try {
-            ast = p.Statement(ctx);
-            
-        } catch(ParseException e) {
-            throw new QueryException("Cannot parse query", e);
-        }
-        if (ctx.hasErrors()) {
-            throw new QueryException(ctx.getErrorDescription());
-        }
+    /**
+     * Returns the {@link StatementCache} employed to store the statements
+     * compiled by the {@code parseQuery} method
+     *
+     * @return statement cache
+     */
+    public StatementCache getStatementCache() {
+        return cache;
+    }
 
-        Statement s = ast.compile(ctx);
-        
-        if (ctx.hasErrors()) {
-            throw new QueryException(ctx.getErrorDescription());
-        }
-        
-        
-        
-        return s;
+    /**
+     * Parses and compiles a query. Compiled statements are cached, and
+     * repeated submissions of the same query text are not compiled again.
+     *
+     * @param query query text
+     * @return compiled statement
+     * @throws QueryException if the query cannot be parsed or compiled
+     */
+    public Statement parseQuery(String query) throws QueryException {
+        return cache.get(query);
     }
 
     private StatementTask executeSelection(SelectionStatement sel,
             StatementHandler h) {
-    	return sm.insertQuery(sel, h);
+    	return sm.insertQuery(sel.compile(compiler), h);
       }
     	
     
@@ -138,8 +171,9 @@ public final class Executor {
     }
 
     private StatementTask executeInsertion(InsertionStatement ins,
-            StatementHandler h) {
-        return im.insertQuery(ins, h);
+            StatementHandler h) throws QueryException {
+        SelectionStatement sel = ins.getSelectionStatement();
+        return im.insertQuery(ins, sel.compile(compiler), h);
     }
 
     private StatementTask executeSet(SetStatement set,
@@ -0,0 +1,91 @@
+package org.dei.perla.lang;
+
+/**
+ * Interfaces for the push-based delivery of query results with demand
+ * signalling. The interfaces mirror those of the
+ * {@code java.util.concurrent.Flow} class introduced in Java 9, which is
+ * not available on the Java version targeted by PerLa.
+ *
+ * @author Guido Rota 14/02/16.
+ */
+public final class Flow {
+
+    private Flow() { }
+
+    /**
+     * Producer of items received by a {@link Subscriber}
+     *
+     * @param <T> type of the published items
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Adds the {@link Subscriber} passed as parameter. Errors are
+         * notified through the {@code onError} method of the {@link
+         * Subscriber}.
+         *
+         * @param subscriber subscriber
+         */
+        public void subscribe(Subscriber<? super T> subscriber);
+
+    }
+
+    /**
+     * Receiver of the items published by a {@link Publisher}
+     *
+     * @param <T> type of the received items
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Invoked before any other method, no item is received until the
+         * {@code request} method of the {@link Subscription} is called
+         *
+         * @param subscription subscription
+         */
+        public void onSubscribe(Subscription subscription);
+
+        /**
+         * Invoked with the next item
+         *
+         * @param item item
+         */
+        public void onNext(T item);
+
+        /**
+         * Invoked upon an unrecoverable error, no other method is invoked
+         * afterwards
+         *
+         * @param cause error
+         */
+        public void onError(Throwable cause);
+
+        /**
+         * Invoked when no more items will be published
+         */
+        public void onComplete();
+
+    }
+
+    /**
+     * Link between a {@link Publisher} and a {@link Subscriber}
+     */
+    public interface Subscription {
+
+        /**
+         * Adds the specified number of items to the unfulfilled demand of
+         * the {@link Subscriber}
+         *
+         * @param n number of items, must be positive
+         */
+        public void request(long n);
+
+        /**
+         * Stops the delivery of items to the {@link Subscriber}
+         */
+        public void cancel();
+
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.dei.perla.lang;
+
+import org.dei.perla.lang.executor.Record;
+import org.dei.perla.lang.query.statement.Statement;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link StatementHandler} that publishes the query results to a single
+ * {@link Flow.Subscriber}, according to the demand it signals.
+ *
+ * <p> Results are queued in a bounded buffer until requested by the
+ * {@link Flow.Subscriber}. The query is informed of the outstanding demand
+ * through the {@code hasDemand()} method, and skips the evaluations
+ * triggered while the {@link Flow.Subscriber} has no demand left. Results
+ * produced when the buffer is full are managed according to the {@link
+ * OverflowPolicy} of the stream.
+ *
+ * <p> No demand is signalled before a {@link Flow.Subscriber} is registered,
+ * hence the query does not produce any result until the first call to the
+ * {@code Subscription.request()} method.
+ *
+ * <p> Example usage:
+ * <pre>{@code
+ * RecordStream stream = new RecordStream(64, OverflowPolicy.DROP_OLDEST);
+ * StatementTask task = executor.execute(query, stream);
+ * stream.subscribe(subscriber);
+ * }</pre>
+ *
+ * @author Guido Rota 14/02/16.
+ */
+public final class RecordStream
+        implements StatementHandler, Flow.Publisher<Record> {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Management policy of the results produced while the buffer is full
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * The oldest buffered result is discarded
+         */
+        DROP_OLDEST,
+
+        /**
+         * The newest buffered result is replaced, so that the {@link
+         * Flow.Subscriber} always receives the most recent result once it
+         * catches up
+         */
+        COALESCE,
+
+        /**
+         * The query blocks until the {@link Flow.Subscriber} requests more
+         * results. Only recommended for queries that run on a dedicated
+         * {@link org.dei.perla.lang.executor.QueryScheduler}.
+         */
+        BLOCK
+
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private final Lock lk = new ReentrantLock();
+    private final Condition notFull = lk.newCondition();
+    private final Deque<Record> queue = new ArrayDeque<>();
+    private Flow.Subscriber<? super Record> subscriber;
+    private long requested = 0;
+    private long dropped = 0;
+    private boolean cancelled = false;
+    // Set when the query completes or fails
+    private boolean done = false;
+    private Throwable error;
+    // Set when the terminal signal has been sent to the subscriber
+    private boolean terminated = false;
+    // Set while a thread is delivering results to the subscriber
+    private boolean draining = false;
+
+    /**
+     * Creates a new stream with default capacity, which discards the oldest
+     * results upon overflow
+     */
+    public RecordStream() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a new stream
+     *
+     * @param capacity maximum number of buffered results
+     * @param policy management policy of the results produced while the
+     *               buffer is full
+     */
+    public RecordStream(int capacity, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        } else if (policy == null) {
+            throw new NullPointerException("policy cannot be null");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the number of results discarded or replaced because of a
+     * buffer overflow
+     *
+     * @return number of discarded results
+     */
+    public long getDropped() {
+        lk.lock();
+        try {
+            return dropped;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Record> s) {
+        if (s == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+
+        boolean accepted;
+        lk.lock();
+        try {
+            accepted = subscriber == null;
+            if (accepted) {
+                subscriber = s;
+            }
+        } finally {
+            lk.unlock();
+        }
+
+        if (!accepted) {
+            s.onSubscribe(new NoopSubscription());
+            s.onError(new IllegalStateException(
+                    "RecordStream only supports a single subscriber"));
+            return;
+        }
+        s.onSubscribe(new StreamSubscription());
+        drain();
+    }
+
+    @Override
+    public boolean hasDemand() {
+        lk.lock();
+        try {
+            return subscriber != null && !cancelled && !done &&
+                    requested > queue.size();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    @Override
+    public void data(Statement stat, Record record) {
+        batch(stat, Collections.singletonList(record));
+    }
+
+    @Override
+    public void batch(Statement stat, List<Record> records) {
+        int i = 0;
+        while (i < records.size()) {
+            lk.lock();
+            try {
+                if (cancelled || done) {
+                    return;
+                }
+                while (i < records.size() && enqueue(records.get(i))) {
+                    i++;
+                }
+            } finally {
+                lk.unlock();
+            }
+            drain();
+            if (i < records.size() && !awaitSpace()) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Adds a record to the buffer, applying the overflow policy. Returns
+     * false if the record could not be added because the buffer is full and
+     * the policy is BLOCK.
+     *
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked while holding the lk lock.
+     */
+    private boolean enqueue(Record r) {
+        if (queue.size() < capacity) {
+            queue.addLast(r);
+            return true;
+        }
+
+        switch (policy) {
+            case DROP_OLDEST:
+                queue.pollFirst();
+                break;
+            case COALESCE:
+                queue.pollLast();
+                break;
+            case BLOCK:
+                return false;
+            default:
+                throw new RuntimeException("Unknown overflow policy " +
+                        policy);
+        }
+        dropped++;
+        queue.addLast(r);
+        return true;
+    }
+
+    /*
+     * Waits until the buffer has room for a new record. Returns false if
+     * the stream has been closed or the calling thread was interrupted.
+     */
+    private boolean awaitSpace() {
+        lk.lock();
+        try {
+            while (queue.size() >= capacity && !cancelled && !done) {
+                notFull.await();
+            }
+            return !cancelled && !done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    @Override
+    public void error(Statement stat, Throwable cause) {
+        terminate(cause);
+    }
+
+    @Override
+    public void complete() {
+        terminate(null);
+    }
+
+    private void terminate(Throwable cause) {
+        lk.lock();
+        try {
+            if (done) {
+                return;
+            }
+            done = true;
+            error = cause;
+            notFull.signalAll();
+        } finally {
+            lk.unlock();
+        }
+        drain();
+    }
+
+    /*
+     * Delivers the buffered results to the subscriber, up to the requested
+     * amount. Only one thread at a time runs the delivery loop; the other
+     * threads leave the delivery of their results to the thread already
+     * inside the loop, which checks for new results before exiting.
+     */
+    private void drain() {
+        lk.lock();
+        try {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        } finally {
+            lk.unlock();
+        }
+
+        while (true) {
+            Flow.Subscriber<? super Record> s;
+            Record r = null;
+            Throwable cause = null;
+            lk.lock();
+            try {
+                s = subscriber;
+                if (s == null || cancelled || terminated) {
+                    draining = false;
+                    return;
+                } else if (requested > 0 && !queue.isEmpty()) {
+                    r = queue.pollFirst();
+                    requested--;
+                    notFull.signal();
+                } else if (done && queue.isEmpty()) {
+                    terminated = true;
+                    cause = error;
+                } else {
+                    draining = false;
+                    return;
+                }
+            } finally {
+                lk.unlock();
+            }
+
+            if (r != null) {
+                s.onNext(r);
+            } else if (cause != null) {
+                s.onError(cause);
+            } else {
+                s.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Subscription of the {@link Flow.Subscriber} registered on the stream
+     */
+    private final class StreamSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException(
+                        "Non-positive number of requested results"));
+                return;
+            }
+
+            lk.lock();
+            try {
+                requested += n;
+                if (requested < 0) {
+                    // Overflow, unbounded demand
+                    requested = Long.MAX_VALUE;
+                }
+            } finally {
+                lk.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            lk.lock();
+            try {
+                cancelled = true;
+                queue.clear();
+                notFull.signalAll();
+            } finally {
+                lk.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * Subscription handed to the rejected {@link Flow.Subscriber}s
+     */
+    private static final class NoopSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) { }
+
+        @Override
+        public void cancel() { }
+
+    }
+
+}
@@ -14,6 +14,13 @@ import java.util.Random;
 import org.dei.perla.core.fpc.Attribute;
 
 import java.sql.Driver;
+
+/**
+ * @deprecated Records are inserted one at a time through string-built
+ * statements, on a single connection with fixed credentials. Use {@link
+ * org.dei.perla.lang.persistence.jdbc.JdbcStreamDriver} instead.
+ */
+@Deprecated
 public class DatabaseClass {
 	
 	private Connection con;
@@ -1,19 +1,18 @@
 package org.dei.perla.lang.executor;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.log4j.Logger;
 import org.dei.perla.lang.StatementHandler;
 import org.dei.perla.lang.executor.buffer.ArrayBuffer;
 import org.dei.perla.lang.executor.buffer.Buffer;
 import org.dei.perla.lang.executor.buffer.BufferView;
-import org.dei.perla.lang.executor.buffer.UnreleasedViewException;
+import org.dei.perla.lang.executor.metrics.QueryMetrics;
 import org.dei.perla.lang.executor.statement.QueryHandler;
 import org.dei.perla.lang.query.expression.LogicValue;
 import org.dei.perla.lang.query.statement.Sampling;
@@ -21,48 +20,86 @@ import org.dei.perla.lang.query.statement.SelectionStatement;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 public class AggregateQueryHandler extends SelectionQueryHandler{
+
+	private static final Logger log =
+			Logger.getLogger(AggregateQueryHandler.class);
+
 	private int fpcs,current;
 	private final Buffer buffer;
 	private SelectionStatement sel;
 	private int everyCount;
-	private static final ScheduledExecutorService timer =
-            Executors.newScheduledThreadPool(1);
-    private static final ExecutorService exec =
-            Executors.newCachedThreadPool();
-    private ScheduledFuture<?> everyThread;
+    private final QueryScheduler scheduler;
+    private final QueryScheduler.Lane lane;
+    private TimerWheel.Timeout everyThread;
     private StatementHandler h;
     private final Lock lk = new ReentrantLock();
     
 	public AggregateQueryHandler(SelectionStatement sel, StatementHandler h, SelectionStatement fake) {
-		super(h);
+		this(sel, h, fake, QueryScheduler.getDefault());
+	}
+
+	public AggregateQueryHandler(SelectionStatement sel, StatementHandler h,
+			SelectionStatement fake, QueryScheduler scheduler) {
+		super(sel, h);
 		this.sel=sel;
 		this.h = h;
+		this.scheduler = scheduler;
+		lane = scheduler.newLane();
 		buffer = new ArrayBuffer(fake.getAttributes());
 		startEvery();
 	}
 
 	@Override
 	public void error(SelectionStatement source, Throwable cause) {
-		System.out.println(source.toString());
-		System.out.println(cause.getMessage());		
+		getMetrics().error();
+		log.error("Error while executing query " + source, cause);
 	}
 
 	@Override
 	public void data(SelectionStatement source, Object[] value) {
-		 lk.lock();
-         try {
-        	 Object[] o = new Object[value.length+1];
-        	 int i;
-        	 for(i=0;i<value.length;i++)
-        		 o[i]=value[i];
-        	 o[value.length]=java.time.Instant.now();
-             buffer.add(o);
-             if (sel.getEvery().getType() == WindowSize.WindowType.SAMPLE) {
-             	triggerCountSampling();
-             }
-         } finally {
-             lk.unlock();
-         }
+		lk.lock();
+		try {
+			add(value);
+		} finally {
+			lk.unlock();
+		}
+	}
+
+	@Override
+	public void batch(SelectionStatement source, List<Object[]> values) {
+		lk.lock();
+		try {
+			for (Object[] value : values) {
+				add(value);
+			}
+		} finally {
+			lk.unlock();
+		}
+	}
+
+	/*
+	 * Raw samples are always accepted, the demand of the downstream handler
+	 * is checked when the aggregates are evaluated
+	 */
+	@Override
+	public boolean hasDemand() {
+		return true;
+	}
+
+	/*
+	 * NOTE: This method is not thread safe, and should therefore only be
+	 * invoked while holding the lk lock.
+	 */
+	private void add(Object[] value) {
+		Object[] o = new Object[value.length+1];
+		int i;
+		for(i=0;i<value.length;i++)
+			o[i]=value[i];
+		o[value.length]=java.time.Instant.now();
+		buffer.add(o);
+		if (sel.getEvery().getType() == WindowSize.WindowType.SAMPLE) {
+			triggerCountSampling();
+		}
 	}
 
     private void triggerCountSampling() {
@@ -71,17 +108,25 @@ public class AggregateQueryHandler extends SelectionQueryHandler{
             return;
         }
 
+        everyCount = sel.getEvery().getSamples();
+        if (h.hasDemand()) {
+            submit(buffer.createView());
+        }
+    }
+
+    private void submit(BufferView view) {
         try {
-            everyCount = sel.getEvery().getSamples();
-            BufferView view = buffer.createView();
-            exec.execute(new SelectionRunner(view));
-        } catch(UnreleasedViewException e) {
-            h.error(sel, e);
+            lane.execute(new SelectionRunner(view));
+        } catch (RejectedExecutionException e) {
+            view.release();
         }
     }
 
 	public void complete() {
-		super.getHandler().complete();
+		if (everyThread != null) {
+			everyThread.cancel();
+		}
+		super.complete();
 	}
    
 	/**
@@ -92,10 +137,10 @@ public class AggregateQueryHandler extends SelectionQueryHandler{
         public void run() {
             lk.lock();
             try {
-                BufferView view = buffer.createView();
-                exec.execute(new SelectionRunner(view));
-            } catch (UnreleasedViewException e) {
-            	h.error(sel, e);
+                if (!h.hasDemand()) {
+                    return;
+                }
+                submit(buffer.createView());
             } finally {
                 lk.unlock();
             }
@@ -106,7 +151,7 @@ public class AggregateQueryHandler extends SelectionQueryHandler{
         switch (sel.getEvery().getType()) {
             case TIME:
                 long ms = sel.getEvery().getDuration().toMillis();
-                everyThread = timer.scheduleAtFixedRate(
+                everyThread = scheduler.scheduleAtFixedRate(
                         new EveryRunner(),
                         ms,
                         ms,
@@ -131,24 +176,27 @@ public class AggregateQueryHandler extends SelectionQueryHandler{
 
             public void run() {
                 List<Object[]> res = sel.select(view);
-                Record r;
                 view.release();
+                if (res.isEmpty()) {
+                    return;
+                }
+                List<Record> records = new ArrayList<>(res.size());
+                for (Object[] value : res) {
+                    records.add(new Record(sel.getAttributes(), value));
+                }
+                if (log.isTraceEnabled()) {
+                    records.forEach(r -> log.trace(r));
+                }
+                QueryMetrics metrics = getMetrics();
                 lk.lock();
-                float f=0;
                 try {
-                    for(Object[] value:res){
-            		r= new Record(sel.getAttributes(), value);
-            	//	System.out.println("prova");
-            		try{
-            			String s;
-            			for(int i=0;i<r.getValues().length;i++)
-            				 System.out.println(r.getFields().get(i).getId()+" "+r.getValues()[i]);	
-            		h.data(sel,r);
-            		}
-            		catch(Exception e){
-            			System.out.println(e.toString());
-            		}
-                    }
+                    long start = System.nanoTime();
+                    h.batch(sel, records);
+                    metrics.record(records.size(), System.nanoTime() - start);
+                } catch (Exception e) {
+                    metrics.error();
+                    log.error("Error while delivering the results of " +
+                            "query " + sel, e);
                 } finally {
                     lk.unlock();
                 }
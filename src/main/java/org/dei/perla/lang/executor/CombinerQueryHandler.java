@@ -0,0 +1,249 @@
+package org.dei.perla.lang.executor;
+
+import org.apache.log4j.Logger;
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.executor.statement.QueryHandler;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Combiner stage of an aggregate query executed with a two-level {@link
+ * PartialAggregation} plan.
+ *
+ * <p> Every FPC delivers its partial aggregates to a dedicated source
+ * handler, obtained through the {@code source()} method. The combiner only
+ * retains the latest partial row of each FPC, hence its memory and locking
+ * costs grow with the number of FPCs instead of the number of samples. At
+ * every EVERY period the latest partial rows are merged into the final
+ * result, which is delivered to the {@link StatementHandler}. Partial rows
+ * delivered directly to the {@code CombinerQueryHandler} are retained as
+ * the rows of a single anonymous source.
+ *
+ * <p> Partial rows that have not been refreshed for two EVERY periods are
+ * discarded, as their FPC is assumed to have stopped producing samples.
+ *
+ * @author Guido Rota 16/02/16.
+ */
+public final class CombinerQueryHandler extends SelectionQueryHandler {
+
+    private static final Logger log =
+            Logger.getLogger(CombinerQueryHandler.class);
+
+    private final SelectionStatement sel;
+    private final PartialAggregation plan;
+    private final StatementHandler h;
+    private final QueryScheduler.Lane lane;
+    private final TimerWheel.Timeout every;
+    private final long expiryNanos;
+
+    private final Lock lk = new ReentrantLock();
+    // Latest partial row received from each FPC, the null key identifies
+    // the rows delivered directly to the combiner
+    private final Map<Integer, Partial> partials = new HashMap<>();
+
+    public CombinerQueryHandler(PartialAggregation plan, StatementHandler h) {
+        this(plan, h, QueryScheduler.getDefault());
+    }
+
+    public CombinerQueryHandler(PartialAggregation plan, StatementHandler h,
+            QueryScheduler scheduler) {
+        super(plan.getQuery(), h);
+        this.sel = plan.getQuery();
+        this.plan = plan;
+        this.h = h;
+        lane = scheduler.newLane();
+
+        long ms = sel.getEvery().getDuration().toMillis();
+        expiryNanos = TimeUnit.MILLISECONDS.toNanos(ms * 2);
+        every = scheduler.scheduleAtFixedRate(new EveryRunner(), ms, ms,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the handler that receives the partial aggregates of an FPC
+     *
+     * @param id FPC identifier
+     * @return partial aggregate handler
+     */
+    public QueryHandler<SelectionStatement, Object[]> source(int id) {
+        return new SourceHandler(id);
+    }
+
+    /**
+     * Returns the number of FPCs whose partial aggregates are currently
+     * retained by the combiner
+     *
+     * @return number of partial rows
+     */
+    public int getSourceCount() {
+        lk.lock();
+        try {
+            return partials.size();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Merges the partial rows received so far into a result row
+     *
+     * @return result row, null if no result is available
+     */
+    protected Object[] combine() {
+        List<Object[]> rows;
+        lk.lock();
+        try {
+            long now = System.nanoTime();
+            rows = new ArrayList<>(partials.size());
+            Iterator<Partial> it = partials.values().iterator();
+            while (it.hasNext()) {
+                Partial p = it.next();
+                if (now - p.received > expiryNanos) {
+                    it.remove();
+                } else {
+                    rows.add(p.row);
+                }
+            }
+        } finally {
+            lk.unlock();
+        }
+        return plan.combine(rows);
+    }
+
+    @Override
+    public void error(SelectionStatement source, Throwable cause) {
+        getMetrics().error();
+        log.error("Error while executing query " + source, cause);
+    }
+
+    @Override
+    public void data(SelectionStatement source, Object[] value) {
+        store(null, value);
+    }
+
+    @Override
+    public void batch(SelectionStatement source, List<Object[]> values) {
+        if (!values.isEmpty()) {
+            store(null, values.get(values.size() - 1));
+        }
+    }
+
+    /*
+     * Partial rows are always accepted, the demand of the downstream handler
+     * is checked when the partial rows are combined
+     */
+    @Override
+    public boolean hasDemand() {
+        return true;
+    }
+
+    @Override
+    public void complete() {
+        every.cancel();
+        super.complete();
+    }
+
+    /*
+     * Replaces the partial row of the source passed as parameter
+     */
+    private void store(Integer id, Object[] row) {
+        lk.lock();
+        try {
+            partials.put(id, new Partial(row, System.nanoTime()));
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    private void deliver(Object[] row) {
+        try {
+            super.batch(sel, Collections.singletonList(row));
+        } catch (Exception e) {
+            getMetrics().error();
+            log.error("Error while delivering the results of query " +
+                    sel, e);
+        }
+    }
+
+
+    /**
+     * Latest partial row of an FPC
+     */
+    private static final class Partial {
+
+        private final Object[] row;
+        private final long received;
+
+        private Partial(Object[] row, long received) {
+            this.row = row;
+            this.received = received;
+        }
+
+    }
+
+    /**
+     * Receives the partial aggregates of a single FPC
+     */
+    private final class SourceHandler
+            implements QueryHandler<SelectionStatement, Object[]> {
+
+        private final int id;
+
+        private SourceHandler(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void error(SelectionStatement source, Throwable cause) {
+            CombinerQueryHandler.this.error(source, cause);
+        }
+
+        @Override
+        public void data(SelectionStatement source, Object[] value) {
+            store(id, value);
+        }
+
+        @Override
+        public void batch(SelectionStatement source, List<Object[]> values) {
+            // Only the newest partial row is relevant
+            if (!values.isEmpty()) {
+                store(id, values.get(values.size() - 1));
+            }
+        }
+
+    }
+
+    /**
+     * Every runner
+     */
+    private final class EveryRunner implements Runnable {
+
+        public void run() {
+            if (!h.hasDemand()) {
+                return;
+            }
+            try {
+                lane.execute(() -> {
+                    Object[] row = combine();
+                    if (row != null) {
+                        deliver(row);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Skip the period if the combiner is lagging behind
+            }
+        }
+
+    }
+
+}
@@ -1,78 +1,86 @@
 package org.dei.perla.lang.executor;
 
-import java.util.ArrayList;
-
 import org.dei.perla.core.registry.Registry;
 import org.dei.perla.lang.StatementHandler;
 import org.dei.perla.lang.StatementTask;
-import org.dei.perla.lang.executor.SelectionManager.SelectionQueryTask;
-import org.dei.perla.lang.executor.SelectionManager.SelectionStatementTask;
 import org.dei.perla.lang.query.statement.CreationStatement;
-import org.dei.perla.lang.query.statement.SelectionStatement;
-import org.dei.perla.lang.query.statement.Statement;
 
 public class CreationManager{
-	private ArrayList<CreationStatement> query = new ArrayList<CreationStatement>();
-	private ArrayList<StatementHandler> handlers = new ArrayList<StatementHandler>();
+	private final QueryRegistry queries = new QueryRegistry();
 	private SelectionManager sm;
 	private Registry registry;
-	private ArrayList<CreationStatementTask> stasks = new ArrayList<CreationStatementTask>();
-	private ArrayList<CreationQueryTask> qtasks = new ArrayList<CreationQueryTask>();
-	private ArrayList<CreationQueryHandler> qhandler = new ArrayList<CreationQueryHandler>();
 	public CreationManager(Registry registry) {
 		this.registry=registry;
 		sm = new SelectionManager(registry);
 		
 	}
 
+	/**
+	 * Returns the registry of the queries managed by this {@code
+	 * CreationManager}
+	 *
+	 * @return query registry
+	 */
+	public QueryRegistry getQueries() {
+		return queries;
+	}
+
 	public StatementTask insertQuery(CreationStatement s, StatementHandler sh) {
-		query.add(s);
-		handlers.add(sh);
+		// The execution of creation statements is not supported yet, the
+		// statement is only recorded in the registry until it is stopped
+		QueryRegistry.Entry e = queries.add(s, sh,
+				th -> new CreationQueryTask(th));
+		return new CreationStatementTask(e.getId());
 		
-		return null;
-		
-	}
-	
-	private void clean(int i){
-		distributors.remove(i);
-		qtasks.remove(i);
-		qhandler.remove(i);
-		handlers.remove(i);
-		stasks.remove(i);
 	}
 	
 	public class CreationStatementTask implements StatementTask{
 
+		private final long id;
+
+		private CreationStatementTask(long id) {
+			this.id = id;
+		}
+
 		@Override
 		public void stop() {
-			int i = stasks.indexOf(this);
-			 qtasks.get(i).stop();		
+			QueryRegistry.Entry e = queries.remove(id);
+			if (e != null) {
+				e.getTask().stop();
+			}
 		}
 
 		@Override
 		public boolean isRunning() {
-			int i = stasks.indexOf(this);
-			return qtasks.get(i).isRunning();
+			QueryRegistry.Entry e = queries.get(id);
+			return e != null && e.getTask().isRunning();
 		}
 		
 
 	}
 	
 	
-	public class CreationQueryTask implements QueryTask{
+	public static class CreationQueryTask implements QueryTask{
+
+		private final StatementHandler sh;
+		private volatile boolean running = true;
+
+		private CreationQueryTask(StatementHandler sh) {
+			this.sh = sh;
+		}
 
 		@Override
 		public boolean isRunning() {
-			int i = qtasks.indexOf(this);
-			return distributors.get(i).isRunning();
+			return running;
 		}
 
 		@Override
 		public void stop() {
-			int i = qtasks.indexOf(this);
-			distributors.get(i).stop();
-			clean(i);
-			
+			if (!running) {
+				return;
+			}
+			running = false;
+			sh.complete();
 		}
 		
 	}
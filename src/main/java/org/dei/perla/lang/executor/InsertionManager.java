@@ -2,13 +2,138 @@ package org.dei.perla.lang.executor;
 
 import org.dei.perla.lang.StatementHandler;
 import org.dei.perla.lang.StatementTask;
+import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.persistence.StreamDriver;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.WriteBehindStream;
 import org.dei.perla.lang.query.statement.InsertionStatement;
+import org.dei.perla.lang.query.statement.SelectionStatement;
 
 public class InsertionManager {
 
-	public StatementTask insertQuery(InsertionStatement ins, StatementHandler h) {
-		// TODO Auto-generated method stub
-		return null;
+	private final QueryRegistry queries = new QueryRegistry();
+	private final SelectionManager sm;
+	private volatile StreamDriver driver;
+
+	/**
+	 * Creates a new {@code InsertionManager}, which runs the selections
+	 * embedded in the insertion statements on the {@link SelectionManager}
+	 * passed as parameter
+	 *
+	 * @param sm selection manager
+	 */
+	public InsertionManager(SelectionManager sm) {
+		this.sm = sm;
+	}
+
+	/**
+	 * Returns the registry of the queries managed by this {@code
+	 * InsertionManager}
+	 *
+	 * @return query registry
+	 */
+	public QueryRegistry getQueries() {
+		return queries;
+	}
+
+	/**
+	 * Sets the {@link StreamDriver} employed to open the target streams of
+	 * the insertion statements inserted from now on
+	 *
+	 * @param driver stream driver
+	 */
+	public void setStreamDriver(StreamDriver driver) {
+		this.driver = driver;
+	}
+
+	/**
+	 * Starts an insertion statement. The target stream is opened, and the
+	 * selection columns are mapped to the stream fields, before the
+	 * selection is started.
+	 *
+	 * @param ins insertion statement
+	 * @param sel selection to run, i.e. the selection embedded in the
+	 *            insertion statement, possibly compiled
+	 * @param h statement handler
+	 * @return running statement
+	 * @throws QueryException if the target stream cannot be opened, or if
+	 * the selection columns do not match the stream fields
+	 */
+	public StatementTask insertQuery(InsertionStatement ins,
+			SelectionStatement sel, StatementHandler h) throws QueryException {
+		StreamDriver d = driver;
+		if (d == null) {
+			throw new QueryException("Cannot insert into stream '" +
+					ins.getStream() + "', no stream driver has been set");
+		}
+		Stream s;
+		try {
+			s = d.open(ins.getStream());
+		} catch (StreamException e) {
+			throw new QueryException("Cannot open stream '" +
+					ins.getStream() + "'", e);
+		}
+		InsertionPlan plan = InsertionPlan.create(ins, s.getFields());
+
+		QueryRegistry.Entry e = queries.add(ins, h, th -> {
+			InsertionQueryHandler ih = new InsertionQueryHandler(ins, plan,
+					new WriteBehindStream(s), th);
+			return new InsertionQueryTask(sm.insertQuery(sel, ih), ih);
+		});
+		return new InsertionStatementTask(e.getId());
+	}
+
+	public class InsertionStatementTask implements StatementTask{
+
+		private final long id;
+
+		private InsertionStatementTask(long id) {
+			this.id = id;
+		}
+
+		@Override
+		public void stop() {
+			QueryRegistry.Entry e = queries.remove(id);
+			if (e != null) {
+				e.getTask().stop();
+			}
+		}
+
+		@Override
+		public boolean isRunning() {
+			QueryRegistry.Entry e = queries.get(id);
+			return e != null && e.getTask().isRunning();
+		}
+
+	}
+
+	public static class InsertionQueryTask implements QueryTask{
+
+		private final StatementTask sel;
+		private final InsertionQueryHandler ih;
+
+		private InsertionQueryTask(StatementTask sel,
+				InsertionQueryHandler ih) {
+			this.sel = sel;
+			this.ih = ih;
+		}
+
+		public InsertionQueryHandler getHandler() {
+			return ih;
+		}
+
+		@Override
+		public boolean isRunning() {
+			return sel.isRunning();
+		}
+
+		@Override
+		public void stop() {
+			// The selection task completes the insertion handler, which
+			// writes the queued records before returning
+			sel.stop();
+		}
+
 	}
 
 }
@@ -0,0 +1,145 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.statement.InsertionStatement;
+
+import java.util.List;
+
+/**
+ * Mapping between the output columns of the selection embedded in an {@link
+ * InsertionStatement} and the fields of the target {@link Stream}.
+ *
+ * <p> The mapping is resolved once, when the {@code InsertionPlan} is
+ * created. Converting a selection result into a stream record therefore
+ * requires no field name lookup. Results whose columns are already laid out
+ * in stream order are passed through without being copied, while all other
+ * results are converted with a single array allocation; the fields that are
+ * not populated by the selection are set to their default value.
+ *
+ * @author Guido Rota 25/02/16.
+ */
+public final class InsertionPlan {
+
+    // Stream field index of every selection column
+    private final int[] map;
+    // Stream record containing the default value of every field
+    private final Object[] template;
+    private final boolean identity;
+
+    private InsertionPlan(int[] map, Object[] template) {
+        this.map = map;
+        this.template = template;
+
+        boolean id = map.length == template.length;
+        for (int i = 0; id && i < map.length; i++) {
+            id = map[i] == i;
+        }
+        identity = id;
+    }
+
+    /**
+     * Creates the {@code InsertionPlan} of an {@link InsertionStatement}.
+     *
+     * <p> When the {@link InsertionStatement} does not specify a field list,
+     * the selection columns are mapped to the stream fields by position.
+     *
+     * @param ins insertion statement
+     * @param fields fields of the target stream
+     * @return insertion plan
+     * @throws QueryException if the selection columns cannot be mapped to
+     * the stream fields
+     */
+    public static InsertionPlan create(InsertionStatement ins,
+            List<FieldDefinition> fields) throws QueryException {
+        List<Expression> cols =
+                ins.getSelectionStatement().getSelect().getFields();
+        List<String> names = ins.getFields();
+        int[] map = new int[cols.size()];
+
+        if (names == null || names.isEmpty()) {
+            if (cols.size() != fields.size()) {
+                throw new QueryException("Stream '" + ins.getStream() +
+                        "' has " + fields.size() + " fields, but the " +
+                        "selection produces " + cols.size() + " columns");
+            }
+            for (int i = 0; i < map.length; i++) {
+                map[i] = i;
+            }
+        } else {
+            if (cols.size() != names.size()) {
+                throw new QueryException("Insertion into stream '" +
+                        ins.getStream() + "' lists " + names.size() +
+                        " fields, but the selection produces " + cols.size() +
+                        " columns");
+            }
+            boolean[] used = new boolean[fields.size()];
+            for (int i = 0; i < map.length; i++) {
+                int idx = indexOf(fields, names.get(i));
+                if (idx == -1) {
+                    throw new QueryException("Stream '" + ins.getStream() +
+                            "' does not contain field '" + names.get(i) +
+                            "'");
+                } else if (used[idx]) {
+                    throw new QueryException("Field '" + names.get(i) +
+                            "' is listed more than once");
+                }
+                used[idx] = true;
+                map[i] = idx;
+            }
+        }
+
+        for (int i = 0; i < map.length; i++) {
+            FieldDefinition f = fields.get(map[i]);
+            DataType t = cols.get(i).getType();
+            if (!f.getType().match(t)) {
+                throw new QueryException("Cannot insert " + t + " value " +
+                        "into field '" + f.getName() + "' of type " +
+                        f.getType());
+            }
+        }
+
+        Object[] template = new Object[fields.size()];
+        for (int i = 0; i < template.length; i++) {
+            template[i] = fields.get(i).getDefaultValue();
+        }
+        return new InsertionPlan(map, template);
+    }
+
+    private static int indexOf(List<FieldDefinition> fields, String name) {
+        for (int i = 0; i < fields.size(); i++) {
+            if (fields.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates if the selection columns are laid out in stream order,
+     * in which case selection results are stored without being copied
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * Converts a selection result into a stream record
+     *
+     * @param values selection result
+     * @return stream record
+     */
+    public Object[] map(Object[] values) {
+        if (identity) {
+            return values;
+        }
+        Object[] r = template.clone();
+        for (int i = 0; i < map.length; i++) {
+            r[map[i]] = values[i];
+        }
+        return r;
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.WriteBehindStream;
+import org.dei.perla.lang.query.statement.InsertionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link StatementHandler} that stores the results of the selection embedded
+ * in an {@link InsertionStatement} into the target stream.
+ *
+ * <p> Results are converted through an {@link InsertionPlan}, and queued on
+ * a {@link WriteBehindStream}, which writes them in batches without
+ * delaying the query evaluation. The results notified together by a
+ * single evaluation are queued at once. Errors are forwarded to the
+ * {@link StatementHandler} of the {@link InsertionStatement}, which is
+ * notified of completion once all the queued records have been written.
+ *
+ * @author Guido Rota 25/02/16.
+ */
+public final class InsertionQueryHandler implements StatementHandler {
+
+    private final InsertionStatement ins;
+    private final InsertionPlan plan;
+    private final WriteBehindStream out;
+    private final StatementHandler h;
+
+    public InsertionQueryHandler(InsertionStatement ins, InsertionPlan plan,
+            WriteBehindStream out, StatementHandler h) {
+        this.ins = ins;
+        this.plan = plan;
+        this.out = out;
+        this.h = h;
+    }
+
+    public WriteBehindStream getStream() {
+        return out;
+    }
+
+    @Override
+    public void error(Statement source, Throwable cause) {
+        h.error(ins, cause);
+    }
+
+    @Override
+    public void data(Statement source, Record record) {
+        try {
+            out.add(plan.map(record.getValues()));
+        } catch (StreamException e) {
+            h.error(ins, e);
+        }
+    }
+
+    @Override
+    public void batch(Statement source, List<Record> records) {
+        List<Object[]> rows = new ArrayList<>(records.size());
+        for (Record r : records) {
+            rows.add(plan.map(r.getValues()));
+        }
+        try {
+            out.addAll(rows);
+        } catch (StreamException e) {
+            h.error(ins, e);
+        }
+    }
+
+    @Override
+    public void complete() {
+        out.close();
+        h.complete();
+    }
+
+}
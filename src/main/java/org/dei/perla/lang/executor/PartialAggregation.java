@@ -0,0 +1,278 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.query.expression.*;
+import org.dei.perla.lang.query.statement.GroupBy;
+import org.dei.perla.lang.query.statement.Select;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.WindowSize;
+import org.dei.perla.lang.query.statement.WindowSize.WindowType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Two-level execution plan of an aggregate {@link SelectionStatement}.
+ *
+ * <p> The aggregates of the query are decomposed into partial aggregates,
+ * which are computed independently on each FPC by a partial {@link
+ * SelectionStatement}. At every EVERY period each FPC produces a single row
+ * containing its partial results, which are then merged by the {@code
+ * combine} method. AVG aggregates are decomposed in a SUM and a COUNT of the
+ * non-NULL values, while SUM, COUNT, MIN and MAX are merged by applying the
+ * same aggregation to the partial results.
+ *
+ * <p> Only aggregates over time windows can be decomposed, since a time
+ * window covers the same period on every FPC. Queries whose selection
+ * fields are not all decomposable aggregates, or that contain GROUP BY or
+ * HAVING clauses, cannot be executed with a two-level plan.
+ *
+ * @author Guido Rota 16/02/16.
+ */
+public final class PartialAggregation {
+
+    private final SelectionStatement query;
+    private final SelectionStatement partial;
+    private final Combiner[] combiners;
+
+    private PartialAggregation(SelectionStatement query,
+            SelectionStatement partial, Combiner[] combiners) {
+        this.query = query;
+        this.partial = partial;
+        this.combiners = combiners;
+    }
+
+    /**
+     * Creates the two-level execution plan of the query passed as parameter
+     *
+     * @param sel aggregate selection statement
+     * @return two-level execution plan, null if the query cannot be
+     * decomposed
+     */
+    public static PartialAggregation create(SelectionStatement sel) {
+        Select s = sel.getSelect();
+        WindowSize upto = s.getUpTo();
+        if (sel.getEvery().getType() != WindowType.TIME ||
+                s.getGroupBy() != GroupBy.NONE ||
+                s.getHaving() != Constant.TRUE ||
+                upto.getType() != WindowType.SAMPLE ||
+                upto.getSamples() != 1) {
+            return null;
+        }
+
+        List<Expression> fields = s.getFields();
+        List<Expression> partials = new ArrayList<>();
+        Combiner[] combiners = new Combiner[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            Combiner c = decompose(fields.get(i), partials);
+            if (c == null) {
+                return null;
+            }
+            combiners[i] = c;
+        }
+
+        Select ps = new Select(partials, WindowSize.ONE, GroupBy.NONE,
+                Constant.TRUE, new Object[0]);
+        SelectionStatement partial = new SelectionStatement(ps,
+                sel.getAttributes(), sel.getEvery(), sel.getSampling(),
+                sel.getWhere(), sel.getExecutionConditions(),
+                sel.getTerminate());
+        return new PartialAggregation(sel, partial, combiners);
+    }
+
+    /*
+     * Appends the partial aggregates required to compute the expression
+     * passed as parameter, and returns the combiner that merges them.
+     */
+    private static Combiner decompose(Expression e, List<Expression> partials) {
+        if (!(e instanceof Aggregate)) {
+            return null;
+        }
+        Aggregate a = (Aggregate) e;
+        if (a.getWindowSize().getType() != WindowType.TIME) {
+            return null;
+        }
+
+        int idx = partials.size();
+        if (a instanceof SumAggregate || a instanceof CountAggregate) {
+            partials.add(a);
+            return new SumCombiner(idx, a.getType());
+        } else if (a instanceof MinAggregate) {
+            partials.add(a);
+            return new MinMaxCombiner(idx, true);
+        } else if (a instanceof MaxAggregate) {
+            partials.add(a);
+            return new MinMaxCombiner(idx, false);
+        } else if (a instanceof AvgAggregate) {
+            Expression op = a.getOperand();
+            if (op.equals(Constant.NULL)) {
+                return null;
+            }
+            Expression nonNull = new Bool(BoolOperation.AND, a.getFilter(),
+                    new Not(new IsNull(op)));
+            partials.add(new SumAggregate(op, a.getWindowSize(),
+                    a.getFilter()));
+            partials.add(new CountAggregate(a.getWindowSize(), nonNull));
+            return new AvgCombiner(idx, op.getType());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the original aggregate query
+     *
+     * @return aggregate query
+     */
+    public SelectionStatement getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the statement that computes the partial aggregates on each
+     * FPC
+     *
+     * @return partial aggregation statement
+     */
+    public SelectionStatement getPartialStatement() {
+        return partial;
+    }
+
+    /**
+     * Merges the partial results produced by different FPCs
+     *
+     * @param rows partial result rows, one per FPC
+     * @return final result row, or the default values of the query if no
+     * partial result is available
+     */
+    public Object[] combine(Collection<Object[]> rows) {
+        if (rows.isEmpty()) {
+            Object[] def = query.getSelect().getDefault();
+            return def.length > 0 ? def.clone() : null;
+        }
+
+        Object[] out = new Object[combiners.length];
+        for (int i = 0; i < combiners.length; i++) {
+            out[i] = combiners[i].combine(rows);
+        }
+        return out;
+    }
+
+
+    /**
+     * Merges a partial aggregate of different FPCs into the final value
+     */
+    private interface Combiner {
+
+        public Object combine(Collection<Object[]> rows);
+
+    }
+
+    /**
+     * Combiner of SUM and COUNT aggregates
+     */
+    private static final class SumCombiner implements Combiner {
+
+        private final int idx;
+        private final DataType type;
+
+        private SumCombiner(int idx, DataType type) {
+            this.idx = idx;
+            this.type = type;
+        }
+
+        @Override
+        public Object combine(Collection<Object[]> rows) {
+            if (type == DataType.INTEGER) {
+                int sum = 0;
+                for (Object[] r : rows) {
+                    if (r[idx] != null) {
+                        sum += (Integer) r[idx];
+                    }
+                }
+                return sum;
+            } else {
+                float sum = 0;
+                for (Object[] r : rows) {
+                    if (r[idx] != null) {
+                        sum += (Float) r[idx];
+                    }
+                }
+                return sum;
+            }
+        }
+
+    }
+
+    /**
+     * Combiner of AVG aggregates, computed from the SUM and the COUNT
+     * partial aggregates
+     */
+    private static final class AvgCombiner implements Combiner {
+
+        private final int sumIdx;
+        private final int countIdx;
+        private final DataType type;
+
+        private AvgCombiner(int idx, DataType type) {
+            this.sumIdx = idx;
+            this.countIdx = idx + 1;
+            this.type = type;
+        }
+
+        @Override
+        public Object combine(Collection<Object[]> rows) {
+            float sum = 0;
+            int count = 0;
+            for (Object[] r : rows) {
+                if (r[countIdx] == null || (Integer) r[countIdx] == 0) {
+                    continue;
+                }
+                count += (Integer) r[countIdx];
+                if (type == DataType.INTEGER) {
+                    sum += (Integer) r[sumIdx];
+                } else {
+                    sum += (Float) r[sumIdx];
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            return sum / count;
+        }
+
+    }
+
+    /**
+     * Combiner of MIN and MAX aggregates. NULL partial results are ignored.
+     */
+    private static final class MinMaxCombiner implements Combiner {
+
+        private final int idx;
+        private final boolean min;
+
+        private MinMaxCombiner(int idx, boolean min) {
+            this.idx = idx;
+            this.min = min;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object combine(Collection<Object[]> rows) {
+            Comparable<Object> res = null;
+            for (Object[] r : rows) {
+                Comparable<Object> v = (Comparable<Object>) r[idx];
+                if (v == null) {
+                    continue;
+                }
+                if (res == null || (min && v.compareTo(res) < 0) ||
+                        (!min && v.compareTo(res) > 0)) {
+                    res = v;
+                }
+            }
+            return res;
+        }
+
+    }
+
+}
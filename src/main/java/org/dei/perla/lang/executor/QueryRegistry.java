@@ -0,0 +1,242 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.query.statement.Statement;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Thread-safe registry of the queries run by a query manager. Every query
+ * is identified by a unique id, which maps to an {@link Entry} holding the
+ * statement, its {@link StatementHandler} and the {@link QueryTask} that
+ * executes it. Lookups and removals are performed in constant time.
+ *
+ * <p> Queries added through {@code add(Statement, StatementHandler,
+ * Function)} are removed from the registry as soon as they complete or
+ * fail, without waiting for an explicit removal.
+ *
+ * <p> {@link Listener}s registered on the {@code QueryRegistry} are
+ * notified whenever a query is added to or removed from the registry.
+ *
+ * @author Guido Rota 17/02/16.
+ */
+public final class QueryRegistry {
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final ConcurrentHashMap<Long, Entry> entries =
+            new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Adds a new query to the registry
+     *
+     * @param statement query statement
+     * @param handler handler of the query results
+     * @param task task executing the query
+     * @return registry entry of the query
+     */
+    public Entry add(Statement statement, StatementHandler handler,
+            QueryTask task) {
+        Entry e = new Entry(nextId.getAndIncrement(), statement, handler,
+                task);
+        entries.put(e.id, e);
+        listeners.forEach(l -> l.added(e));
+        return e;
+    }
+
+    /**
+     * Adds a new query to the registry. The task executing the query is
+     * created by the factory passed as parameter, which receives the handler
+     * to which the query results must be delivered. This handler forwards
+     * all notifications to the original {@link StatementHandler}, and
+     * removes the query from the registry when it completes or fails. Failed
+     * queries are also stopped.
+     *
+     * @param statement query statement
+     * @param handler handler of the query results
+     * @param factory function creating the task that executes the query
+     * @return registry entry of the query
+     */
+    public Entry add(Statement statement, StatementHandler handler,
+            Function<StatementHandler, QueryTask> factory) {
+        long id = nextId.getAndIncrement();
+        TrackingHandler th = new TrackingHandler(id, handler);
+        Entry e = new Entry(id, statement, handler, factory.apply(th));
+        entries.put(id, e);
+        listeners.forEach(l -> l.added(e));
+        // The query may have ended before being added to the registry
+        if (th.done) {
+            remove(id);
+        }
+        return e;
+    }
+
+    /**
+     * Retrieves a query from the registry
+     *
+     * @param id query identifier
+     * @return registry entry of the query, null if no query with the
+     * specified id is registered
+     */
+    public Entry get(long id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Removes a query from the registry. Listeners are only notified if the
+     * query was registered.
+     *
+     * @param id query identifier
+     * @return registry entry of the removed query, null if no query with
+     * the specified id is registered
+     */
+    public Entry remove(long id) {
+        Entry e = entries.remove(id);
+        if (e != null) {
+            listeners.forEach(l -> l.removed(e));
+        }
+        return e;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a snapshot of the queries currently registered. The snapshot
+     * is not affected by subsequent modifications of the registry.
+     *
+     * @return registered queries
+     */
+    public Collection<Entry> snapshot() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(Listener l) {
+        listeners.remove(l);
+    }
+
+
+    /**
+     * Runtime record of a registered query
+     */
+    public static final class Entry {
+
+        private final long id;
+        private final Statement statement;
+        private final StatementHandler handler;
+        private final QueryTask task;
+        private final Instant registered = Instant.now();
+
+        private Entry(long id, Statement statement, StatementHandler handler,
+                QueryTask task) {
+            this.id = id;
+            this.statement = statement;
+            this.handler = handler;
+            this.task = task;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Statement getStatement() {
+            return statement;
+        }
+
+        public StatementHandler getHandler() {
+            return handler;
+        }
+
+        public QueryTask getTask() {
+            return task;
+        }
+
+        public Instant getRegistered() {
+            return registered;
+        }
+
+    }
+
+    /**
+     * {@link StatementHandler} that removes its query from the registry when
+     * the query completes or fails
+     */
+    private final class TrackingHandler implements StatementHandler {
+
+        private final long id;
+        private final StatementHandler handler;
+        private volatile boolean done = false;
+
+        private TrackingHandler(long id, StatementHandler handler) {
+            this.id = id;
+            this.handler = handler;
+        }
+
+        @Override
+        public void data(Statement source, Record record) {
+            handler.data(source, record);
+        }
+
+        @Override
+        public void batch(Statement source, List<Record> records) {
+            handler.batch(source, records);
+        }
+
+        @Override
+        public boolean hasDemand() {
+            return handler.hasDemand();
+        }
+
+        @Override
+        public void complete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            remove(id);
+            handler.complete();
+        }
+
+        @Override
+        public void error(Statement source, Throwable cause) {
+            if (done) {
+                return;
+            }
+            done = true;
+            Entry e = remove(id);
+            handler.error(source, cause);
+            // Stop the remaining parts of the query, the completion
+            // notified by the stopped task is not forwarded
+            if (e != null) {
+                e.getTask().stop();
+            }
+        }
+
+    }
+
+    /**
+     * Listener of the lifecycle of the queries in a {@code QueryRegistry}.
+     * Listeners are invoked synchronously by the thread that modified the
+     * registry, and should therefore return quickly.
+     */
+    public interface Listener {
+
+        public default void added(Entry e) { }
+
+        public default void removed(Entry e) { }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.dei.perla.lang.executor;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runtime scheduler shared by all the queries executed by the PerLa
+ * language runtime. The {@code QueryScheduler} bundles a small timer pool,
+ * used to trigger periodic activities (EVERY, REFRESH), a bounded worker
+ * pool on which the actual query computations are run, and a bounded
+ * callback pool on which error and completion notifications are delivered.
+ *
+ * <p>
+ * Periodic activities are tracked by a {@link TimerWheel}, which coalesces
+ * the activities with identical periods into a single timer event.
+ *
+ * <p>
+ * Work is submitted to the worker pool through {@link Lane}s. Every query
+ * owns a {@code Lane}, which executes the tasks it receives serially and
+ * in submission order. Each {@code Lane} holds at most one task in the
+ * worker queue at any given time, and re-enqueues itself after every task.
+ * This yields a round-robin schedule among the running queries, preventing
+ * a single busy query from starving the others.
+ *
+ * <p>
+ * Backpressure is applied at two levels. Each {@code Lane} can only buffer
+ * a limited amount of pending tasks, and a {@code Lane} cannot be scheduled
+ * when the worker queue itself is full. In both cases further submissions
+ * are rejected with a {@link RejectedExecutionException}, and the query
+ * skips the evaluation. Tasks are never run on the submitting thread, which
+ * is usually a timer thread or an FPC callback thread.
+ *
+ * <p>
+ * On JDK 21 or above, workers can optionally run on virtual threads. Since
+ * this library targets Java 8, virtual threads are looked up reflectively;
+ * platform threads are employed when they are not available (see {@link
+ * #isVirtual()}).
+ *
+ * @author Guido Rota 02/02/16.
+ */
+public final class QueryScheduler {
+
+    private static final Logger log = Logger.getLogger(QueryScheduler.class);
+
+    private static final int DEFAULT_TIMER_THREADS = 2;
+    private static final int CALLBACK_THREADS = 2;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_LANE_CAPACITY = 16;
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+
+    private static final ThreadFactory virtualFactory =
+            createVirtualFactory("perla-worker-");
+
+    private static volatile QueryScheduler defaultScheduler;
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final TimerWheel wheel;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor callbacks;
+    private final int laneCapacity;
+    private final boolean virtual;
+
+    /**
+     * Creates a new {@code QueryScheduler} with default settings: a worker
+     * thread per available processor and platform threads.
+     */
+    public QueryScheduler() {
+        this(DEFAULT_TIMER_THREADS,
+                Runtime.getRuntime().availableProcessors(),
+                DEFAULT_QUEUE_CAPACITY, DEFAULT_LANE_CAPACITY, false);
+    }
+
+    /**
+     * Creates a new {@code QueryScheduler}
+     *
+     * @param timerThreads number of threads used to trigger periodic
+     *                     activities
+     * @param workerThreads maximum number of concurrent query computations
+     * @param queueCapacity maximum number of tasks waiting for a worker,
+     *                      and of notifications waiting to be delivered
+     * @param laneCapacity maximum number of tasks that a single {@link Lane}
+     *                     can buffer
+     * @param virtual run workers on virtual threads, if supported by the
+     *                JVM
+     */
+    public QueryScheduler(int timerThreads, int workerThreads,
+            int queueCapacity, int laneCapacity, boolean virtual) {
+        if (timerThreads < 1 || workerThreads < 1 || queueCapacity < 1 ||
+                laneCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "QueryScheduler sizes must be greater than zero");
+        }
+        this.laneCapacity = laneCapacity;
+        this.virtual = virtual && virtualFactory != null;
+
+        timer = new ScheduledThreadPoolExecutor(timerThreads,
+                new DaemonFactory("perla-timer-"));
+        wheel = new TimerWheel(TICK_MILLIS, TimeUnit.MILLISECONDS,
+                WHEEL_SIZE, timer);
+        timer.scheduleAtFixedRate(wheel::advance, TICK_MILLIS, TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+        ThreadFactory wf = this.virtual ? virtualFactory :
+                new DaemonFactory("perla-worker-");
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), wf);
+        workers.allowCoreThreadTimeOut(true);
+
+        callbacks = new ThreadPoolExecutor(CALLBACK_THREADS,
+                CALLBACK_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new DaemonFactory("perla-callback-"));
+        callbacks.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the {@code QueryScheduler} employed by the query executors
+     * when none is explicitly specified.
+     *
+     * @return default {@code QueryScheduler}
+     */
+    public static QueryScheduler getDefault() {
+        QueryScheduler s = defaultScheduler;
+        if (s != null) {
+            return s;
+        }
+        synchronized (QueryScheduler.class) {
+            if (defaultScheduler == null) {
+                defaultScheduler = new QueryScheduler();
+            }
+            return defaultScheduler;
+        }
+    }
+
+    /**
+     * Indicates if virtual threads are supported by the current JVM
+     *
+     * @return true if virtual threads are available, false otherwise
+     */
+    public static boolean isVirtualSupported() {
+        return virtualFactory != null;
+    }
+
+    /**
+     * Indicates if the workers of this {@code QueryScheduler} are run on
+     * virtual threads
+     *
+     * @return true if the workers are virtual threads, false otherwise
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Schedules a periodic activity. The {@link Runnable} is executed by one
+     * of the timer threads, and should therefore only perform short
+     * operations (e.g., submitting a task to a {@link Lane}).
+     *
+     * <p>
+     * Periods are rounded to the resolution of the underlying {@link
+     * TimerWheel}. Activities with the same period are fired together; for
+     * this reason, the first execution may be delayed by up to one period
+     * past {@code delay}.
+     *
+     * @param r activity to run
+     * @param delay minimum initial delay
+     * @param period activity period
+     * @param unit time unit of {@code delay} and {@code period}
+     * @return {@link TimerWheel.Timeout} that can be used to cancel the
+     * activity
+     */
+    public TimerWheel.Timeout scheduleAtFixedRate(Runnable r, long delay,
+            long period, TimeUnit unit) {
+        return wheel.schedule(r, delay, period, unit);
+    }
+
+    /**
+     * Returns the number of distinct periods currently scheduled, i.e. the
+     * number of timer events required to fire all the periodic activities
+     *
+     * @return number of distinct periods
+     */
+    public int getPeriods() {
+        return wheel.getPeriods();
+    }
+
+    /**
+     * Runs the {@link Runnable} asynchronously on the callback pool. The
+     * {@link Runnable} is never run on the caller thread, which makes this
+     * method suitable for notifying errors that must not be propagated while
+     * the caller is still holding its locks. Since the callback pool is
+     * separate from the timer pool, slow notification handlers do not delay
+     * the periodic activities.
+     *
+     * @param r activity to run
+     * @throws RejectedExecutionException if too many notifications are
+     * waiting to be delivered, or if the {@code QueryScheduler} has been
+     * shut down
+     */
+    public void runAsync(Runnable r) throws RejectedExecutionException {
+        callbacks.execute(r);
+    }
+
+    /**
+     * Creates a new {@link Lane}. Each query should employ its own {@code
+     * Lane}.
+     *
+     * @return new {@code Lane}
+     */
+    public Lane newLane() {
+        return new Lane();
+    }
+
+    /**
+     * Returns the number of tasks waiting for a worker
+     *
+     * @return number of queued tasks
+     */
+    public int getQueuedTasks() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Stops the {@code QueryScheduler}. Pending periodic activities are
+     * cancelled, while the tasks already submitted are run to completion.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+        callbacks.shutdown();
+    }
+
+    private static ThreadFactory createVirtualFactory(String prefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object b = ofVirtual.invoke(null);
+            b = builder.getMethod("name", String.class, long.class)
+                    .invoke(b, prefix, 0L);
+            return (ThreadFactory) builder.getMethod("factory").invoke(b);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Serial {@link Executor} through which a single query submits its work
+     * to the {@link QueryScheduler}. Tasks submitted to the same {@code
+     * Lane} are run one at a time, in submission order.
+     *
+     * @author Guido Rota 02/02/16.
+     */
+    public final class Lane implements Executor {
+
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private boolean scheduled = false;
+        private final Runnable drain = this::drain;
+
+        private Lane() { }
+
+        /**
+         * Submits a new task to the {@code Lane}.
+         *
+         * @param r task to run
+         * @throws RejectedExecutionException if the {@code Lane} has too
+         * many pending tasks or the {@link QueryScheduler} has been shut down
+         */
+        @Override
+        public synchronized void execute(Runnable r)
+                throws RejectedExecutionException {
+            if (pending.size() >= laneCapacity) {
+                throw new RejectedExecutionException(
+                        "Too many pending tasks");
+            }
+            if (!scheduled) {
+                // Rejected when the worker queue is full, in which case the
+                // task is not added
+                workers.execute(drain);
+                scheduled = true;
+            }
+            pending.add(r);
+        }
+
+        /**
+         * Returns the number of tasks waiting to be run
+         *
+         * @return number of pending tasks
+         */
+        public synchronized int getPending() {
+            return pending.size();
+        }
+
+        /*
+         * Runs a single pending task, and yields the worker to the other
+         * lanes before running the next one. If the worker queue is full,
+         * the next task is run on the current worker instead, since the
+         * tasks already accepted by the Lane cannot be dropped.
+         */
+        private void drain() {
+            while (true) {
+                Runnable r;
+                synchronized (this) {
+                    r = pending.poll();
+                }
+                if (r != null) {
+                    try {
+                        r.run();
+                    } catch (RuntimeException e) {
+                        log.error("Unexpected error in query task", e);
+                    }
+                }
+
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    workers.execute(drain);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Keep draining on this worker
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * {@link ThreadFactory} for named daemon threads
+     */
+    private static final class DaemonFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DaemonFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+
+    }
+
+}
@@ -0,0 +1,450 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.Fpc;
+import org.dei.perla.core.fpc.Sample;
+import org.dei.perla.core.fpc.Task;
+import org.dei.perla.core.fpc.TaskHandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Shares periodic sampling operations among the queries running on the same
+ * {@link Fpc}.
+ *
+ * <p>
+ * The {@link Fpc}s returned by the {@code share} method merge all the
+ * periodic sampling requests with identical attribute lists in a single
+ * sampling task, which is run at the fastest rate requested. Samples are
+ * then distributed to all the subscribers, each of which only receives
+ * samples at the rate it originally requested. The sampling rate of the
+ * shared task is adjusted whenever a subscriber joins or leaves. The
+ * {@link Fpc}s without subscribers are released by the multiplexer.
+ *
+ * <p>
+ * One-off, asynchronous and set operations are forwarded to the original
+ * {@link Fpc} without modifications.
+ *
+ * @author Guido Rota 10/02/16.
+ */
+public final class SamplingMultiplexer {
+
+    private final QueryScheduler scheduler;
+    private final Map<Fpc, SharedFpc> fpcs = new ConcurrentHashMap<>();
+    private final AtomicInteger tasks = new AtomicInteger();
+
+    /**
+     * Creates a new {@code SamplingMultiplexer}
+     *
+     * @param scheduler {@link QueryScheduler} used to notify the
+     *                  completion of the shared tasks
+     */
+    public SamplingMultiplexer(QueryScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns an {@link Fpc} whose periodic sampling operations are shared
+     * with all the other users of the same {@link Fpc}.
+     *
+     * @param fpc {@link Fpc} to share
+     * @return shared {@link Fpc}
+     */
+    public Fpc share(Fpc fpc) {
+        return fpcs.computeIfAbsent(fpc, SharedFpc::new);
+    }
+
+    /**
+     * Returns the number of periodic sampling tasks currently run on the
+     * original {@link Fpc}s
+     *
+     * @return number of shared sampling tasks
+     */
+    public int getSharedTasks() {
+        return tasks.get();
+    }
+
+
+    /**
+     * Returns the number of {@link Fpc}s currently shared by the multiplexer
+     *
+     * @return number of shared {@link Fpc}s
+     */
+    public int getSharedFpcs() {
+        return fpcs.size();
+    }
+
+
+    /**
+     * {@link Fpc} wrapper that shares periodic sampling tasks
+     */
+    private final class SharedFpc implements Fpc {
+
+        private final Fpc fpc;
+        private final Lock lk = new ReentrantLock();
+        private final Map<GroupKey, Group> groups = new HashMap<>();
+
+        private SharedFpc(Fpc fpc) {
+            this.fpc = fpc;
+        }
+
+        @Override
+        public int getId() {
+            return fpc.getId();
+        }
+
+        @Override
+        public String getType() {
+            return fpc.getType();
+        }
+
+        @Override
+        public Collection<Attribute> getAttributes() {
+            return fpc.getAttributes();
+        }
+
+        @Override
+        public Task set(Map<Attribute, Object> values, boolean strict,
+                TaskHandler handler) {
+            return fpc.set(values, strict, handler);
+        }
+
+        @Override
+        public Task get(List<Attribute> atts, boolean strict,
+                TaskHandler handler) {
+            return fpc.get(atts, strict, handler);
+        }
+
+        @Override
+        public Task get(List<Attribute> atts, boolean strict, long periodMs,
+                TaskHandler handler) {
+            GroupKey k = new GroupKey(atts, strict);
+            SharedFpc cur;
+            lk.lock();
+            try {
+                // Released wrappers register themselves again, unless a
+                // new wrapper has been created for the same Fpc meanwhile
+                cur = groups.isEmpty() ? fpcs.putIfAbsent(fpc, this) : null;
+                if (cur == null || cur == this) {
+                    return subscribe(k, periodMs, handler);
+                }
+            } finally {
+                lk.unlock();
+            }
+            return cur.get(atts, strict, periodMs, handler);
+        }
+
+        /*
+         * Subscribes a new handler to the group identified by the key
+         * passed as parameter. Must be invoked while holding the lock.
+         */
+        private Task subscribe(GroupKey k, long periodMs,
+                TaskHandler handler) {
+            Group g = groups.get(k);
+            boolean created = false;
+            if (g == null) {
+                g = new Group(this, k);
+                created = true;
+            }
+            Subscription s = new Subscription(g, periodMs, handler);
+            if (!g.subscribe(s)) {
+                release();
+                return null;
+            }
+            if (created) {
+                groups.put(k, g);
+            }
+            return s;
+        }
+
+        /*
+         * Removes this wrapper from the multiplexer if no group is left.
+         * Must be invoked while holding the lock.
+         */
+        private void release() {
+            if (groups.isEmpty()) {
+                fpcs.remove(fpc, this);
+            }
+        }
+
+        @Override
+        public Task async(List<Attribute> atts, boolean strict,
+                TaskHandler handler) {
+            return fpc.async(atts, strict, handler);
+        }
+
+        @Override
+        public void stop(Consumer<Fpc> handler) {
+            fpc.stop(handler);
+        }
+
+    }
+
+
+    /**
+     * Identifies the periodic sampling requests that can be shared
+     */
+    private static final class GroupKey {
+
+        private final List<Attribute> atts;
+        private final boolean strict;
+
+        private GroupKey(List<Attribute> atts, boolean strict) {
+            this.atts = new ArrayList<>(atts);
+            this.strict = strict;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey k = (GroupKey) o;
+            return strict == k.strict && atts.equals(k.atts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * atts.hashCode() + (strict ? 1 : 0);
+        }
+
+    }
+
+
+    /**
+     * Set of subscribers sharing the same periodic sampling task.
+     *
+     * NOTE: Unless otherwise noted, methods of this class must be invoked
+     * while holding the lock of the parent {@link SharedFpc}.
+     */
+    private final class Group implements TaskHandler {
+
+        private final SharedFpc parent;
+        private final GroupKey key;
+        private final List<Subscription> subs = new CopyOnWriteArrayList<>();
+
+        // Shared sampling task, volatile since it is read by the data path
+        private volatile Task task;
+        private volatile long period;
+
+        private Group(SharedFpc parent, GroupKey key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        /*
+         * Adds a new subscriber, speeding up the shared task if necessary.
+         * Returns false if the subscription cannot be satisfied.
+         */
+        private boolean subscribe(Subscription s) {
+            if (task == null || s.period < period) {
+                if (!restart(s.period)) {
+                    return false;
+                }
+            }
+            subs.add(s);
+            return true;
+        }
+
+        /*
+         * Removes a subscriber, stopping or slowing down the shared task if
+         * necessary
+         */
+        private void unsubscribe(Subscription s) {
+            if (!subs.remove(s)) {
+                return;
+            }
+            if (subs.isEmpty()) {
+                stopTask();
+                parent.groups.remove(key);
+                parent.release();
+                return;
+            }
+
+            long min = Long.MAX_VALUE;
+            for (Subscription o : subs) {
+                min = Math.min(min, o.period);
+            }
+            if (min > period) {
+                restart(min);
+            }
+        }
+
+        /*
+         * Starts a new shared task at the specified rate. The old task, if
+         * any, is stopped only after the new one has been started.
+         */
+        private boolean restart(long p) {
+            Task old = task;
+            // Set the new period beforehand, the first samples may arrive
+            // before the get method returns
+            long oldPeriod = period;
+            period = p;
+            Task t = parent.fpc.get(key.atts, key.strict, p, this);
+            if (t == null) {
+                period = oldPeriod;
+                return false;
+            }
+            task = t;
+            if (old != null) {
+                old.stop();
+            } else {
+                tasks.incrementAndGet();
+            }
+            return true;
+        }
+
+        private void stopTask() {
+            if (task != null) {
+                task.stop();
+                task = null;
+                tasks.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void complete(Task t) {
+            List<Subscription> ss;
+            parent.lk.lock();
+            try {
+                if (t != task) {
+                    // Task replaced or stopped by the multiplexer
+                    return;
+                }
+                task = null;
+                tasks.decrementAndGet();
+                parent.groups.remove(key);
+                parent.release();
+                ss = new ArrayList<>(subs);
+                subs.clear();
+            } finally {
+                parent.lk.unlock();
+            }
+            ss.forEach(Subscription::complete);
+        }
+
+        @Override
+        public void data(Task t, Sample sample) {
+            Task cur = task;
+            if (cur != null && t != cur) {
+                // Stale sample from a task that is being replaced
+                return;
+            }
+            long now = System.nanoTime();
+            long tolerance = TimeUnit.MILLISECONDS.toNanos(period) / 2;
+            for (Subscription s : subs) {
+                s.offer(sample, now, tolerance);
+            }
+        }
+
+        @Override
+        public void error(Task t, Throwable cause) {
+            if (t != task) {
+                return;
+            }
+            for (Subscription s : subs) {
+                s.error(cause);
+            }
+        }
+
+    }
+
+
+    /**
+     * Periodic sampling task handed out to a single subscriber
+     */
+    private final class Subscription implements Task {
+
+        private final Group group;
+        private final long period;
+        private final long periodNanos;
+        private final TaskHandler handler;
+
+        private volatile boolean stopped = false;
+        // Earliest time at which the next sample is due, only accessed by
+        // the sampling thread
+        private long next = 0;
+        private boolean first = true;
+
+        private Subscription(Group group, long period, TaskHandler handler) {
+            this.group = group;
+            this.period = period;
+            this.periodNanos = TimeUnit.MILLISECONDS.toNanos(period);
+            this.handler = handler;
+        }
+
+        private void offer(Sample sample, long now, long tolerance) {
+            if (stopped) {
+                return;
+            }
+            if (!first && now + tolerance < next) {
+                return;
+            }
+            if (first || now - next > periodNanos) {
+                next = now + periodNanos;
+            } else {
+                next += periodNanos;
+            }
+            first = false;
+            handler.data(this, sample);
+        }
+
+        private void error(Throwable cause) {
+            if (!stopped) {
+                handler.error(this, cause);
+            }
+        }
+
+        private void complete() {
+            stopped = true;
+            handler.complete(this);
+        }
+
+        @Override
+        public List<Attribute> getAttributes() {
+            return group.key.atts;
+        }
+
+        @Override
+        public boolean isRunning() {
+            Task t = group.task;
+            return !stopped && t != null && t.isRunning();
+        }
+
+        @Override
+        public void stop() {
+            group.parent.lk.lock();
+            try {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                group.unsubscribe(this);
+            } finally {
+                group.parent.lk.unlock();
+            }
+            // Completion is notified asynchronously, as done by the FPCs.
+            // The lock has already been released, hence the handler can be
+            // run inline if the scheduler rejects the notification
+            try {
+                scheduler.runAsync(() -> handler.complete(this));
+            } catch (RejectedExecutionException e) {
+                handler.complete(this);
+            }
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@
 
 import org.dei.perla.core.fpc.Fpc;
 import org.dei.perla.core.registry.Registry;
+import org.dei.perla.lang.executor.metrics.Instrumentation;
 import org.dei.perla.lang.executor.statement.QueryHandler;
 import org.dei.perla.lang.executor.statement.SelectionExecutor;
 import org.dei.perla.lang.query.statement.ExecutionConditions;
@@ -9,6 +10,7 @@ import org.dei.perla.lang.query.statement.Refresh;
 import org.dei.perla.lang.query.statement.SelectionStatement;
 
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Distributes a {@link SelectionStatement} among the available FPCs and tracks
@@ -16,7 +18,7 @@ import java.util.*;
  *
  * @author Guido Rota 30/04/15.
  */
-public final class SelectionDistributor {
+public final class SelectionDistributor implements QueryTask {
 
     private static final int NEW = 0;
     private static final int RUNNING = 1;
@@ -24,20 +26,49 @@ public final class SelectionDistributor {
     private final SelectionStatement query;
     private final ExecutionConditions ec;
     private final QueryHandler<? super SelectionStatement, Object[]> handler;
+    private final Function<Fpc, ? extends QueryHandler<? super
+            SelectionStatement, Object[]>> fpcHandlers;
     private final Registry registry;
+    private final QueryScheduler scheduler;
+    private final SamplingMultiplexer mux;
+    private final Instrumentation instrumentation;
 
     private volatile int status = NEW;
 
     private final List<SelectionExecutor> execs = new ArrayList<>();
     private final Set<Fpc> managed = new HashSet<>();
 
+    /**
+     * Creates a new {@code SelectionDistributor}. Every time the query is
+     * started on a new FPC, a dedicated result handler is created through
+     * the {@code fpcHandlers} function and a new {@link
+     * org.dei.perla.lang.executor.metrics.ExecutionProbe} is requested to
+     * the {@link Instrumentation}. Periodic sampling operations are shared
+     * with the other queries through the {@link SamplingMultiplexer}, if
+     * any.
+     *
+     * @param query query to distribute
+     * @param handler handler notified of the errors of the distributor
+     * @param fpcHandlers function returning the result handler of an FPC
+     * @param registry FPC registry
+     * @param scheduler scheduler employed to run the query
+     * @param mux sampling multiplexer, null to disable sampling sharing
+     * @param instrumentation execution instrumentation
+     */
     protected SelectionDistributor(SelectionStatement query,
             QueryHandler<? super SelectionStatement, Object[]> handler,
-            Registry registry) {
+            Function<Fpc, ? extends QueryHandler<? super
+                    SelectionStatement, Object[]>> fpcHandlers,
+            Registry registry, QueryScheduler scheduler,
+            SamplingMultiplexer mux, Instrumentation instrumentation) {
         this.query = query;
         ec = query.getExecutionConditions();
         this.handler = handler;
+        this.fpcHandlers = fpcHandlers;
         this.registry = registry;
+        this.scheduler = scheduler;
+        this.mux = mux;
+        this.instrumentation = instrumentation;
     }
 
     public synchronized void start() {
@@ -65,7 +96,10 @@ public final class SelectionDistributor {
                 continue;
             }
 
-            SelectionExecutor se = new SelectionExecutor(query, fpc, handler);
+            Fpc f = mux != null ? mux.share(fpc) : fpc;
+            SelectionExecutor se = new SelectionExecutor(query, f,
+                    fpcHandlers.apply(fpc), scheduler,
+                    instrumentation.createProbe(query, fpc));
             execs.add(se);
             managed.add(fpc);
             se.start();
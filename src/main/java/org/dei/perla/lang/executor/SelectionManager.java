@@ -3,15 +3,21 @@ package org.dei.perla.lang.executor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 import org.dei.perla.core.fpc.Attribute;
 import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.core.fpc.Fpc;
 import org.dei.perla.core.registry.Registry;
 import org.dei.perla.lang.StatementHandler;
 import org.dei.perla.lang.StatementTask;
+import org.dei.perla.lang.executor.metrics.Instrumentation;
+import org.dei.perla.lang.executor.statement.QueryHandler;
 import org.dei.perla.lang.query.expression.Aggregate;
 import org.dei.perla.lang.query.expression.AttributeReference;
 import org.dei.perla.lang.query.expression.AvgAggregate;
+import org.dei.perla.lang.query.expression.Constant;
 import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.statement.GroupBy;
 import org.dei.perla.lang.query.statement.Select;
 import org.dei.perla.lang.query.statement.SelectionStatement;
 import org.dei.perla.lang.query.statement.WindowSize;
@@ -19,30 +25,56 @@ import org.dei.perla.lang.query.statement.WindowSize;
 
 public final class SelectionManager {
 
-	private ArrayList<SelectionStatement> query = new ArrayList<SelectionStatement>();
-	private ArrayList<StatementHandler> handlers = new ArrayList<StatementHandler>();
-	private ArrayList<SelectionDistributor> distributors = new ArrayList<SelectionDistributor>();
+	private final QueryRegistry queries = new QueryRegistry();
 	private Registry registry;
-	private ArrayList<SelectionStatementTask> stasks = new ArrayList<SelectionStatementTask>();
-	private ArrayList<SelectionQueryTask> qtasks = new ArrayList<SelectionQueryTask>();
-	private ArrayList<SelectionQueryHandler> qhandler = new ArrayList<SelectionQueryHandler>();
+	private final QueryScheduler scheduler;
+	private final SamplingMultiplexer mux;
+	private volatile Instrumentation instrumentation = Instrumentation.NONE;
+
 	public SelectionManager(Registry registry) {
+		this(registry, QueryScheduler.getDefault());
+	}
+
+	public SelectionManager(Registry registry, QueryScheduler scheduler) {
 		this.registry= registry;
+		this.scheduler = scheduler;
+		mux = new SamplingMultiplexer(scheduler);
+	}
+
+	/**
+	 * Returns the registry of the queries managed by this {@code
+	 * SelectionManager}
+	 *
+	 * @return query registry
+	 */
+	public QueryRegistry getQueries() {
+		return queries;
+	}
+
+	/**
+	 * Sets the {@link Instrumentation} employed to observe the execution of
+	 * the queries inserted from now on
+	 *
+	 * @param instrumentation execution instrumentation
+	 */
+	public void setInstrumentation(Instrumentation instrumentation) {
+		this.instrumentation = instrumentation;
 	}
 	
-	public synchronized StatementTask insertQuery(SelectionStatement  sel, StatementHandler h) {
-		handlers.add(h);
-		SelectionStatementTask sst = new SelectionStatementTask();
-		queryPreprocessing(sel,h);	
-		SelectionQueryTask sqt = new SelectionQueryTask();
-		qtasks.add(sqt);
-		return sst;
+	public StatementTask insertQuery(SelectionStatement  sel, StatementHandler h) {
+		QueryRegistry.Entry e = queries.add(sel, h,
+				th -> queryPreprocessing(sel, th));
+		((SelectionQueryTask) e.getTask()).start();
+		return new SelectionStatementTask(e.getId());
 	}
 	
 
-	private void queryPreprocessing(SelectionStatement sel, StatementHandler h) {
+	private SelectionQueryTask queryPreprocessing(SelectionStatement sel, StatementHandler h) {
 		Boolean multi=false;
-		SelectionDistributor sd = null;
+		SelectionStatement dist = sel;
+		SelectionQueryHandler qh = null;
+		Function<Fpc, ? extends QueryHandler<? super SelectionStatement,
+				Object[]>> fpcHandlers = null;
 		for(Expression e:sel.getSelect().getFields()){
 			if(e instanceof Aggregate )
 				multi=true;
@@ -51,7 +83,16 @@ public final class SelectionManager {
 				continue;
 			}
 		}
-		if(multi){
+		PartialAggregation plan = multi ? PartialAggregation.create(sel) : null;
+		if(plan != null){
+			// Two-level aggregation, each FPC ships its partial aggregates
+			// to a combiner instead of the raw samples
+			CombinerQueryHandler cqh = new CombinerQueryHandler(plan, h, scheduler);
+			qh = cqh;
+			dist = plan.getPartialStatement();
+			fpcHandlers = fpc -> cqh.source(fpc.getId());
+		}
+		else if(multi){
 			List<Expression> fields = new ArrayList<Expression>();
 			int fpcs = registry.get(sel.getExecutionConditions().getSpecifications(), Collections.emptyList()).size();
 			AttributeReference ar;
@@ -65,9 +106,12 @@ public final class SelectionManager {
 				ar = new AttributeReference(a.getId(), a.getType(),i);
 				fields.add(ar);
 			}
+			// The FPCs only project the samples of their window, grouping
+			// and the HAVING clause are evaluated by the central handler
+			// over the samples of all FPCs
 			Select s = new Select(fields, sel.getSelect().getUpTo(),
-					sel.getSelect().getGroupBy(),
-					sel.getSelect().getHaving(),
+					GroupBy.NONE,
+					Constant.TRUE,
 					sel.getSelect().getDefault());
 			SelectionStatement tmp = new SelectionStatement(s, 
 					sel.getAttributes(), 
@@ -87,19 +131,19 @@ public final class SelectionManager {
 						sel.getExecutionConditions(),
 						sel.getTerminate());
 			}*/
-			AggregateQueryHandler sqh = new AggregateQueryHandler(sel,h,tmp);
-			query.add(sel);
-			qhandler.add(sqh);
-			sd = new SelectionDistributor(tmp,sqh, registry);
+			AggregateQueryHandler sqh = new AggregateQueryHandler(sel,h,tmp,scheduler);
+			qh = sqh;
+			dist = tmp;
+			fpcHandlers = fpc -> sqh;
 		}
 		else{
-			SelectionQueryHandler sqh = new SelectionQueryHandler(h);
-			query.add(sel);
-			qhandler.add(sqh);
-			sd = new SelectionDistributor(sel, sqh, registry);
+			SelectionQueryHandler sqh = new SelectionQueryHandler(sel, h);
+			qh = sqh;
+			fpcHandlers = fpc -> sqh;
 		}
-		distributors.add(sd);
-		sd.start();
+		SelectionDistributor sd = new SelectionDistributor(dist, qh,
+				fpcHandlers, registry, scheduler, mux, instrumentation);
+		return new SelectionQueryTask(sd, qh);
 	}
 
 	private String createKey(SelectionStatement ss) {
@@ -111,46 +155,63 @@ public final class SelectionManager {
 	}
 
 	
-	private void clean(int i){
-		distributors.remove(i);
-		qtasks.remove(i);
-		qhandler.remove(i);
-		handlers.remove(i);
-		stasks.remove(i);
-	}
-	
 	public class SelectionStatementTask implements StatementTask{
 
+		private final long id;
+
+		private SelectionStatementTask(long id) {
+			this.id = id;
+		}
+
 		@Override
 		public void stop() {
-			int i = stasks.indexOf(this);
-			 qtasks.get(i).stop();		
+			QueryRegistry.Entry e = queries.remove(id);
+			if (e != null) {
+				e.getTask().stop();
+			}
 		}
 
 		@Override
 		public boolean isRunning() {
-			int i = stasks.indexOf(this);
-			return qtasks.get(i).isRunning();
+			QueryRegistry.Entry e = queries.get(id);
+			return e != null && e.getTask().isRunning();
 		}
 		
 
 	}
 	
 	
-	public class SelectionQueryTask implements QueryTask{
+	public static class SelectionQueryTask implements QueryTask{
+
+		private final SelectionDistributor sd;
+		private final SelectionQueryHandler qh;
+
+		private SelectionQueryTask(SelectionDistributor sd,
+				SelectionQueryHandler qh) {
+			this.sd = sd;
+			this.qh = qh;
+		}
+
+		private void start() {
+			sd.start();
+		}
+
+		public SelectionQueryHandler getHandler() {
+			return qh;
+		}
 
 		@Override
 		public boolean isRunning() {
-			int i = qtasks.indexOf(this);
-			return distributors.get(i).isRunning();
+			return sd.isRunning();
 		}
 
 		@Override
 		public void stop() {
-			int i = qtasks.indexOf(this);
-			distributors.get(i).stop();
-			clean(i);
-			
+			try {
+				sd.stop();
+			} finally {
+				qh.complete();
+			}
 		}
 		
 	}	
@@ -1,36 +1,89 @@
 package org.dei.perla.lang.executor;
 
 import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.executor.metrics.QueryMetrics;
 import org.dei.perla.lang.executor.statement.QueryHandler;
 import org.dei.perla.lang.query.statement.SelectionStatement;
 import org.dei.perla.lang.query.statement.Statement;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SelectionQueryHandler implements QueryHandler<SelectionStatement, Object[]>{
 	private StatementHandler sh;
+	private final QueryMetrics metrics;
 
 
+	/**
+	 * Creates a new {@code SelectionQueryHandler}. Execution metrics are
+	 * collected, but not published over JMX.
+	 *
+	 * @param h statement handler
+	 */
 	public SelectionQueryHandler(StatementHandler h) {
 		sh = h;
+		metrics = new QueryMetrics("");
+	}
+
+	/**
+	 * Creates a new {@code SelectionQueryHandler}, whose execution metrics
+	 * are published over JMX until the query completes or fails
+	 *
+	 * @param sel selection statement, only employed to describe the query
+	 *            in the metrics
+	 * @param h statement handler
+	 */
+	public SelectionQueryHandler(SelectionStatement sel, StatementHandler h) {
+		if (sel == null) {
+			throw new NullPointerException("statement cannot be null");
+		}
+		sh = h;
+		metrics = new QueryMetrics(sel.toString());
+		metrics.register();
 	}
 	
 	public StatementHandler getHandler(){
 		return sh;
 	}
+
+	public QueryMetrics getMetrics() {
+		return metrics;
+	}
 	
 	@Override
 	public void error(SelectionStatement source, Throwable cause) {
-		// TODO Auto-generated method stub
-		
+		metrics.error();
+		metrics.unregister();
+		sh.error(source, cause);
 	}
 
 	@Override
 	public void data(SelectionStatement source, Object[] value) {
 		Record r= new Record(source.getAttributes(), value);
+		long start = System.nanoTime();
 		sh.data(source,r);
+		metrics.record(1, System.nanoTime() - start);
+	}
+
+	@Override
+	public void batch(SelectionStatement source, List<Object[]> values) {
+		List<Record> records = new ArrayList<>(values.size());
+		for (Object[] v : values) {
+			records.add(new Record(source.getAttributes(), v));
+		}
+		long start = System.nanoTime();
+		sh.batch(source, records);
+		metrics.record(records.size(), System.nanoTime() - start);
+	}
+
+	@Override
+	public boolean hasDemand() {
+		return sh.hasDemand();
 	}
 
 
 	public void complete() {
+		metrics.unregister();
 		sh.complete();	
 	}
 	
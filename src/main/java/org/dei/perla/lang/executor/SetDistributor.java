@@ -17,7 +17,7 @@ import org.dei.perla.lang.executor.statement.SetExecutor;
 import org.dei.perla.lang.query.statement.ExecutionConditions;
 import org.dei.perla.lang.query.statement.SetStatement;
 
-public class SetDistributor {
+public class SetDistributor implements QueryTask {
 	  private static final int NEW = 0;
 	    private static final int RUNNING = 1;
 	    private static final int STOPPED = 2;
@@ -0,0 +1,322 @@
+package org.dei.perla.lang.executor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed-wheel timer for periodic activities, such as the EVERY and REFRESH
+ * clauses of the running queries.
+ *
+ * <p>
+ * Time is divided in ticks of fixed duration, and every period is rounded to
+ * a whole number of ticks. All the activities that share the same period
+ * are coalesced in a single wheel slot, and are therefore fired together by
+ * a single timer event. Scheduling and cancellation are O(1) operations.
+ *
+ * <p>
+ * The wheel does not own any thread. The {@code advance()} method must be
+ * invoked periodically (approximately once per tick) to fire the expired
+ * slots, whose activities are then run on the {@link Executor} passed to the
+ * constructor. Late {@code advance()} invocations are caught up by firing
+ * all the ticks that have elapsed in the meantime.
+ *
+ * <p>
+ * Similarly to {@link java.util.concurrent.ScheduledExecutorService}, a
+ * periodic activity is never run concurrently with itself, and is cancelled
+ * if it throws an exception.
+ *
+ * @author Guido Rota 04/02/16.
+ */
+public final class TimerWheel {
+
+    private final long tickNanos;
+    private final int mask;
+    private final Group[] wheel;
+    private final Executor dispatcher;
+    private final long start = System.nanoTime();
+
+    private final Lock lk = new ReentrantLock();
+    private final Map<Long, Group> groups = new HashMap<>();
+    // Next tick to be processed
+    private long tick = 0;
+
+    /**
+     * Creates a new {@code TimerWheel}
+     *
+     * @param tickDuration duration of a tick
+     * @param unit time unit of {@code tickDuration}
+     * @param wheelSize number of slots in the wheel, rounded up to the next
+     *                  power of two
+     * @param dispatcher {@link Executor} on which the periodic activities
+     *                   are run
+     */
+    public TimerWheel(long tickDuration, TimeUnit unit, int wheelSize,
+            Executor dispatcher) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Tick duration and wheel size must be greater than zero");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        wheel = new Group[size];
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Returns the duration of a tick
+     *
+     * @param unit desired time unit
+     * @return tick duration
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedules a periodic activity. The activity is run for the first time
+     * no earlier than {@code delay}, and then once every {@code period},
+     * together with all the other activities with the same period.
+     *
+     * @param r activity to run
+     * @param delay initial delay
+     * @param period activity period
+     * @param unit time unit of {@code delay} and {@code period}
+     * @return {@link Timeout} that can be used to cancel the activity
+     */
+    public Timeout schedule(Runnable r, long delay, long period,
+            TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException(
+                    "Period must be greater than zero");
+        }
+        long periodTicks = Math.max(1, (unit.toNanos(period) +
+                tickNanos / 2) / tickNanos);
+        long delayTicks = (unit.toNanos(Math.max(0, delay)) +
+                tickNanos - 1) / tickNanos;
+
+        lk.lock();
+        try {
+            Group g = groups.get(periodTicks);
+            if (g == null) {
+                g = new Group(periodTicks);
+                g.deadline = tick + Math.max(1, delayTicks);
+                groups.put(periodTicks, g);
+                insert(g);
+            }
+            Entry e = new Entry(r, tick + delayTicks, g);
+            g.members.add(e);
+            return e;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct periods currently scheduled in the
+     * wheel, i.e. the number of timer events fired per round.
+     *
+     * @return number of scheduled periods
+     */
+    public int getPeriods() {
+        lk.lock();
+        try {
+            return groups.size();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Fires all the slots that expired since the last invocation.
+     */
+    public void advance() {
+        long target = (System.nanoTime() - start) / tickNanos;
+        List<Runnable> fired = new ArrayList<>();
+
+        lk.lock();
+        try {
+            while (tick <= target) {
+                expire(tick, fired);
+                tick++;
+            }
+        } finally {
+            lk.unlock();
+        }
+
+        for (Runnable r : fired) {
+            try {
+                dispatcher.execute(r);
+            } catch (RejectedExecutionException e) {
+                // Dispatcher has been shut down
+                return;
+            }
+        }
+    }
+
+    /*
+     * Collects the groups expiring at tick t, and re-schedules them for
+     * their next period.
+     *
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked with proper synchronization.
+     */
+    private void expire(long t, List<Runnable> fired) {
+        List<Group> next = null;
+        Group g = wheel[(int) (t & mask)];
+        while (g != null) {
+            Group n = g.next;
+            if (g.deadline <= t) {
+                unlink(g);
+                if (g.members.isEmpty()) {
+                    groups.remove(g.period);
+                } else {
+                    Group f = g;
+                    fired.add(() -> f.fire(t));
+                    g.deadline = t + g.period;
+                    if (next == null) {
+                        next = new ArrayList<>();
+                    }
+                    next.add(g);
+                }
+            }
+            g = n;
+        }
+        if (next != null) {
+            next.forEach(this::insert);
+        }
+    }
+
+    private void insert(Group g) {
+        int i = (int) (g.deadline & mask);
+        g.prev = null;
+        g.next = wheel[i];
+        if (wheel[i] != null) {
+            wheel[i].prev = g;
+        }
+        wheel[i] = g;
+    }
+
+    private void unlink(Group g) {
+        if (g.prev != null) {
+            g.prev.next = g.next;
+        } else {
+            wheel[(int) (g.deadline & mask)] = g.next;
+        }
+        if (g.next != null) {
+            g.next.prev = g.prev;
+        }
+        g.prev = null;
+        g.next = null;
+    }
+
+
+    /**
+     * Handle to a periodic activity scheduled on a {@link TimerWheel}
+     *
+     * @author Guido Rota 04/02/16.
+     */
+    public interface Timeout {
+
+        /**
+         * Cancels the periodic activity. An execution that is already in
+         * progress is not interrupted.
+         */
+        public void cancel();
+
+        /**
+         * Indicates if the periodic activity has been cancelled
+         *
+         * @return true if the activity has been cancelled, false otherwise
+         */
+        public boolean isCancelled();
+
+    }
+
+
+    /**
+     * Set of periodic activities sharing the same period. Each {@code
+     * Group} occupies a single slot in the wheel.
+     */
+    private static final class Group {
+
+        private final long period;
+        private final Set<Entry> members = ConcurrentHashMap.newKeySet();
+
+        // Wheel bookkeeping, guarded by the TimerWheel lock
+        private long deadline;
+        private Group prev;
+        private Group next;
+
+        private Group(long period) {
+            this.period = period;
+        }
+
+        private void fire(long t) {
+            for (Entry e : members) {
+                if (e.first <= t) {
+                    e.run();
+                }
+            }
+        }
+
+    }
+
+
+    /**
+     * Periodic activity scheduled on the wheel
+     */
+    private static final class Entry implements Timeout {
+
+        private final Runnable task;
+        private final long first;
+        private final Group group;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile boolean cancelled = false;
+
+        private Entry(Runnable task, long first, Group group) {
+            this.task = task;
+            this.first = first;
+            this.group = group;
+        }
+
+        private void run() {
+            if (cancelled || !running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                cancel();
+            } finally {
+                running.set(false);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            group.members.remove(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+    }
+
+}
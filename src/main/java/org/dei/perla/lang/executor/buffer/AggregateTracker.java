@@ -0,0 +1,150 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Bookkeeping of the {@link AggregateState}s incrementally computed by a
+ * {@link Buffer}.
+ *
+ * <p> Samples are identified by a sequence number, assigned in insertion
+ * order. The oldest sample in the {@link Buffer} always has sequence number
+ * {@code nextSeq - size}.
+ *
+ * <p> This class is not thread safe, and should therefore only be invoked
+ * with proper synchronization.
+ *
+ * @author Guido Rota 18/01/16.
+ */
+final class AggregateTracker {
+
+    private final int tsIdx;
+
+    // Incrementally computed aggregates. A null state is stored for those
+    // aggregates that do not support incremental computation.
+    private final Map<Aggregate, AggregateState> aggs =
+            new IdentityHashMap<>();
+    // Sequence number of the next sample to be added
+    private long nextSeq = 0;
+    // False when a sample has been inserted out of order, i.e. when the
+    // aggregate states have to be rebuilt
+    private boolean valid = true;
+
+    protected AggregateTracker(int tsIdx) {
+        this.tsIdx = tsIdx;
+    }
+
+    /**
+     * Notifies that a new sample has been added to the {@link Buffer}
+     *
+     * @param sample new sample
+     * @param inOrder true if the sample is the newest in the {@link Buffer}
+     */
+    protected void add(Object[] sample, boolean inOrder) {
+        long seq = nextSeq++;
+        if (aggs.isEmpty() || !valid) {
+            return;
+        }
+        if (!inOrder) {
+            // Out of order samples change the content of the aggregation
+            // windows, states will be rebuilt on demand
+            valid = false;
+            return;
+        }
+
+        Instant ts = (Instant) sample[tsIdx];
+        for (AggregateState s : aggs.values()) {
+            if (s != null) {
+                s.add(seq, ts, sample);
+            }
+        }
+    }
+
+    /**
+     * Notifies that the oldest samples have been deleted from the {@link
+     * Buffer}
+     *
+     * @param size number of samples left in the {@link Buffer}
+     */
+    protected void delete(int size) {
+        if (!valid) {
+            return;
+        }
+        long firstSeq = nextSeq - size;
+        for (AggregateState s : aggs.values()) {
+            if (s != null) {
+                s.evict(firstSeq);
+            }
+        }
+    }
+
+    /**
+     * Starts the incremental computation of a new {@link Aggregate}
+     *
+     * @param a aggregate to track
+     * @param samples {@link Buffer} content, index 0 being the newest sample
+     * @param size number of samples in the {@link Buffer}
+     */
+    protected void track(Aggregate a, IntFunction<Object[]> samples,
+            int size) {
+        if (aggs.containsKey(a)) {
+            return;
+        }
+        AggregateState s = a.createState();
+        aggs.put(a, s);
+        if (s != null && valid) {
+            replay(s, samples, size);
+        }
+    }
+
+    /**
+     * Collects the current value of all incrementally computed aggregates.
+     *
+     * @param samples {@link Buffer} content, index 0 being the newest sample
+     * @param size number of samples in the {@link Buffer}
+     * @return aggregate values
+     */
+    protected Map<Aggregate, Object> snapshot(IntFunction<Object[]> samples,
+            int size) {
+        if (aggs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (!valid) {
+            aggs.values().forEach(s -> {
+                if (s != null) {
+                    s.clear();
+                    replay(s, samples, size);
+                }
+            });
+            valid = true;
+        }
+
+        Map<Aggregate, Object> values = new IdentityHashMap<>();
+        aggs.forEach((a, s) -> {
+            if (s != null) {
+                values.put(a, s.value());
+            }
+        });
+        return values;
+    }
+
+    /**
+     * Adds all samples currently stored in the {@link Buffer} to the {@link
+     * AggregateState} passed as parameter, from the oldest to the newest.
+     */
+    private void replay(AggregateState s, IntFunction<Object[]> samples,
+            int size) {
+        long seq = nextSeq - size;
+        for (int i = size - 1; i >= 0; i--) {
+            Object[] sample = samples.apply(i);
+            s.add(seq++, (Instant) sample[tsIdx], sample);
+        }
+    }
+
+}
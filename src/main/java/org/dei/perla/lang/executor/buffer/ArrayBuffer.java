@@ -1,7 +1,10 @@
 package org.dei.perla.lang.executor.buffer;
 
 import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -9,20 +12,37 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * {@link Buffer} implementation backed by a {@link CircularBuffer}
  *
+ * <p> The {@code ArrayBuffer} incrementally computes the value of the
+ * {@link Aggregate}s requested through the {@code
+ * BufferView.trackAggregate()} method. The {@link AggregateState} of each
+ * tracked aggregate is updated whenever a new sample is added and evicted
+ * when the samples are deleted upon view release.
+ *
+ * <p> Multiple {@link BufferView}s can be active at the same time. Each view
+ * pins the samples it contains, which are only deleted after all the views
+ * containing them have been released.
+ *
  * @author Guido Rota 22/10/15.
  */
 public final class ArrayBuffer implements Buffer {
 
     private final Lock dataLk = new ReentrantLock();
-    private boolean viewActive = false;
+    private final ViewEpochs views = new ViewEpochs();
+    // Number of samples deleted so far, i.e. the sequence number of the
+    // oldest sample in the buffer
+    private long deleted = 0;
 
     private CircularBuffer buffer;
+    private final int tsIdx;
+    private final AggregateTracker aggs;
 
     /**
      * Creates a new buffer backed by a circular array
      */
     public ArrayBuffer(List<Attribute> atts) {
         buffer = new CircularBuffer(atts);
+        tsIdx = atts.indexOf(Attribute.TIMESTAMP);
+        aggs = new AggregateTracker(tsIdx);
     }
 
     @Override
@@ -43,31 +63,52 @@ public final class ArrayBuffer implements Buffer {
     public void add(Object[] sample) {
         dataLk.lock();
         try {
+            Instant newest = null;
+            if (buffer.size() > 0) {
+                newest = (Instant) buffer.get(0)[tsIdx];
+            }
             buffer.add(sample);
+            Instant ts = (Instant) sample[tsIdx];
+            aggs.add(sample, newest == null || !ts.isBefore(newest));
         } finally {
             dataLk.unlock();
         }
     }
 
     @Override
-    public ArrayBufferView createView() throws UnreleasedViewException {
+    public ArrayBufferView createView() {
         dataLk.lock();
         try {
-            if (viewActive) {
-                throw new UnreleasedViewException();
-            }
-            viewActive = true;
-            return new ArrayBufferView(this, buffer.createCopy());
+            return new ArrayBufferView(this, buffer.createCopy(),
+                    aggs.snapshot(buffer::get, buffer.size()),
+                    views.pin(deleted));
         } finally {
             dataLk.unlock();
         }
     }
 
-    protected void release(ArrayBufferView view, int toDelete) {
+    protected void trackAggregate(Aggregate a) {
         dataLk.lock();
         try {
-            buffer.deleteLast(toDelete);
-            viewActive = false;
+            aggs.track(a, buffer::get, buffer.size());
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+    protected void release(ViewEpochs.Epoch epoch, int toDelete) {
+        dataLk.lock();
+        try {
+            long keep = views.release(epoch, toDelete);
+            int count = (int) Math.min(keep - deleted, buffer.size());
+            if (count > 0) {
+                buffer.deleteLast(count);
+                deleted += count;
+                aggs.delete(buffer.size());
+            }
+            if (views.isEmpty()) {
+                buffer.releaseCopies();
+            }
         } finally {
             dataLk.unlock();
         }
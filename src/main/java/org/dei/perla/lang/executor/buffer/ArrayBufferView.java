@@ -1,9 +1,13 @@
 package org.dei.perla.lang.executor.buffer;
 
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
 import org.dei.perla.lang.query.expression.Expression;
 import org.dei.perla.lang.query.expression.LogicValue;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 /**
@@ -16,9 +20,13 @@ public final class ArrayBufferView implements BufferView {
     private final ArrayBuffer parentBuffer;
     private final ArrayBufferView parentView;
     private final CircularBuffer buffer;
+    private final Map<Aggregate, Object> aggregates;
+    private final ViewEpochs.Epoch epoch;
 
     private int subViewCount = 0;
 
+    private final WindowCache windows = new WindowCache();
+
     private boolean released = false;
     private int lastIdx = -1;
 
@@ -32,11 +40,15 @@ public final class ArrayBufferView implements BufferView {
         this.parentBuffer = null;
         this.parentView = parent;
         this.buffer = buffer;
+        this.aggregates = Collections.emptyMap();
+        this.epoch = null;
     }
 
     protected ArrayBufferView(
             ArrayBuffer parent,
-            CircularBuffer buffer) {
+            CircularBuffer buffer,
+            Map<Aggregate, Object> aggregates,
+            ViewEpochs.Epoch epoch) {
         if (parent == null) {
             throw new IllegalArgumentException("parent cannot be null");
         }
@@ -44,6 +56,8 @@ public final class ArrayBufferView implements BufferView {
         this.parentBuffer = parent;
         this.parentView = null;
         this.buffer = buffer;
+        this.aggregates = aggregates;
+        this.epoch = epoch;
     }
 
     public int size() {
@@ -87,7 +101,7 @@ public final class ArrayBufferView implements BufferView {
             if (lastIdx != -1) {
                 toDelete = buffer.size() - (lastIdx + 1);
             }
-            parentBuffer.release(this, toDelete);
+            parentBuffer.release(epoch, toDelete);
         } else {
             parentView.releaseView();
         }
@@ -121,7 +135,7 @@ public final class ArrayBufferView implements BufferView {
 
     @Override
     public int samplesIn(Duration d) {
-        return buffer.samplesIn(d);
+        return windows.samplesIn(d, buffer::samplesIn);
     }
 
     @Override
@@ -135,4 +149,21 @@ public final class ArrayBufferView implements BufferView {
         return subView(samplesIn(d));
     }
 
+    @Override
+    public Object getAggregate(Aggregate a) {
+        if (!aggregates.containsKey(a)) {
+            return AggregateState.UNAVAILABLE;
+        }
+        return aggregates.get(a);
+    }
+
+    @Override
+    public void trackAggregate(Aggregate a) {
+        // Aggregates evaluated on sub-views are not tracked, since their
+        // content does not follow the parent buffer
+        if (parentBuffer != null) {
+            parentBuffer.trackAggregate(a);
+        }
+    }
+
 }
@@ -36,14 +36,14 @@ public interface Buffer {
     public void add(Object[] sample);
 
     /**
-     * Returns an unmodifiable view of the {@code Buffer}. Before requesting
-     * a new view, the old one must be released throught the {@code
-     * BufferView.release()} method
+     * Returns an unmodifiable view of the {@code Buffer}. Multiple views can
+     * be active at the same time, each of which is a snapshot of the {@code
+     * Buffer} content at creation time. Every view must be released through
+     * the {@code BufferView.release()} method, in order to allow the {@code
+     * Buffer} to delete the samples that are no longer needed.
      *
      * @return unmodifiable view of the buffer contents
-     * @throws UnreleasedViewException when requesting a new view without
-     * releasing the previous one
      */
-    public BufferView createView() throws UnreleasedViewException;
+    public BufferView createView();
 
 }
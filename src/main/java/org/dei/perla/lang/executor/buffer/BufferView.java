@@ -1,5 +1,7 @@
 package org.dei.perla.lang.executor.buffer;
 
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
 import org.dei.perla.lang.query.expression.Expression;
 
 import java.time.Duration;
@@ -28,7 +30,8 @@ public interface BufferView {
     public Object[] get(int i);
 
     /**
-     * Releases the view, allowing a new view to be requested
+     * Releases the view, allowing the {@link Buffer} to delete the samples
+     * that are no longer needed
      */
     public void release();
 
@@ -79,4 +82,24 @@ public interface BufferView {
      */
     public BufferView subView(Duration d);
 
+    /**
+     * Returns the value of the {@link Aggregate} passed as parameter, as
+     * incrementally computed by the parent {@link Buffer} at the time the
+     * {@code BufferView} was created.
+     *
+     * @param a aggregate
+     * @return value of the aggregate, {@link AggregateState#UNAVAILABLE} if
+     * the aggregate is not incrementally computed by the parent {@link Buffer}
+     */
+    public Object getAggregate(Aggregate a);
+
+    /**
+     * Requests the parent {@link Buffer} to incrementally compute the
+     * {@link Aggregate} passed as parameter. The aggregate value will be
+     * available in all {@code BufferView}s created after this call.
+     *
+     * @param a aggregate
+     */
+    public void trackAggregate(Aggregate a);
+
 }
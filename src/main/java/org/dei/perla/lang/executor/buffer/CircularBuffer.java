@@ -23,6 +23,11 @@ public final class CircularBuffer {
     private int tail;
     private int size;
 
+    // Set while the data array may be referenced by the copies returned by
+    // the createCopy method. Samples are never moved inside a shared array,
+    // since the copies must keep seeing the content they were created with.
+    private boolean shared = false;
+
     /**
      * Creates a new buffer with default capacity
      *
@@ -97,11 +102,18 @@ public final class CircularBuffer {
             throw new IndexOutOfBoundsException();
         }
 
+        return data[position(i)];
+    }
+
+    /**
+     * Returns the array position of the i-th newest sample
+     */
+    private int position(int i) {
         int idx = head - i;
         if (idx < 0) {
-            idx = data.length - idx;
+            idx = data.length + idx;
         }
-        return data[idx];
+        return idx;
     }
 
     public  synchronized void add(Object[] sample) {
@@ -109,6 +121,13 @@ public final class CircularBuffer {
                 sample[tsIdx] == null) {
             throw new RuntimeException("Malformed sample");
         }
+        boolean shift = size > 0 &&
+                ((Instant) sample[tsIdx]).isBefore(timestamp(head));
+        if (shared && (head == data.length - 1 || shift)) {
+            // Samples are about to be moved, copy-on-write
+            data = data.clone();
+            shared = false;
+        }
         if(head == data.length-1){
         	for(int i=0;i<size;i++)
         		data[i]=data[tail+i];
@@ -157,6 +176,7 @@ public final class CircularBuffer {
         tail = 0;
         head = size - 1;
         data = newData;
+        shared = false;
     }
 
     /**
@@ -211,14 +231,32 @@ public final class CircularBuffer {
         size = 0;
     }
 
+    /**
+     * Returns a copy of this buffer. The copy shares the sample array with
+     * the original buffer, which is copied before any subsequent change that
+     * would alter the content of the copy.
+     *
+     * @return buffer copy
+     */
     public CircularBuffer createCopy() {
+        shared = true;
         return new CircularBuffer(atts, tsIdx, data, head, tail, size);
     }
 
+    /**
+     * Signals that none of the copies created so far is in use anymore,
+     * hence samples can be moved in place again
+     */
+    public void releaseCopies() {
+        shared = false;
+    }
+
     public CircularBuffer subBuffer(int count) {
-        if (count > data.length) {
-            throw new IndexOutOfBoundsException("Not enough elements");
-        } else if (count == 0) {
+        if (count > size) {
+            // Windows larger than the buffer cover all available samples
+            count = size;
+        }
+        if (count == 0) {
             return newEmptyBuffer();
         }
 
@@ -230,17 +268,35 @@ public final class CircularBuffer {
         return subBuffer(samplesIn(d));
     }
 
+    /**
+     * Returns the number of samples whose timestamp is more recent than the
+     * timestamp of the newest sample minus the specified duration.
+     *
+     * <p> Since samples are kept sorted by timestamp, the window boundary is
+     * found through a binary search.
+     *
+     * @param d duration parameter
+     * @return number of samples that satisfy the timestamp condition
+     */
     public int samplesIn(Duration d) {
-        Instant target = timestamp(head).minus(d);
-        int i = 0;
+        if (size == 0) {
+            return 0;
+        }
 
-        int pos = head;
-        int count = 0;
-        while (count < size && timestamp(pos).compareTo(target) > 0) {
-            pos = previous(pos);
-            count++;
+        Instant target = timestamp(head).minus(d);
+        // Search the index of the newest sample that is not more recent
+        // than the target, which is also the number of samples in the window
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp(position(mid)).compareTo(target) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
-        return count;
+        return low;
     }
 
     private CircularBuffer newEmptyBuffer() {
@@ -0,0 +1,115 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.query.expression.Aggregate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Buffer} implementation backed by a {@link ColumnarCircularBuffer}.
+ *
+ * <p> Samples are stored by column in primitive arrays, which reduces the
+ * memory footprint of the buffer and the garbage generated at high
+ * sampling rates. The {@link ColumnarBufferView}s created by this class
+ * allow attribute values to be read without boxing.
+ *
+ * <p> Multiple {@link BufferView}s can be active at the same time, as in
+ * the {@link ArrayBuffer}.
+ *
+ * @author Guido Rota 20/01/16.
+ */
+public final class ColumnarBuffer implements Buffer {
+
+    private final Lock dataLk = new ReentrantLock();
+    private final ViewEpochs views = new ViewEpochs();
+    // Number of samples deleted so far, i.e. the sequence number of the
+    // oldest sample in the buffer
+    private long deleted = 0;
+
+    private final ColumnarCircularBuffer buffer;
+    private final int tsIdx;
+    private final AggregateTracker aggs;
+
+    /**
+     * Creates a new buffer backed by a columnar circular array
+     */
+    public ColumnarBuffer(List<Attribute> atts) {
+        buffer = new ColumnarCircularBuffer(atts);
+        tsIdx = atts.indexOf(Attribute.TIMESTAMP);
+        aggs = new AggregateTracker(tsIdx);
+    }
+
+    @Override
+    public List<Attribute> getAttributes() {
+        return buffer.getAttributes();
+    }
+
+    @Override
+    public int size() {
+        dataLk.lock();
+        try {
+            return buffer.size();
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+    @Override
+    public void add(Object[] sample) {
+        dataLk.lock();
+        try {
+            long newest = Long.MIN_VALUE;
+            if (buffer.size() > 0) {
+                newest = buffer.getTimestamp(0);
+            }
+            buffer.add(sample);
+            long ts = ColumnarCircularBuffer.toNanos((Instant) sample[tsIdx]);
+            aggs.add(sample, ts >= newest);
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+    @Override
+    public ColumnarBufferView createView() {
+        dataLk.lock();
+        try {
+            return new ColumnarBufferView(this, buffer.createCopy(),
+                    aggs.snapshot(buffer::get, buffer.size()),
+                    views.pin(deleted));
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+    protected void trackAggregate(Aggregate a) {
+        dataLk.lock();
+        try {
+            aggs.track(a, buffer::get, buffer.size());
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+    protected void release(ViewEpochs.Epoch epoch, int toDelete) {
+        dataLk.lock();
+        try {
+            long keep = views.release(epoch, toDelete);
+            int count = (int) Math.min(keep - deleted, buffer.size());
+            if (count > 0) {
+                buffer.deleteLast(count);
+                deleted += count;
+                aggs.delete(buffer.size());
+            }
+            if (views.isEmpty()) {
+                buffer.releaseCopies();
+            }
+        } finally {
+            dataLk.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link BufferView} implementation backed by a {@link
+ * ColumnarCircularBuffer}.
+ *
+ * <p> In addition to the standard {@link BufferView} methods, which box
+ * the sample values into an array of objects, this class provides
+ * primitive accessors that read attribute values directly from the
+ * underlying columns.
+ *
+ * @author Guido Rota 20/01/16.
+ */
+public final class ColumnarBufferView implements BufferView {
+
+    private final ColumnarBuffer parentBuffer;
+    private final ColumnarBufferView parentView;
+    private final ColumnarCircularBuffer buffer;
+    private final Map<Aggregate, Object> aggregates;
+    private final ViewEpochs.Epoch epoch;
+
+    private int subViewCount = 0;
+
+    private final WindowCache windows = new WindowCache();
+
+    private boolean released = false;
+    private int lastIdx = -1;
+
+    private ColumnarBufferView(
+            ColumnarBufferView parent,
+            ColumnarCircularBuffer buffer) {
+        if (parent == null) {
+            throw new IllegalArgumentException("parent cannot be null");
+        }
+
+        this.parentBuffer = null;
+        this.parentView = parent;
+        this.buffer = buffer;
+        this.aggregates = Collections.emptyMap();
+        this.epoch = null;
+    }
+
+    protected ColumnarBufferView(
+            ColumnarBuffer parent,
+            ColumnarCircularBuffer buffer,
+            Map<Aggregate, Object> aggregates,
+            ViewEpochs.Epoch epoch) {
+        if (parent == null) {
+            throw new IllegalArgumentException("parent cannot be null");
+        }
+
+        this.parentBuffer = parent;
+        this.parentView = null;
+        this.buffer = buffer;
+        this.aggregates = aggregates;
+        this.epoch = epoch;
+    }
+
+    private void access(int i) {
+        if (released) {
+            throw new IllegalStateException(
+                    "Cannot access buffer view after release"
+            );
+        }
+
+        if (i > lastIdx) {
+            lastIdx = i;
+        }
+    }
+
+    @Override
+    public int size() {
+        if (released) {
+            throw new IllegalStateException(
+                    "Cannot access buffer view after release"
+            );
+        }
+        return buffer.size();
+    }
+
+    @Override
+    public Object[] get(int i) {
+        access(i);
+        return buffer.get(i);
+    }
+
+    /**
+     * Returns the value of a single attribute of the sample at the
+     * specified index
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return attribute value, boxed in an object
+     */
+    public Object get(int i, int col) {
+        access(i);
+        return buffer.get(i, col);
+    }
+
+    /**
+     * Indicates if the value of an attribute is NULL. The primitive
+     * accessors of this class return meaningless values for NULL attributes.
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return true if the attribute value is NULL, false otherwise
+     */
+    public boolean isNull(int i, int col) {
+        access(i);
+        return buffer.isNull(i, col);
+    }
+
+    public int getInt(int i, int col) {
+        access(i);
+        return buffer.getInt(i, col);
+    }
+
+    public float getFloat(int i, int col) {
+        access(i);
+        return buffer.getFloat(i, col);
+    }
+
+    public boolean getBoolean(int i, int col) {
+        access(i);
+        return buffer.getBoolean(i, col);
+    }
+
+    /**
+     * Returns the value of a timestamp attribute, expressed in nanoseconds
+     * since epoch
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return timestamp value in nanoseconds
+     */
+    public long getTimestamp(int i, int col) {
+        access(i);
+        return buffer.getTimestamp(i, col);
+    }
+
+    @Override
+    public void release() {
+        if (released) {
+            throw new IllegalStateException(
+                    "Cannot access buffer view after release"
+            );
+        } else if (subViewCount != 0) {
+            throw new IllegalStateException(
+                    "Sub-views have not been released"
+            );
+        }
+
+        released = true;
+        if (parentBuffer != null) {
+            int toDelete = 0;
+            if (lastIdx != -1) {
+                toDelete = buffer.size() - (lastIdx + 1);
+            }
+            parentBuffer.release(epoch, toDelete);
+        } else {
+            parentView.releaseView();
+        }
+    }
+
+    private void releaseView() {
+        subViewCount--;
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object[], BufferView> c) {
+        for (int i = 0; i < buffer.size(); i++) {
+            Object[] sample = buffer.get(i);
+            c.accept(sample, this);
+        }
+    }
+
+    @Override
+    public void forEach(
+            BiConsumer<Object[], BufferView> consumer,
+            Expression cond) {
+        // The condition reads the primitive columns of the buffer, samples
+        // are only boxed once they have been selected
+        BitSet sel = new BitSet(buffer.size());
+        sel.set(0, buffer.size());
+        cond.filter(buffer, sel, this);
+        for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+            consumer.accept(buffer.get(i), this);
+        }
+    }
+
+    @Override
+    public int samplesIn(Duration d) {
+        return windows.samplesIn(d, buffer::samplesIn);
+    }
+
+    @Override
+    public ColumnarBufferView subView(int samples) {
+        subViewCount++;
+        return new ColumnarBufferView(this, buffer.subBuffer(samples));
+    }
+
+    @Override
+    public ColumnarBufferView subView(Duration d) {
+        return subView(samplesIn(d));
+    }
+
+    @Override
+    public Object getAggregate(Aggregate a) {
+        if (!aggregates.containsKey(a)) {
+            return AggregateState.UNAVAILABLE;
+        }
+        return aggregates.get(a);
+    }
+
+    @Override
+    public void trackAggregate(Aggregate a) {
+        // Aggregates evaluated on sub-views are not tracked, since their
+        // content does not follow the parent buffer
+        if (parentBuffer != null) {
+            parentBuffer.trackAggregate(a);
+        }
+    }
+
+}
@@ -0,0 +1,533 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.query.expression.SampleBatch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Circular buffer that stores samples by column.
+ *
+ * <p> Every {@link Attribute} is stored in a separate array specialized
+ * for its {@link DataType}: integer, float and boolean values are kept in
+ * primitive arrays, while timestamps are stored as nanoseconds since epoch
+ * in a {@code long} array. Values of other types are stored as objects.
+ * NULL values are tracked through a per-column bitmap.
+ *
+ * <p> Compared to the {@link CircularBuffer}, this layout does not require
+ * a boxed object for each value, and allows the values of a single
+ * attribute to be read without accessing the entire sample.
+ *
+ * <p> As in the {@link CircularBuffer}, samples are sorted by timestamp, and
+ * the sample at index 0 is the newest.
+ *
+ * @author Guido Rota 20/01/16.
+ */
+public final class ColumnarCircularBuffer implements SampleBatch {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final int INT = 0;
+    private static final int FLOAT = 1;
+    private static final int BOOLEAN = 2;
+    private static final int TIMESTAMP = 3;
+    private static final int OBJECT = 4;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final List<Attribute> atts;
+    private final int tsIdx;
+    private final int[] kinds;
+
+    // Column arrays (int[], float[], boolean[], long[] or Object[]) and
+    // their null bitmaps, indexed by physical position
+    private Object[] cols;
+    private long[][] nulls;
+    private long[] ts;
+    private int capacity;
+
+    // Physical position of the newest sample
+    private int head;
+    private int size;
+
+    // Set while the column arrays may be referenced by the copies returned
+    // by the createCopy method. Samples are never moved inside shared
+    // arrays, since the copies must keep seeing the content they were
+    // created with.
+    private boolean shared = false;
+
+    /**
+     * Creates a new buffer with default capacity
+     *
+     * @param atts attribute structure of the samples stored in the buffer
+     */
+    public ColumnarCircularBuffer(List<Attribute> atts) {
+        this(atts, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new buffer with the specified capacity
+     *
+     * @param atts attribute structure of the samples stored in the buffer
+     * @param capacity initial capacity
+     */
+    public ColumnarCircularBuffer(List<Attribute> atts, int capacity) {
+        this.atts = atts;
+        tsIdx = atts.indexOf(Attribute.TIMESTAMP);
+        if (tsIdx == -1) {
+            throw new IllegalArgumentException(
+                    "Missing timestamp attribute in sample fields"
+            );
+        }
+
+        kinds = new int[atts.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = kindOf(atts.get(i).getType());
+        }
+        allocate(capacity);
+        ts = (long[]) cols[tsIdx];
+        head = capacity - 1;
+        size = 0;
+    }
+
+    // Copy constructor
+    private ColumnarCircularBuffer(ColumnarCircularBuffer o, int size) {
+        this.atts = o.atts;
+        this.tsIdx = o.tsIdx;
+        this.kinds = o.kinds;
+        this.cols = o.cols;
+        this.nulls = o.nulls;
+        this.ts = o.ts;
+        this.capacity = o.capacity;
+        this.head = o.head;
+        this.size = size;
+    }
+
+    private static int kindOf(DataType t) {
+        if (t == DataType.INTEGER) {
+            return INT;
+        } else if (t == DataType.FLOAT) {
+            return FLOAT;
+        } else if (t == DataType.BOOLEAN) {
+            return BOOLEAN;
+        } else if (t == DataType.TIMESTAMP) {
+            return TIMESTAMP;
+        } else {
+            return OBJECT;
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        cols = new Object[kinds.length];
+        nulls = new long[kinds.length][(capacity + 63) / 64];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case INT:
+                    cols[i] = new int[capacity];
+                    break;
+                case FLOAT:
+                    cols[i] = new float[capacity];
+                    break;
+                case BOOLEAN:
+                    cols[i] = new boolean[capacity];
+                    break;
+                case TIMESTAMP:
+                    cols[i] = new long[capacity];
+                    break;
+                default:
+                    cols[i] = new Object[capacity];
+            }
+        }
+    }
+
+    public List<Attribute> getAttributes() {
+        return atts;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the physical position of the i-th newest sample
+     */
+    private int pos(int i) {
+        int p = head - i;
+        if (p < 0) {
+            p += capacity;
+        }
+        return p;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Returns the sample at the specified index as an array of objects.
+     * Values are boxed on every invocation.
+     *
+     * @param i sample index
+     * @return sample at the specified index
+     */
+    @Override
+    public Object[] get(int i) {
+        checkIndex(i);
+        int p = pos(i);
+        Object[] sample = new Object[kinds.length];
+        for (int c = 0; c < kinds.length; c++) {
+            sample[c] = read(c, p);
+        }
+        return sample;
+    }
+
+    /**
+     * Returns the value of a single attribute, boxed in an object
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return attribute value
+     */
+    public Object get(int i, int col) {
+        checkIndex(i);
+        return read(col, pos(i));
+    }
+
+    @Override
+    public boolean isNull(int i, int col) {
+        checkIndex(i);
+        return isNullAt(col, pos(i));
+    }
+
+    @Override
+    public int getInt(int i, int col) {
+        checkIndex(i);
+        return ((int[]) cols[col])[pos(i)];
+    }
+
+    @Override
+    public float getFloat(int i, int col) {
+        checkIndex(i);
+        return ((float[]) cols[col])[pos(i)];
+    }
+
+    public boolean getBoolean(int i, int col) {
+        checkIndex(i);
+        return ((boolean[]) cols[col])[pos(i)];
+    }
+
+    /**
+     * Returns the value of a timestamp attribute, expressed in nanoseconds
+     * since epoch
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return timestamp value in nanoseconds
+     */
+    public long getTimestamp(int i, int col) {
+        checkIndex(i);
+        return ((long[]) cols[col])[pos(i)];
+    }
+
+    /**
+     * Returns the timestamp of the sample at the specified index, expressed
+     * in nanoseconds since epoch
+     *
+     * @param i sample index
+     * @return sample timestamp in nanoseconds
+     */
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return ts[pos(i)];
+    }
+
+    public void add(Object[] sample) {
+        if (sample == null || sample.length != atts.size() ||
+                sample[tsIdx] == null) {
+            throw new RuntimeException("Malformed sample");
+        }
+        long sampleTs = toNanos((Instant) sample[tsIdx]);
+        if (size == capacity) {
+            expand();
+        } else if (shared && size > 0 && ts[head] > sampleTs) {
+            // Samples are about to be shifted, copy-on-write
+            unshare();
+        }
+        insertSample(sample, sampleTs);
+    }
+
+    /**
+     * Replaces the column arrays with private copies
+     */
+    private void unshare() {
+        Object[] newCols = new Object[cols.length];
+        long[][] newNulls = new long[nulls.length][];
+        for (int c = 0; c < kinds.length; c++) {
+            newCols[c] = cloneColumn(cols[c], kinds[c]);
+            newNulls[c] = nulls[c].clone();
+        }
+        cols = newCols;
+        nulls = newNulls;
+        ts = (long[]) cols[tsIdx];
+        shared = false;
+    }
+
+    private static Object cloneColumn(Object col, int kind) {
+        switch (kind) {
+            case INT:
+                return ((int[]) col).clone();
+            case FLOAT:
+                return ((float[]) col).clone();
+            case BOOLEAN:
+                return ((boolean[]) col).clone();
+            case TIMESTAMP:
+                return ((long[]) col).clone();
+            default:
+                return ((Object[]) col).clone();
+        }
+    }
+
+    /**
+     * Expands the size of the column arrays
+     */
+    private void expand() {
+        Object[] oldCols = cols;
+        long[][] oldNulls = nulls;
+        int oldCap = capacity;
+        int oldHead = head;
+
+        allocate(capacity * 2);
+        ts = (long[]) cols[tsIdx];
+        shared = false;
+        // Samples are copied from the oldest to the newest, starting from
+        // position 0 in the new arrays
+        for (int i = 0; i < size; i++) {
+            int from = oldHead - size + 1 + i;
+            if (from < 0) {
+                from += oldCap;
+            }
+            for (int c = 0; c < kinds.length; c++) {
+                copy(oldCols[c], from, cols[c], i, kinds[c]);
+                setNull(nulls[c], i, isSet(oldNulls[c], from));
+            }
+        }
+        head = size - 1;
+    }
+
+    /**
+     * Insertion sort. Samples are expected to arrive pretty much in order,
+     * hence the decision to use insertion sort.
+     *
+     * @param sample new sample to insert
+     * @param sampleTs timestamp of the new sample in nanoseconds
+     */
+    private void insertSample(Object[] sample, long sampleTs) {
+        int oldHead = head;
+        head = head + 1 == capacity ? 0 : head + 1;
+
+        // Shift newer samples one position forward
+        int dst = head;
+        int src = oldHead;
+        for (int i = 0; i < size && ts[src] > sampleTs; i++) {
+            for (int c = 0; c < kinds.length; c++) {
+                copy(cols[c], src, cols[c], dst, kinds[c]);
+                setNull(nulls[c], dst, isSet(nulls[c], src));
+            }
+            dst = src;
+            src = src == 0 ? capacity - 1 : src - 1;
+        }
+
+        for (int c = 0; c < kinds.length; c++) {
+            write(c, dst, sample[c]);
+        }
+        size++;
+    }
+
+    private static void copy(Object from, int fi, Object to, int ti,
+            int kind) {
+        switch (kind) {
+            case INT:
+                ((int[]) to)[ti] = ((int[]) from)[fi];
+                break;
+            case FLOAT:
+                ((float[]) to)[ti] = ((float[]) from)[fi];
+                break;
+            case BOOLEAN:
+                ((boolean[]) to)[ti] = ((boolean[]) from)[fi];
+                break;
+            case TIMESTAMP:
+                ((long[]) to)[ti] = ((long[]) from)[fi];
+                break;
+            default:
+                ((Object[]) to)[ti] = ((Object[]) from)[fi];
+        }
+    }
+
+    private void write(int col, int p, Object v) {
+        setNull(nulls[col], p, v == null);
+        Object c = cols[col];
+        switch (kinds[col]) {
+            case INT:
+                ((int[]) c)[p] = v == null ? 0 : (Integer) v;
+                break;
+            case FLOAT:
+                ((float[]) c)[p] = v == null ? 0 : (Float) v;
+                break;
+            case BOOLEAN:
+                ((boolean[]) c)[p] = v != null && (Boolean) v;
+                break;
+            case TIMESTAMP:
+                ((long[]) c)[p] = v == null ? 0 : toNanos((Instant) v);
+                break;
+            default:
+                ((Object[]) c)[p] = v;
+        }
+    }
+
+    private Object read(int col, int p) {
+        if (isNullAt(col, p)) {
+            return null;
+        }
+        Object c = cols[col];
+        switch (kinds[col]) {
+            case INT:
+                return ((int[]) c)[p];
+            case FLOAT:
+                return ((float[]) c)[p];
+            case BOOLEAN:
+                return ((boolean[]) c)[p];
+            case TIMESTAMP:
+                return toInstant(((long[]) c)[p]);
+            default:
+                return ((Object[]) c)[p];
+        }
+    }
+
+    private boolean isNullAt(int col, int p) {
+        return isSet(nulls[col], p);
+    }
+
+    private static boolean isSet(long[] bitmap, int p) {
+        return (bitmap[p >>> 6] & (1L << p)) != 0;
+    }
+
+    private static void setNull(long[] bitmap, int p, boolean value) {
+        if (value) {
+            bitmap[p >>> 6] |= 1L << p;
+        } else {
+            bitmap[p >>> 6] &= ~(1L << p);
+        }
+    }
+
+    public static long toNanos(Instant i) {
+        return Math.addExact(
+                Math.multiplyExact(i.getEpochSecond(), NANOS_PER_SECOND),
+                i.getNano());
+    }
+
+    public static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(
+                Math.floorDiv(nanos, NANOS_PER_SECOND),
+                Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    public void deleteLast(int count) {
+        if (count > size) {
+            throw new IndexOutOfBoundsException("Not enough elements");
+        }
+
+        // Object references are cleared to allow garbage collection
+        for (int c = 0; c < kinds.length; c++) {
+            if (kinds[c] != OBJECT) {
+                continue;
+            }
+            Object[] col = (Object[]) cols[c];
+            for (int i = size - count; i < size; i++) {
+                col[pos(i)] = null;
+            }
+        }
+        size -= count;
+    }
+
+    public void clear() {
+        deleteLast(size);
+    }
+
+    /**
+     * Returns a copy of this buffer. The copy shares the column arrays with
+     * the original buffer, which are copied before any subsequent change
+     * that would alter the content of the copy.
+     *
+     * @return buffer copy
+     */
+    public ColumnarCircularBuffer createCopy() {
+        shared = true;
+        return new ColumnarCircularBuffer(this, size);
+    }
+
+    /**
+     * Signals that none of the copies created so far is in use anymore,
+     * hence samples can be moved in place again
+     */
+    public void releaseCopies() {
+        shared = false;
+    }
+
+    public ColumnarCircularBuffer subBuffer(int count) {
+        if (count > size) {
+            // Windows larger than the buffer cover all available samples
+            count = size;
+        }
+        return new ColumnarCircularBuffer(this, count);
+    }
+
+    public ColumnarCircularBuffer subBuffer(Duration d) {
+        return subBuffer(samplesIn(d));
+    }
+
+    /**
+     * Returns the number of samples whose timestamp is more recent than the
+     * timestamp of the newest sample minus the specified duration. The
+     * window boundary is found through a binary search.
+     *
+     * @param d duration parameter
+     * @return number of samples that satisfy the timestamp condition
+     */
+    public int samplesIn(Duration d) {
+        if (size == 0) {
+            return 0;
+        }
+
+        long target;
+        try {
+            target = Math.subtractExact(ts[head], d.toNanos());
+        } catch (ArithmeticException e) {
+            // Durations longer than the representable time span cover
+            // all available samples
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ts[pos(mid)] > target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+}
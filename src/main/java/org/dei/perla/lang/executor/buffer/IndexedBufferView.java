@@ -0,0 +1,133 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
+import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.LogicValue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link BufferView} containing a subset of the samples of another
+ * {@link BufferView}, selected by index. Indexes must be sorted in
+ * ascending order, so that samples are still ordered from the newest to the
+ * oldest. This class is mainly employed to evaluate aggregates on the
+ * samples belonging to a single GROUP BY group.
+ *
+ * <p>
+ * Time windows are computed with respect to the newest sample of the parent
+ * view, so that all the {@code IndexedBufferView}s created from the same
+ * parent share the same time boundaries.
+ *
+ * <p>
+ * Releasing an {@code IndexedBufferView} has no effect on the parent view,
+ * which must be released separately.
+ *
+ * @author Guido Rota 08/02/16.
+ */
+public final class IndexedBufferView implements BufferView {
+
+    private final BufferView parent;
+    private final int[] idx;
+    private final int size;
+
+    private boolean released = false;
+
+    /**
+     * Creates a new {@code IndexedBufferView}
+     *
+     * @param parent parent view
+     * @param idx indexes of the parent samples included in the view, in
+     *            ascending order
+     * @param size number of valid elements in the {@code idx} array
+     */
+    public IndexedBufferView(BufferView parent, int[] idx, int size) {
+        if (size > idx.length) {
+            throw new IllegalArgumentException(
+                    "size cannot be greater than the number of indexes");
+        }
+        this.parent = parent;
+        this.idx = idx;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        checkReleased();
+        return size;
+    }
+
+    @Override
+    public Object[] get(int i) {
+        checkReleased();
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return parent.get(idx[i]);
+    }
+
+    @Override
+    public void release() {
+        checkReleased();
+        released = true;
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException(
+                    "Cannot access buffer view after release"
+            );
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object[], BufferView> c) {
+        for (int i = 0; i < size; i++) {
+            c.accept(parent.get(idx[i]), this);
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object[], BufferView> c,
+            Expression cond) {
+        for (int i = 0; i < size; i++) {
+            Object[] sample = parent.get(idx[i]);
+            LogicValue v = (LogicValue) cond.run(sample, this);
+            if (!LogicValue.toBoolean(v)) {
+                continue;
+            }
+            c.accept(sample, this);
+        }
+    }
+
+    @Override
+    public int samplesIn(Duration d) {
+        // Number of indexes pointing inside the parent time window
+        int i = Arrays.binarySearch(idx, 0, size, parent.samplesIn(d));
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    @Override
+    public BufferView subView(int samples) {
+        return new IndexedBufferView(parent, idx, Math.min(samples, size));
+    }
+
+    @Override
+    public BufferView subView(Duration d) {
+        return subView(samplesIn(d));
+    }
+
+    @Override
+    public Object getAggregate(Aggregate a) {
+        return AggregateState.UNAVAILABLE;
+    }
+
+    @Override
+    public void trackAggregate(Aggregate a) {
+        // Aggregates on a subset of the samples cannot be tracked by the
+        // parent buffer
+    }
+
+}
@@ -0,0 +1,301 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Buffer} implementation optimized for a single producer, backed by
+ * a ring of sequence-numbered slots.
+ *
+ * <p> Every sample is assigned a sequence number in insertion order, and is
+ * stored in the ring slot corresponding to its sequence number. New samples
+ * are published by advancing the {@code head} sequence number, while the
+ * {@code tail} sequence number marks the oldest sample retained by the
+ * buffer. {@link BufferView}s are snapshots of the ring, delimited by the
+ * {@code head} and {@code tail} sequence numbers read at creation time.
+ *
+ * <p> Sample insertion never blocks on the {@link BufferView}s. In-order
+ * samples are written into free slots, which are not visible to any
+ * existing view. Samples that arrive out of order and ring expansions are
+ * handled by copying the ring content into a new array, leaving the old one
+ * untouched for the views that are still reading it. Readers detect
+ * concurrent copies through a version counter, and retry until they obtain
+ * a consistent snapshot.
+ *
+ * <p> Concurrent producers are serialized by a lock that is never taken by
+ * the readers. The lock is uncontended when samples are produced by a
+ * single {@link org.dei.perla.core.fpc.Fpc} task, which is the common case.
+ *
+ * <p> {@link Aggregate}s requested through the {@code
+ * BufferView.trackAggregate()} method are computed incrementally, as done by
+ * the {@link ArrayBuffer}. Unlike the {@link ArrayBuffer}, the {@link
+ * AggregateState}s are updated when a new view is created instead of upon
+ * sample insertion, thus keeping the ingestion path free of any
+ * coordination with the readers.
+ *
+ * <p> Multiple {@link BufferView}s can be active at the same time, each of
+ * which pins the ring slots of the samples it contains. Slots are reused
+ * only after all the views containing them have been released.
+ *
+ * @author Guido Rota 12/02/16.
+ */
+public final class RingBuffer implements Buffer {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final List<Attribute> atts;
+    private final int tsIdx;
+
+    // Serializes concurrent producers, never taken by the readers
+    private final Lock addLk = new ReentrantLock();
+    private volatile Object[][] ring;
+    // Sequence number of the next sample to be published
+    private volatile long head = 0;
+    // Sequence number of the oldest sample retained by the buffer
+    private volatile long tail = 0;
+    // Incremented before and after every ring copy, odd while the copy is
+    // being published
+    private volatile int version = 0;
+    // Number of samples inserted out of order
+    private volatile long reorders = 0;
+
+    // View management and aggregate bookkeeping, only accessed while
+    // holding the viewLk lock
+    private final Lock viewLk = new ReentrantLock();
+    private final ViewEpochs views = new ViewEpochs();
+    private final AggregateTracker aggs;
+    // Sequence number of the next sample to be notified to the tracker
+    private long tracked = 0;
+    private long trackedReorders = 0;
+
+    /**
+     * Creates a new buffer with default capacity
+     *
+     * @param atts attribute structure of the samples stored in the buffer
+     */
+    public RingBuffer(List<Attribute> atts) {
+        this(atts, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new buffer with the specified initial capacity
+     *
+     * @param atts attribute structure of the samples stored in the buffer
+     * @param capacity initial capacity, rounded up to the next power of two
+     */
+    public RingBuffer(List<Attribute> atts, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.atts = atts;
+        tsIdx = atts.indexOf(Attribute.TIMESTAMP);
+        if (tsIdx == -1) {
+            throw new IllegalArgumentException(
+                    "Missing timestamp attribute in sample fields"
+            );
+        }
+        int cap = Integer.highestOneBit(capacity);
+        if (cap < capacity) {
+            cap <<= 1;
+        }
+        ring = new Object[cap][];
+        aggs = new AggregateTracker(tsIdx);
+    }
+
+    @Override
+    public List<Attribute> getAttributes() {
+        return atts;
+    }
+
+    @Override
+    public int size() {
+        long t = tail;
+        return (int) (head - t);
+    }
+
+    @Override
+    public void add(Object[] sample) {
+        if (sample == null || sample.length != atts.size() ||
+                sample[tsIdx] == null) {
+            throw new RuntimeException("Malformed sample");
+        }
+
+        addLk.lock();
+        try {
+            long h = head;
+            long t = tail;
+            Object[][] r = ring;
+            Instant ts = (Instant) sample[tsIdx];
+            if (h > t && ts.isBefore(timestamp(r, h - 1))) {
+                copy(sample, h, t);
+            } else if (h - t == r.length) {
+                copy(null, h, t);
+                append(sample, h);
+            } else {
+                append(sample, h);
+            }
+        } finally {
+            addLk.unlock();
+        }
+    }
+
+    /*
+     * Appends a sample in the first free slot. The slot is never visible to
+     * the existing views, since it is either beyond their head or below the
+     * tail of the buffer.
+     */
+    private void append(Object[] sample, long h) {
+        Object[][] r = ring;
+        r[(int) h & (r.length - 1)] = sample;
+        head = h + 1;
+    }
+
+    /*
+     * Copies the content of the ring into a new array, inserting the
+     * out-of-order sample passed as parameter (if any) in timestamp order.
+     * The ring is expanded if full.
+     */
+    private void copy(Object[] late, long h, long t) {
+        Object[][] old = ring;
+        int cap = old.length;
+        if (h - t + 1 > cap) {
+            cap *= 2;
+        }
+        Object[][] r = new Object[cap][];
+        int oldMask = old.length - 1;
+        int mask = cap - 1;
+        for (long s = t; s < h; s++) {
+            r[(int) s & mask] = old[(int) s & oldMask];
+        }
+
+        version++;
+        if (late != null) {
+            // Insertion sort, samples are expected to arrive pretty much in
+            // order
+            Instant ts = (Instant) late[tsIdx];
+            long pos = h;
+            while (pos > t && ts.isBefore(timestamp(r, pos - 1))) {
+                r[(int) pos & mask] = r[(int) (pos - 1) & mask];
+                pos--;
+            }
+            r[(int) pos & mask] = late;
+            reorders++;
+            ring = r;
+            head = h + 1;
+        } else {
+            ring = r;
+        }
+        version++;
+    }
+
+    private Instant timestamp(Object[][] r, long seq) {
+        return (Instant) r[(int) seq & (r.length - 1)][tsIdx];
+    }
+
+    /*
+     * Reads a consistent snapshot of the ring. The snapshot is retried if a
+     * ring copy is published while reading.
+     */
+    private Snapshot snapshot() {
+        while (true) {
+            int v = version;
+            if ((v & 1) == 0) {
+                long h = head;
+                Object[][] r = ring;
+                long re = reorders;
+                if (version == v) {
+                    return new Snapshot(r, h, re);
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public RingBufferView createView() {
+        viewLk.lock();
+        try {
+            Snapshot s = snapshot();
+            long t = tail;
+            updateAggregates(s);
+            Map<Aggregate, Object> values = aggs.snapshot(
+                    i -> s.get(s.head - 1 - i), (int) (s.head - t));
+            return new RingBufferView(this, s.ring, s.head - 1,
+                    (int) (s.head - t), values, views.pin(t));
+        } finally {
+            viewLk.unlock();
+        }
+    }
+
+    /*
+     * Notifies the aggregate tracker of the samples added after the last
+     * update.
+     *
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked while holding the viewLk lock.
+     */
+    private void updateAggregates(Snapshot s) {
+        boolean inOrder = s.reorders == trackedReorders;
+        trackedReorders = s.reorders;
+        for (long seq = tracked; seq < s.head; seq++) {
+            aggs.add(s.get(seq), inOrder);
+        }
+        tracked = s.head;
+    }
+
+    protected void trackAggregate(Aggregate a) {
+        viewLk.lock();
+        try {
+            Snapshot s = snapshot();
+            updateAggregates(s);
+            long t = tail;
+            aggs.track(a, i -> s.get(tracked - 1 - i), (int) (tracked - t));
+        } finally {
+            viewLk.unlock();
+        }
+    }
+
+    protected void release(ViewEpochs.Epoch epoch, int toDelete) {
+        viewLk.lock();
+        try {
+            // Ring slots are only reused once no view is pinning them
+            long t = views.release(epoch, toDelete);
+            if (t > tail) {
+                tail = t;
+                aggs.delete((int) (tracked - t));
+            }
+        } finally {
+            viewLk.unlock();
+        }
+    }
+
+
+    /**
+     * Consistent snapshot of the ring content
+     */
+    private static final class Snapshot {
+
+        private final Object[][] ring;
+        private final long head;
+        private final long reorders;
+
+        private Snapshot(Object[][] ring, long head, long reorders) {
+            this.ring = ring;
+            this.head = head;
+            this.reorders = reorders;
+        }
+
+        private Object[] get(long seq) {
+            return ring[(int) seq & (ring.length - 1)];
+        }
+
+    }
+
+}
@@ -0,0 +1,223 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.query.expression.Aggregate;
+import org.dei.perla.lang.query.expression.AggregateState;
+import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.SampleBatch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link BufferView} implementation backed by a snapshot of the ring of a
+ * {@link RingBuffer}
+ *
+ * @author Guido Rota 12/02/16.
+ */
+public final class RingBufferView implements BufferView {
+
+    private final RingBuffer parentBuffer;
+    private final RingBufferView parentView;
+    private final Object[][] ring;
+    private final int mask;
+    private final int tsIdx;
+    // Sequence number of the newest sample in the view
+    private final long newest;
+    private final int size;
+    private final Map<Aggregate, Object> aggregates;
+    private final ViewEpochs.Epoch epoch;
+
+    private int subViewCount = 0;
+
+    private final WindowCache windows = new WindowCache();
+
+    private boolean released = false;
+    private int lastIdx = -1;
+
+    private RingBufferView(RingBufferView parent, int size) {
+        this.parentBuffer = null;
+        this.parentView = parent;
+        this.ring = parent.ring;
+        this.mask = parent.mask;
+        this.tsIdx = parent.tsIdx;
+        this.newest = parent.newest;
+        this.size = size;
+        this.aggregates = Collections.emptyMap();
+        this.epoch = null;
+    }
+
+    protected RingBufferView(
+            RingBuffer parent,
+            Object[][] ring,
+            long newest,
+            int size,
+            Map<Aggregate, Object> aggregates,
+            ViewEpochs.Epoch epoch) {
+        if (parent == null) {
+            throw new IllegalArgumentException("parent cannot be null");
+        }
+
+        this.parentBuffer = parent;
+        this.parentView = null;
+        this.ring = ring;
+        this.mask = ring.length - 1;
+        this.tsIdx = parent.getAttributes().indexOf(Attribute.TIMESTAMP);
+        this.newest = newest;
+        this.size = size;
+        this.aggregates = aggregates;
+        this.epoch = epoch;
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException(
+                    "Cannot access buffer view after release"
+            );
+        }
+    }
+
+    @Override
+    public int size() {
+        checkReleased();
+        return size;
+    }
+
+    @Override
+    public Object[] get(int i) {
+        checkReleased();
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (i > lastIdx) {
+            lastIdx = i;
+        }
+        return sample(i);
+    }
+
+    private Object[] sample(int i) {
+        return ring[(int) (newest - i) & mask];
+    }
+
+    private Instant timestamp(int i) {
+        return (Instant) sample(i)[tsIdx];
+    }
+
+    @Override
+    public void release() {
+        checkReleased();
+        if (subViewCount != 0) {
+            throw new IllegalStateException(
+                    "Sub-views have not been released"
+            );
+        }
+
+        released = true;
+        if (parentBuffer != null) {
+            int toDelete = 0;
+            if (lastIdx != -1) {
+                toDelete = size - (lastIdx + 1);
+            }
+            parentBuffer.release(epoch, toDelete);
+        } else {
+            parentView.releaseView();
+        }
+    }
+
+    private void releaseView() {
+        subViewCount--;
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object[], BufferView> c) {
+        for (int i = 0; i < size; i++) {
+            c.accept(sample(i), this);
+        }
+    }
+
+    @Override
+    public void forEach(
+            BiConsumer<Object[], BufferView> consumer,
+            Expression cond) {
+        // The condition is evaluated over the whole view in a single pass
+        BitSet sel = new BitSet(size);
+        sel.set(0, size);
+        cond.filter(new SampleBatch() {
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Object[] get(int i) {
+                return sample(i);
+            }
+
+        }, sel, this);
+        for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+            consumer.accept(sample(i), this);
+        }
+    }
+
+    @Override
+    public int samplesIn(Duration d) {
+        return windows.samplesIn(d, this::computeSamplesIn);
+    }
+
+    /*
+     * Binary search of the window boundary, samples are sorted by timestamp
+     */
+    private int computeSamplesIn(Duration d) {
+        if (size == 0) {
+            return 0;
+        }
+
+        Instant target = timestamp(0).minus(d);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp(mid).compareTo(target) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public RingBufferView subView(int samples) {
+        subViewCount++;
+        return new RingBufferView(this, Math.min(samples, size));
+    }
+
+    @Override
+    public BufferView subView(Duration d) {
+        return subView(samplesIn(d));
+    }
+
+    @Override
+    public Object getAggregate(Aggregate a) {
+        if (!aggregates.containsKey(a)) {
+            return AggregateState.UNAVAILABLE;
+        }
+        return aggregates.get(a);
+    }
+
+    @Override
+    public void trackAggregate(Aggregate a) {
+        // Aggregates evaluated on sub-views are not tracked, since their
+        // content does not follow the parent buffer
+        if (parentBuffer != null) {
+            parentBuffer.trackAggregate(a);
+        }
+    }
+
+}
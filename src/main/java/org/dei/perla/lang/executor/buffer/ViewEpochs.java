@@ -0,0 +1,110 @@
+package org.dei.perla.lang.executor.buffer;
+
+import java.util.TreeMap;
+
+/**
+ * Bookkeeping of the {@link BufferView}s concurrently active on the same
+ * {@link Buffer}.
+ *
+ * <p> Samples are identified by a sequence number, assigned in insertion
+ * order. Every view pins the epoch it was created in, i.e. the sequence
+ * number of the oldest sample it contains. When released, a view declares
+ * how many of its oldest samples are no longer needed, and the samples
+ * become eligible for deletion. Deletion requests of older views are
+ * superseded by those of newer views, which reflect the most recent content
+ * of the {@link Buffer}.
+ *
+ * <p> Samples are only deleted once they are not pinned by any active view.
+ * Memory is therefore reclaimed as soon as the oldest active view is
+ * released, without waiting for the newer ones.
+ *
+ * <p> This class is not thread safe, and should therefore only be invoked
+ * with proper synchronization.
+ *
+ * @author Guido Rota 13/02/16.
+ */
+final class ViewEpochs {
+
+    // Number of active views pinning each epoch
+    private final TreeMap<Long, Integer> pins = new TreeMap<>();
+    private long nextId = 0;
+
+    // Deletion boundary requested by the newest released view
+    private long boundary = Long.MIN_VALUE;
+    private long boundaryId = -1;
+
+    /**
+     * Registers a new view
+     *
+     * @param epoch sequence number of the oldest sample in the view
+     * @return handle of the view, to be passed to the {@code release}
+     * method
+     */
+    protected Epoch pin(long epoch) {
+        pins.merge(epoch, 1, Integer::sum);
+        return new Epoch(nextId++, epoch);
+    }
+
+    /**
+     * Unregisters a view, and computes which samples can be deleted
+     *
+     * @param e view handle
+     * @param toDelete number of the oldest samples of the view that are no
+     *                 longer needed
+     * @return sequence number of the oldest sample that must be kept in the
+     * {@link Buffer}
+     */
+    protected long release(Epoch e, int toDelete) {
+        Integer count = pins.get(e.epoch);
+        if (count == null) {
+            throw new IllegalStateException("View already released");
+        } else if (count == 1) {
+            pins.remove(e.epoch);
+        } else {
+            pins.put(e.epoch, count - 1);
+        }
+
+        if (e.id > boundaryId) {
+            boundaryId = e.id;
+            boundary = e.epoch + toDelete;
+        }
+        if (pins.isEmpty()) {
+            return boundary;
+        }
+        return Math.min(boundary, pins.firstKey());
+    }
+
+    /**
+     * Indicates if no view is currently active
+     *
+     * @return true if all views have been released, false otherwise
+     */
+    protected boolean isEmpty() {
+        return pins.isEmpty();
+    }
+
+    /**
+     * Handle of an active view
+     */
+    protected static final class Epoch {
+
+        private final long id;
+        private final long epoch;
+
+        private Epoch(long id, long epoch) {
+            this.id = id;
+            this.epoch = epoch;
+        }
+
+        /**
+         * Returns the sequence number of the oldest sample in the view
+         *
+         * @return epoch of the view
+         */
+        protected long getEpoch() {
+            return epoch;
+        }
+
+    }
+
+}
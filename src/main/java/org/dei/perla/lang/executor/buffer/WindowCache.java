@@ -0,0 +1,45 @@
+package org.dei.perla.lang.executor.buffer;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Time window boundaries computed on a {@link BufferView}.
+ *
+ * <p> The content of a {@link BufferView} never changes, hence the number
+ * of samples that fall within a time window is only computed once, and is
+ * then reused by all the aggregates that share the same window duration.
+ *
+ * <p> This class is not thread safe, and should therefore only be invoked
+ * with proper synchronization.
+ *
+ * @author Guido Rota 12/02/16.
+ */
+final class WindowCache {
+
+    private Map<Duration, Integer> windows;
+
+    /**
+     * Returns the number of samples in the time window of the specified
+     * duration, computing it only if not already cached
+     *
+     * @param d window duration
+     * @param samplesIn function that computes the number of samples in the
+     *                  window
+     * @return number of samples in the window
+     */
+    protected int samplesIn(Duration d, ToIntFunction<Duration> samplesIn) {
+        if (windows == null) {
+            windows = new HashMap<>();
+        }
+        Integer count = windows.get(d);
+        if (count == null) {
+            count = samplesIn.applyAsInt(d);
+            windows.put(d, count);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.dei.perla.lang.executor.metrics;
+
+/**
+ * Receives the execution events of a query running on a single FPC. Probes
+ * are invoked on the hot path of the query, and must therefore be cheap and
+ * thread safe.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public interface ExecutionProbe {
+
+    /**
+     * Probe that ignores all events
+     */
+    public static final ExecutionProbe NOOP = new ExecutionProbe() { };
+
+    /**
+     * Invoked when a sample is received from the FPC
+     */
+    public default void sampleReceived() { }
+
+    /**
+     * Invoked when a sample is discarded by the WHERE clause
+     */
+    public default void sampleRejected() { }
+
+    /**
+     * Invoked when a new view is created on the query buffer
+     *
+     * @param occupancy number of samples in the buffer
+     */
+    public default void viewCreated(int occupancy) { }
+
+    /**
+     * Invoked when a view is released
+     *
+     * @param nanos time elapsed since the creation of the view
+     */
+    public default void viewReleased(long nanos) { }
+
+    /**
+     * Invoked after every selection
+     *
+     * @param rows number of rows emitted by the selection
+     * @param nanos duration of the selection
+     */
+    public default void selected(int rows, long nanos) { }
+
+    /**
+     * Invoked when an EVERY period expires
+     *
+     * @param lagNanos delay between the expected and the actual trigger
+     *                 time
+     */
+    public default void tick(long lagNanos) { }
+
+    /**
+     * Invoked when the query stops running on the FPC
+     */
+    public default void close() { }
+
+}
@@ -0,0 +1,160 @@
+package org.dei.perla.lang.executor.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link ExecutionProbe} that collects the execution metrics of a query
+ * running on a single FPC. Counters are striped {@link LongAdder}s, and
+ * latencies are recorded in {@link LatencyHistogram}s, so that concurrent
+ * updates never block the query.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public final class ExecutorMetrics
+        implements ExecutionProbe, ExecutorMetricsMBean {
+
+    private final long id;
+    private final String query;
+    private final int fpcId;
+    private final Consumer<ExecutorMetrics> onClose;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder selections = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private volatile int occupancy = 0;
+    private final LatencyHistogram selectLatency = new LatencyHistogram();
+    private final LatencyHistogram viewLifetime = new LatencyHistogram();
+    private final LatencyHistogram tickLag = new LatencyHistogram();
+
+    /**
+     * Creates a new {@code ExecutorMetrics} object
+     *
+     * @param id unique identifier of the metrics
+     * @param query textual description of the query
+     * @param fpcId identifier of the FPC on which the query is run
+     * @param onClose invoked when the probe is closed
+     */
+    ExecutorMetrics(long id, String query, int fpcId,
+            Consumer<ExecutorMetrics> onClose) {
+        this.id = id;
+        this.query = query;
+        this.fpcId = fpcId;
+        this.onClose = onClose;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public void sampleReceived() {
+        received.increment();
+    }
+
+    @Override
+    public void sampleRejected() {
+        rejected.increment();
+    }
+
+    @Override
+    public void viewCreated(int occupancy) {
+        this.occupancy = occupancy;
+    }
+
+    @Override
+    public void viewReleased(long nanos) {
+        viewLifetime.record(nanos);
+    }
+
+    @Override
+    public void selected(int rowCount, long nanos) {
+        selections.increment();
+        rows.add(rowCount);
+        selectLatency.record(nanos);
+    }
+
+    @Override
+    public void tick(long lagNanos) {
+        tickLag.record(lagNanos);
+    }
+
+    @Override
+    public void close() {
+        onClose.accept(this);
+    }
+
+    public LatencyHistogram getSelectLatency() {
+        return selectLatency;
+    }
+
+    public LatencyHistogram getViewLifetime() {
+        return viewLifetime;
+    }
+
+    public LatencyHistogram getTickLag() {
+        return tickLag;
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public int getFpcId() {
+        return fpcId;
+    }
+
+    @Override
+    public long getSamplesReceived() {
+        return received.sum();
+    }
+
+    @Override
+    public long getSamplesRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public int getBufferOccupancy() {
+        return occupancy;
+    }
+
+    @Override
+    public long getSelections() {
+        return selections.sum();
+    }
+
+    @Override
+    public long getRowsEmitted() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getSelectLatency99thMicros() {
+        return micros(selectLatency.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getViewLifetime99thMicros() {
+        return micros(viewLifetime.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getTickLag99thMicros() {
+        return micros(tickLag.getPercentileNanos(99));
+    }
+
+    @Override
+    public long getTickLagMaxMicros() {
+        return micros(tickLag.getMaxNanos());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+}
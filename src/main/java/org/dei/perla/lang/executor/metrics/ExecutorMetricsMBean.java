@@ -0,0 +1,32 @@
+package org.dei.perla.lang.executor.metrics;
+
+/**
+ * JMX management interface of the {@link ExecutorMetrics}
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public interface ExecutorMetricsMBean {
+
+    public String getQuery();
+
+    public int getFpcId();
+
+    public long getSamplesReceived();
+
+    public long getSamplesRejected();
+
+    public int getBufferOccupancy();
+
+    public long getSelections();
+
+    public long getRowsEmitted();
+
+    public long getSelectLatency99thMicros();
+
+    public long getViewLifetime99thMicros();
+
+    public long getTickLag99thMicros();
+
+    public long getTickLagMaxMicros();
+
+}
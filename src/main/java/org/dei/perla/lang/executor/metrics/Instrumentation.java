@@ -0,0 +1,31 @@
+package org.dei.perla.lang.executor.metrics;
+
+import org.dei.perla.core.fpc.Fpc;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+
+/**
+ * Service provider interface for the instrumentation of the query
+ * runtime. An {@link ExecutionProbe} is requested for every FPC on which a
+ * query is started.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+@FunctionalInterface
+public interface Instrumentation {
+
+    /**
+     * Instrumentation that does not collect any metric
+     */
+    public static final Instrumentation NONE =
+            (query, fpc) -> ExecutionProbe.NOOP;
+
+    /**
+     * Creates the probe of a query running on an FPC
+     *
+     * @param query query
+     * @param fpc FPC on which the query is run
+     * @return execution probe
+     */
+    public ExecutionProbe createProbe(SelectionStatement query, Fpc fpc);
+
+}
@@ -0,0 +1,61 @@
+package org.dei.perla.lang.executor.metrics;
+
+import org.apache.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Publishes metrics objects on the platform {@link
+ * javax.management.MBeanServer}, under the {@code org.dei.perla.lang}
+ * domain. Failures are logged and otherwise ignored, since metrics are not
+ * essential to the query execution.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public final class JmxExporter {
+
+    private static final Logger log = Logger.getLogger(JmxExporter.class);
+
+    public static final String DOMAIN = "org.dei.perla.lang";
+
+    private JmxExporter() { }
+
+    /**
+     * Registers an MBean
+     *
+     * @param mbean MBean to register
+     * @param properties key properties of the MBean name, e.g. {@code
+     *                   type=Query,id=1}
+     * @return name of the registered MBean, null if the registration failed
+     */
+    public static ObjectName register(Object mbean, String properties) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(mbean, name);
+            return name;
+        } catch (JMException e) {
+            log.warn("Cannot register MBean " + properties, e);
+            return null;
+        }
+    }
+
+    /**
+     * Unregisters an MBean
+     *
+     * @param name name of the MBean, null values are ignored
+     */
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            log.warn("Cannot unregister MBean " + name, e);
+        }
+    }
+
+}
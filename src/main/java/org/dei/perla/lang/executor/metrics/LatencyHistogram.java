@@ -0,0 +1,119 @@
+package org.dei.perla.lang.executor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets, in the style of the
+ * HdrHistogram. Every power-of-two range of values is split into 8 linear
+ * sub-buckets, which bounds the relative error of the reported percentiles
+ * to 12.5% over the whole range of long values. Values are recorded without
+ * locking and without allocations.
+ *
+ * @author Guido Rota 15/02/16.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a new latency value
+     *
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    private static int index(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        int sub = (int) (v >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    /*
+     * Returns the largest value recorded in the bucket with the index passed
+     * as parameter
+     */
+    private static long upperBound(int idx) {
+        if (idx < SUB_COUNT) {
+            return idx;
+        }
+        int shift = idx / SUB_COUNT - 1;
+        int sub = idx % SUB_COUNT;
+        long bound = ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long c = count.sum();
+        if (c == 0) {
+            return 0;
+        }
+        return (double) sum.sum() / c;
+    }
+
+    /**
+     * Returns an upper bound of the requested latency percentile
+     *
+     * @param p percentile, between 0 and 100
+     * @return upper bound of the percentile in nanoseconds, 0 if no latency
+     * was recorded
+     */
+    public long getPercentileNanos(double p) {
+        if (p < 0 || p > 100) {
+            throw new IllegalArgumentException(
+                    "Percentile must be between 0 and 100");
+        }
+
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(total * p / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                // Upper bound of the bucket, capped by the actual maximum
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.dei.perla.lang.executor.metrics;
+
+import org.dei.perla.core.fpc.Fpc;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Instrumentation} that collects the {@link ExecutorMetrics} of
+ * every query running on every FPC. The metrics of the running queries can
+ * be retrieved through the {@code snapshot()} method, exported in textual
+ * form with a {@link TextExporter}, or published over JMX under the name
+ * {@code org.dei.perla.lang:type=Executor,id=<n>,fpc=<fpc id>}.
+ *
+ * <p> Metrics are discarded as soon as the query stops running on the FPC.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public final class MetricsInstrumentation implements Instrumentation {
+
+    private final boolean jmx;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, ExecutorMetrics> live = new ConcurrentHashMap<>();
+    private final Map<Long, ObjectName> names = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@code MetricsInstrumentation} that does not publish
+     * the metrics over JMX
+     */
+    public MetricsInstrumentation() {
+        this(false);
+    }
+
+    /**
+     * Creates a new {@code MetricsInstrumentation}
+     *
+     * @param jmx true to publish the metrics over JMX
+     */
+    public MetricsInstrumentation(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    @Override
+    public ExecutionProbe createProbe(SelectionStatement query, Fpc fpc) {
+        long id = nextId.getAndIncrement();
+        ExecutorMetrics m = new ExecutorMetrics(id, String.valueOf(query),
+                fpc.getId(), this::closed);
+        live.put(id, m);
+        if (jmx) {
+            ObjectName n = JmxExporter.register(m,
+                    "type=Executor,id=" + id + ",fpc=" + fpc.getId());
+            if (n != null) {
+                names.put(id, n);
+            }
+        }
+        return m;
+    }
+
+    private void closed(ExecutorMetrics m) {
+        live.remove(m.getId());
+        JmxExporter.unregister(names.remove(m.getId()));
+    }
+
+    /**
+     * Returns the metrics of the queries currently running
+     *
+     * @return execution metrics
+     */
+    public Collection<ExecutorMetrics> snapshot() {
+        return new ArrayList<>(live.values());
+    }
+
+}
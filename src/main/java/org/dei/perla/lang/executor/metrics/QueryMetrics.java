@@ -0,0 +1,127 @@
+package org.dei.perla.lang.executor.metrics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution metrics of a single query: number of evaluations, rows emitted,
+ * errors and latency of the result delivery. Counters are updated without
+ * locking, and can therefore be recorded on the hot path of the query.
+ *
+ * <p> Metrics can be published on the platform {@link MBeanServer} through
+ * the {@code register()} method, under the name {@code
+ * org.dei.perla.lang:type=Query,id=<n>}.
+ *
+ * @author Guido Rota 15/02/16.
+ */
+public final class QueryMetrics implements QueryMetricsMBean {
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final int id = nextId.getAndIncrement();
+    private final String query;
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private ObjectName name;
+
+    /**
+     * Creates a new {@code QueryMetrics} object
+     *
+     * @param query textual description of the query
+     */
+    public QueryMetrics(String query) {
+        this.query = query;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Records a query evaluation
+     *
+     * @param rowCount number of rows emitted by the evaluation
+     * @param nanos delivery latency in nanoseconds
+     */
+    public void record(int rowCount, long nanos) {
+        evaluations.increment();
+        rows.add(rowCount);
+        latency.record(nanos);
+    }
+
+    /**
+     * Records an error occurred while evaluating or delivering the query
+     * results
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getRowsEmitted() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getMaxNanos());
+    }
+
+    @Override
+    public long getLatency50thMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getPercentileNanos(50));
+    }
+
+    @Override
+    public long getLatency99thMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getPercentileNanos(99));
+    }
+
+    /**
+     * Publishes the metrics on the platform {@link MBeanServer}
+     */
+    public synchronized void register() {
+        if (name == null) {
+            name = JmxExporter.register(this, "type=Query,id=" + id);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform {@link MBeanServer}
+     */
+    public synchronized void unregister() {
+        JmxExporter.unregister(name);
+        name = null;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.dei.perla.lang.executor.metrics;
+
+/**
+ * JMX management interface of the {@link QueryMetrics}
+ *
+ * @author Guido Rota 15/02/16.
+ */
+public interface QueryMetricsMBean {
+
+    public String getQuery();
+
+    public long getEvaluations();
+
+    public long getRowsEmitted();
+
+    public long getErrors();
+
+    public double getMeanLatencyMicros();
+
+    public long getMaxLatencyMicros();
+
+    public long getLatency50thMicros();
+
+    public long getLatency99thMicros();
+
+}
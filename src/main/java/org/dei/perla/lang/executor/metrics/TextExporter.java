@@ -0,0 +1,186 @@
+package org.dei.perla.lang.executor.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.ToLongFunction;
+
+/**
+ * Pull-based exporter of the {@link ExecutorMetrics} collected by a {@link
+ * MetricsInstrumentation}. Metrics are written in the Prometheus text
+ * exposition format, and can be served over HTTP through the {@code
+ * serve()} method.
+ *
+ * @author Guido Rota 18/02/16.
+ */
+public final class TextExporter {
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    private final MetricsInstrumentation instrumentation;
+
+    public TextExporter(MetricsInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Returns the current metrics in textual form
+     *
+     * @return textual metrics
+     */
+    public String scrape() {
+        StringBuilder bld = new StringBuilder();
+        try {
+            write(bld);
+        } catch (IOException e) {
+            // StringBuilders never throw IOExceptions
+            throw new RuntimeException(e);
+        }
+        return bld.toString();
+    }
+
+    /**
+     * Writes the current metrics in textual form
+     *
+     * @param out output
+     * @throws IOException if the output cannot be written
+     */
+    public void write(Appendable out) throws IOException {
+        Collection<ExecutorMetrics> ms = instrumentation.snapshot();
+        counter(out, ms, "perla_samples_received_total",
+                "Samples received from the FPC",
+                ExecutorMetrics::getSamplesReceived);
+        counter(out, ms, "perla_samples_rejected_total",
+                "Samples discarded by the WHERE clause",
+                ExecutorMetrics::getSamplesRejected);
+        counter(out, ms, "perla_selections_total",
+                "Selections performed", ExecutorMetrics::getSelections);
+        counter(out, ms, "perla_rows_emitted_total",
+                "Rows emitted by the selections",
+                ExecutorMetrics::getRowsEmitted);
+        gauge(out, ms, "perla_buffer_occupancy",
+                "Samples in the query buffer",
+                ExecutorMetrics::getBufferOccupancy);
+        summary(out, ms, "perla_select_latency_seconds",
+                "Duration of the selections", LatencyKind.SELECT);
+        summary(out, ms, "perla_view_lifetime_seconds",
+                "Lifetime of the buffer views", LatencyKind.VIEW);
+        summary(out, ms, "perla_tick_lag_seconds",
+                "Delay of the EVERY triggers", LatencyKind.TICK);
+    }
+
+    private static void counter(Appendable out, Collection<ExecutorMetrics> ms,
+            String name, String help, ToLongFunction<ExecutorMetrics> f)
+            throws IOException {
+        header(out, name, help, "counter");
+        for (ExecutorMetrics m : ms) {
+            sample(out, name, m, null, Long.toString(f.applyAsLong(m)));
+        }
+    }
+
+    private static void gauge(Appendable out, Collection<ExecutorMetrics> ms,
+            String name, String help, ToLongFunction<ExecutorMetrics> f)
+            throws IOException {
+        header(out, name, help, "gauge");
+        for (ExecutorMetrics m : ms) {
+            sample(out, name, m, null, Long.toString(f.applyAsLong(m)));
+        }
+    }
+
+    private static void summary(Appendable out, Collection<ExecutorMetrics> ms,
+            String name, String help, LatencyKind kind) throws IOException {
+        header(out, name, help, "summary");
+        for (ExecutorMetrics m : ms) {
+            LatencyHistogram h = kind.get(m);
+            for (double q : QUANTILES) {
+                long v = h.getPercentileNanos(q * 100);
+                sample(out, name, m, Double.toString(q), seconds(v));
+            }
+            double sum = h.getMeanNanos() * h.getCount() / 1e9;
+            sample(out, name + "_sum", m, null, Double.toString(sum));
+            sample(out, name + "_count", m, null,
+                    Long.toString(h.getCount()));
+        }
+    }
+
+    private static void header(Appendable out, String name, String help,
+            String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type)
+                .append('\n');
+    }
+
+    private static void sample(Appendable out, String name,
+            ExecutorMetrics m, String quantile, String value)
+            throws IOException {
+        out.append(name).append("{id=\"").append(Long.toString(m.getId()))
+                .append("\",fpc=\"").append(Integer.toString(m.getFpcId()))
+                .append("\",query=\"").append(escape(m.getQuery()))
+                .append('"');
+        if (quantile != null) {
+            out.append(",quantile=\"").append(quantile).append('"');
+        }
+        out.append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+
+    /**
+     * Starts an HTTP server that serves the metrics on the {@code /metrics}
+     * path. The server runs until its {@code stop()} method is invoked.
+     *
+     * @param address address to listen on
+     * @return HTTP server
+     * @throws IOException if the server cannot be started
+     */
+    public HttpServer serve(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Latency histograms of the {@link ExecutorMetrics}
+     */
+    private enum LatencyKind {
+
+        SELECT, VIEW, TICK;
+
+        private LatencyHistogram get(ExecutorMetrics m) {
+            switch (this) {
+                case SELECT:
+                    return m.getSelectLatency();
+                case VIEW:
+                    return m.getViewLifetime();
+                case TICK:
+                    return m.getTickLag();
+                default:
+                    throw new RuntimeException("Unknown latency " + this);
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.dei.perla.lang.executor.statement;
 
+import java.util.List;
+
 /**
  * @author Guido Rota 10/04/15.
  */
@@ -8,6 +10,32 @@ public interface QueryHandler<E, T> {
     public void error(E source, Throwable cause);
 
     public void data(E source, T value);
-    
+
+    /**
+     * Notifies all the results produced by a single query evaluation. The
+     * default implementation invokes the {@code data} method once per
+     * result; handlers that can amortize their per-call costs (e.g.,
+     * database or network sinks) should override this method.
+     *
+     * @param source query that produced the results
+     * @param values results, in production order
+     */
+    public default void batch(E source, List<T> values) {
+        for (T v : values) {
+            data(source, v);
+        }
+    }
+
+    /**
+     * Signals whether the handler is ready to receive new results. Queries
+     * skip the evaluations triggered while their handler has no demand,
+     * thus allowing slow consumers to throttle the query execution. The
+     * default implementation always returns true.
+     *
+     * @return true if new results can be delivered, false otherwise
+     */
+    public default boolean hasDemand() {
+        return true;
+    }
 
 }
@@ -1,14 +1,12 @@
 package org.dei.perla.lang.executor.statement;
 
 import org.dei.perla.core.fpc.*;
-import org.dei.perla.core.utils.AsyncUtils;
 import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.executor.QueryScheduler;
+import org.dei.perla.lang.executor.TimerWheel;
 import org.dei.perla.lang.query.statement.Refresh;
 
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -24,26 +22,30 @@ public final class Refresher {
     private static final int RUNNING = 1;
     private static final int ERROR = 2;
 
-    private static final ScheduledExecutorService scheduler =
-            Executors.newScheduledThreadPool(12);
-
     private final Refresh refresh;
     private final QueryHandler<? super Refresh, Void> handler;
     private final Fpc fpc;
+    private final QueryScheduler scheduler;
 
     private int status = STOPPED;
 
     private final TaskHandler evtHand = new EventHandler();
 
     private Task evtTask;
-    private ScheduledFuture<?> timer;
+    private TimerWheel.Timeout timer;
 
     public Refresher(Refresh refresh,
             QueryHandler<? super Refresh, Void> handler, Fpc fpc) {
+        this(refresh, handler, fpc, QueryScheduler.getDefault());
+    }
 
+    public Refresher(Refresh refresh,
+            QueryHandler<? super Refresh, Void> handler, Fpc fpc,
+            QueryScheduler scheduler) {
         this.refresh = refresh;
         this.handler = handler;
         this.fpc = fpc;
+        this.scheduler = scheduler;
     }
 
     /**
@@ -100,7 +102,7 @@ public final class Refresher {
      * @param msg error message
      */
     private void notifyErrorAsync(String msg) {
-        AsyncUtils.runInNewThread(() -> {
+        scheduler.runAsync(() -> {
             synchronized (Refresher.this) {
                 Exception e = new QueryException(msg);
                 handler.error(refresh, e);
@@ -142,7 +144,7 @@ public final class Refresher {
             evtTask = null;
         }
         if (timer != null) {
-            timer.cancel(false);
+            timer.cancel();
             timer = null;
         }
     }
@@ -1,8 +1,8 @@
 package org.dei.perla.lang.executor.statement;
 
 import org.dei.perla.core.fpc.*;
-import org.dei.perla.core.utils.AsyncUtils;
 import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.executor.QueryScheduler;
 import org.dei.perla.lang.query.statement.Sampling;
 import org.dei.perla.lang.query.statement.SamplingEvent;
 
@@ -26,6 +26,7 @@ public final class SamplerEvent implements Sampler {
     private final Fpc fpc;
     private final List<Attribute> attributes;
     private final QueryHandler<? super Sampling, Object[]> handler;
+    private final QueryScheduler scheduler;
 
     private final TaskHandler sampHandler = new SamplingHandler();
     private final TaskHandler evtHandler = new EventHandler();
@@ -38,10 +39,19 @@ public final class SamplerEvent implements Sampler {
             List<Attribute> attributes,
             QueryHandler<? super Sampling, Object[]> handler)
             throws IllegalArgumentException {
+        this(sampling, fpc, attributes, handler, QueryScheduler.getDefault());
+    }
+
+    protected SamplerEvent(SamplingEvent sampling, Fpc fpc,
+            List<Attribute> attributes,
+            QueryHandler<? super Sampling, Object[]> handler,
+            QueryScheduler scheduler)
+            throws IllegalArgumentException {
         this.sampling = sampling;
         this.fpc = fpc;
         this.attributes = attributes;
         this.handler = handler;
+        this.scheduler = scheduler;
     }
 
     @Override
@@ -67,7 +77,7 @@ public final class SamplerEvent implements Sampler {
      * @param msg error message
      */
     private void notifyErrorAsync(String msg) {
-        AsyncUtils.runInNewThread(() -> {
+        scheduler.runAsync(() -> {
             synchronized (SamplerEvent.this) {
                 Exception e = new QueryException(msg);
                 handler.error(sampling, e);
@@ -1,8 +1,8 @@
 package org.dei.perla.lang.executor.statement;
 
 import org.dei.perla.core.fpc.*;
-import org.dei.perla.core.utils.AsyncUtils;
 import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.executor.QueryScheduler;
 import org.dei.perla.lang.query.statement.IfEvery;
 import org.dei.perla.lang.query.statement.Refresh;
 import org.dei.perla.lang.query.statement.Sampling;
@@ -33,6 +33,7 @@ public final class SamplerIfEvery implements Sampler {
     private final List<Attribute> selAtts;
     private final QueryHandler<? super Sampling, Object[]> handler;
     private final List<IfEvery> ifevery;
+    private final QueryScheduler scheduler;
 
     private final TaskHandler sampHandler = new SamplingHandler();
     private final TaskHandler ifeHandler = new IfEveryHandler();
@@ -57,15 +58,26 @@ public final class SamplerIfEvery implements Sampler {
             List<Attribute> selAtts,
             QueryHandler<? super Sampling, Object[]> handler)
             throws IllegalArgumentException {
+        this(sampling, fpc, selAtts, handler, QueryScheduler.getDefault());
+    }
+
+    protected SamplerIfEvery(
+            SamplingIfEvery sampling,
+            Fpc fpc,
+            List<Attribute> selAtts,
+            QueryHandler<? super Sampling, Object[]> handler,
+            QueryScheduler scheduler)
+            throws IllegalArgumentException {
         this.sampling = sampling;
         this.fpc = fpc;
         this.selAtts = selAtts;
         this.handler = handler;
         this.ifevery = sampling.getIfEvery();
+        this.scheduler = scheduler;
 
         Refresh r = sampling.getRefresh();
         if (r != Refresh.NEVER) {
-            refresher = new Refresher(r, refHandler, fpc);
+            refresher = new Refresher(r, refHandler, fpc, scheduler);
         } else {
             refresher = null;
         }
@@ -107,7 +119,7 @@ public final class SamplerIfEvery implements Sampler {
      * @param msg error message
      */
     private void notifyErrorAsync(String msg) {
-        AsyncUtils.runInNewThread(() -> {
+        scheduler.runAsync(() -> {
             synchronized (SamplerIfEvery.this) {
                 Exception e = new QueryException(msg);
                 handler.error(sampling, e);
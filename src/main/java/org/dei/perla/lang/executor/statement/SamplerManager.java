@@ -1,8 +1,8 @@
 package org.dei.perla.lang.executor.statement;
 
 import org.dei.perla.core.fpc.*;
-import org.dei.perla.core.utils.AsyncUtils;
 import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.executor.QueryScheduler;
 import org.dei.perla.lang.query.expression.Expression;
 import org.dei.perla.lang.query.expression.LogicValue;
 import org.dei.perla.lang.query.statement.*;
@@ -29,6 +29,7 @@ public final class SamplerManager {
     private final Sampling sampling;
     private final ExecutionConditions cond;
     private final QueryHandler<? super Sampling, Object[]> handler;
+    private final QueryScheduler scheduler;
 
     private Refresher executeIfRefresher;
     private final ExecIfRefreshHandler execIfRefHand = new ExecIfRefreshHandler();
@@ -49,10 +50,28 @@ public final class SamplerManager {
             SelectionStatement query,
             Fpc fpc,
             QueryHandler<? super Sampling, Object[]> handler) {
+        this(query, fpc, handler, QueryScheduler.getDefault());
+    }
+
+    /**
+     * Creates a new {@code SamplerManager} class
+     *
+     * @param query query to execute
+     * @param fpc {@link Fpc} used for sampling the required data
+     * @param handler result handler
+     * @param scheduler {@link QueryScheduler} used to run asynchronous
+     *                  activities
+     */
+    public SamplerManager(
+            SelectionStatement query,
+            Fpc fpc,
+            QueryHandler<? super Sampling, Object[]> handler,
+            QueryScheduler scheduler) {
         this.sampling = query.getSampling();
         this.cond = query.getExecutionConditions();
         this.fpc = fpc;
         this.handler = handler;
+        this.scheduler = scheduler;
         sampler = createSampler(sampling, query.getAttributes(), handler);
     }
 
@@ -61,11 +80,11 @@ public final class SamplerManager {
             throws IllegalArgumentException {
         if (samp instanceof SamplingIfEvery) {
             SamplingIfEvery sife = (SamplingIfEvery) samp;
-            return new SamplerIfEvery(sife, fpc, atts, handler);
+            return new SamplerIfEvery(sife, fpc, atts, handler, scheduler);
 
         } else if (samp instanceof SamplingEvent) {
             SamplingEvent sev = (SamplingEvent) samp;
-            return new SamplerEvent(sev, fpc, atts, handler);
+            return new SamplerEvent(sev, fpc, atts, handler, scheduler);
 
         } else {
             throw new IllegalArgumentException("Cannot start sampling of type" +
@@ -121,7 +140,7 @@ public final class SamplerManager {
         atts.forEach(e -> bld.append(e).append(" "));
         bld.append("from FPC ").append(fpc.getId());
 
-        AsyncUtils.runInNewThread(() -> {
+        scheduler.runAsync(() -> {
             synchronized (SamplerManager.this) {
                 Exception e = new QueryException(bld.toString());
                 handler.error(sampling, e);
@@ -253,7 +272,8 @@ public final class SamplerManager {
             }
 
             executeIfRefresher =
-                    new Refresher(ec.getRefresh(), execIfRefHand, fpc);
+                    new Refresher(ec.getRefresh(), execIfRefHand, fpc,
+                            scheduler);
             executeIfRefresher.start();
         }
 
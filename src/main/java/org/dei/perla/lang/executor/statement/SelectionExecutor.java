@@ -2,16 +2,20 @@ package org.dei.perla.lang.executor.statement;
 
 import org.dei.perla.core.fpc.Attribute;
 import org.dei.perla.core.fpc.Fpc;
-import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.QueryScheduler;
+import org.dei.perla.lang.executor.TimerWheel;
 import org.dei.perla.lang.executor.buffer.Buffer;
 import org.dei.perla.lang.executor.buffer.BufferView;
-import org.dei.perla.lang.executor.buffer.UnreleasedViewException;
+import org.dei.perla.lang.executor.buffer.RingBuffer;
+import org.dei.perla.lang.executor.metrics.ExecutionProbe;
 import org.dei.perla.lang.query.expression.Expression;
 import org.dei.perla.lang.query.expression.LogicValue;
+import org.dei.perla.lang.query.expression.SampleBatch;
 import org.dei.perla.lang.query.statement.Sampling;
 import org.dei.perla.lang.query.statement.SelectionStatement;
 import org.dei.perla.lang.query.statement.WindowSize;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.Lock;
@@ -28,11 +32,6 @@ public final class SelectionExecutor {
     private static final int RUNNING = 1;
     private static final int STOPPED = 2;
 
-    private static final ScheduledExecutorService timer =
-            Executors.newScheduledThreadPool(5);
-    private static final ExecutorService exec =
-            Executors.newCachedThreadPool();
-
     private final Fpc fpc;
     private final SelectionStatement query;
     private final List<Attribute> selAtts;
@@ -40,6 +39,9 @@ public final class SelectionExecutor {
     private final WindowSize every;
     private final WindowSize terminate;
     private final QueryHandler<? super SelectionStatement, Object[]> handler;
+    private final QueryScheduler scheduler;
+    private final QueryScheduler.Lane lane;
+    private final ExecutionProbe probe;
 
     private final Lock lk = new ReentrantLock();
     private int status = READY;
@@ -48,12 +50,31 @@ public final class SelectionExecutor {
     private final SamplerManager sampMgr;
     private int everyCount;
     private int terminateCount;
-    private ScheduledFuture<?> everyThread;
+    private TimerWheel.Timeout everyThread;
+    private long everyPeriod;
+    private long nextEvery;
 
     public SelectionExecutor(
             SelectionStatement query,
             Fpc fpc,
             QueryHandler<? super SelectionStatement, Object[]> handler) {
+        this(query, fpc, handler, QueryScheduler.getDefault());
+    }
+
+    public SelectionExecutor(
+            SelectionStatement query,
+            Fpc fpc,
+            QueryHandler<? super SelectionStatement, Object[]> handler,
+            QueryScheduler scheduler) {
+        this(query, fpc, handler, scheduler, ExecutionProbe.NOOP);
+    }
+
+    public SelectionExecutor(
+            SelectionStatement query,
+            Fpc fpc,
+            QueryHandler<? super SelectionStatement, Object[]> handler,
+            QueryScheduler scheduler,
+            ExecutionProbe probe) {
         this.fpc = fpc;
         this.query = query;
         selAtts = query.getAttributes();
@@ -61,11 +82,15 @@ public final class SelectionExecutor {
         every = query.getEvery();
         terminate = query.getTerminate();
         this.handler = handler;
-        buffer = new ArrayBuffer(selAtts);
+        this.scheduler = scheduler;
+        lane = scheduler.newLane();
+        this.probe = probe;
+        buffer = new RingBuffer(selAtts);
         sampMgr = new SamplerManager(
                 query,
                 fpc,
-                new SamplerHandler()
+                new SamplerHandler(),
+                scheduler
         );
     }
 
@@ -95,7 +120,9 @@ public final class SelectionExecutor {
         switch (every.getType()) {
             case TIME:
                 long ms = every.getDuration().toMillis();
-                everyThread = timer.scheduleAtFixedRate(
+                everyPeriod = TimeUnit.MILLISECONDS.toNanos(ms);
+                nextEvery = System.nanoTime() + everyPeriod;
+                everyThread = scheduler.scheduleAtFixedRate(
                         new EveryRunner(),
                         ms,
                         ms,
@@ -120,11 +147,12 @@ public final class SelectionExecutor {
                         "SelectionExecutor has not been started");
             }
             if (everyThread != null) {
-                everyThread.cancel(true);
+                everyThread.cancel();
                 everyThread = null;
             }
             sampMgr.stop();
             status = STOPPED;
+            probe.close();
         } finally {
             lk.unlock();
         }
@@ -140,6 +168,28 @@ public final class SelectionExecutor {
     }
 
 
+    /**
+     * Submits a new selection on the {@link BufferView} passed as
+     * parameter. The selection is skipped if this query already has too
+     * many pending selections, in order to avoid slowing down the other
+     * queries running on the same {@link QueryScheduler}.
+     *
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked with proper synchronization.
+     *
+     * @param view buffer view to select from
+     */
+    private void submit(BufferView view) {
+        long created = System.nanoTime();
+        probe.viewCreated(view.size());
+        try {
+            lane.execute(new SelectionRunner(view, created));
+        } catch (RejectedExecutionException e) {
+            view.release();
+            probe.viewReleased(System.nanoTime() - created);
+        }
+    }
+
     /**
      * Every runner
      */
@@ -151,16 +201,33 @@ public final class SelectionExecutor {
                 if (status != RUNNING) {
                     return;
                 }
-                BufferView view = buffer.createView();
-                exec.execute(new SelectionRunner(view));
-            } catch (UnreleasedViewException e) {
-                handler.error(query, e);
-                stop();
+                tick();
+                if (!handler.hasDemand()) {
+                    return;
+                }
+                submit(buffer.createView());
             } finally {
                 lk.unlock();
             }
         }
 
+        /*
+         * Records how late the trigger fired with respect to its nominal
+         * schedule. The schedule is realigned when the trigger falls behind
+         * by more than one period, so that a single stall is not reported
+         * over and over on every subsequent tick.
+         */
+        private void tick() {
+            long now = System.nanoTime();
+            long lag = now - nextEvery;
+            probe.tick(lag);
+            if (lag > everyPeriod) {
+                nextEvery = now + everyPeriod;
+            } else {
+                nextEvery += everyPeriod;
+            }
+        }
+
     }
 
 
@@ -170,21 +237,29 @@ public final class SelectionExecutor {
     private final class SelectionRunner implements Runnable {
 
         private final BufferView view;
+        private final long created;
 
-        public SelectionRunner(BufferView view) {
+        public SelectionRunner(BufferView view, long created) {
             this.view = view;
+            this.created = created;
         }
 
         public void run() {
+            long start = System.nanoTime();
             List<Object[]> res = query.select(view);
+            long end = System.nanoTime();
             view.release();
+            probe.viewReleased(end - created);
+            probe.selected(res.size(), end - start);
             lk.lock();
             try {
                 if (status != RUNNING) {
                     return;
                 }
                 checkTermination();
-                res.forEach((r) -> handler.data(query, r));
+                if (!res.isEmpty()) {
+                    handler.batch(query, res);
+                }
             } finally {
                 lk.unlock();
             }
@@ -218,16 +293,46 @@ public final class SelectionExecutor {
 
         @Override
         public void data(Sampling source, Object[] sample) {
+            probe.sampleReceived();
             LogicValue valid = (LogicValue) where.run(sample, null);
             if (!valid.toBoolean()) {
+                probe.sampleRejected();
+                return;
+            }
+            accept(sample);
+        }
+
+        /**
+         * Bursts of samples are filtered in a single pass of the WHERE
+         * clause, which avoids evaluating the expression tree one sample at
+         * a time.
+         */
+        @Override
+        public void batch(Sampling source, List<Object[]> samples) {
+            BitSet sel = new BitSet(samples.size());
+            sel.set(0, samples.size());
+            where.filter(SampleBatch.of(samples), sel, null);
+            for (int i = 0; i < samples.size(); i++) {
+                probe.sampleReceived();
+                if (!sel.get(i)) {
+                    probe.sampleRejected();
+                    continue;
+                }
+                accept(samples.get(i));
+            }
+        }
+
+        private void accept(Object[] sample) {
+            // Samples are added without holding the executor lock, the
+            // RingBuffer never blocks ingestion while a view is being read
+            buffer.add(sample);
+            if (every.getType() != WindowSize.WindowType.SAMPLE) {
                 return;
             }
 
             lk.lock();
             try {
-            //	System.out.println("Sam"+sample[0]);
-                buffer.add(sample);
-                if (every.getType() == WindowSize.WindowType.SAMPLE) {
+                if (status == RUNNING) {
                     triggerCountSampling();
                 }
             } finally {
@@ -241,14 +346,9 @@ public final class SelectionExecutor {
                 return;
             }
 
-            try {
-                everyCount = every.getSamples();
-                
-                BufferView view = buffer.createView();
-                exec.execute(new SelectionRunner(view));
-            } catch(UnreleasedViewException e) {
-                handler.error(query, e);
-                stop();
+            everyCount = every.getSamples();
+            if (handler.hasDemand()) {
+                submit(buffer.createView());
             }
         }
 
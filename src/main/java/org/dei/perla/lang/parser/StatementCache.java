@@ -0,0 +1,642 @@
+package org.dei.perla.lang.parser;
+
+import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.parser.ast.StatementAST;
+import org.dei.perla.lang.query.expression.Constant;
+import org.dei.perla.lang.query.expression.ConstantBinder;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of compiled {@link Statement}s.
+ *
+ * <p>
+ * Queries are looked up by their normalized text, obtained from the token
+ * stream produced by the PerLa lexer. Whitespace, comments and keyword case
+ * are therefore irrelevant, and numeric constants are compared by value
+ * (e.g. {@code 0x10} and {@code 16} are the same literal).
+ *
+ * <p>
+ * Selection statements that only differ in the value of their literals
+ * share a single compiled plan. The first time two queries with the same
+ * parameterised form (i.e., the normalized text with all literals replaced
+ * by a placeholder of the same kind: integer, float or string) but
+ * different literals are found, the cache determines which literals end up
+ * as {@link Constant}s in the compiled expressions of the statement. Such
+ * literals become parameters of the plan, and subsequent queries are served
+ * by binding their literal values to the shared plan with a {@link
+ * ConstantBinder}. Literals employed elsewhere (sampling periods, window
+ * sizes, aggregates, LIKE patterns, ...) or folded at compile time are not
+ * parameterised, and their values must match those of the shared plan.
+ *
+ * <p>
+ * This class is thread safe. Queries that cannot be parsed are never
+ * cached.
+ *
+ * @author Guido Rota 11/02/16.
+ */
+public final class StatementCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // Sentinel literal values employed to locate the parameters of a plan
+    private static final int SENTINEL_BASE = 1_000_003;
+    private static final String SENTINEL_STRING = "__perla_param_";
+
+    private final int capacity;
+    private final Lock lk = new ReentrantLock();
+    private final Map<Key, Statement> statements;
+    private final Map<String, Template> templates;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new {@code StatementCache} with default capacity
+     */
+    public StatementCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new {@code StatementCache}
+     *
+     * @param capacity maximum number of statements and of parameterised
+     *                 plans retained by the cache
+     */
+    public StatementCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        statements = new Lru<>(capacity);
+        templates = new Lru<>(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups served without compiling the query,
+     * including those served by a shared parameterised plan
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups served by binding the literals of the
+     * query to a shared parameterised plan
+     *
+     * @return number of shared plan hits
+     */
+    public long getSharedHits() {
+        return shared.get();
+    }
+
+    /**
+     * Returns the number of lookups that required the query to be compiled
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of statements currently cached
+     *
+     * @return number of cached statements
+     */
+    public int size() {
+        lk.lock();
+        try {
+            return statements.size();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Removes all the cached statements and plans. Hit and miss counters
+     * are not reset.
+     */
+    public void clear() {
+        lk.lock();
+        try {
+            statements.clear();
+            templates.clear();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Returns the compiled {@link Statement} corresponding to the query
+     * passed as parameter, compiling it if necessary.
+     *
+     * @param query query text
+     * @return compiled statement
+     * @throws QueryException if the query cannot be parsed or compiled
+     */
+    public Statement get(String query) throws QueryException {
+        Tokens tk = Tokens.lex(query);
+        if (tk == null) {
+            // Lexical errors are reported by the parser
+            misses.incrementAndGet();
+            return parse(query);
+        }
+
+        Key key = new Key(tk.template, tk.literals);
+        Template t;
+        lk.lock();
+        try {
+            Statement s = statements.get(key);
+            if (s != null) {
+                hits.incrementAndGet();
+                return s;
+            }
+            t = templates.get(tk.template);
+        } finally {
+            lk.unlock();
+        }
+
+        Statement s = t == null ? null : t.bind(tk.literals);
+        if (s != null) {
+            hits.incrementAndGet();
+            shared.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            s = parse(query);
+            if (t == null) {
+                t = new Template(tk.literals);
+            } else if (s instanceof SelectionStatement) {
+                t.prepare(tk);
+            }
+        }
+
+        lk.lock();
+        try {
+            statements.put(key, s);
+            templates.putIfAbsent(tk.template, t);
+        } finally {
+            lk.unlock();
+        }
+        return s;
+    }
+
+    /**
+     * Parses and compiles a query, bypassing the cache
+     *
+     * @param query query text
+     * @return compiled statement
+     * @throws QueryException if the query cannot be parsed or compiled
+     */
+    public static Statement parse(String query) throws QueryException {
+        ParserContext ctx = new ParserContext();
+        ParserAST p = new ParserAST(new StringReader(query));
+        StatementAST ast;
+        try {
+            ast = p.Statement(ctx);
+        } catch (ParseException e) {
+            throw new QueryException("Cannot parse query", e);
+        }
+        if (ctx.hasErrors()) {
+            throw new QueryException(ctx.getErrorDescription());
+        }
+
+        Statement s = ast.compile(ctx);
+        if (ctx.hasErrors()) {
+            throw new QueryException(ctx.getErrorDescription());
+        }
+        return s;
+    }
+
+
+    /**
+     * Access-ordered {@link LinkedHashMap} that evicts the least recently
+     * used entry when full
+     */
+    private static final class Lru<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 3092347802354837051L;
+
+        private final int capacity;
+
+        private Lru(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+
+    }
+
+
+    /**
+     * Normalized query text, split in parameterised form and literal values
+     */
+    private static final class Key {
+
+        private final String template;
+        private final List<Object> literals;
+
+        private Key(String template, List<Object> literals) {
+            this.template = template;
+            this.literals = literals;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return template.equals(k.template) && literals.equals(k.literals);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * template.hashCode() + literals.hashCode();
+        }
+
+    }
+
+
+    /**
+     * Token stream of a query
+     */
+    private static final class Tokens {
+
+        private final List<Token> tokens;
+        // Index of the literal tokens in the token list
+        private final int[] literalIdx;
+        private final List<Object> literals;
+        private final String template;
+
+        private Tokens(List<Token> tokens, int[] literalIdx,
+                List<Object> literals, String template) {
+            this.tokens = tokens;
+            this.literalIdx = literalIdx;
+            this.literals = literals;
+            this.template = template;
+        }
+
+        /*
+         * Splits the query in tokens. Returns null if the query contains
+         * lexical errors.
+         */
+        private static Tokens lex(String query) {
+            ParserASTTokenManager tm = new ParserASTTokenManager(
+                    new SimpleCharStream(new StringReader(query)));
+            List<Token> tokens = new ArrayList<>();
+            List<Integer> idx = new ArrayList<>();
+            List<Object> literals = new ArrayList<>();
+            StringBuilder tpl = new StringBuilder();
+            try {
+                for (Token t = tm.getNextToken(); t.kind !=
+                        ParserASTConstants.EOF; t = tm.getNextToken()) {
+                    Object v = literal(t);
+                    if (v != null) {
+                        idx.add(tokens.size());
+                        literals.add(v);
+                        // The literal kind is part of the template, as
+                        // plans can only be shared by literals of the same
+                        // type
+                        tpl.append('?').append(kind(v)).append(' ');
+                    } else if (t.kind == ParserASTConstants.IDENTIFIER ||
+                            t.kind == ParserASTConstants.METHOD) {
+                        tpl.append(t.kind).append(':')
+                                .append(t.image).append(' ');
+                    } else {
+                        // Keywords and operators are identified by kind,
+                        // which makes the template case insensitive
+                        tpl.append(t.kind).append(' ');
+                    }
+                    tokens.add(t);
+                }
+            } catch (TokenMgrError | NumberFormatException e) {
+                return null;
+            }
+
+            int[] li = new int[idx.size()];
+            for (int i = 0; i < li.length; i++) {
+                li[i] = idx.get(i);
+            }
+            return new Tokens(tokens, li, literals, tpl.toString());
+        }
+
+        /*
+         * Returns the value of a literal token, null if the token is not a
+         * literal
+         */
+        private static Object literal(Token t) {
+            switch (t.kind) {
+                case ParserASTConstants.CONSTANT_INTEGER_10:
+                    return Integer.parseInt(t.image);
+                case ParserASTConstants.CONSTANT_INTEGER_16:
+                    return Integer.parseInt(t.image.substring(2), 16);
+                case ParserASTConstants.CONSTANT_FLOAT:
+                    return Float.parseFloat(t.image);
+                case ParserASTConstants.CONSTANT_SINGLE_QUOTED_STRING_VALUE:
+                case ParserASTConstants.CONSTANT_DOUBLE_QUOTED_STRING_VALUE:
+                    return t.image;
+                default:
+                    return null;
+            }
+        }
+
+        /*
+         * Returns the placeholder suffix identifying the kind of a literal
+         */
+        private static char kind(Object literal) {
+            if (literal instanceof Integer) {
+                return 'i';
+            } else if (literal instanceof Float) {
+                return 'f';
+            } else {
+                return 's';
+            }
+        }
+
+        /*
+         * Rebuilds the query text, replacing the selected literals with
+         * sentinel values. Returns null if the sentinel values clash with
+         * the literals of the query.
+         */
+        private String sentinelQuery(boolean[] replace,
+                Object[] sentinels) {
+            String[] images = new String[tokens.size()];
+            for (int i = 0; i < literalIdx.length; i++) {
+                if (!replace[i]) {
+                    continue;
+                }
+                Token t = tokens.get(literalIdx[i]);
+                Object s = sentinel(t, i);
+                if (literals.contains(s)) {
+                    return null;
+                }
+                sentinels[i] = s;
+                if (t.kind == ParserASTConstants.CONSTANT_INTEGER_16) {
+                    images[literalIdx[i]] =
+                            "0x" + Integer.toHexString((Integer) s);
+                } else {
+                    images[literalIdx[i]] = s.toString();
+                }
+            }
+
+            StringBuilder bld = new StringBuilder();
+            int prev = -1;
+            for (int i = 0; i < tokens.size(); i++) {
+                Token t = tokens.get(i);
+                // No whitespace can be added inside string literals
+                if (i > 0 && !isStringStart(prev) && !isStringEnd(t.kind)) {
+                    bld.append(' ');
+                }
+                bld.append(images[i] != null ? images[i] : t.image);
+                prev = t.kind;
+            }
+            return bld.toString();
+        }
+
+        private static Object sentinel(Token t, int i) {
+            switch (t.kind) {
+                case ParserASTConstants.CONSTANT_INTEGER_10:
+                case ParserASTConstants.CONSTANT_INTEGER_16:
+                    return SENTINEL_BASE + i;
+                case ParserASTConstants.CONSTANT_FLOAT:
+                    return SENTINEL_BASE + i + 0.5f;
+                default:
+                    return SENTINEL_STRING + i;
+            }
+        }
+
+        private static boolean isStringStart(int kind) {
+            return kind ==
+                    ParserASTConstants.CONSTANT_SINGLE_QUOTED_STRING_START ||
+                    kind ==
+                    ParserASTConstants.CONSTANT_DOUBLE_QUOTED_STRING_START;
+        }
+
+        private static boolean isStringEnd(int kind) {
+            return kind ==
+                    ParserASTConstants.CONSTANT_SINGLE_QUOTED_STRING_END ||
+                    kind ==
+                    ParserASTConstants.CONSTANT_DOUBLE_QUOTED_STRING_END;
+        }
+
+    }
+
+
+    /**
+     * Parameterised form of a query, which prepares the plan shared by all
+     * the selection statements with the same parameterised form.
+     */
+    private static final class Template {
+
+        // Literals of the query that created the template
+        private final List<Object> origin;
+
+        // Set by the only thread allowed to prepare the shared plan
+        private final AtomicBoolean prepared = new AtomicBoolean(false);
+        // Shared plan, null until prepared
+        private volatile Plan plan;
+
+        private Template(List<Object> origin) {
+            this.origin = origin;
+        }
+
+        /*
+         * Returns a statement obtained by binding the literals passed as
+         * parameter to the shared plan, or null if no plan is available or
+         * if the literals are not compatible with the plan.
+         */
+        private Statement bind(List<Object> literals) {
+            Plan p = plan;
+            if (p == null) {
+                return null;
+            }
+            return p.bind(literals);
+        }
+
+        /*
+         * Creates the shared plan. The plan is only created when a second
+         * query with different literals is found, since most of the queries
+         * submitted with the same parameterised form are identical.
+         *
+         * The plan is prepared once, by the first thread that gets here. No
+         * lock is held while the sentinel queries are compiled.
+         */
+        private void prepare(Tokens tk) {
+            if (tk.literals.equals(origin) ||
+                    !prepared.compareAndSet(false, true)) {
+                return;
+            }
+            int n = tk.literals.size();
+            if (n == 0) {
+                return;
+            }
+
+            // Find which literals appear as constants, by replacing all
+            // of them with sentinel values
+            boolean[] all = new boolean[n];
+            Arrays.fill(all, true);
+            Located found = locate(tk, all);
+            if (found == null) {
+                return;
+            }
+
+            // Compile the plan, replacing only the parameters
+            boolean[] params = new boolean[n];
+            boolean any = false;
+            for (int i = 0; i < n; i++) {
+                params[i] = found.positions[i] != -1;
+                any |= params[i];
+            }
+            if (!any) {
+                return;
+            }
+            Located l = locate(tk, params);
+            if (l == null) {
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (params[i] && l.positions[i] == -1) {
+                    return;
+                }
+            }
+            plan = new Plan(l.statement, tk.literals, l.positions);
+        }
+
+        /*
+         * Compiles the query with sentinel values in place of the selected
+         * literals, and finds the position of the constant containing each
+         * sentinel (-1 if the sentinel cannot be found exactly once).
+         * Returns null if the sentinel query cannot be compiled.
+         */
+        private static Located locate(Tokens tk, boolean[] replace) {
+            Object[] sentinels = new Object[replace.length];
+            String q = tk.sentinelQuery(replace, sentinels);
+            if (q == null) {
+                return null;
+            }
+            Statement s;
+            try {
+                s = parse(q);
+            } catch (QueryException | RuntimeException e) {
+                return null;
+            }
+            if (!(s instanceof SelectionStatement)) {
+                return null;
+            }
+            SelectionStatement sel = (SelectionStatement) s;
+            ConstantBinder b = new ConstantBinder(new HashMap<>());
+            sel.recompile(b);
+            List<Constant> cs = b.getConstants();
+
+            int[] pos = new int[sentinels.length];
+            Arrays.fill(pos, -1);
+            for (int i = 0; i < sentinels.length; i++) {
+                if (sentinels[i] == null) {
+                    continue;
+                }
+                for (int j = 0; j < cs.size(); j++) {
+                    if (!sentinels[i].equals(cs.get(j).getValue())) {
+                        continue;
+                    }
+                    if (pos[i] != -1) {
+                        // Found more than once
+                        pos[i] = -1;
+                        break;
+                    }
+                    pos[i] = j;
+                }
+            }
+            return new Located(sel, pos);
+        }
+
+    }
+
+
+    /**
+     * Sentinel query compiled while preparing a plan, along with the
+     * position of the constant bound to each literal
+     */
+    private static final class Located {
+
+        private final SelectionStatement statement;
+        private final int[] positions;
+
+        private Located(SelectionStatement statement, int[] positions) {
+            this.statement = statement;
+            this.positions = positions;
+        }
+
+    }
+
+
+    /**
+     * Immutable compiled plan shared by all the selection statements with
+     * the same parameterised form
+     */
+    private static final class Plan {
+
+        private final SelectionStatement statement;
+        // Literals of the query employed to prepare the plan
+        private final List<Object> literals;
+        // Position of the Constant bound to each literal, -1 if the literal
+        // is not a parameter
+        private final int[] positions;
+
+        private Plan(SelectionStatement statement, List<Object> literals,
+                int[] positions) {
+            this.statement = statement;
+            this.literals = literals;
+            this.positions = positions;
+        }
+
+        /*
+         * Returns a statement obtained by binding the literals passed as
+         * parameter, or null if the literals are not compatible with the
+         * plan.
+         */
+        private Statement bind(List<Object> values) {
+            Map<Integer, Object> bindings = new HashMap<>();
+            for (int i = 0; i < positions.length; i++) {
+                if (positions[i] != -1) {
+                    bindings.put(positions[i], values.get(i));
+                } else if (!Objects.equals(values.get(i), literals.get(i))) {
+                    return null;
+                }
+            }
+            ConstantBinder b = new ConstantBinder(bindings);
+            Statement s = statement.recompile(b);
+            if (b.hasTypeMismatch()) {
+                return null;
+            }
+            return s;
+        }
+
+    }
+
+}
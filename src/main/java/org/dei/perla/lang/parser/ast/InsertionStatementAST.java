@@ -2,6 +2,7 @@ package org.dei.perla.lang.parser.ast;
 
 import org.dei.perla.lang.parser.ParserContext;
 import org.dei.perla.lang.parser.Token;
+import org.dei.perla.lang.query.statement.InsertionStatement;
 import org.dei.perla.lang.query.statement.Statement;
 
 import java.util.Collections;
@@ -45,7 +46,7 @@ public final class InsertionStatementAST extends StatementAST {
 
     @Override
     public Statement compile(ParserContext ctx) {
-        throw new RuntimeException("unimplemented");
+        return new InsertionStatement(stream, fields, selection.compile(ctx));
     }
 
 }
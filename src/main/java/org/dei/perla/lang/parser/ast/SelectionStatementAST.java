@@ -159,7 +159,7 @@ public final class SelectionStatementAST extends StatementAST {
                 .collect(Collectors.toSet());
 
         List<String> missing = groupBy.getFields().parallelStream()
-                .filter(selFields::contains)
+                .filter(f -> !selFields.contains(f))
                 .collect(Collectors.toList());
 
         if (missing.size() != 0) {
@@ -167,7 +167,7 @@ public final class SelectionStatementAST extends StatementAST {
                 ctx.addError("GROUP BY attribute '" + m + "' is not declared " +
                         "as a SELECT field");
             }
-            return null;
+            return GroupBy.NONE;
         }
 
         return new GroupBy(groupBy.getFields());
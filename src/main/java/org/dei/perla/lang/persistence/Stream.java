@@ -1,5 +1,8 @@
 package org.dei.perla.lang.persistence;
 
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -13,4 +16,54 @@ public interface Stream {
 
     public void add(Object[] record) throws StreamException ;
 
+    /**
+     * Adds a batch of records to the {@code Stream}. Implementations may
+     * override this method to write the whole batch more efficiently than
+     * through separate invocations of the {@code add()} method.
+     *
+     * <p> If the method fails, some of the records of the batch may have
+     * already been added to the {@code Stream}.
+     *
+     * @param records records to add
+     * @throws StreamException if a record cannot be added
+     */
+    public default void addAll(List<Object[]> records)
+            throws StreamException {
+        for (Object[] r : records) {
+            add(r);
+        }
+    }
+
+    /**
+     * <p> Returns a cursor over the records of the {@code Stream} whose
+     * timestamp falls inside the specified time range. Records are
+     * returned in insertion order.
+     *
+     * <p> The timestamp of a record is the value of its {@code TIMESTAMP}
+     * field named {@code timestamp}. Time bounds can only be specified for
+     * streams containing such a field. Records whose timestamp is NULL are
+     * only returned when the time range is unbounded.
+     *
+     * <p> The predicate is evaluated on the full record, laid out as
+     * described by the {@code getFields()} method. It must not contain
+     * aggregate functions.
+     *
+     * <p> The cursor only returns records added before the invocation of
+     * this method.
+     *
+     * @param from lower bound (inclusive) of the time range, {@code null}
+     *             if unbounded
+     * @param to upper bound (exclusive) of the time range, {@code null} if
+     *           unbounded
+     * @param fields fields to return, {@code null} to return all fields
+     * @param where boolean predicate that the records must satisfy, {@code
+     *              null} to return all records in the time range
+     * @return cursor over the selected records
+     * @throws StreamException if the scan parameters are not valid or if
+     * an error occurs while accessing the {@code Stream}
+     */
+    public StreamCursor scan(Instant from, Instant to,
+            List<FieldDefinition> fields, Expression where)
+            throws StreamException;
+
 }
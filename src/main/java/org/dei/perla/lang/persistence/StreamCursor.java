@@ -0,0 +1,24 @@
+package org.dei.perla.lang.persistence;
+
+/**
+ * Cursor over the records returned by a {@link Stream} scan.
+ *
+ * @author Guido Rota 22/02/16.
+ */
+public interface StreamCursor extends AutoCloseable {
+
+    /**
+     * Returns the next record of the scan.
+     *
+     * @return next record, {@code null} if no more records are available
+     * @throws StreamException if the record cannot be read
+     */
+    public Object[] next() throws StreamException;
+
+    /**
+     * Releases the resources held by the cursor.
+     */
+    @Override
+    public void close();
+
+}
@@ -0,0 +1,176 @@
+package org.dei.perla.lang.persistence;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.LogicValue;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Parameters of a {@link Stream} scan: time range, predicate and field
+ * projection. {@link Stream} implementations use this class to select the
+ * records to return, after having skipped those that fall outside of the
+ * requested time range by means of their {@link TimeIndex}.
+ *
+ * @author Guido Rota 22/02/16.
+ */
+public final class StreamScan {
+
+    private final Instant from;
+    private final Instant to;
+    private final int tsIdx;
+    private final int[] projection;
+    private final Expression where;
+
+    /**
+     * Creates a new {@code StreamScan}
+     *
+     * @param fields fields of the scanned {@link Stream}
+     * @param from lower bound (inclusive) of the time range, {@code null}
+     *             if unbounded
+     * @param to upper bound (exclusive) of the time range, {@code null} if
+     *           unbounded
+     * @param projection fields to return, {@code null} to return all fields
+     * @param where boolean predicate, {@code null} to return all records in
+     *              the time range
+     * @throws StreamException if the stream has no timestamp field and a
+     * time bound was specified, if a projected field does not belong to the
+     * stream, or if the predicate is not a boolean expression
+     */
+    public StreamScan(List<FieldDefinition> fields, Instant from, Instant to,
+            List<FieldDefinition> projection, Expression where)
+            throws StreamException {
+        this.from = from;
+        this.to = to;
+        tsIdx = timestampIndex(fields);
+        if (tsIdx == -1 && (from != null || to != null)) {
+            throw new StreamException("Cannot scan time range, stream does " +
+                    "not have a '" + Attribute.TIMESTAMP.getId() + "' field");
+        }
+        if (where != null && where.getType() != DataType.BOOLEAN) {
+            throw new StreamException("Scan predicate must be a boolean " +
+                    "expression");
+        }
+        this.where = where;
+
+        if (projection == null) {
+            this.projection = null;
+            return;
+        }
+        this.projection = new int[projection.size()];
+        for (int i = 0; i < this.projection.length; i++) {
+            FieldDefinition p = projection.get(i);
+            this.projection[i] = -1;
+            for (int j = 0; j < fields.size(); j++) {
+                FieldDefinition f = fields.get(j);
+                if (f.getName().equals(p.getName()) &&
+                        f.getType() == p.getType()) {
+                    this.projection[i] = j;
+                }
+            }
+            if (this.projection[i] == -1) {
+                throw new StreamException("Stream does not contain field '" +
+                        p.getName() + "' of type " + p.getType());
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the timestamp field, i.e. the {@code TIMESTAMP}
+     * field named after {@link Attribute#TIMESTAMP}
+     *
+     * @param fields stream fields
+     * @return index of the timestamp field, -1 if not found
+     */
+    public static int timestampIndex(List<FieldDefinition> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            FieldDefinition f = fields.get(i);
+            if (f.getType() == DataType.TIMESTAMP &&
+                    f.getName().equals(Attribute.TIMESTAMP.getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    /**
+     * Indicates if the timestamp passed as parameter falls inside the time
+     * range of the scan
+     */
+    public boolean inRange(Instant ts) {
+        if (from == null && to == null) {
+            return true;
+        } else if (ts == null) {
+            return false;
+        }
+        return (from == null || !ts.isBefore(from)) &&
+                (to == null || ts.isBefore(to));
+    }
+
+    /**
+     * Applies time range, predicate and projection to a record
+     *
+     * @param record record to be checked, laid out as the fields of the
+     *               scanned stream
+     * @return projected record, {@code null} if the record does not satisfy
+     * the scan conditions
+     */
+    public Object[] apply(Object[] record) {
+        if (tsIdx != -1 && !inRange((Instant) record[tsIdx])) {
+            return null;
+        }
+        if (where != null && where.run(record, null) != LogicValue.TRUE) {
+            return null;
+        }
+        if (projection == null) {
+            return record;
+        }
+
+        Object[] res = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            res[i] = record[projection[i]];
+        }
+        return res;
+    }
+
+    /**
+     * Returns a cursor that applies the scan conditions to the records of
+     * the cursor passed as parameter
+     *
+     * @param records cursor over the candidate records of the scan
+     * @return cursor over the selected records
+     */
+    public StreamCursor filter(StreamCursor records) {
+        return new StreamCursor() {
+
+            @Override
+            public Object[] next() throws StreamException {
+                Object[] r;
+                while ((r = records.next()) != null) {
+                    r = apply(r);
+                    if (r != null) {
+                        return r;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() {
+                records.close();
+            }
+
+        };
+    }
+
+}
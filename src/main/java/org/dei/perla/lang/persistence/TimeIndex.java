@@ -0,0 +1,214 @@
+package org.dei.perla.lang.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Sparse timestamp index of a sequence of {@link Stream} records.
+ *
+ * <p> Records are grouped in chunks of fixed size. For every chunk the
+ * index stores the position of its first record, as defined by the
+ * {@link Stream} implementation (e.g. a list index or a file offset), and
+ * the minimum and maximum timestamp of its records. A time range scan only
+ * needs to read the chunks whose timestamp range overlaps the requested
+ * one. Records need not be added in timestamp order.
+ *
+ * NOTE: This class is not thread safe, and should therefore only be used
+ * with proper synchronization.
+ *
+ * @author Guido Rota 22/02/16.
+ */
+public final class TimeIndex {
+
+    private final int chunkSize;
+
+    private long[] pos = new long[16];
+    private Instant[] min = new Instant[16];
+    private Instant[] max = new Instant[16];
+    private int chunks = 0;
+    private long count = 0;
+    private Instant first = null;
+    private Instant last = null;
+
+    /**
+     * Creates a new empty {@code TimeIndex}
+     *
+     * @param chunkSize number of records per chunk
+     */
+    public TimeIndex(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the number of records indexed
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of chunks
+     */
+    public int size() {
+        return chunks;
+    }
+
+    /**
+     * Adds a new record to the index
+     *
+     * @param p position of the record
+     * @param ts record timestamp, {@code null} if not available
+     */
+    public void add(long p, Instant ts) {
+        if (count % chunkSize == 0) {
+            if (chunks == pos.length) {
+                pos = Arrays.copyOf(pos, chunks * 2);
+                min = Arrays.copyOf(min, chunks * 2);
+                max = Arrays.copyOf(max, chunks * 2);
+            }
+            pos[chunks] = p;
+            chunks++;
+        }
+        count++;
+        if (ts == null) {
+            return;
+        }
+
+        int c = chunks - 1;
+        if (min[c] == null || ts.isBefore(min[c])) {
+            min[c] = ts;
+        }
+        if (max[c] == null || ts.isAfter(max[c])) {
+            max[c] = ts;
+        }
+        track(ts, ts);
+    }
+
+    private void track(Instant lo, Instant hi) {
+        if (first == null || lo.isBefore(first)) {
+            first = lo;
+        }
+        if (last == null || hi.isAfter(last)) {
+            last = hi;
+        }
+    }
+
+    /**
+     * Returns the position of the first record of a chunk
+     */
+    public long getPosition(int chunk) {
+        return pos[chunk];
+    }
+
+    /**
+     * Returns the number of records stored in a chunk
+     */
+    public int getRecords(int chunk) {
+        if (chunk < chunks - 1) {
+            return chunkSize;
+        }
+        return (int) (count - (long) chunk * chunkSize);
+    }
+
+    /**
+     * Indicates if the chunk may contain records whose timestamp falls in
+     * the specified range
+     *
+     * @param chunk chunk index
+     * @param from lower bound (inclusive), {@code null} if unbounded
+     * @param to upper bound (exclusive), {@code null} if unbounded
+     */
+    public boolean overlaps(int chunk, Instant from, Instant to) {
+        if (from == null && to == null) {
+            return true;
+        } else if (min[chunk] == null) {
+            // Records without timestamp never fall in a bounded range
+            return false;
+        }
+        return (to == null || min[chunk].isBefore(to)) &&
+                (from == null || !max[chunk].isBefore(from));
+    }
+
+    /**
+     * Indicates if any chunk may contain records whose timestamp falls in
+     * the specified range
+     *
+     * @param from lower bound (inclusive), {@code null} if unbounded
+     * @param to upper bound (exclusive), {@code null} if unbounded
+     */
+    public boolean overlaps(Instant from, Instant to) {
+        if (from == null && to == null) {
+            return true;
+        } else if (first == null) {
+            return false;
+        }
+        return (to == null || first.isBefore(to)) &&
+                (from == null || !last.isBefore(from));
+    }
+
+    /**
+     * Writes the content of the index
+     *
+     * @param out output
+     * @throws IOException if the index cannot be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(chunkSize);
+        out.writeLong(count);
+        for (int i = 0; i < chunks; i++) {
+            out.writeLong(pos[i]);
+            out.writeBoolean(min[i] != null);
+            if (min[i] != null) {
+                out.writeLong(min[i].getEpochSecond());
+                out.writeInt(min[i].getNano());
+                out.writeLong(max[i].getEpochSecond());
+                out.writeInt(max[i].getNano());
+            }
+        }
+    }
+
+    /**
+     * Reads an index previously written with the {@code write()} method
+     *
+     * @param in input
+     * @return index
+     * @throws IOException if the index cannot be read
+     */
+    public static TimeIndex read(DataInput in) throws IOException {
+        int chunkSize = in.readInt();
+        long count = in.readLong();
+        if (chunkSize <= 0 || count < 0) {
+            throw new IOException("Invalid time index");
+        }
+
+        TimeIndex idx = new TimeIndex(chunkSize);
+        int chunks = (int) ((count + chunkSize - 1) / chunkSize);
+        idx.pos = new long[Math.max(chunks, 1)];
+        idx.min = new Instant[idx.pos.length];
+        idx.max = new Instant[idx.pos.length];
+        for (int i = 0; i < chunks; i++) {
+            idx.pos[i] = in.readLong();
+            if (in.readBoolean()) {
+                idx.min[i] = Instant.ofEpochSecond(in.readLong(),
+                        in.readInt());
+                idx.max[i] = Instant.ofEpochSecond(in.readLong(),
+                        in.readInt());
+                idx.track(idx.min[i], idx.max[i]);
+            }
+        }
+        idx.chunks = chunks;
+        idx.count = count;
+        return idx;
+    }
+
+}
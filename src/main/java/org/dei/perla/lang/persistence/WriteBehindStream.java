@@ -0,0 +1,367 @@
+package org.dei.perla.lang.persistence;
+
+import org.apache.log4j.Logger;
+import org.dei.perla.lang.executor.metrics.LatencyHistogram;
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Stream} decorator that writes records asynchronously.
+ *
+ * <p> Records passed to the {@code add()} method are queued in a bounded
+ * buffer, and written to the target {@link Stream} by a dedicated writer
+ * thread. The writer drains the buffer in batches, which are written
+ * through a single invocation of the {@code Stream.addAll()} method. The
+ * threads adding records, usually the query evaluation threads, are
+ * therefore never delayed by the latency of the storage. Records added
+ * while the buffer is full are managed according to the {@link
+ * OverflowPolicy} of the stream.
+ *
+ * <p> Records that cannot be written by the target {@link Stream} are
+ * discarded, and counted among the failed records.
+ *
+ * <p> Example usage:
+ * <pre>{@code
+ * Stream s = new WriteBehindStream(driver.create(def), 4096, 256,
+ *         OverflowPolicy.DROP_OLDEST);
+ * }</pre>
+ *
+ * @author Guido Rota 24/02/16.
+ */
+public final class WriteBehindStream implements Stream, AutoCloseable {
+
+    private static final Logger log =
+            Logger.getLogger(WriteBehindStream.class);
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Management policy of the records added while the buffer is full
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * The oldest buffered record is discarded
+         */
+        DROP_OLDEST,
+
+        /**
+         * The new record is discarded
+         */
+        DROP_NEWEST,
+
+        /**
+         * The {@code add()} method fails with a {@link StreamException}
+         */
+        FAIL,
+
+        /**
+         * The {@code add()} method blocks until the writer frees some
+         * space. Not recommended when records are added by the query
+         * evaluation threads, as queries would stall on storage latency.
+         */
+        BLOCK
+
+    }
+
+    private final Stream target;
+    private final int capacity;
+    private final int batchSize;
+    private final OverflowPolicy policy;
+    private final Thread writer;
+
+    private final Lock lk = new ReentrantLock();
+    private final Condition notEmpty = lk.newCondition();
+    private final Condition notFull = lk.newCondition();
+    private final Condition idle = lk.newCondition();
+    private final Deque<Object[]> queue;
+    // Set while the writer is writing a batch
+    private boolean writing = false;
+    private boolean closed = false;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    /**
+     * Creates a new {@code WriteBehindStream} with default capacity and
+     * batch size, which discards the oldest records upon overflow
+     *
+     * @param target stream to which the records are written
+     */
+    public WriteBehindStream(Stream target) {
+        this(target, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE,
+                OverflowPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a new {@code WriteBehindStream}
+     *
+     * @param target stream to which the records are written
+     * @param capacity maximum number of buffered records
+     * @param batchSize maximum number of records written in a single batch
+     * @param policy management policy of the records added while the
+     *               buffer is full
+     */
+    public WriteBehindStream(Stream target, int capacity, int batchSize,
+            OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        } else if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        } else if (policy == null) {
+            throw new NullPointerException("policy cannot be null");
+        }
+        this.target = target;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.policy = policy;
+        queue = new ArrayDeque<>(capacity);
+
+        writer = new Thread(this::drain,
+                "WriteBehindStream " + target.getId());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public String getId() {
+        return target.getId();
+    }
+
+    @Override
+    public List<FieldDefinition> getFields() {
+        return target.getFields();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public void add(Object[] record) throws StreamException {
+        check(record);
+        lk.lock();
+        try {
+            enqueue(record);
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Queues all the records passed as parameter with a single acquisition
+     * of the buffer lock. The overflow policy is applied to each record.
+     */
+    @Override
+    public void addAll(List<Object[]> records) throws StreamException {
+        for (Object[] r : records) {
+            check(r);
+        }
+        lk.lock();
+        try {
+            for (Object[] r : records) {
+                enqueue(r);
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    private void check(Object[] record) throws StreamException {
+        if (record == null) {
+            throw new StreamException("Cannot add null record");
+        }
+        if (record.length != target.getFields().size()) {
+            throw new StreamException("Record size mismatch");
+        }
+    }
+
+    /*
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked while holding the buffer lock.
+     */
+    private void enqueue(Object[] record) throws StreamException {
+        if (closed) {
+            throw new StreamException("Stream '" + getId() + "' is closed");
+        }
+        if (queue.size() == capacity) {
+            switch (policy) {
+                case DROP_OLDEST:
+                    queue.removeFirst();
+                    dropped.incrementAndGet();
+                    break;
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    return;
+                case FAIL:
+                    dropped.incrementAndGet();
+                    throw new StreamException("Write buffer of stream '" +
+                            getId() + "' is full");
+                case BLOCK:
+                    while (queue.size() == capacity && !closed) {
+                        notFull.awaitUninterruptibly();
+                    }
+                    if (closed) {
+                        throw new StreamException("Stream '" + getId() +
+                                "' is closed");
+                    }
+                    break;
+            }
+        }
+        queue.addLast(record);
+        notEmpty.signal();
+    }
+
+    /*
+     * Main loop of the writer thread
+     */
+    private void drain() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        while (true) {
+            lk.lock();
+            try {
+                writing = false;
+                idle.signalAll();
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                while (!queue.isEmpty() && batch.size() < batchSize) {
+                    batch.add(queue.removeFirst());
+                }
+                writing = true;
+                notFull.signalAll();
+            } finally {
+                lk.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                target.addAll(batch);
+                written.addAndGet(batch.size());
+            } catch (StreamException | RuntimeException e) {
+                failed.addAndGet(batch.size());
+                log.error("Error writing " + batch.size() + " records " +
+                        "to stream '" + getId() + "'", e);
+            }
+            flushLatency.record(System.nanoTime() - start);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Waits until all the records added so far have been passed to the
+     * target {@link Stream}
+     */
+    public void flush() {
+        lk.lock();
+        try {
+            while ((!queue.isEmpty() || writing) && writer.isAlive()) {
+                idle.awaitUninterruptibly();
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Scans the target {@link Stream}, after having written all buffered
+     * records
+     */
+    @Override
+    public StreamCursor scan(Instant from, Instant to,
+            List<FieldDefinition> fields, Expression where)
+            throws StreamException {
+        flush();
+        return target.scan(from, to, fields, where);
+    }
+
+    /**
+     * Returns the number of records waiting to be written
+     */
+    public int getQueueDepth() {
+        lk.lock();
+        try {
+            return queue.size();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records written to the target {@link Stream}
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Returns the number of records discarded or rejected because the
+     * buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of records that the target {@link Stream} failed
+     * to write
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the distribution of the time spent writing a batch of
+     * records to the target {@link Stream}
+     */
+    public LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * Writes all buffered records and stops the writer thread. The target
+     * {@link Stream} is not closed.
+     */
+    @Override
+    public void close() {
+        lk.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lk.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
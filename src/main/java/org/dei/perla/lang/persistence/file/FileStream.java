@@ -0,0 +1,475 @@
+package org.dei.perla.lang.persistence.file;
+
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.persistence.StreamCursor;
+import org.dei.perla.lang.persistence.StreamDefinition;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.persistence.TimeIndex;
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * {@link Stream} implementation that stores its records in a directory of
+ * memory-mapped, append-only segment files.
+ *
+ * <p> Records are encoded in a compact binary format derived from the
+ * {@link FieldDefinition}s of the stream, and appended to the newest
+ * segment. A new segment is created when the newest one is full. Full
+ * segments are forced to disk and unmapped.
+ *
+ * <p> Records are made durable by forcing the newest segment to disk. When
+ * the stream is synchronous, the {@code add()} method only returns after
+ * the record has been forced. Concurrent writers share a single force
+ * operation (group commit): the first writer forces all the records
+ * appended so far, while the others wait for it to complete. Asynchronous
+ * streams are forced periodically by their {@link FileStreamDriver}.
+ *
+ * <p> Only the newest segment is scanned when the stream is opened. The
+ * number of records stored in all other segments is derived from the
+ * segment file names.
+ *
+ * <p> Time range scans use the {@link TimeIndex} of each segment to skip
+ * the segments and the record chunks that fall outside of the requested
+ * range.
+ *
+ * @author Guido Rota 21/02/16.
+ */
+public final class FileStream implements Stream {
+
+    private static final String DEFINITION = "stream.def";
+    private static final int DEF_MAGIC = 0x50535444;
+
+    private final String id;
+    private final List<FieldDefinition> fields;
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+    private final RecordCodec codec;
+
+    private final Lock lk = new ReentrantLock();
+    private final Condition committed = lk.newCondition();
+    private final List<Segment> segments;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private Segment current;
+    private long appended;
+    private long durable;
+    private boolean forcing = false;
+    private boolean closed = false;
+
+    private FileStream(String id, List<FieldDefinition> fields, Path dir,
+            int segmentSize, boolean sync, RecordCodec codec,
+            List<Segment> segments) {
+        this.id = id;
+        this.fields = fields;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.codec = codec;
+        this.segments = segments;
+        current = segments.get(segments.size() - 1);
+        appended = current.getBase() + current.getCount();
+        durable = appended;
+    }
+
+    /**
+     * Creates a new {@code FileStream} in the directory passed as parameter
+     */
+    protected static FileStream create(Path dir, StreamDefinition def,
+            int segmentSize, boolean sync) throws StreamException {
+        // Validate the field types before touching the file system
+        RecordCodec codec = new RecordCodec(def.getFields());
+        try {
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(DEFINITION + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp);
+                    DataOutputStream out = new DataOutputStream(os)) {
+                out.writeInt(DEF_MAGIC);
+                out.writeUTF(def.getId());
+                RecordCodec.writeFields(def.getFields(), out);
+            }
+            Files.move(tmp, dir.resolve(DEFINITION));
+
+            List<Segment> segs = new ArrayList<>();
+            segs.add(Segment.create(dir, 0, segmentSize));
+            return new FileStream(def.getId(), def.getFields(), dir,
+                    segmentSize, sync, codec, segs);
+        } catch (IOException e) {
+            throw new StreamException("Cannot create stream '" +
+                    def.getId() + "'", e);
+        }
+    }
+
+    /**
+     * Opens an existing {@code FileStream} stored in the directory passed
+     * as parameter
+     */
+    protected static FileStream open(Path dir, int segmentSize,
+            boolean sync) throws StreamException {
+        Path defPath = dir.resolve(DEFINITION);
+        if (!Files.exists(defPath)) {
+            throw new StreamException("Stream directory '" + dir +
+                    "' does not contain a stream definition");
+        }
+
+        try {
+            String id;
+            List<FieldDefinition> fields;
+            try (InputStream is = Files.newInputStream(defPath);
+                    DataInputStream in = new DataInputStream(is)) {
+                if (in.readInt() != DEF_MAGIC) {
+                    throw new StreamException("Invalid stream definition " +
+                            defPath);
+                }
+                id = in.readUTF();
+                fields = RecordCodec.readFields(in);
+            }
+
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> ds =
+                         Files.newDirectoryStream(dir, "*.seg")) {
+                for (Path p : ds) {
+                    if (Segment.parseBase(p) != -1) {
+                        files.add(p);
+                    }
+                }
+            }
+            files.sort((p1, p2) -> Long.compare(
+                    Segment.parseBase(p1), Segment.parseBase(p2)));
+
+            RecordCodec codec = new RecordCodec(fields);
+            List<Segment> segs = new ArrayList<>();
+            for (int i = 0; i < files.size() - 1; i++) {
+                long count = Segment.parseBase(files.get(i + 1)) -
+                        Segment.parseBase(files.get(i));
+                segs.add(Segment.sealed(files.get(i), count));
+            }
+            if (files.isEmpty()) {
+                segs.add(Segment.create(dir, 0, segmentSize));
+            } else {
+                segs.add(Segment.recover(files.get(files.size() - 1),
+                        codec));
+            }
+            return new FileStream(id, fields, dir, segmentSize, sync, codec,
+                    segs);
+        } catch (IOException e) {
+            throw new StreamException("Cannot open stream in '" + dir + "'",
+                    e);
+        }
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public List<FieldDefinition> getFields() {
+        return fields;
+    }
+
+    @Override
+    public void add(Object[] record) throws StreamException {
+        check(record);
+
+        lk.lock();
+        try {
+            append(record);
+            if (sync) {
+                awaitCommit(appended);
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Appends a batch of records. When the stream is synchronous, all
+     * records of the batch are forced to disk with a single operation.
+     */
+    @Override
+    public void addAll(List<Object[]> records) throws StreamException {
+        for (Object[] r : records) {
+            check(r);
+        }
+
+        lk.lock();
+        try {
+            for (Object[] r : records) {
+                append(r);
+            }
+            if (sync) {
+                awaitCommit(appended);
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    private void check(Object[] record) throws StreamException {
+        if (record == null) {
+            throw new StreamException("Cannot add null record");
+        }
+        if (record.length != fields.size()) {
+            throw new StreamException("Record size mismatch");
+        }
+    }
+
+    /*
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked while holding the stream lock.
+     */
+    private void append(Object[] record) throws StreamException {
+        if (closed) {
+            throw new StreamException("Stream '" + id + "' is closed");
+        }
+        scratch = codec.encode(record, scratch);
+        Instant ts = codec.timestamp(scratch);
+        if (!current.append(scratch, ts, crc)) {
+            roll(ts);
+        }
+        appended++;
+    }
+
+    /**
+     * Seals the current segment, and appends the pending record to a new
+     * one
+     *
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked with proper synchronization.
+     */
+    private void roll(Instant ts) throws StreamException {
+        if (scratch.remaining() > Segment.maxRecordSize(segmentSize)) {
+            throw new StreamException("Record too large for stream '" +
+                    id + "'");
+        }
+
+        // Sealing forces the segment, hence all records appended so far
+        // are durable once the new segment is created
+        current.seal();
+        durable = appended;
+        try {
+            current = Segment.create(dir, appended, segmentSize);
+        } catch (IOException e) {
+            throw new StreamException("Cannot create new segment for " +
+                    "stream '" + id + "'", e);
+        }
+        segments.add(current);
+        current.append(scratch, ts, crc);
+    }
+
+    /*
+     * Waits until the record with the specified sequence number has been
+     * forced to disk. The lock is released while the segment is being
+     * forced, so that other writers can append their records and join the
+     * next force operation.
+     */
+    private void awaitCommit(long seq) {
+        while (durable < seq) {
+            if (forcing) {
+                committed.awaitUninterruptibly();
+                continue;
+            }
+
+            forcing = true;
+            long target = appended;
+            Segment seg = current;
+            lk.unlock();
+            try {
+                seg.force();
+            } finally {
+                lk.lock();
+                forcing = false;
+                durable = Math.max(durable, target);
+                committed.signalAll();
+            }
+        }
+    }
+
+    /**
+     * Forces all records appended so far to disk
+     */
+    public void commit() {
+        lk.lock();
+        try {
+            if (!closed) {
+                awaitCommit(appended);
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records stored in the stream
+     *
+     * @return number of records
+     */
+    public long size() {
+        lk.lock();
+        try {
+            return appended;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    /**
+     * Invokes the consumer on all records of the stream, from the oldest to
+     * the newest. New records cannot be added to the stream until this
+     * method returns.
+     *
+     * @param c record consumer
+     * @throws StreamException if the records cannot be read
+     */
+    public void forEach(Consumer<Object[]> c) throws StreamException {
+        lk.lock();
+        try {
+            for (Segment s : segments) {
+                s.forEach(b -> c.accept(codec.decode(b)));
+            }
+        } catch (IOException e) {
+            throw new StreamException("Cannot read stream '" + id + "'", e);
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    @Override
+    public StreamCursor scan(Instant from, Instant to,
+            List<FieldDefinition> fields, Expression where)
+            throws StreamException {
+        StreamScan scan = new StreamScan(this.fields, from, to, fields,
+                where);
+
+        // The chunks to read are selected while holding the lock. Records
+        // are then decoded without synchronization, since the selected
+        // chunks are never modified.
+        List<Chunk> chunks = new ArrayList<>();
+        lk.lock();
+        try {
+            if (closed) {
+                throw new StreamException("Stream '" + id + "' is closed");
+            }
+            for (Segment s : segments) {
+                TimeIndex idx = s.index(codec);
+                if (!idx.overlaps(from, to)) {
+                    continue;
+                }
+                ByteBuffer b = null;
+                for (int i = 0; i < idx.size(); i++) {
+                    if (!idx.overlaps(i, from, to)) {
+                        continue;
+                    }
+                    if (b == null) {
+                        b = s.buffer();
+                    }
+                    chunks.add(new Chunk(b, (int) idx.getPosition(i),
+                            idx.getRecords(i)));
+                }
+            }
+        } catch (IOException e) {
+            throw new StreamException("Cannot read stream '" + id + "'", e);
+        } finally {
+            lk.unlock();
+        }
+
+        return scan.filter(new ChunkCursor(chunks.iterator()));
+    }
+
+    /**
+     * Forces all pending records to disk and closes the stream
+     */
+    protected void close() {
+        lk.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            awaitCommit(appended);
+            current.seal();
+            closed = true;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+
+
+    /**
+     * A sequence of consecutive records of a segment
+     */
+    private static final class Chunk {
+
+        private final ByteBuffer buffer;
+        private final int pos;
+        private final int records;
+
+        private Chunk(ByteBuffer buffer, int pos, int records) {
+            this.buffer = buffer;
+            this.pos = pos;
+            this.records = records;
+        }
+
+    }
+
+
+    /**
+     * {@link StreamCursor} that decodes the records of a list of chunks
+     */
+    private final class ChunkCursor implements StreamCursor {
+
+        private final Iterator<Chunk> chunks;
+        private ByteBuffer buffer;
+        private int pos;
+        private int remaining = 0;
+
+        private ChunkCursor(Iterator<Chunk> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public Object[] next() {
+            while (remaining == 0) {
+                if (!chunks.hasNext()) {
+                    return null;
+                }
+                Chunk c = chunks.next();
+                buffer = c.buffer;
+                pos = c.pos;
+                remaining = c.records;
+            }
+
+            pos = Segment.record(buffer, pos);
+            Object[] r = codec.decode(buffer);
+            buffer.limit(buffer.capacity());
+            remaining--;
+            return r;
+        }
+
+        @Override
+        public void close() { }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+package org.dei.perla.lang.persistence.file;
+
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.persistence.StreamCursor;
+import org.dei.perla.lang.persistence.StreamDefinition;
+import org.dei.perla.lang.persistence.StreamDriver;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StreamDriver} implementation that stores every {@link Stream} in a
+ * separate sub-directory of a base directory, as a sequence of
+ * memory-mapped segment files (see {@link FileStream}).
+ *
+ * <p> Streams created by a previous instance of the driver are reopened
+ * when requested through the {@code open()} method.
+ *
+ * <p> Records are forced to disk either synchronously, before the {@code
+ * add()} method returns, or periodically by a background thread, depending
+ * on the commit interval specified when creating the driver.
+ *
+ * @author Guido Rota 21/02/16.
+ */
+public final class FileStreamDriver implements StreamDriver, AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ScheduledExecutorService flusher;
+    private final Map<String, FileStream> streams = new HashMap<>();
+
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@code FileStreamDriver} that forces every record to
+     * disk before returning from the {@code add()} method
+     *
+     * @param dir base directory
+     * @throws StreamException if the base directory cannot be created
+     */
+    public FileStreamDriver(Path dir) throws StreamException {
+        this(dir, DEFAULT_SEGMENT_SIZE, 0);
+    }
+
+    /**
+     * Creates a new {@code FileStreamDriver}
+     *
+     * @param dir base directory
+     * @param segmentSize size of the segment files, in bytes
+     * @param commitInterval interval between two consecutive forces of the
+     *                       stream records to disk, in milliseconds. Records
+     *                       are forced before returning from the {@code
+     *                       add()} method when this parameter is 0.
+     * @throws StreamException if the base directory cannot be created
+     */
+    public FileStreamDriver(Path dir, int segmentSize, long commitInterval)
+            throws StreamException {
+        if (Segment.maxRecordSize(segmentSize) <= 0) {
+            throw new IllegalArgumentException("Segment size too small");
+        }
+        if (commitInterval < 0) {
+            throw new IllegalArgumentException(
+                    "Commit interval cannot be negative");
+        }
+
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new StreamException("Cannot create stream directory '" +
+                    dir + "'", e);
+        }
+
+        if (commitInterval == 0) {
+            flusher = null;
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FileStreamDriver flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::commit, commitInterval,
+                commitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private Path streamDir(String id) throws StreamException {
+        if (id == null || !id.matches("[A-Za-z0-9_\\-]+")) {
+            throw new StreamException("Invalid stream id '" + id + "'");
+        }
+        return dir.resolve(id);
+    }
+
+    @Override
+    public synchronized FileStream create(StreamDefinition def)
+            throws StreamException {
+        checkOpen();
+        String id = def.getId();
+        Path p = streamDir(id);
+        if (streams.containsKey(id) || Files.exists(p)) {
+            throw new StreamException("Cannot create stream, id '" + id
+                    + "' has already been taken");
+        }
+
+        FileStream s = FileStream.create(p, def, segmentSize,
+                flusher == null);
+        streams.put(id, s);
+        return s;
+    }
+
+    @Override
+    public synchronized FileStream open(String id) throws StreamException {
+        checkOpen();
+        FileStream s = streams.get(id);
+        if (s != null) {
+            return s;
+        }
+
+        Path p = streamDir(id);
+        if (!Files.isDirectory(p)) {
+            throw new StreamException("Stream '" + id + "' does not exist");
+        }
+        s = FileStream.open(p, segmentSize, flusher == null);
+        streams.put(id, s);
+        return s;
+    }
+
+    @Override
+    public Stream open(String id, List<FieldDefinition> fields)
+            throws StreamException {
+        FileStream s = open(id);
+        List<FieldDefinition> all = s.getFields();
+        int[] idx = new int[fields.size()];
+        for (int i = 0; i < idx.length; i++) {
+            FieldDefinition f = fields.get(i);
+            idx[i] = -1;
+            for (int j = 0; j < all.size(); j++) {
+                FieldDefinition o = all.get(j);
+                if (o.getName().equals(f.getName()) &&
+                        o.getType() == f.getType()) {
+                    idx[i] = j;
+                }
+            }
+            if (idx[i] == -1) {
+                throw new StreamException("Stream '" + id + "' does not " +
+                        "contain field '" + f.getName() + "' of type " +
+                        f.getType());
+            }
+        }
+        return new FieldSubset(s, fields, idx);
+    }
+
+    private void checkOpen() throws StreamException {
+        if (closed) {
+            throw new StreamException("FileStreamDriver has been closed");
+        }
+    }
+
+    private void commit() {
+        List<FileStream> ss;
+        synchronized (this) {
+            ss = new ArrayList<>(streams.values());
+        }
+        ss.forEach(FileStream::commit);
+    }
+
+    /**
+     * Forces all pending records to disk and closes all streams
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        streams.values().forEach(FileStream::close);
+        streams.clear();
+    }
+
+
+    /**
+     * {@link Stream} that only writes a subset of the fields of a {@link
+     * FileStream}. The remaining fields are populated with their default
+     * value.
+     */
+    private static final class FieldSubset implements Stream {
+
+        private final FileStream stream;
+        private final List<FieldDefinition> fields;
+        private final int[] idx;
+
+        private FieldSubset(FileStream stream, List<FieldDefinition> fields,
+                int[] idx) {
+            this.stream = stream;
+            this.fields = fields;
+            this.idx = idx;
+        }
+
+        @Override
+        public String getId() {
+            return stream.getId();
+        }
+
+        @Override
+        public List<FieldDefinition> getFields() {
+            return fields;
+        }
+
+        @Override
+        public void add(Object[] record) throws StreamException {
+            stream.add(expand(record));
+        }
+
+        @Override
+        public void addAll(List<Object[]> records) throws StreamException {
+            List<Object[]> full = new ArrayList<>(records.size());
+            for (Object[] r : records) {
+                full.add(expand(r));
+            }
+            stream.addAll(full);
+        }
+
+        private Object[] expand(Object[] record) throws StreamException {
+            if (record == null) {
+                throw new StreamException("Cannot add null record");
+            }
+            if (record.length != fields.size()) {
+                throw new StreamException("Record size mismatch");
+            }
+
+            List<FieldDefinition> all = stream.getFields();
+            Object[] full = new Object[all.size()];
+            for (int i = 0; i < full.length; i++) {
+                full[i] = all.get(i).getDefaultValue();
+            }
+            for (int i = 0; i < idx.length; i++) {
+                full[idx[i]] = record[i];
+            }
+            return full;
+        }
+
+        @Override
+        public StreamCursor scan(Instant from, Instant to,
+                List<FieldDefinition> fields, Expression where)
+                throws StreamException {
+            // The predicate refers to the fields of the subset, and is
+            // therefore applied after the projection on the subset fields
+            StreamScan scan = new StreamScan(this.fields, null, null, fields,
+                    where);
+            return scan.filter(stream.scan(from, to, this.fields, null));
+        }
+
+    }
+
+}
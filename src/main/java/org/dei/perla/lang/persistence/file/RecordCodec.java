@@ -0,0 +1,290 @@
+package org.dei.perla.lang.persistence.file;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.query.expression.LogicValue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoding of the records of a {@link FileStream}. The layout of a
+ * record is derived from the {@link FieldDefinition}s of the stream:
+ *
+ * <ul>
+ *     <li>a format version byte</li>
+ *     <li>a NULL bitmap, with one bit for each field</li>
+ *     <li>the value of each non-NULL field, in definition order: integers
+ *     and IDs as 4-byte ints, floats as 4-byte floats, booleans as a single
+ *     byte, timestamps as an 8-byte epoch second followed by a 4-byte
+ *     nanosecond adjustment, and strings as a 4-byte length followed by
+ *     their UTF-8 representation</li>
+ * </ul>
+ *
+ * @author Guido Rota 21/02/16.
+ */
+final class RecordCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final DataType[] TYPES = new DataType[] {
+            DataType.ID,
+            DataType.INTEGER,
+            DataType.FLOAT,
+            DataType.BOOLEAN,
+            DataType.TIMESTAMP,
+            DataType.STRING
+    };
+
+    private final DataType[] types;
+    private final String[] names;
+    private final int bitmapSize;
+    private final int tsIdx;
+
+    protected RecordCodec(List<FieldDefinition> fields)
+            throws StreamException {
+        types = new DataType[fields.size()];
+        names = new String[fields.size()];
+        for (int i = 0; i < types.length; i++) {
+            FieldDefinition f = fields.get(i);
+            if (!Arrays.asList(TYPES).contains(f.getType())) {
+                throw new StreamException("Unsupported type '" +
+                        f.getType() + "' for field '" + f.getName() + "'");
+            }
+            types[i] = f.getType();
+            names[i] = f.getName();
+        }
+        bitmapSize = (types.length + 7) / 8;
+        tsIdx = StreamScan.timestampIndex(fields);
+    }
+
+    /**
+     * Encodes the record passed as parameter. The output buffer is
+     * replaced with a larger one if the record does not fit.
+     *
+     * @param record record to encode
+     * @param out output buffer
+     * @return buffer containing the encoded record, ready to be read
+     * @throws StreamException if the record values do not match the
+     * field types
+     */
+    protected ByteBuffer encode(Object[] record, ByteBuffer out)
+            throws StreamException {
+        while (true) {
+            out.clear();
+            try {
+                write(record, out);
+                out.flip();
+                return out;
+            } catch (BufferOverflowException e) {
+                out = ByteBuffer.allocate(out.capacity() * 2);
+            }
+        }
+    }
+
+    private void write(Object[] record, ByteBuffer out)
+            throws StreamException {
+        out.put(VERSION);
+        int bitmap = out.position();
+        for (int i = 0; i < bitmapSize; i++) {
+            out.put((byte) 0);
+        }
+
+        for (int i = 0; i < types.length; i++) {
+            Object v = record[i];
+            if (v == LogicValue.UNKNOWN) {
+                v = null;
+            }
+            if (v == null) {
+                int b = bitmap + i / 8;
+                out.put(b, (byte) (out.get(b) | (1 << (i % 8))));
+                continue;
+            }
+
+            try {
+                writeValue(types[i], v, out);
+            } catch (ClassCastException e) {
+                throw new StreamException("Invalid value '" + v +
+                        "' for field '" + names[i] + "'", e);
+            }
+        }
+    }
+
+    private static void writeValue(DataType t, Object v, ByteBuffer out) {
+        if (t == DataType.INTEGER || t == DataType.ID) {
+            out.putInt((Integer) v);
+        } else if (t == DataType.FLOAT) {
+            out.putFloat((Float) v);
+        } else if (t == DataType.BOOLEAN) {
+            boolean b;
+            if (v instanceof LogicValue) {
+                b = v == LogicValue.TRUE;
+            } else {
+                b = (Boolean) v;
+            }
+            out.put(b ? (byte) 1 : (byte) 0);
+        } else if (t == DataType.TIMESTAMP) {
+            Instant ts = (Instant) v;
+            out.putLong(ts.getEpochSecond());
+            out.putInt(ts.getNano());
+        } else {
+            byte[] s = ((String) v).getBytes(StandardCharsets.UTF_8);
+            out.putInt(s.length);
+            out.put(s);
+        }
+    }
+
+    /**
+     * Decodes a record
+     *
+     * @param in buffer containing the encoded record
+     * @return decoded record
+     */
+    protected Object[] decode(ByteBuffer in) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unknown record version " +
+                    version);
+        }
+        int bitmap = in.position();
+        in.position(bitmap + bitmapSize);
+
+        Object[] record = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if ((in.get(bitmap + i / 8) & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            record[i] = readValue(types[i], in);
+        }
+        return record;
+    }
+
+    /**
+     * Reads the timestamp field of an encoded record, without decoding the
+     * other fields. The position of the buffer is not modified.
+     *
+     * @param in buffer containing the encoded record
+     * @return record timestamp, {@code null} if the timestamp is NULL or
+     * if the record does not have a timestamp field
+     */
+    protected Instant timestamp(ByteBuffer in) {
+        int bitmap = in.position() + 1;
+        if (tsIdx == -1 ||
+                (in.get(bitmap + tsIdx / 8) & (1 << (tsIdx % 8))) != 0) {
+            return null;
+        }
+
+        int pos = bitmap + bitmapSize;
+        for (int i = 0; i < tsIdx; i++) {
+            if ((in.get(bitmap + i / 8) & (1 << (i % 8))) != 0) {
+                continue;
+            }
+            DataType t = types[i];
+            if (t == DataType.BOOLEAN) {
+                pos += 1;
+            } else if (t == DataType.TIMESTAMP) {
+                pos += 12;
+            } else if (t == DataType.STRING) {
+                pos += 4 + in.getInt(pos);
+            } else {
+                pos += 4;
+            }
+        }
+        return Instant.ofEpochSecond(in.getLong(pos), in.getInt(pos + 8));
+    }
+
+    private static Object readValue(DataType t, ByteBuffer in) {
+        if (t == DataType.INTEGER || t == DataType.ID) {
+            return in.getInt();
+        } else if (t == DataType.FLOAT) {
+            return in.getFloat();
+        } else if (t == DataType.BOOLEAN) {
+            return in.get() != 0;
+        } else if (t == DataType.TIMESTAMP) {
+            long sec = in.getLong();
+            int nanos = in.getInt();
+            return Instant.ofEpochSecond(sec, nanos);
+        } else {
+            byte[] s = new byte[in.getInt()];
+            in.get(s);
+            return new String(s, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the field definitions passed as parameter
+     *
+     * @param fields field definitions
+     * @param out output
+     * @throws IOException if the definitions cannot be written
+     * @throws StreamException if a default value does not match the type of
+     * its field
+     */
+    protected static void writeFields(List<FieldDefinition> fields,
+            DataOutput out) throws IOException, StreamException {
+        out.writeInt(fields.size());
+        for (FieldDefinition f : fields) {
+            out.writeUTF(f.getName());
+            out.writeUTF(f.getType().getId());
+            Object def = f.getDefaultValue();
+            out.writeBoolean(def != null);
+            if (def == null) {
+                continue;
+            }
+            ByteBuffer b = new RecordCodec(Arrays.asList(f))
+                    .encode(new Object[]{def}, ByteBuffer.allocate(64));
+            out.writeInt(b.remaining());
+            out.write(b.array(), 0, b.remaining());
+        }
+    }
+
+    /**
+     * Reads a list of field definitions
+     *
+     * @param in input
+     * @return field definitions
+     * @throws IOException if the definitions cannot be read
+     * @throws StreamException if the definitions are corrupted
+     */
+    protected static List<FieldDefinition> readFields(DataInput in)
+            throws IOException, StreamException {
+        int count = in.readInt();
+        List<FieldDefinition> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            String typeId = in.readUTF();
+            DataType type = null;
+            for (DataType t : TYPES) {
+                if (t.getId().equals(typeId)) {
+                    type = t;
+                }
+            }
+            if (type == null) {
+                throw new StreamException("Unknown type '" + typeId +
+                        "' for field '" + name + "'");
+            }
+
+            Object def = null;
+            if (in.readBoolean()) {
+                byte[] b = new byte[in.readInt()];
+                in.readFully(b);
+                FieldDefinition f = new FieldDefinition(name, type);
+                def = new RecordCodec(Arrays.asList(f))
+                        .decode(ByteBuffer.wrap(b))[0];
+            }
+            fields.add(new FieldDefinition(name, type, def));
+        }
+        return fields;
+    }
+
+}
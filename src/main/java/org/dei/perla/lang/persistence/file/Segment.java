@@ -0,0 +1,391 @@
+package org.dei.perla.lang.persistence.file;
+
+import org.dei.perla.lang.persistence.TimeIndex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped segment file of a {@link FileStream}.
+ *
+ * <p> Every segment starts with a 16-byte header, containing a magic
+ * number, the format version and the sequence number of the first record
+ * stored in the segment. The header is followed by the records, each
+ * framed by its length and by the CRC32 checksum of its content. A zero
+ * length marks the end of the records. Segment files are preallocated to
+ * their full size when created.
+ *
+ * <p> When a segment is recovered, records are read until the end marker
+ * or until the first record whose frame is not valid, i.e. a record that
+ * was only partially written to disk. The remainder of the segment is then
+ * cleared.
+ *
+ * <p> Every segment keeps a sparse {@link TimeIndex} of its records, whose
+ * positions are the file offsets of the record frames. The index is saved
+ * in a separate file when the segment is sealed, and loaded when first
+ * needed. Since the index can always be rebuilt from the segment records,
+ * a missing or stale index file is not an error.
+ *
+ * NOTE: Unless otherwise noted, methods of this class are not thread safe,
+ * and should only be invoked while holding the lock of the {@link
+ * FileStream}.
+ *
+ * @author Guido Rota 21/02/16.
+ */
+final class Segment {
+
+    private static final int MAGIC = 0x50534547;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FRAME_SIZE = 8;
+    private static final int INDEX_CHUNK_SIZE = 128;
+
+    private final Path path;
+    private final long base;
+    // Only written while holding the lock of the stream, but read without
+    // synchronization when the segment is forced
+    private volatile MappedByteBuffer map;
+    private int end;
+    private long count;
+    // Null until first needed, if the segment was sealed when opened
+    private TimeIndex index;
+
+    private Segment(Path path, long base, MappedByteBuffer map, int end,
+            long count, TimeIndex index) {
+        this.path = path;
+        this.base = base;
+        this.map = map;
+        this.end = end;
+        this.count = count;
+        this.index = index;
+    }
+
+    /**
+     * Returns the name of the segment file whose first record has the
+     * sequence number passed as parameter
+     */
+    protected static String fileName(long base) {
+        return String.format("%020d.seg", base);
+    }
+
+    private static Path indexPath(Path p) {
+        String name = p.getFileName().toString();
+        return p.resolveSibling(name.substring(0, name.length() - 4) +
+                ".idx");
+    }
+
+    /**
+     * Returns the sequence number of the first record of a segment, as
+     * encoded in its file name, -1 if the file is not a segment
+     */
+    protected static long parseBase(Path p) {
+        String name = p.getFileName().toString();
+        if (!name.matches("[0-9]{20}\\.seg")) {
+            return -1;
+        }
+        return Long.parseLong(name.substring(0, 20));
+    }
+
+    /**
+     * Returns the maximum size of a record that fits in a segment of the
+     * specified size
+     */
+    protected static int maxRecordSize(int segmentSize) {
+        return segmentSize - HEADER_SIZE - FRAME_SIZE;
+    }
+
+    /**
+     * Creates a new empty segment
+     *
+     * @param dir segment directory
+     * @param base sequence number of the first record of the segment
+     * @param size segment size, in bytes
+     */
+    protected static Segment create(Path dir, long base, int size)
+            throws IOException {
+        Path p = dir.resolve(fileName(base));
+        try (FileChannel ch = FileChannel.open(p,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(MapMode.READ_WRITE, 0, size);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putLong(8, base);
+            map.force();
+            return new Segment(p, base, map, HEADER_SIZE, 0,
+                    new TimeIndex(INDEX_CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Opens a segment that is no longer written. The segment is only
+     * mapped in memory when its records are read.
+     *
+     * @param p segment file
+     * @param count number of records stored in the segment
+     */
+    protected static Segment sealed(Path p, long count) {
+        return new Segment(p, parseBase(p), null, -1, count, null);
+    }
+
+    /**
+     * Opens the segment to which new records are appended, and scans its
+     * content to find the end of the last valid record
+     *
+     * @param p segment file
+     * @param codec record codec, used to index the record timestamps
+     */
+    protected static Segment recover(Path p, RecordCodec codec)
+            throws IOException {
+        MappedByteBuffer map = map(p, MapMode.READ_WRITE);
+        TimeIndex index = new TimeIndex(INDEX_CHUNK_SIZE);
+        CRC32 crc = new CRC32();
+        int pos = HEADER_SIZE;
+        long count = 0;
+        boolean clean = false;
+        while (pos + FRAME_SIZE <= map.capacity()) {
+            int len = map.getInt(pos);
+            if (len == 0) {
+                clean = true;
+                break;
+            }
+            if (len < 0 || pos + FRAME_SIZE + len > map.capacity() ||
+                    checksum(map, pos, len, crc) != map.getInt(pos + 4)) {
+                break;
+            }
+            index.add(pos, timestamp(map, pos, codec));
+            pos += FRAME_SIZE + len;
+            count++;
+        }
+
+        if (!clean) {
+            // Clear the partially written record, so that its leftovers
+            // are not mistaken for valid records after the next restart
+            for (int i = pos; i < map.capacity(); i++) {
+                map.put(i, (byte) 0);
+            }
+            map.force();
+        }
+        return new Segment(p, parseBase(p), map, pos, count, index);
+    }
+
+    private static Instant timestamp(ByteBuffer b, int pos,
+            RecordCodec codec) {
+        ByteBuffer r = b.duplicate();
+        r.position(pos + FRAME_SIZE);
+        return codec.timestamp(r);
+    }
+
+    private static MappedByteBuffer map(Path p, MapMode mode)
+            throws IOException {
+        StandardOpenOption[] opts = mode == MapMode.READ_ONLY ?
+                new StandardOpenOption[]{StandardOpenOption.READ} :
+                new StandardOpenOption[]{StandardOpenOption.READ,
+                        StandardOpenOption.WRITE};
+        try (FileChannel ch = FileChannel.open(p, opts)) {
+            MappedByteBuffer map = ch.map(mode, 0, ch.size());
+            if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC ||
+                    map.getInt(4) != VERSION ||
+                    map.getLong(8) != parseBase(p)) {
+                throw new IOException("Invalid segment file " + p);
+            }
+            return map;
+        }
+    }
+
+    private static int checksum(ByteBuffer map, int pos, int len,
+            CRC32 crc) {
+        ByteBuffer b = map.duplicate();
+        b.limit(pos + FRAME_SIZE + len);
+        b.position(pos + FRAME_SIZE);
+        crc.reset();
+        crc.update(b);
+        return (int) crc.getValue();
+    }
+
+    public long getBase() {
+        return base;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Appends a new record to the segment
+     *
+     * @param record encoded record
+     * @param ts record timestamp
+     * @param crc checksum calculator
+     * @return true if the record was appended, false if the segment does
+     * not have enough space left
+     */
+    protected boolean append(ByteBuffer record, Instant ts, CRC32 crc) {
+        MappedByteBuffer map = this.map;
+        int len = record.remaining();
+        if (end + FRAME_SIZE + len > map.capacity()) {
+            return false;
+        }
+
+        crc.reset();
+        crc.update(record.duplicate());
+        map.position(end + FRAME_SIZE);
+        map.put(record);
+        map.putInt(end + 4, (int) crc.getValue());
+        map.putInt(end, len);
+        index.add(end, ts);
+        end += FRAME_SIZE + len;
+        count++;
+        if (end + 4 <= map.capacity()) {
+            map.putInt(end, 0);
+        }
+        return true;
+    }
+
+    /**
+     * Forces the content of the segment to the storage device. This
+     * method can be invoked concurrently with {@code append()}.
+     */
+    protected void force() {
+        MappedByteBuffer m = map;
+        // Sealed segments have already been forced
+        if (m != null) {
+            m.force();
+        }
+    }
+
+    /**
+     * Returns a buffer over the content of the segment. Sealed segments
+     * are mapped in memory in read-only mode.
+     *
+     * NOTE: The records of the segment can be read through the buffer
+     * without synchronization, as long as the caller only reads the
+     * records appended before this method was invoked.
+     */
+    protected ByteBuffer buffer() throws IOException {
+        MappedByteBuffer m = map;
+        if (m != null) {
+            return m.duplicate();
+        }
+        return map(path, MapMode.READ_ONLY);
+    }
+
+    /**
+     * Sets position and limit of the buffer to the boundaries of the
+     * record stored at the specified offset
+     *
+     * @param b segment buffer
+     * @param pos offset of the record frame
+     * @return offset of the next record frame
+     */
+    protected static int record(ByteBuffer b, int pos) {
+        int len = b.getInt(pos);
+        b.limit(pos + FRAME_SIZE + len);
+        b.position(pos + FRAME_SIZE);
+        return pos + FRAME_SIZE + len;
+    }
+
+    /**
+     * Invokes the consumer on every record of the segment. The buffers
+     * passed to the consumer are only valid during the invocation.
+     *
+     * @param c record consumer
+     */
+    protected void forEach(Consumer<ByteBuffer> c) throws IOException {
+        ByteBuffer b = buffer();
+        int pos = HEADER_SIZE;
+        for (long i = 0; i < count; i++) {
+            pos = record(b, pos);
+            c.accept(b);
+            b.limit(b.capacity());
+        }
+    }
+
+    /**
+     * Returns the timestamp index of the segment. The index of a segment
+     * that was sealed when opened is read from its index file, or rebuilt
+     * from the segment records if the file is missing or stale.
+     *
+     * @param codec record codec, used to rebuild the index
+     */
+    protected TimeIndex index(RecordCodec codec) throws IOException {
+        if (index != null) {
+            return index;
+        }
+
+        Path ip = indexPath(path);
+        if (Files.exists(ip)) {
+            try (InputStream is = Files.newInputStream(ip);
+                    DataInputStream in = new DataInputStream(is)) {
+                TimeIndex idx = TimeIndex.read(in);
+                if (idx.getCount() == count) {
+                    index = idx;
+                    return index;
+                }
+            } catch (IOException e) {
+                // Rebuild the index below
+            }
+        }
+
+        TimeIndex idx = new TimeIndex(INDEX_CHUNK_SIZE);
+        ByteBuffer b = buffer();
+        int pos = HEADER_SIZE;
+        for (long i = 0; i < count; i++) {
+            idx.add(pos, timestamp(b, pos, codec));
+            pos += FRAME_SIZE + b.getInt(pos);
+        }
+        index = idx;
+        writeIndex();
+        return index;
+    }
+
+    /*
+     * Saves the index of a sealed segment. Failures are ignored, since the
+     * index is rebuilt when the file is not available.
+     */
+    private void writeIndex() {
+        Path ip = indexPath(path);
+        Path tmp = ip.resolveSibling(ip.getFileName() + ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                    DataOutputStream out = new DataOutputStream(os)) {
+                index.write(out);
+            }
+            Files.move(tmp, ip, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The index will be rebuilt when the segment is next opened
+        }
+    }
+
+    /**
+     * Releases the mapping of a segment that will no longer be written
+     */
+    protected void seal() {
+        map.force();
+        map = null;
+        writeIndex();
+    }
+
+    /**
+     * Indicates if the segment can still be written
+     */
+    protected boolean isSealed() {
+        return map == null;
+    }
+
+}
@@ -0,0 +1,189 @@
+package org.dei.perla.lang.persistence.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small fixed-size pool of JDBC {@link Connection}s.
+ *
+ * <p> Connections are opened lazily, up to the maximum pool size. Threads
+ * requesting a connection when all of them are in use wait until one is
+ * released. Connections found closed or invalid when released are
+ * discarded and replaced by a new one on the next request.
+ *
+ * @author Guido Rota 23/02/16.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT = 1;
+
+    private final String url;
+    private final Properties info;
+    private final int size;
+
+    private final Lock lk = new ReentrantLock();
+    private final Condition available = lk.newCondition();
+    private final List<Connection> idle = new ArrayList<>();
+    private int open = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@code ConnectionPool}
+     *
+     * @param url JDBC connection URL
+     * @param user database user
+     * @param password database password
+     * @param size maximum number of connections
+     */
+    public ConnectionPool(String url, String user, String password,
+            int size) {
+        this(url, credentials(user, password), size);
+    }
+
+    /**
+     * Creates a new {@code ConnectionPool}
+     *
+     * @param url JDBC connection URL
+     * @param info JDBC connection properties
+     * @param size maximum number of connections
+     */
+    public ConnectionPool(String url, Properties info, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.url = url;
+        this.info = info;
+        this.size = size;
+    }
+
+    private static Properties credentials(String user, String password) {
+        Properties info = new Properties();
+        if (user != null) {
+            info.setProperty("user", user);
+        }
+        if (password != null) {
+            info.setProperty("password", password);
+        }
+        return info;
+    }
+
+    /**
+     * Retrieves a connection from the pool, waiting until one is available
+     * if necessary. The connection must be returned to the pool with the
+     * {@code release()} method.
+     *
+     * @return database connection
+     * @throws SQLException if a new connection cannot be opened, or if the
+     * pool has been closed
+     */
+    public Connection acquire() throws SQLException {
+        lk.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool closed");
+                }
+                if (!idle.isEmpty()) {
+                    return idle.remove(idle.size() - 1);
+                }
+                if (open < size) {
+                    break;
+                }
+                available.awaitUninterruptibly();
+            }
+            open++;
+        } finally {
+            lk.unlock();
+        }
+
+        // New connections are opened without holding the lock, as this may
+        // take a while
+        try {
+            return DriverManager.getConnection(url, info);
+        } catch (SQLException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool
+     *
+     * @param c connection previously obtained with {@code acquire()}
+     */
+    public void release(Connection c) {
+        boolean valid;
+        try {
+            valid = c.isValid(VALIDATION_TIMEOUT);
+            if (valid && !c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            valid = false;
+        }
+
+        if (!valid) {
+            closeQuietly(c);
+            discard();
+            return;
+        }
+
+        lk.lock();
+        try {
+            if (closed) {
+                open--;
+                closeQuietly(c);
+                return;
+            }
+            idle.add(c);
+            available.signal();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    private void discard() {
+        lk.lock();
+        try {
+            open--;
+            available.signal();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // Nothing to do, the connection is being discarded anyway
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections currently in use are closed
+     * when released.
+     */
+    @Override
+    public void close() {
+        lk.lock();
+        try {
+            closed = true;
+            idle.forEach(ConnectionPool::closeQuietly);
+            open -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lk.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,317 @@
+package org.dei.perla.lang.persistence.jdbc;
+
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.persistence.StreamCursor;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.query.expression.Expression;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Stream} implementation that stores its records in a database
+ * table.
+ *
+ * <p> Records are not written immediately. They are buffered, and inserted
+ * in a single batch through a {@link PreparedStatement} when the batch is
+ * full, when the {@code flush()} method is invoked, or periodically by the
+ * {@link JdbcStreamDriver}. Records that cannot be written are retained,
+ * and written with the next batch.
+ *
+ * <p> A {@code JdbcStream} may only write a subset of the fields of its
+ * table. The remaining columns are populated by the database with their
+ * default value.
+ *
+ * @author Guido Rota 23/02/16.
+ */
+public final class JdbcStream implements Stream {
+
+    private static final int FETCH_SIZE = 256;
+
+    private final StreamTable table;
+    private final List<FieldDefinition> fields;
+    private final int batchSize;
+    private final String insert;
+
+    private final Lock lk = new ReentrantLock();
+    private final Lock flushLk = new ReentrantLock();
+    private List<Object[]> pending;
+
+    protected JdbcStream(StreamTable table, List<FieldDefinition> fields,
+            int batchSize) {
+        this.table = table;
+        this.fields = fields;
+        this.batchSize = batchSize;
+        pending = new ArrayList<>(batchSize);
+
+        StringBuilder cols = new StringBuilder();
+        StringBuilder params = new StringBuilder();
+        cols.append(table.quote(StreamTable.SEQUENCE));
+        params.append("?");
+        for (FieldDefinition f : fields) {
+            cols.append(", ").append(table.quote(f.getName()));
+            params.append(", ?");
+        }
+        insert = "INSERT INTO " + table.quote(table.getId()) + " (" + cols +
+                ") VALUES (" + params + ")";
+    }
+
+    @Override
+    public String getId() {
+        return table.getId();
+    }
+
+    @Override
+    public List<FieldDefinition> getFields() {
+        return fields;
+    }
+
+    @Override
+    public void add(Object[] record) throws StreamException {
+        check(record);
+        enqueue(record);
+    }
+
+    @Override
+    public void addAll(List<Object[]> records) throws StreamException {
+        for (Object[] r : records) {
+            check(r);
+        }
+        for (Object[] r : records) {
+            enqueue(r);
+        }
+    }
+
+    private void check(Object[] record) throws StreamException {
+        if (record == null) {
+            throw new StreamException("Cannot add null record");
+        }
+        if (record.length != fields.size()) {
+            throw new StreamException("Record size mismatch");
+        }
+        // Invalid values are rejected here, as they would otherwise cause
+        // the failure of the whole batch
+        for (int i = 0; i < record.length; i++) {
+            FieldDefinition f = fields.get(i);
+            if (!StreamTable.isValid(f.getType(), record[i])) {
+                throw new StreamException("Invalid value '" + record[i] +
+                        "' for field '" + f.getName() + "'");
+            }
+        }
+    }
+
+    private void enqueue(Object[] record) throws StreamException {
+        boolean full;
+        lk.lock();
+        try {
+            Object[] row = new Object[record.length + 1];
+            row[0] = table.nextSequence();
+            System.arraycopy(record, 0, row, 1, record.length);
+            pending.add(row);
+            full = pending.size() >= batchSize;
+        } finally {
+            lk.unlock();
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending records to the database
+     *
+     * @throws StreamException if the records cannot be written
+     */
+    public void flush() throws StreamException {
+        flushLk.lock();
+        try {
+            List<Object[]> batch;
+            lk.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>(batchSize);
+            } finally {
+                lk.unlock();
+            }
+
+            try {
+                write(batch);
+            } catch (SQLException e) {
+                lk.lock();
+                try {
+                    batch.addAll(pending);
+                    pending = batch;
+                } finally {
+                    lk.unlock();
+                }
+                throw new StreamException("Cannot write records to stream '"
+                        + getId() + "'", e);
+            }
+        } finally {
+            flushLk.unlock();
+        }
+    }
+
+    private void write(List<Object[]> batch) throws SQLException {
+        ConnectionPool pool = table.getPool();
+        Connection c = pool.acquire();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(insert)) {
+                for (Object[] row : batch) {
+                    ps.setLong(1, (Long) row[0]);
+                    for (int i = 0; i < fields.size(); i++) {
+                        StreamTable.bind(ps, i + 2, fields.get(i).getType(),
+                                row[i + 1]);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    @Override
+    public StreamCursor scan(Instant from, Instant to,
+            List<FieldDefinition> fields, Expression where)
+            throws StreamException {
+        FieldDefinition ts = table.getTimestampField();
+        if (ts == null && (from != null || to != null)) {
+            throw new StreamException("Cannot scan time range, stream '" +
+                    getId() + "' does not have a timestamp field");
+        }
+        // The time range is evaluated by the database, hence the scan only
+        // applies predicate and projection
+        StreamScan scan = new StreamScan(this.fields, null, null, fields,
+                where);
+
+        // Records added before the scan must be visible to the query
+        table.flush();
+
+        StringBuilder q = new StringBuilder("SELECT ");
+        for (int i = 0; i < this.fields.size(); i++) {
+            if (i > 0) {
+                q.append(", ");
+            }
+            q.append(table.quote(this.fields.get(i).getName()));
+        }
+        if (this.fields.isEmpty()) {
+            q.append(table.quote(StreamTable.SEQUENCE));
+        }
+        q.append(" FROM ").append(table.quote(getId()));
+        if (from != null || to != null) {
+            q.append(" WHERE ");
+            if (from != null) {
+                q.append(table.quote(ts.getName())).append(" >= ?");
+            }
+            if (from != null && to != null) {
+                q.append(" AND ");
+            }
+            if (to != null) {
+                q.append(table.quote(ts.getName())).append(" < ?");
+            }
+        }
+        q.append(" ORDER BY ").append(table.quote(StreamTable.SEQUENCE));
+
+        ConnectionPool pool = table.getPool();
+        Connection c = null;
+        PreparedStatement ps = null;
+        try {
+            c = pool.acquire();
+            ps = c.prepareStatement(q.toString());
+            int p = 1;
+            if (from != null) {
+                ps.setTimestamp(p++, Timestamp.from(from));
+            }
+            if (to != null) {
+                ps.setTimestamp(p, Timestamp.from(to));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return scan.filter(new RowCursor(c, ps, ps.executeQuery()));
+        } catch (SQLException e) {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException ignore) { }
+            }
+            if (c != null) {
+                pool.release(c);
+            }
+            throw new StreamException("Cannot scan stream '" + getId() +
+                    "'", e);
+        }
+    }
+
+
+    /**
+     * {@link StreamCursor} over the rows of a query result. The connection
+     * is returned to the pool when the cursor is closed or exhausted.
+     */
+    private final class RowCursor implements StreamCursor {
+
+        private final Connection c;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private boolean closed = false;
+
+        private RowCursor(Connection c, PreparedStatement ps, ResultSet rs) {
+            this.c = c;
+            this.ps = ps;
+            this.rs = rs;
+        }
+
+        @Override
+        public Object[] next() throws StreamException {
+            if (closed) {
+                return null;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return null;
+                }
+                Object[] r = new Object[fields.size()];
+                for (int i = 0; i < r.length; i++) {
+                    r[i] = StreamTable.read(rs, i + 1,
+                            fields.get(i).getType());
+                }
+                return r;
+            } catch (SQLException e) {
+                close();
+                throw new StreamException("Cannot read stream '" + getId() +
+                        "'", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                ps.close();
+            } catch (SQLException ignore) { }
+            table.getPool().release(c);
+        }
+
+    }
+
+}
@@ -0,0 +1,364 @@
+package org.dei.perla.lang.persistence.jdbc;
+
+import org.apache.log4j.Logger;
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.StreamDefinition;
+import org.dei.perla.lang.persistence.StreamDriver;
+import org.dei.perla.lang.persistence.StreamException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StreamDriver} implementation that stores every {@link
+ * JdbcStream} in a separate database table, named after the stream
+ * identifier. The field definitions of all streams are kept in a catalog
+ * table, which is created by the driver if missing.
+ *
+ * <p> Records are written in batches (see {@link JdbcStream}). Batches are
+ * flushed when full, and periodically by a background thread when a flush
+ * interval is specified.
+ *
+ * <p> Tables of streams containing a timestamp field are indexed on that
+ * field, so that time range scans are resolved by the database.
+ *
+ * <p> The {@link ConnectionPool} is owned by the caller, and is not closed
+ * when the driver is closed.
+ *
+ * @author Guido Rota 23/02/16.
+ */
+public final class JdbcStreamDriver implements StreamDriver, AutoCloseable {
+
+    private static final Logger log =
+            Logger.getLogger(JdbcStreamDriver.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final String CATALOG = "perla_stream_fields";
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final String quote;
+    private final ScheduledExecutorService flusher;
+    private final Map<String, StreamTable> tables = new HashMap<>();
+    private final Map<String, JdbcStream> streams = new HashMap<>();
+
+    private boolean closed = false;
+
+    /**
+     * Creates a new {@code JdbcStreamDriver} with default batch size and
+     * flush interval
+     *
+     * @param pool database connection pool
+     * @throws StreamException if the database cannot be accessed
+     */
+    public JdbcStreamDriver(ConnectionPool pool) throws StreamException {
+        this(pool, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Creates a new {@code JdbcStreamDriver}
+     *
+     * @param pool database connection pool
+     * @param batchSize maximum number of records written in a single batch
+     * @param flushInterval interval between two consecutive flushes of the
+     *                      pending records, in milliseconds. Records are
+     *                      only flushed when a batch is full if this
+     *                      parameter is 0.
+     * @throws StreamException if the database cannot be accessed
+     */
+    public JdbcStreamDriver(ConnectionPool pool, int batchSize,
+            long flushInterval) throws StreamException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException(
+                    "Flush interval cannot be negative");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+
+        Connection c = null;
+        try {
+            c = pool.acquire();
+            quote = c.getMetaData().getIdentifierQuoteString().trim();
+            createCatalog(c);
+        } catch (SQLException e) {
+            throw new StreamException("Cannot initialize stream catalog", e);
+        } finally {
+            if (c != null) {
+                pool.release(c);
+            }
+        }
+
+        if (flushInterval == 0) {
+            flusher = null;
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "JdbcStreamDriver flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval,
+                flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void createCatalog(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.executeQuery("SELECT stream_id FROM " + CATALOG +
+                    " WHERE 1 = 0").close();
+            return;
+        } catch (SQLException e) {
+            // Catalog not found
+        }
+        try (Statement s = c.createStatement()) {
+            s.executeUpdate("CREATE TABLE " + CATALOG + " (" +
+                    "stream_id VARCHAR(64) NOT NULL, " +
+                    "field_pos INTEGER NOT NULL, " +
+                    "field_name VARCHAR(64) NOT NULL, " +
+                    "field_type VARCHAR(16) NOT NULL, " +
+                    "PRIMARY KEY (stream_id, field_pos))");
+        }
+    }
+
+    private static void checkIdentifier(String id) throws StreamException {
+        if (id == null || !id.matches("[A-Za-z][A-Za-z0-9_]{0,63}")) {
+            throw new StreamException("Invalid identifier '" + id + "'");
+        }
+    }
+
+    private String q(String identifier) {
+        return quote + identifier + quote;
+    }
+
+    @Override
+    public synchronized JdbcStream create(StreamDefinition def)
+            throws StreamException {
+        checkOpen();
+        String id = def.getId();
+        checkIdentifier(id);
+        if (tables.containsKey(id) || loadFields(id) != null) {
+            throw new StreamException("Cannot create stream, id '" + id
+                    + "' has already been taken");
+        }
+
+        List<FieldDefinition> fields = def.getFields();
+        StringBuilder ddl = new StringBuilder("CREATE TABLE " + q(id) +
+                " (" + q(StreamTable.SEQUENCE) + " BIGINT NOT NULL");
+        for (FieldDefinition f : fields) {
+            checkIdentifier(f.getName());
+            ddl.append(", ").append(q(f.getName())).append(" ")
+                    .append(StreamTable.sqlType(f.getType()));
+            if (!StreamTable.isValid(f.getType(), f.getDefaultValue())) {
+                throw new StreamException("Invalid default value for " +
+                        "field '" + f.getName() + "'");
+            }
+            if (f.getDefaultValue() != null) {
+                ddl.append(" DEFAULT ").append(StreamTable.literal(
+                        f.getType(), f.getDefaultValue()));
+            }
+        }
+        ddl.append(", PRIMARY KEY (").append(q(StreamTable.SEQUENCE))
+                .append("))");
+
+        Connection c = null;
+        try {
+            c = pool.acquire();
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate(ddl.toString());
+            }
+            StreamTable table = new StreamTable(pool, id, fields, quote, 0);
+            if (table.getTimestampField() != null) {
+                try (Statement s = c.createStatement()) {
+                    s.executeUpdate("CREATE INDEX " + q(id + "_ts") +
+                            " ON " + q(id) + " (" +
+                            q(table.getTimestampField().getName()) + ")");
+                }
+            }
+
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO " +
+                    CATALOG + " (stream_id, field_pos, field_name, " +
+                    "field_type) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < fields.size(); i++) {
+                    ps.setString(1, id);
+                    ps.setInt(2, i);
+                    ps.setString(3, fields.get(i).getName());
+                    ps.setString(4, fields.get(i).getType().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            c.commit();
+
+            tables.put(id, table);
+            return stream(table);
+        } catch (SQLException e) {
+            throw new StreamException("Cannot create stream '" + id + "'", e);
+        } finally {
+            if (c != null) {
+                pool.release(c);
+            }
+        }
+    }
+
+    /*
+     * Reads the field definitions of a stream from the catalog, returns
+     * null if the stream does not exist
+     */
+    private List<FieldDefinition> loadFields(String id)
+            throws StreamException {
+        Connection c = null;
+        try {
+            c = pool.acquire();
+            List<FieldDefinition> fields = new ArrayList<>();
+            boolean found = false;
+            try (PreparedStatement ps = c.prepareStatement("SELECT " +
+                    "field_name, field_type FROM " + CATALOG +
+                    " WHERE stream_id = ? ORDER BY field_pos")) {
+                ps.setString(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found = true;
+                        fields.add(new FieldDefinition(rs.getString(1),
+                                StreamTable.parseType(rs.getString(2))));
+                    }
+                }
+            }
+            return found ? fields : null;
+        } catch (SQLException e) {
+            throw new StreamException("Cannot read catalog of stream '" +
+                    id + "'", e);
+        } finally {
+            if (c != null) {
+                pool.release(c);
+            }
+        }
+    }
+
+    private long loadSequence(String id) throws StreamException {
+        Connection c = null;
+        try {
+            c = pool.acquire();
+            try (Statement s = c.createStatement();
+                    ResultSet rs = s.executeQuery("SELECT MAX(" +
+                            q(StreamTable.SEQUENCE) + ") FROM " + q(id))) {
+                rs.next();
+                long max = rs.getLong(1);
+                return rs.wasNull() ? 0 : max + 1;
+            }
+        } catch (SQLException e) {
+            throw new StreamException("Cannot open stream '" + id + "'", e);
+        } finally {
+            if (c != null) {
+                pool.release(c);
+            }
+        }
+    }
+
+    private JdbcStream stream(StreamTable table) {
+        JdbcStream s = new JdbcStream(table, table.getFields(), batchSize);
+        table.register(s);
+        streams.put(table.getId(), s);
+        return s;
+    }
+
+    private StreamTable table(String id) throws StreamException {
+        checkOpen();
+        StreamTable table = tables.get(id);
+        if (table != null) {
+            return table;
+        }
+
+        checkIdentifier(id);
+        List<FieldDefinition> fields = loadFields(id);
+        if (fields == null) {
+            throw new StreamException("Stream '" + id + "' does not exist");
+        }
+        table = new StreamTable(pool, id, fields, quote, loadSequence(id));
+        tables.put(id, table);
+        stream(table);
+        return table;
+    }
+
+    @Override
+    public synchronized JdbcStream open(String id) throws StreamException {
+        table(id);
+        return streams.get(id);
+    }
+
+    @Override
+    public synchronized JdbcStream open(String id,
+            List<FieldDefinition> fields) throws StreamException {
+        StreamTable table = table(id);
+        for (FieldDefinition f : fields) {
+            boolean found = false;
+            for (FieldDefinition o : table.getFields()) {
+                if (o.getName().equals(f.getName()) &&
+                        o.getType() == f.getType()) {
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new StreamException("Stream '" + id + "' does not " +
+                        "contain field '" + f.getName() + "' of type " +
+                        f.getType());
+            }
+        }
+
+        JdbcStream s = new JdbcStream(table, fields, batchSize);
+        table.register(s);
+        return s;
+    }
+
+    private void checkOpen() throws StreamException {
+        if (closed) {
+            throw new StreamException("JdbcStreamDriver has been closed");
+        }
+    }
+
+    private void flush() {
+        List<StreamTable> ts;
+        synchronized (this) {
+            ts = new ArrayList<>(tables.values());
+        }
+        for (StreamTable t : ts) {
+            try {
+                t.flush();
+            } catch (StreamException e) {
+                log.error("Error flushing stream '" + t.getId() + "'", e);
+            }
+        }
+    }
+
+    /**
+     * Flushes all pending records and stops the background flush thread
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+}
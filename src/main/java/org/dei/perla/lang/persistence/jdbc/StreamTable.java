@@ -0,0 +1,239 @@
+package org.dei.perla.lang.persistence.jdbc;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.query.expression.LogicValue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Database table backing a {@link JdbcStream}. A {@code StreamTable} is
+ * shared by all {@link JdbcStream}s that write to the same table, i.e. the
+ * full stream and the field subsets opened through the {@link
+ * JdbcStreamDriver}.
+ *
+ * <p> Besides the stream fields, every table contains a sequence column,
+ * which records the insertion order of the records.
+ *
+ * @author Guido Rota 23/02/16.
+ */
+final class StreamTable {
+
+    protected static final String SEQUENCE = "perla_seq";
+
+    private static final DataType[] TYPES = new DataType[] {
+            DataType.ID,
+            DataType.INTEGER,
+            DataType.FLOAT,
+            DataType.BOOLEAN,
+            DataType.TIMESTAMP,
+            DataType.STRING
+    };
+
+    private final ConnectionPool pool;
+    private final String id;
+    private final List<FieldDefinition> fields;
+    private final String quote;
+    private final int tsIdx;
+    private final AtomicLong seq;
+    private final List<JdbcStream> writers = new CopyOnWriteArrayList<>();
+
+    protected StreamTable(ConnectionPool pool, String id,
+            List<FieldDefinition> fields, String quote, long next) {
+        this.pool = pool;
+        this.id = id;
+        this.fields = fields;
+        this.quote = quote;
+        this.seq = new AtomicLong(next);
+        tsIdx = StreamScan.timestampIndex(fields);
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<FieldDefinition> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the timestamp field of the table, {@code null} if the table
+     * does not have one
+     */
+    public FieldDefinition getTimestampField() {
+        return tsIdx == -1 ? null : fields.get(tsIdx);
+    }
+
+    /**
+     * Returns the sequence number of a new record
+     */
+    protected long nextSequence() {
+        return seq.getAndIncrement();
+    }
+
+    /**
+     * Quotes an identifier
+     */
+    protected String quote(String identifier) {
+        return quote + identifier + quote;
+    }
+
+    protected void register(JdbcStream s) {
+        writers.add(s);
+    }
+
+    /**
+     * Flushes the pending records of all streams writing to the table
+     *
+     * @throws StreamException if the records cannot be written
+     */
+    protected void flush() throws StreamException {
+        for (JdbcStream s : writers) {
+            s.flush();
+        }
+    }
+
+    /**
+     * Returns the SQL type used to store values of the specified type
+     */
+    protected static String sqlType(DataType t) throws StreamException {
+        if (t == DataType.INTEGER || t == DataType.ID) {
+            return "INTEGER";
+        } else if (t == DataType.FLOAT) {
+            return "REAL";
+        } else if (t == DataType.BOOLEAN) {
+            return "BOOLEAN";
+        } else if (t == DataType.TIMESTAMP) {
+            return "TIMESTAMP";
+        } else if (t == DataType.STRING) {
+            return "VARCHAR(255)";
+        }
+        throw new StreamException("Unsupported type '" + t + "'");
+    }
+
+    /**
+     * Returns the {@link DataType} with the specified identifier
+     */
+    protected static DataType parseType(String id) throws StreamException {
+        for (DataType t : TYPES) {
+            if (t.getId().equals(id)) {
+                return t;
+            }
+        }
+        throw new StreamException("Unsupported type '" + id + "'");
+    }
+
+    private static int jdbcType(DataType t) {
+        if (t == DataType.INTEGER || t == DataType.ID) {
+            return Types.INTEGER;
+        } else if (t == DataType.FLOAT) {
+            return Types.REAL;
+        } else if (t == DataType.BOOLEAN) {
+            return Types.BOOLEAN;
+        } else if (t == DataType.TIMESTAMP) {
+            return Types.TIMESTAMP;
+        } else {
+            return Types.VARCHAR;
+        }
+    }
+
+    /**
+     * Returns the SQL literal of a field default value
+     */
+    protected static String literal(DataType t, Object v) {
+        if (v == null || v == LogicValue.UNKNOWN) {
+            return "NULL";
+        } else if (t == DataType.BOOLEAN) {
+            return toBoolean(v) ? "TRUE" : "FALSE";
+        } else if (t == DataType.TIMESTAMP) {
+            return "TIMESTAMP '" + Timestamp.from((Instant) v) + "'";
+        } else if (t == DataType.STRING) {
+            return "'" + ((String) v).replace("'", "''") + "'";
+        }
+        return v.toString();
+    }
+
+    private static boolean toBoolean(Object v) {
+        if (v instanceof LogicValue) {
+            return v == LogicValue.TRUE;
+        }
+        return (Boolean) v;
+    }
+
+    /**
+     * Checks if the value passed as parameter can be stored in a field of
+     * the specified type
+     */
+    protected static boolean isValid(DataType t, Object v) {
+        if (v == null) {
+            return true;
+        } else if (t == DataType.INTEGER || t == DataType.ID) {
+            return v instanceof Integer;
+        } else if (t == DataType.FLOAT) {
+            return v instanceof Float;
+        } else if (t == DataType.BOOLEAN) {
+            return v instanceof Boolean || v instanceof LogicValue;
+        } else if (t == DataType.TIMESTAMP) {
+            return v instanceof Instant;
+        } else if (t == DataType.STRING) {
+            return v instanceof String;
+        }
+        return false;
+    }
+
+    /**
+     * Binds a value to a statement parameter
+     */
+    protected static void bind(PreparedStatement ps, int i, DataType t,
+            Object v) throws SQLException {
+        if (v == null || v == LogicValue.UNKNOWN) {
+            ps.setNull(i, jdbcType(t));
+        } else if (t == DataType.INTEGER || t == DataType.ID) {
+            ps.setInt(i, (Integer) v);
+        } else if (t == DataType.FLOAT) {
+            ps.setFloat(i, (Float) v);
+        } else if (t == DataType.BOOLEAN) {
+            ps.setBoolean(i, toBoolean(v));
+        } else if (t == DataType.TIMESTAMP) {
+            ps.setTimestamp(i, Timestamp.from((Instant) v));
+        } else {
+            ps.setString(i, (String) v);
+        }
+    }
+
+    /**
+     * Reads a value from the current row of a result set
+     */
+    protected static Object read(ResultSet rs, int i, DataType t)
+            throws SQLException {
+        Object v;
+        if (t == DataType.INTEGER || t == DataType.ID) {
+            v = rs.getInt(i);
+        } else if (t == DataType.FLOAT) {
+            v = rs.getFloat(i);
+        } else if (t == DataType.BOOLEAN) {
+            v = rs.getBoolean(i);
+        } else if (t == DataType.TIMESTAMP) {
+            Timestamp ts = rs.getTimestamp(i);
+            v = ts == null ? null : ts.toInstant();
+        } else {
+            v = rs.getString(i);
+        }
+        return rs.wasNull() ? null : v;
+    }
+
+}
@@ -2,11 +2,16 @@ package org.dei.perla.lang.persistence.memory;
 
 import org.dei.perla.lang.persistence.FieldDefinition;
 import org.dei.perla.lang.persistence.Stream;
+import org.dei.perla.lang.persistence.StreamCursor;
 import org.dei.perla.lang.persistence.StreamDefinition;
 import org.dei.perla.lang.persistence.StreamException;
+import org.dei.perla.lang.persistence.StreamScan;
+import org.dei.perla.lang.persistence.TimeIndex;
+import org.dei.perla.lang.query.expression.Expression;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -16,13 +21,18 @@ import java.util.List;
  */
 public class MemoryStream implements Stream {
 
+    private static final int CHUNK_SIZE = 256;
+
     private final String id;
     private final List<FieldDefinition> fields;
+    private final int tsIdx;
     private final List<Object[]> records = new ArrayList<>();
+    private final TimeIndex index = new TimeIndex(CHUNK_SIZE);
 
     protected MemoryStream(StreamDefinition def) {
         id = def.getId();
         fields = def.getFields();
+        tsIdx = StreamScan.timestampIndex(fields);
     }
 
     @Override
@@ -37,6 +47,25 @@ public class MemoryStream implements Stream {
 
     @Override
     public synchronized void add(Object[] record) throws StreamException {
+        append(record, timestamp(record));
+    }
+
+    @Override
+    public synchronized void addAll(List<Object[]> batch)
+            throws StreamException {
+        Instant[] ts = new Instant[batch.size()];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = timestamp(batch.get(i));
+        }
+        for (int i = 0; i < ts.length; i++) {
+            append(batch.get(i), ts[i]);
+        }
+    }
+
+    /*
+     * Validates the record, and returns its timestamp
+     */
+    private Instant timestamp(Object[] record) throws StreamException {
         if (record == null) {
             throw new StreamException("Cannot add null record");
         }
@@ -44,7 +73,58 @@ public class MemoryStream implements Stream {
             throw new StreamException("Record size mismatch");
         }
 
+        if (tsIdx == -1) {
+            return null;
+        }
+        Object o = record[tsIdx];
+        if (o != null && !(o instanceof Instant)) {
+            throw new StreamException("Invalid timestamp '" + o + "'");
+        }
+        return (Instant) o;
+    }
+
+    /*
+     * NOTE: This method is not thread safe, and should therefore only be
+     * invoked with proper synchronization.
+     */
+    private void append(Object[] record, Instant ts) {
+        index.add(records.size(), ts);
         records.add(record);
     }
 
+    @Override
+    public StreamCursor scan(Instant from, Instant to,
+            List<FieldDefinition> fields, Expression where)
+            throws StreamException {
+        StreamScan scan = new StreamScan(this.fields, from, to, fields,
+                where);
+
+        // Candidate records are copied while holding the lock, so that the
+        // cursor is not affected by concurrent insertions
+        List<Object[]> cand = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < index.size(); i++) {
+                if (!index.overlaps(i, from, to)) {
+                    continue;
+                }
+                int start = (int) index.getPosition(i);
+                int end = start + index.getRecords(i);
+                cand.addAll(records.subList(start, end));
+            }
+        }
+
+        Iterator<Object[]> it = cand.iterator();
+        return scan.filter(new StreamCursor() {
+
+            @Override
+            public Object[] next() {
+                return it.hasNext() ? it.next() : null;
+            }
+
+            @Override
+            public void close() { }
+
+        });
+    }
+
 }
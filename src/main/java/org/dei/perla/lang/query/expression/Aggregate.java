@@ -2,6 +2,7 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 import java.time.Instant;
@@ -62,8 +63,14 @@ public abstract class Aggregate extends Expression {
 
     @Override
     public final Object run(Object[] sample, BufferView view) {
-        Object res;
+        Object res = view.getAggregate(this);
+        if (res != AggregateState.UNAVAILABLE) {
+            return res;
+        }
 
+        // Ask the buffer to compute the aggregate incrementally from now
+        // on, and fall back to a full scan of the window
+        view.trackAggregate(this);
         switch (ws.getType()) {
             case SAMPLE:
                 view = view.subView(ws.getSamples());
@@ -84,6 +91,36 @@ public abstract class Aggregate extends Expression {
 
     protected abstract Object compute(BufferView view);
 
+    /**
+     * Returns the aggregate operand if its values can be read directly from
+     * the columns of the view, i.e. when the view is a {@link
+     * ColumnarBufferView}, the operand is a plain attribute reference and
+     * no filter is specified.
+     *
+     * @param view view to aggregate
+     * @return operand attribute reference, {@code null} if the values cannot
+     * be read from the view columns
+     */
+    protected final AttributeReference columnOperand(BufferView view) {
+        if (view instanceof ColumnarBufferView &&
+                e instanceof AttributeReference &&
+                filter == Constant.TRUE) {
+            return (AttributeReference) e;
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new {@link AggregateState} object, which can be employed to
+     * compute this aggregate incrementally over a sliding window of samples.
+     *
+     * @return new incremental aggregate state, {@code null} if the
+     * aggregate does not support incremental computation
+     */
+    public AggregateState createState() {
+        return null;
+    }
+
     /**
      * A simple wrapper class employed to allow the modification of final
      * closure variables in aggregation lambdas
@@ -0,0 +1,364 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.lang.executor.buffer.Buffer;
+import org.dei.perla.lang.query.statement.WindowSize;
+
+import java.time.Instant;
+
+/**
+ * Incremental state of an {@link Aggregate} computed over a sliding window of
+ * samples.
+ *
+ * <p> An {@code AggregateState} is kept alongside a {@link Buffer}: every
+ * sample appended to the {@link Buffer} is added to the state, and values
+ * are evicted as soon as they slide out of the aggregate's {@link WindowSize}
+ * or are deleted from the {@link Buffer}. This allows the current value of
+ * the aggregate to be retrieved in constant time, instead of re-scanning the
+ * entire window every time the aggregate is evaluated.
+ *
+ * <p> Samples are identified by a monotonically increasing sequence number,
+ * and must be added in timestamp order. It's the {@link Buffer}'s
+ * responsibility to clear and rebuild the state whenever a sample is
+ * inserted out of order.
+ *
+ * <p> This class is not thread safe.
+ *
+ * @author Guido Rota 14/01/16.
+ */
+public abstract class AggregateState {
+
+    /**
+     * Placeholder value employed to signal that the value of an aggregate
+     * is not available, since {@code null} is a legitimate aggregate result
+     */
+    public static final Object UNAVAILABLE = new Object();
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    protected final Aggregate agg;
+    private final WindowSize ws;
+
+    // Queue of the window entries that satisfy the aggregate filter,
+    // ordered from the oldest to the newest
+    private long[] seqs = new long[DEFAULT_CAPACITY];
+    private Instant[] times = new Instant[DEFAULT_CAPACITY];
+    private Object[] values = new Object[DEFAULT_CAPACITY];
+    private int first = 0;
+    private int count = 0;
+
+    // Sequence number and timestamp of the newest sample
+    private long lastSeq;
+    private Instant lastTs;
+
+    protected AggregateState(Aggregate agg) {
+        this.agg = agg;
+        this.ws = agg.getWindowSize();
+    }
+
+    /**
+     * Adds a new sample to the window. The sample is expected to be newer
+     * than any other sample previously added to the state.
+     *
+     * @param seq sample sequence number
+     * @param ts sample timestamp
+     * @param sample sample to add
+     */
+    public final void add(long seq, Instant ts, Object[] sample) {
+        lastSeq = seq;
+        lastTs = ts;
+
+        LogicValue c = (LogicValue) agg.filter.run(sample, null);
+        if (LogicValue.toBoolean(c)) {
+            Object v = agg.e.run(sample, null);
+            if (accepts(v)) {
+                enqueue(seq, ts, v);
+                push(seq, v);
+            }
+        }
+        slide();
+    }
+
+    /**
+     * Evicts all values whose sequence number is lower than the one passed
+     * as parameter. This method is invoked when samples are deleted from the
+     * {@link Buffer}.
+     *
+     * @param firstSeq sequence number of the oldest sample still available
+     */
+    public final void evict(long firstSeq) {
+        while (count > 0 && seqs[first] < firstSeq) {
+            dequeue();
+        }
+    }
+
+    /**
+     * Removes all values from the state
+     */
+    public final void clear() {
+        for (int i = 0; i < count; i++) {
+            int idx = (first + i) % seqs.length;
+            times[idx] = null;
+            values[idx] = null;
+        }
+        first = 0;
+        count = 0;
+        lastTs = null;
+        reset();
+    }
+
+    /**
+     * Evicts the values that do not belong to the aggregate window anymore
+     */
+    private void slide() {
+        switch (ws.getType()) {
+            case SAMPLE:
+                long min = lastSeq - ws.getSamples();
+                while (count > 0 && seqs[first] <= min) {
+                    dequeue();
+                }
+                break;
+            case TIME:
+                Instant target = lastTs.minus(ws.getDuration());
+                while (count > 0 && !times[first].isAfter(target)) {
+                    dequeue();
+                }
+                break;
+            default:
+                throw new RuntimeException("invalid window size");
+        }
+    }
+
+    private void enqueue(long seq, Instant ts, Object v) {
+        if (count == seqs.length) {
+            expand();
+        }
+        int idx = (first + count) % seqs.length;
+        seqs[idx] = seq;
+        times[idx] = ts;
+        values[idx] = v;
+        count++;
+    }
+
+    private void dequeue() {
+        long seq = seqs[first];
+        Object v = values[first];
+        times[first] = null;
+        values[first] = null;
+        first = (first + 1) % seqs.length;
+        count--;
+        pop(seq, v);
+    }
+
+    private void expand() {
+        int len = seqs.length * 2;
+        long[] newSeqs = new long[len];
+        Instant[] newTimes = new Instant[len];
+        Object[] newValues = new Object[len];
+        for (int i = 0; i < count; i++) {
+            int idx = (first + i) % seqs.length;
+            newSeqs[i] = seqs[idx];
+            newTimes[i] = times[idx];
+            newValues[i] = values[idx];
+        }
+        seqs = newSeqs;
+        times = newTimes;
+        values = newValues;
+        first = 0;
+    }
+
+    /**
+     * Returns the number of values currently in the window
+     *
+     * @return number of values in the window
+     */
+    protected final int count() {
+        return count;
+    }
+
+    /**
+     * Indicates if the value passed as parameter is to be included in the
+     * aggregate. NULL values are ignored by default.
+     *
+     * @param v aggregate operand value
+     * @return true if the value must be aggregated, false otherwise
+     */
+    protected boolean accepts(Object v) {
+        return v != null;
+    }
+
+    /**
+     * Adds a value to the aggregate. Values are pushed in the same order
+     * in which they entered the window.
+     *
+     * @param seq sequence number of the sample the value belongs to
+     * @param v value to add
+     */
+    protected abstract void push(long seq, Object v);
+
+    /**
+     * Removes a value from the aggregate. Values are popped in the same
+     * order in which they were pushed.
+     *
+     * @param seq sequence number of the sample the value belongs to
+     * @param v value to remove
+     */
+    protected abstract void pop(long seq, Object v);
+
+    /**
+     * Resets the aggregate to its empty state
+     */
+    protected abstract void reset();
+
+    /**
+     * Returns the current value of the aggregate
+     *
+     * @return aggregate value
+     */
+    public abstract Object value();
+
+
+    /**
+     * Sliding sum of float values. Employs the two-stack technique in place
+     * of subtract-on-evict, to prevent rounding errors from accumulating
+     * while values enter and exit the window.
+     */
+    protected static final class FloatSum {
+
+        // Newest values, with their running sum
+        private float[] back = new float[DEFAULT_CAPACITY];
+        private int backSize = 0;
+        private double backSum = 0;
+
+        // Oldest values, stored as suffix sums. The top of the stack
+        // contains the sum of all values in the front stack.
+        private double[] front = new double[DEFAULT_CAPACITY];
+        private int frontSize = 0;
+
+        protected void push(float v) {
+            if (backSize == back.length) {
+                float[] newBack = new float[back.length * 2];
+                System.arraycopy(back, 0, newBack, 0, backSize);
+                back = newBack;
+            }
+            back[backSize++] = v;
+            backSum += v;
+        }
+
+        protected void pop() {
+            if (frontSize == 0) {
+                flip();
+            }
+            frontSize--;
+        }
+
+        /**
+         * Moves all values from the back stack to the front stack
+         */
+        private void flip() {
+            if (front.length < backSize) {
+                front = new double[back.length];
+            }
+            double sum = 0;
+            for (int i = backSize - 1; i >= 0; i--) {
+                sum += back[i];
+                front[backSize - 1 - i] = sum;
+            }
+            frontSize = backSize;
+            backSize = 0;
+            backSum = 0;
+        }
+
+        protected double sum() {
+            if (frontSize == 0) {
+                return backSum;
+            }
+            return front[frontSize - 1] + backSum;
+        }
+
+        protected void reset() {
+            backSize = 0;
+            backSum = 0;
+            frontSize = 0;
+        }
+
+    }
+
+
+    /**
+     * Monotonic queue employed to track the minimum (or maximum) value of a
+     * sliding window.
+     */
+    protected static final class MonotonicQueue {
+
+        private final boolean min;
+
+        private long[] seqs = new long[DEFAULT_CAPACITY];
+        private Object[] data = new Object[DEFAULT_CAPACITY];
+        private int first = 0;
+        private int count = 0;
+
+        protected MonotonicQueue(boolean min) {
+            this.min = min;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean dominates(Object v, Object other) {
+            int c = ((Comparable<Object>) v).compareTo(other);
+            return min ? c <= 0 : c >= 0;
+        }
+
+        protected void push(long seq, Object v) {
+            // Drop all values that cannot become the window extreme anymore
+            while (count > 0 && dominates(v, data[last()])) {
+                data[last()] = null;
+                count--;
+            }
+            if (count == data.length) {
+                long[] newSeqs = new long[data.length * 2];
+                Object[] newData = new Object[data.length * 2];
+                for (int i = 0; i < count; i++) {
+                    newSeqs[i] = seqs[(first + i) % data.length];
+                    newData[i] = data[(first + i) % data.length];
+                }
+                seqs = newSeqs;
+                data = newData;
+                first = 0;
+            }
+            int idx = (first + count) % data.length;
+            seqs[idx] = seq;
+            data[idx] = v;
+            count++;
+        }
+
+        protected void pop(long seq) {
+            // Values are evicted in insertion order, the front of the queue
+            // has to be removed only if it is the value leaving the window
+            if (count > 0 && seqs[first] == seq) {
+                data[first] = null;
+                first = (first + 1) % data.length;
+                count--;
+            }
+        }
+
+        private int last() {
+            return (first + count - 1) % data.length;
+        }
+
+        protected Object value() {
+            if (count == 0) {
+                return null;
+            }
+            return data[first];
+        }
+
+        protected void reset() {
+            for (int i = 0; i < count; i++) {
+                data[(first + i) % data.length] = null;
+            }
+            first = 0;
+            count = 0;
+        }
+
+    }
+
+}
@@ -35,6 +35,14 @@ public final class Arithmetic extends Expression {
         return op;
     }
 
+    public Expression getFirstOperand() {
+        return e1;
+    }
+
+    public Expression getSecondOperand() {
+        return e2;
+    }
+
     @Override
     public DataType getType() {
         return type;
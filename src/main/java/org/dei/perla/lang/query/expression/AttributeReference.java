@@ -2,6 +2,7 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
 
 /**
  * An {@link Expression} for accessing the value of a specific Fpc
@@ -54,6 +55,54 @@ public final class AttributeReference extends Expression {
         }
     }
 
+    /**
+     * Indicates if the attribute value of the i-th sample in the {@link
+     * ColumnarBufferView} is NULL
+     *
+     * @param view columnar view
+     * @param i sample index
+     * @return true if the value is NULL, false otherwise
+     */
+    public boolean isNull(ColumnarBufferView view, int i) {
+        return view.isNull(i, idx);
+    }
+
+    /**
+     * Reads the value of an integer attribute from the {@link
+     * ColumnarBufferView} without boxing
+     *
+     * @param view columnar view
+     * @param i sample index
+     * @return attribute value
+     */
+    public int getInt(ColumnarBufferView view, int i) {
+        return view.getInt(i, idx);
+    }
+
+    /**
+     * Reads the value of a float attribute from the {@link
+     * ColumnarBufferView} without boxing
+     *
+     * @param view columnar view
+     * @param i sample index
+     * @return attribute value
+     */
+    public float getFloat(ColumnarBufferView view, int i) {
+        return view.getFloat(i, idx);
+    }
+
+    /**
+     * Reads the value of a timestamp attribute from the {@link
+     * ColumnarBufferView} without boxing
+     *
+     * @param view columnar view
+     * @param i sample index
+     * @return attribute value in nanoseconds since epoch
+     */
+    public long getTimestamp(ColumnarBufferView view, int i) {
+        return view.getTimestamp(i, idx);
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append(id);
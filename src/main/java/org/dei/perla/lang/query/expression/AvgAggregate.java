@@ -2,6 +2,7 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 /**
@@ -24,6 +25,11 @@ public final class AvgAggregate extends Aggregate {
             return 0;
         }
 
+        AttributeReference ref = columnOperand(buffer);
+        if (ref != null) {
+            return computeColumn((ColumnarBufferView) buffer, ref);
+        }
+
         IntAccumulator count = new IntAccumulator(0);
         if (e.getType() == DataType.INTEGER) {
             IntAccumulator si = new IntAccumulator(0);
@@ -59,6 +65,56 @@ public final class AvgAggregate extends Aggregate {
         }
     }
 
+    private Object computeColumn(ColumnarBufferView view,
+            AttributeReference ref) {
+        int count = 0;
+        if (e.getType() == DataType.INTEGER) {
+            int si = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (!ref.isNull(view, i)) {
+                    si += ref.getInt(view, i);
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return 0;
+            } else {
+                return (float) si / count;
+            }
+        } else if (e.getType() == DataType.FLOAT) {
+            float sf = 0f;
+            for (int i = 0; i < view.size(); i++) {
+                if (!ref.isNull(view, i)) {
+                    sf += ref.getFloat(view, i);
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return 0;
+            } else {
+                return sf / count;
+            }
+        } else {
+            throw new RuntimeException(
+                    "avg aggregation not defined for type '" + e.getType() + "'");
+        }
+    }
+
+    @Override
+    public AggregateState createState() {
+        if (e.equals(Constant.NULL)) {
+            return null;
+        }
+
+        if (e.getType() == DataType.INTEGER) {
+            return new IntAvgState(this);
+        } else if (e.getType() == DataType.FLOAT) {
+            return new FloatAvgState(this);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     public void buildString(StringBuilder bld) {
         bld.append("AVG(")
@@ -70,4 +126,78 @@ public final class AvgAggregate extends Aggregate {
                 .append(")");
     }
 
+
+
+    /**
+     * Incremental average aggregate state for integer operands
+     */
+    private static final class IntAvgState extends AggregateState {
+
+        private int sum = 0;
+
+        private IntAvgState(AvgAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            sum += (Integer) v;
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            sum -= (Integer) v;
+        }
+
+        @Override
+        protected void reset() {
+            sum = 0;
+        }
+
+        @Override
+        public Object value() {
+            if (count() == 0) {
+                return 0;
+            }
+            return (float) sum / count();
+        }
+
+    }
+
+    /**
+     * Incremental average aggregate state for float operands
+     */
+    private static final class FloatAvgState extends AggregateState {
+
+        private final FloatSum sum = new FloatSum();
+
+        private FloatAvgState(AvgAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            sum.push((Float) v);
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            sum.pop();
+        }
+
+        @Override
+        protected void reset() {
+            sum.reset();
+        }
+
+        @Override
+        public Object value() {
+            if (count() == 0) {
+                return 0;
+            }
+            return (float) sum.sum() / count();
+        }
+
+    }
+
 }
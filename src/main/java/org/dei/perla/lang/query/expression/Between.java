@@ -3,6 +3,8 @@ package org.dei.perla.lang.query.expression;
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
 
+import java.util.BitSet;
+
 /**
  * A comparison expression that tests if a value lies between an inclusive
  * range.
@@ -24,6 +26,18 @@ public final class Between extends Expression {
         this.max = max;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
+    public Expression getMin() {
+        return min;
+    }
+
+    public Expression getMax() {
+        return max;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
@@ -38,6 +52,61 @@ public final class Between extends Expression {
         return compute(o, omin, omax);
     }
 
+    /**
+     * Ranges over an integer or float attribute with constant bounds of the
+     * same type are evaluated directly on the primitive attribute values of
+     * the batch.
+     */
+    @Override
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        if (!(e instanceof AttributeReference) ||
+                !(min instanceof Constant) || !(max instanceof Constant)) {
+            super.filter(batch, sel, buffer);
+            return;
+        }
+
+        DataType t = e.getType();
+        int col = ((AttributeReference) e).getIndex();
+        Object omin = ((Constant) min).getValue();
+        Object omax = ((Constant) max).getValue();
+        if (t == DataType.INTEGER && min.getType() == t &&
+                max.getType() == t) {
+            int vmin = (Integer) omin;
+            int vmax = (Integer) omax;
+            for (int i = sel.nextSetBit(0); i >= 0;
+                    i = sel.nextSetBit(i + 1)) {
+                if (batch.isNull(i, col)) {
+                    sel.clear(i);
+                    continue;
+                }
+                int v = batch.getInt(i, col);
+                if (v < vmin || v > vmax) {
+                    sel.clear(i);
+                }
+            }
+        } else if (t == DataType.FLOAT && min.getType() == t &&
+                max.getType() == t) {
+            float vmin = (Float) omin;
+            float vmax = (Float) omax;
+            for (int i = sel.nextSetBit(0); i >= 0;
+                    i = sel.nextSetBit(i + 1)) {
+                if (batch.isNull(i, col)) {
+                    sel.clear(i);
+                    continue;
+                }
+                // Float.compare matches the Float.compareTo ordering
+                // employed by the interpreter, NaN included
+                float v = batch.getFloat(i, col);
+                if (Float.compare(v, vmin) < 0 ||
+                        Float.compare(v, vmax) > 0) {
+                    sel.clear(i);
+                }
+            }
+        } else {
+            super.filter(batch, sel, buffer);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public static LogicValue compute(Object o, Object omin, Object omax) {
         if (o == null || omin == null || omax == null) {
@@ -28,6 +28,14 @@ public final class Bitwise extends Expression {
         return op;
     }
 
+    public Expression getFirstOperand() {
+        return e1;
+    }
+
+    public Expression getSecondOperand() {
+        return e2;
+    }
+
     @Override
     public DataType getType() {
         return DataType.INTEGER;
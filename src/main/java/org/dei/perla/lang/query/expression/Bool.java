@@ -3,6 +3,8 @@ package org.dei.perla.lang.query.expression;
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
 
+import java.util.BitSet;
+
 /**
  * A class for performing various boolean operations
  *
@@ -27,6 +29,14 @@ public final class Bool extends Expression {
         return op;
     }
 
+    public Expression getFirstOperand() {
+        return e1;
+    }
+
+    public Expression getSecondOperand() {
+        return e2;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
@@ -39,6 +49,32 @@ public final class Bool extends Expression {
         return compute(op, o1, o2);
     }
 
+    /**
+     * AND and OR operations are evaluated by combining the selection
+     * bitmaps of their operands. The second operand of an AND is only
+     * evaluated on the samples selected by the first one, while the second
+     * operand of an OR is only evaluated on the samples that the first one
+     * discarded.
+     */
+    @Override
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        switch (op) {
+            case AND:
+                e1.filter(batch, sel, buffer);
+                e2.filter(batch, sel, buffer);
+                break;
+            case OR:
+                BitSet first = (BitSet) sel.clone();
+                e1.filter(batch, first, buffer);
+                sel.andNot(first);
+                e2.filter(batch, sel, buffer);
+                sel.or(first);
+                break;
+            default:
+                super.filter(batch, sel, buffer);
+        }
+    }
+
     public static Object compute(BoolOperation op, Object o1, Object o2) {
         LogicValue l1 = (LogicValue) o1;
         LogicValue l2 = (LogicValue) o2;
@@ -20,6 +20,10 @@ public final class CastFloat extends Expression {
         this.e = e;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return DataType.FLOAT;
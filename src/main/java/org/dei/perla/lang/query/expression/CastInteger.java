@@ -20,6 +20,10 @@ public final class CastInteger extends Expression {
         this.e = e;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return DataType.INTEGER;
@@ -0,0 +1,600 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.query.expression.CompiledExpression.Evaluator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * {@link ExpressionCompiler} that turns an {@link Expression} tree into a tree
+ * of specialized closures.
+ *
+ * <p> All decisions that the interpreter takes on every evaluation (operation
+ * type, operand data type, constant values) are resolved once at compile
+ * time. Integer and float sub-expressions are evaluated on primitive values,
+ * which are only boxed when the result of the whole numeric sub-tree is
+ * returned. Boolean sub-expressions are evaluated directly on {@link
+ * LogicValue}s, with short-circuit AND and OR.
+ *
+ * <p> Nodes that do not benefit from compilation (aggregates, method
+ * invocations) are evaluated through their {@code run()} method.
+ *
+ * @author Guido Rota 25/01/16.
+ */
+public final class ClosureCompiler implements ExpressionCompiler {
+
+    /**
+     * Encoded NULL value of numeric closures. Numeric closures return integer
+     * values and the raw bits of float values widened to long, neither of
+     * which can ever be equal to {@code Long.MIN_VALUE}.
+     */
+    private static final long NULL = Long.MIN_VALUE;
+
+    @Override
+    public Expression compile(Expression e) {
+        if (e == null || e instanceof Constant ||
+                e instanceof CompiledExpression) {
+            return e;
+        }
+        return new CompiledExpression(e, object(e));
+    }
+
+    private static long encode(float f) {
+        return Float.floatToRawIntBits(f);
+    }
+
+    private static float decode(long v) {
+        return Float.intBitsToFloat((int) v);
+    }
+
+    private static boolean isLogicNode(Expression e) {
+        return e instanceof Comparison || e instanceof Between ||
+                e instanceof Bool || e instanceof Not ||
+                e instanceof IsNull || e instanceof Is ||
+                e instanceof Like;
+    }
+
+    private static boolean isNumericNode(Expression e) {
+        return e instanceof Arithmetic || e instanceof Inverse ||
+                e instanceof Bitwise || e instanceof BitwiseNot ||
+                e instanceof CastFloat || e instanceof CastInteger;
+    }
+
+    private static boolean isNumeric(DataType t) {
+        return t == DataType.INTEGER || t == DataType.FLOAT;
+    }
+
+    /**
+     * Compiles an {@link Expression} into a closure that returns the same
+     * object that would be returned by the {@code run()} method.
+     */
+    private Evaluator object(Expression e) {
+        DataType t = e.getType();
+        if (e instanceof Constant) {
+            Object v = ((Constant) e).getValue();
+            return (s, b) -> v;
+        } else if (e instanceof AttributeReference && t != DataType.BOOLEAN) {
+            int idx = ((AttributeReference) e).getIndex();
+            return (s, b) -> s[idx];
+        } else if (t == DataType.BOOLEAN && isLogicNode(e)) {
+            LogicEvaluator l = logic(e);
+            return l::eval;
+        } else if (t == DataType.INTEGER && isNumericNode(e)) {
+            NumericEvaluator n = numeric(e, t);
+            return (s, b) -> {
+                long v = n.eval(s, b);
+                return v == NULL ? null : (Integer) (int) v;
+            };
+        } else if (t == DataType.FLOAT && isNumericNode(e)) {
+            NumericEvaluator n = numeric(e, t);
+            return (s, b) -> {
+                long v = n.eval(s, b);
+                return v == NULL ? null : (Float) decode(v);
+            };
+        }
+        return e::run;
+    }
+
+    /**
+     * Compiles a numeric {@link Expression} into a closure that returns
+     * primitive values. Integers are returned as they are, float values as
+     * their raw int bits, NULL as {@link #NULL}.
+     *
+     * @param e expression to compile
+     * @param t expected type of the expression, either integer or float
+     */
+    private NumericEvaluator numeric(Expression e, DataType t) {
+        if (e.getType() != t) {
+            return boxed(e, t);
+        }
+
+        if (e instanceof Constant) {
+            Object o = ((Constant) e).getValue();
+            long v;
+            if (o == null) {
+                v = NULL;
+            } else if (t == DataType.INTEGER) {
+                v = (Integer) o;
+            } else {
+                v = encode((Float) o);
+            }
+            return (s, b) -> v;
+
+        } else if (e instanceof AttributeReference) {
+            int idx = ((AttributeReference) e).getIndex();
+            if (t == DataType.INTEGER) {
+                return (s, b) -> {
+                    Object o = s[idx];
+                    return o == null ? NULL : (Integer) o;
+                };
+            } else {
+                return (s, b) -> {
+                    Object o = s[idx];
+                    return o == null ? NULL : encode((Float) o);
+                };
+            }
+
+        } else if (e instanceof Arithmetic) {
+            return arithmetic((Arithmetic) e, t);
+
+        } else if (e instanceof Inverse) {
+            NumericEvaluator n = numeric(((Inverse) e).getOperand(), t);
+            if (t == DataType.INTEGER) {
+                return (s, b) -> {
+                    long v = n.eval(s, b);
+                    return v == NULL ? NULL : -(int) v;
+                };
+            } else {
+                return (s, b) -> {
+                    long v = n.eval(s, b);
+                    return v == NULL ? NULL : encode(-decode(v));
+                };
+            }
+
+        } else if (e instanceof BitwiseNot && t == DataType.INTEGER) {
+            NumericEvaluator n = numeric(((BitwiseNot) e).getOperand(), t);
+            return (s, b) -> {
+                long v = n.eval(s, b);
+                return v == NULL ? NULL : ~(int) v;
+            };
+
+        } else if (e instanceof Bitwise) {
+            return bitwise((Bitwise) e);
+
+        } else if (e instanceof CastFloat) {
+            NumericEvaluator n = numeric(((CastFloat) e).getOperand(),
+                    DataType.INTEGER);
+            return (s, b) -> {
+                long v = n.eval(s, b);
+                return v == NULL ? NULL : encode((float) (int) v);
+            };
+
+        } else if (e instanceof CastInteger) {
+            NumericEvaluator n = numeric(((CastInteger) e).getOperand(),
+                    DataType.FLOAT);
+            return (s, b) -> {
+                long v = n.eval(s, b);
+                return v == NULL ? NULL : (int) decode(v);
+            };
+        }
+
+        return boxed(e, t);
+    }
+
+    /**
+     * Fallback numeric closure, which evaluates the {@link Expression}
+     * through its {@code run()} method and unboxes the result
+     */
+    private NumericEvaluator boxed(Expression e, DataType t) {
+        if (t == DataType.INTEGER) {
+            return (s, b) -> {
+                Object o = e.run(s, b);
+                return o == null ? NULL : (Integer) o;
+            };
+        } else {
+            return (s, b) -> {
+                Object o = e.run(s, b);
+                return o == null ? NULL : encode((Float) o);
+            };
+        }
+    }
+
+    private NumericEvaluator arithmetic(Arithmetic a, DataType t) {
+        NumericEvaluator l = numeric(a.getFirstOperand(), t);
+        NumericEvaluator r = numeric(a.getSecondOperand(), t);
+
+        if (t == DataType.INTEGER) {
+            switch (a.getOperation()) {
+                case ADDITION:
+                    return (s, b) -> {
+                        long x = l.eval(s, b);
+                        long y = r.eval(s, b);
+                        return x == NULL || y == NULL ? NULL :
+                                (int) x + (int) y;
+                    };
+                case SUBTRACTION:
+                    return (s, b) -> {
+                        long x = l.eval(s, b);
+                        long y = r.eval(s, b);
+                        return x == NULL || y == NULL ? NULL :
+                                (int) x - (int) y;
+                    };
+                case PRODUCT:
+                    return (s, b) -> {
+                        long x = l.eval(s, b);
+                        long y = r.eval(s, b);
+                        return x == NULL || y == NULL ? NULL :
+                                (int) x * (int) y;
+                    };
+                case DIVISION:
+                    return (s, b) -> {
+                        long x = l.eval(s, b);
+                        long y = r.eval(s, b);
+                        return x == NULL || y == NULL ? NULL :
+                                (int) x / (int) y;
+                    };
+                case MODULO:
+                    return (s, b) -> {
+                        long x = l.eval(s, b);
+                        long y = r.eval(s, b);
+                        return x == NULL || y == NULL ? NULL :
+                                (int) x % (int) y;
+                    };
+                default:
+                    throw new RuntimeException("unkown arithmetic operation");
+            }
+        }
+
+        switch (a.getOperation()) {
+            case ADDITION:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            encode(decode(x) + decode(y));
+                };
+            case SUBTRACTION:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            encode(decode(x) - decode(y));
+                };
+            case PRODUCT:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            encode(decode(x) * decode(y));
+                };
+            case DIVISION:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            encode(decode(x) / decode(y));
+                };
+            case MODULO:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return NULL;
+                    }
+                    throw new RuntimeException("Cannot perform modulo " +
+                            "operation on float operands");
+                };
+            default:
+                throw new RuntimeException("unkown arithmetic operation");
+        }
+    }
+
+    private NumericEvaluator bitwise(Bitwise bw) {
+        NumericEvaluator l = numeric(bw.getFirstOperand(), DataType.INTEGER);
+        NumericEvaluator r = numeric(bw.getSecondOperand(), DataType.INTEGER);
+
+        switch (bw.getOperation()) {
+            case AND:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL : (int) x & (int) y;
+                };
+            case OR:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL : (int) x | (int) y;
+                };
+            case XOR:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL : (int) x ^ (int) y;
+                };
+            case RSH:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            (int) x >> (int) y;
+                };
+            case LSH:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    return x == NULL || y == NULL ? NULL :
+                            (int) x << (int) y;
+                };
+            default:
+                throw new RuntimeException("unknown bitwise operator " +
+                        bw.getOperation());
+        }
+    }
+
+    /**
+     * Compiles a numeric {@link Expression} into a closure that returns
+     * integer keys whose natural ordering is the same as the ordering of the
+     * original values. Integers are their own keys, while float keys
+     * follow the ordering imposed by {@code Float.compare()}.
+     */
+    private NumericEvaluator sortKey(Expression e, DataType t) {
+        NumericEvaluator n = numeric(e, t);
+        if (t == DataType.INTEGER) {
+            return n;
+        }
+        return (s, b) -> {
+            long v = n.eval(s, b);
+            if (v == NULL) {
+                return NULL;
+            }
+            int k = Float.floatToIntBits(decode(v));
+            return k ^ ((k >> 31) & 0x7fffffff);
+        };
+    }
+
+    /**
+     * Compiles a boolean {@link Expression} into a closure that returns the
+     * same {@link LogicValue} that would be returned by the {@code run()}
+     * method.
+     */
+    private LogicEvaluator logic(Expression e) {
+        if (e.getType() != DataType.BOOLEAN) {
+            return (s, b) -> (LogicValue) e.run(s, b);
+        }
+
+        if (e instanceof Constant) {
+            LogicValue v = (LogicValue) ((Constant) e).getValue();
+            return (s, b) -> v;
+
+        } else if (e instanceof AttributeReference) {
+            int idx = ((AttributeReference) e).getIndex();
+            return (s, b) -> {
+                Object o = s[idx];
+                if (o == null) {
+                    return null;
+                }
+                return (Boolean) o ? LogicValue.TRUE : LogicValue.FALSE;
+            };
+
+        } else if (e instanceof Comparison) {
+            return comparison((Comparison) e);
+
+        } else if (e instanceof Between) {
+            return between((Between) e);
+
+        } else if (e instanceof Bool) {
+            return bool((Bool) e);
+
+        } else if (e instanceof Not) {
+            LogicEvaluator l = logic(((Not) e).getOperand());
+            return (s, b) -> LogicValue.not(l.eval(s, b));
+
+        } else if (e instanceof IsNull) {
+            Evaluator o = object(((IsNull) e).getOperand());
+            return (s, b) -> IsNull.compute(o.eval(s, b));
+
+        } else if (e instanceof Is) {
+            Is is = (Is) e;
+            Evaluator o = object(is.getOperand());
+            LogicValue l = is.getLogicValue();
+            return (s, b) -> Is.compute(o.eval(s, b), l);
+
+        } else if (e instanceof Like) {
+            Like like = (Like) e;
+            Evaluator o = object(like.getOperand());
+            LikePattern p = like.getLikePattern();
+            return (s, b) -> Like.compute(o.eval(s, b), p);
+        }
+
+        return (s, b) -> (LogicValue) e.run(s, b);
+    }
+
+    private LogicEvaluator comparison(Comparison c) {
+        Expression e1 = c.getFirstOperand();
+        Expression e2 = c.getSecondOperand();
+        DataType t = e1.getType();
+        if (t == e2.getType() && isNumeric(t)) {
+            return keyComparison(c.getOperation(),
+                    sortKey(e1, t), sortKey(e2, t));
+        }
+
+        Evaluator l = object(e1);
+        Evaluator r = object(e2);
+        IntPredicate test = test(c.getOperation());
+        return (s, b) -> {
+            Object x = l.eval(s, b);
+            Object y = r.eval(s, b);
+            if (x == null || y == null) {
+                return LogicValue.UNKNOWN;
+            }
+            @SuppressWarnings("unchecked")
+            Comparable<Object> cx = (Comparable<Object>) x;
+            return test.test(cx.compareTo(y)) ?
+                    LogicValue.TRUE : LogicValue.FALSE;
+        };
+    }
+
+    private static LogicEvaluator keyComparison(ComparisonOperation op,
+            NumericEvaluator l, NumericEvaluator r) {
+        switch (op) {
+            case LT:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x < y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            case LE:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x <= y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            case GT:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x > y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            case GE:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x >= y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            case EQ:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x == y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            case NE:
+                return (s, b) -> {
+                    long x = l.eval(s, b);
+                    long y = r.eval(s, b);
+                    if (x == NULL || y == NULL) {
+                        return LogicValue.UNKNOWN;
+                    }
+                    return x != y ? LogicValue.TRUE : LogicValue.FALSE;
+                };
+            default:
+                throw new RuntimeException("unknown comparison operator");
+        }
+    }
+
+    private static IntPredicate test(ComparisonOperation op) {
+        switch (op) {
+            case LT:
+                return c -> c < 0;
+            case LE:
+                return c -> c <= 0;
+            case GT:
+                return c -> c > 0;
+            case GE:
+                return c -> c >= 0;
+            case EQ:
+                return c -> c == 0;
+            case NE:
+                return c -> c != 0;
+            default:
+                throw new RuntimeException("unknown comparison operator");
+        }
+    }
+
+    private LogicEvaluator between(Between bt) {
+        Expression e = bt.getOperand();
+        DataType t = e.getType();
+        if (isNumeric(t) && bt.getMin().getType() == t &&
+                bt.getMax().getType() == t) {
+            NumericEvaluator v = sortKey(e, t);
+            NumericEvaluator min = sortKey(bt.getMin(), t);
+            NumericEvaluator max = sortKey(bt.getMax(), t);
+            return (s, b) -> {
+                long x = v.eval(s, b);
+                long lo = min.eval(s, b);
+                long hi = max.eval(s, b);
+                if (x == NULL || lo == NULL || hi == NULL) {
+                    return LogicValue.UNKNOWN;
+                }
+                return lo <= x && x <= hi ?
+                        LogicValue.TRUE : LogicValue.FALSE;
+            };
+        }
+
+        Evaluator v = object(e);
+        Evaluator min = object(bt.getMin());
+        Evaluator max = object(bt.getMax());
+        return (s, b) -> Between.compute(v.eval(s, b), min.eval(s, b),
+                max.eval(s, b));
+    }
+
+    private LogicEvaluator bool(Bool bl) {
+        LogicEvaluator l = logic(bl.getFirstOperand());
+        LogicEvaluator r = logic(bl.getSecondOperand());
+        switch (bl.getOperation()) {
+            case AND:
+                return (s, b) -> {
+                    LogicValue x = l.eval(s, b);
+                    if (x == LogicValue.FALSE) {
+                        return LogicValue.FALSE;
+                    }
+                    return LogicValue.and(known(x), known(r.eval(s, b)));
+                };
+            case OR:
+                return (s, b) -> {
+                    LogicValue x = l.eval(s, b);
+                    if (x == LogicValue.TRUE) {
+                        return LogicValue.TRUE;
+                    }
+                    return LogicValue.or(known(x), known(r.eval(s, b)));
+                };
+            case XOR:
+                return (s, b) -> LogicValue.xor(known(l.eval(s, b)),
+                        known(r.eval(s, b)));
+            default:
+                throw new RuntimeException("unknown boolean operation " +
+                        bl.getOperation());
+        }
+    }
+
+    private static LogicValue known(LogicValue l) {
+        return l == null ? LogicValue.UNKNOWN : l;
+    }
+
+    /**
+     * Compiled closure returning a {@link LogicValue}
+     */
+    @FunctionalInterface
+    private interface LogicEvaluator {
+
+        public LogicValue eval(Object[] sample, BufferView buffer);
+
+    }
+
+    /**
+     * Compiled closure returning a primitive numeric value
+     */
+    @FunctionalInterface
+    private interface NumericEvaluator {
+
+        public long eval(Object[] sample, BufferView buffer);
+
+    }
+
+}
@@ -3,6 +3,8 @@ package org.dei.perla.lang.query.expression;
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
 
+import java.util.BitSet;
+
 /**
  * A class for performing different types of comparisons between values.
  *
@@ -27,6 +29,14 @@ public final class Comparison extends Expression {
         return op;
     }
 
+    public Expression getFirstOperand() {
+        return e1;
+    }
+
+    public Expression getSecondOperand() {
+        return e2;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
@@ -40,6 +50,96 @@ public final class Comparison extends Expression {
         return (compute(op, o1, o2));
     }
 
+    /**
+     * Comparisons between an integer or float attribute and a constant of
+     * the same type are evaluated directly on the primitive attribute
+     * values of the batch, without boxing the intermediate results.
+     */
+    @Override
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        if (e1 instanceof AttributeReference && e2 instanceof Constant &&
+                filterColumn(op, (AttributeReference) e1, (Constant) e2,
+                        batch, sel)) {
+            return;
+        } else if (e2 instanceof AttributeReference &&
+                e1 instanceof Constant &&
+                filterColumn(reverse(op), (AttributeReference) e2,
+                        (Constant) e1, batch, sel)) {
+            return;
+        }
+        super.filter(batch, sel, buffer);
+    }
+
+    /*
+     * Returns the operation that yields the same result when the operands
+     * are swapped
+     */
+    private static ComparisonOperation reverse(ComparisonOperation op) {
+        switch (op) {
+            case LT:
+                return ComparisonOperation.GT;
+            case LE:
+                return ComparisonOperation.GE;
+            case GT:
+                return ComparisonOperation.LT;
+            case GE:
+                return ComparisonOperation.LE;
+            default:
+                return op;
+        }
+    }
+
+    private static boolean filterColumn(ComparisonOperation op,
+            AttributeReference a, Constant c, SampleBatch batch, BitSet sel) {
+        DataType t = a.getType();
+        if (t != c.getType()) {
+            return false;
+        }
+
+        int col = a.getIndex();
+        if (t == DataType.INTEGER) {
+            int v = (Integer) c.getValue();
+            for (int i = sel.nextSetBit(0); i >= 0;
+                    i = sel.nextSetBit(i + 1)) {
+                if (batch.isNull(i, col) || !matches(op,
+                        Integer.compare(batch.getInt(i, col), v))) {
+                    sel.clear(i);
+                }
+            }
+            return true;
+        } else if (t == DataType.FLOAT) {
+            float v = (Float) c.getValue();
+            for (int i = sel.nextSetBit(0); i >= 0;
+                    i = sel.nextSetBit(i + 1)) {
+                if (batch.isNull(i, col) || !matches(op,
+                        Float.compare(batch.getFloat(i, col), v))) {
+                    sel.clear(i);
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean matches(ComparisonOperation op, int cmp) {
+        switch (op) {
+            case LT:
+                return cmp < 0;
+            case LE:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            case GE:
+                return cmp >= 0;
+            case EQ:
+                return cmp == 0;
+            case NE:
+                return cmp != 0;
+            default:
+                throw new RuntimeException("unknown comparison operator");
+        }
+    }
+
     public static Object compute(ComparisonOperation op, Object o1, Object o2) {
         if (o1 == null || o2 == null) {
             return LogicValue.UNKNOWN;
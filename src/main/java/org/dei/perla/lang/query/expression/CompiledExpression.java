@@ -0,0 +1,81 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.executor.buffer.BufferView;
+
+import java.util.BitSet;
+
+/**
+ * An {@link Expression} whose evaluation has been delegated to a function
+ * generated by an {@link ExpressionCompiler}. The original {@link Expression}
+ * tree is retained for type and string conversion purposes.
+ *
+ * @author Guido Rota 25/01/16.
+ */
+public final class CompiledExpression extends Expression {
+
+    private final Expression source;
+    private final Evaluator eval;
+
+    /**
+     * Creates a new compiled expression node
+     *
+     * @param source original expression tree
+     * @param eval compiled evaluation function
+     */
+    public CompiledExpression(Expression source, Evaluator eval) {
+        this.source = source;
+        this.eval = eval;
+    }
+
+    /**
+     * Returns the {@link Expression} tree from which this {@code
+     * CompiledExpression} was generated
+     *
+     * @return original expression tree
+     */
+    public Expression getSource() {
+        return source;
+    }
+
+    @Override
+    public DataType getType() {
+        return source.getType();
+    }
+
+    @Override
+    public Object run(Object[] sample, BufferView buffer) {
+        return eval.eval(sample, buffer);
+    }
+
+    /**
+     * Batch evaluation is delegated to the original tree when its root
+     * node is evaluated more efficiently over a whole batch than by
+     * invoking the compiled function on each sample.
+     */
+    @Override
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        if (source instanceof Comparison || source instanceof Between ||
+                source instanceof Bool) {
+            source.filter(batch, sel, buffer);
+        } else {
+            super.filter(batch, sel, buffer);
+        }
+    }
+
+    @Override
+    protected void buildString(StringBuilder bld) {
+        source.buildString(bld);
+    }
+
+    /**
+     * Compiled evaluation function
+     */
+    @FunctionalInterface
+    public interface Evaluator {
+
+        public Object eval(Object[] sample, BufferView buffer);
+
+    }
+
+}
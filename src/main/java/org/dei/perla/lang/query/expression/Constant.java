@@ -3,6 +3,8 @@ package org.dei.perla.lang.query.expression;
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
 
+import java.util.BitSet;
+
 /**
  * A class representing an expression returning a constant value
  *
@@ -88,6 +90,13 @@ public final class Constant extends Expression {
         return value;
     }
 
+    @Override
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        if (value != LogicValue.TRUE) {
+            sel.clear();
+        }
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append(value);
@@ -0,0 +1,168 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.core.fpc.DataType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ExpressionCompiler} that replaces the values of the {@link
+ * Constant}s found in an {@link Expression} tree.
+ *
+ * <p> {@link Constant}s are numbered in the order in which they are visited,
+ * across all the invocations of the {@code compile()} method. Every {@link
+ * Constant} whose position appears in the binding map is replaced by a new
+ * {@link Constant} of the same type containing the bound value, while the
+ * remaining nodes are copied as they are. All the visited {@link Constant}s
+ * are recorded, and can be retrieved after compilation through the {@code
+ * getConstants()} method; an empty binding map can therefore be used to list
+ * the {@link Constant}s of an expression.
+ *
+ * <p> Bound values whose Java type does not match the type of the {@link
+ * Constant} they replace are not bound. The original {@link Constant} is
+ * kept in their place, and the mismatch is reported by the {@code
+ * hasTypeMismatch()} method.
+ *
+ * <p> Aggregates, LIKE and method invocation nodes are not visited, and the
+ * {@link Constant}s they contain are never replaced.
+ *
+ * <p> NOTE: This class is not thread safe. A new {@code ConstantBinder} has
+ * to be created for every binding operation.
+ *
+ * @author Guido Rota 11/02/16.
+ */
+public final class ConstantBinder implements ExpressionCompiler {
+
+    private final Map<Integer, Object> bindings;
+    private final List<Constant> constants = new ArrayList<>();
+    private boolean mismatch = false;
+
+    /**
+     * Creates a new {@code ConstantBinder}
+     *
+     * @param bindings new {@link Constant} values, indexed by {@link
+     *                 Constant} position
+     */
+    public ConstantBinder(Map<Integer, Object> bindings) {
+        this.bindings = bindings;
+    }
+
+    /**
+     * Returns the {@link Constant}s visited so far, in visiting order. The
+     * list contains the original {@link Constant}s, before replacement.
+     *
+     * @return visited constants
+     */
+    public List<Constant> getConstants() {
+        return Collections.unmodifiableList(constants);
+    }
+
+    /**
+     * Indicates if any of the values bound so far did not match the type of
+     * the {@link Constant} it was supposed to replace. Expressions compiled
+     * after a mismatch do not contain all the requested bindings, and
+     * should be discarded.
+     *
+     * @return true if a bound value had the wrong type, false otherwise
+     */
+    public boolean hasTypeMismatch() {
+        return mismatch;
+    }
+
+    @Override
+    public Expression compile(Expression e) {
+        if (e == null) {
+            return null;
+        }
+        return bind(e);
+    }
+
+    private Expression bind(Expression e) {
+        if (e instanceof Constant) {
+            Constant c = (Constant) e;
+            int pos = constants.size();
+            constants.add(c);
+            if (!bindings.containsKey(pos)) {
+                return c;
+            }
+            Object v = bindings.get(pos);
+            DataType t = c.getType();
+            if (v != null && !isInstance(v, t)) {
+                mismatch = true;
+                return c;
+            }
+            return Constant.create(v, t);
+
+        } else if (e instanceof Arithmetic) {
+            Arithmetic a = (Arithmetic) e;
+            return new Arithmetic(a.getOperation(),
+                    bind(a.getFirstOperand()),
+                    bind(a.getSecondOperand()), a.getType());
+
+        } else if (e instanceof Bitwise) {
+            Bitwise b = (Bitwise) e;
+            return new Bitwise(b.getOperation(),
+                    bind(b.getFirstOperand()),
+                    bind(b.getSecondOperand()));
+
+        } else if (e instanceof Bool) {
+            Bool b = (Bool) e;
+            return new Bool(b.getOperation(),
+                    bind(b.getFirstOperand()),
+                    bind(b.getSecondOperand()));
+
+        } else if (e instanceof Comparison) {
+            Comparison c = (Comparison) e;
+            return new Comparison(c.getOperation(),
+                    bind(c.getFirstOperand()),
+                    bind(c.getSecondOperand()));
+
+        } else if (e instanceof Between) {
+            Between b = (Between) e;
+            return new Between(bind(b.getOperand()),
+                    bind(b.getMin()), bind(b.getMax()));
+
+        } else if (e instanceof Inverse) {
+            Inverse i = (Inverse) e;
+            return new Inverse(bind(i.getOperand()), i.getType());
+
+        } else if (e instanceof BitwiseNot) {
+            return new BitwiseNot(bind(((BitwiseNot) e).getOperand()));
+
+        } else if (e instanceof Not) {
+            return new Not(bind(((Not) e).getOperand()));
+
+        } else if (e instanceof CastFloat) {
+            return new CastFloat(bind(((CastFloat) e).getOperand()));
+
+        } else if (e instanceof CastInteger) {
+            return new CastInteger(bind(((CastInteger) e).getOperand()));
+
+        } else if (e instanceof IsNull) {
+            return new IsNull(bind(((IsNull) e).getOperand()));
+
+        } else if (e instanceof Is) {
+            Is i = (Is) e;
+            return new Is(bind(i.getOperand()), i.getLogicValue());
+        }
+
+        // Attribute references, aggregates, LIKE and method invocations
+        return e;
+    }
+
+    /*
+     * Checks if a value can be stored in a Constant of the specified type
+     */
+    private static boolean isInstance(Object v, DataType t) {
+        if (!t.isConcrete()) {
+            return false;
+        } else if (t == DataType.BOOLEAN) {
+            // Boolean constants contain logic values
+            return v instanceof LogicValue;
+        }
+        return t.getJavaClass().isInstance(v);
+    }
+
+}
@@ -20,11 +20,21 @@ public final class CountAggregate extends Aggregate {
 
     @Override
     public Object compute(BufferView view) {
+        if (filter == Constant.TRUE) {
+            // No need to scan the samples when there is no filter
+            return view.size();
+        }
+
         IntAccumulator count = new IntAccumulator(0);
         view.forEach((r, b) -> count.value++, filter);
         return count.value;
     }
 
+    @Override
+    public AggregateState createState() {
+        return new CountState(this);
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append("COUNT(")
@@ -36,4 +46,37 @@ public final class CountAggregate extends Aggregate {
                 .append(")");
     }
 
+
+
+    /**
+     * Incremental count aggregate state
+     */
+    private static final class CountState extends AggregateState {
+
+        private CountState(CountAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected boolean accepts(Object v) {
+            // Every sample that satisfies the filter is counted
+            return true;
+        }
+
+        @Override
+        protected void push(long seq, Object v) { }
+
+        @Override
+        protected void pop(long seq, Object v) { }
+
+        @Override
+        protected void reset() { }
+
+        @Override
+        public Object value() {
+            return count();
+        }
+
+    }
+
 }
@@ -3,6 +3,8 @@ package org.dei.perla.lang.query.expression;
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
 
+import java.util.BitSet;
+
 /**
  * An interface representing a generic {@code Expression} node.
  *
@@ -33,6 +35,29 @@ public abstract class Expression {
      */
     public abstract Object run(Object[] sample, BufferView buffer);
 
+    /**
+     * Evaluates a boolean expression over a batch of samples. On input, the
+     * selection bitmap marks the samples of the batch that have to be
+     * evaluated. On output, the bits of the samples for which the
+     * expression is not TRUE are cleared.
+     *
+     * <p> The default implementation evaluates the samples one at a time
+     * through the {@code run()} method. Nodes that can be evaluated more
+     * efficiently over a whole batch override this method.
+     *
+     * @param batch batch of samples
+     * @param sel selection bitmap
+     * @param buffer complete {@link Buffer} view used to compute aggregates
+     */
+    public void filter(SampleBatch batch, BitSet sel, BufferView buffer) {
+        for (int i = sel.nextSetBit(0); i >= 0; i = sel.nextSetBit(i + 1)) {
+            Object o = run(batch.get(i), buffer);
+            if (o != LogicValue.TRUE) {
+                sel.clear(i);
+            }
+        }
+    }
+
     @Override
     public final String toString() {
         StringBuilder bld = new StringBuilder();
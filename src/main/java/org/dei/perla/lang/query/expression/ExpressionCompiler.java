@@ -0,0 +1,31 @@
+package org.dei.perla.lang.query.expression;
+
+/**
+ * Strategy employed to turn an {@link Expression} tree into an equivalent
+ * {@link Expression} that is faster to evaluate.
+ *
+ * <p> Implementations must preserve the semantics of the original tree,
+ * including the handling of NULL values and the three-valued logic. The
+ * {@link Expression} returned by {@code compile()} can be used in place of
+ * the original one.
+ *
+ * @author Guido Rota 25/01/16.
+ */
+public interface ExpressionCompiler {
+
+    /**
+     * Default {@code ExpressionCompiler}, which leaves the {@link Expression}
+     * tree untouched. Expressions compiled by the interpreter are evaluated
+     * by walking the tree.
+     */
+    public static final ExpressionCompiler INTERPRETER = e -> e;
+
+    /**
+     * Compiles the {@link Expression} passed as parameter
+     *
+     * @param e expression to compile
+     * @return compiled expression
+     */
+    public Expression compile(Expression e);
+
+}
@@ -21,6 +21,10 @@ public final class Inverse extends Expression {
         this.type = type;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return type;
@@ -26,6 +26,10 @@ public final class Is extends Expression {
         return l;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
@@ -36,6 +36,10 @@ public final class IsNull extends Expression {
         return new IsNull(e);
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
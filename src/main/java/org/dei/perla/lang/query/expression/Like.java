@@ -18,28 +18,51 @@ import java.util.regex.Pattern;
  * </ul>
  * </p>
  *
+ * <p> The pattern is compiled into a {@link LikePattern} when the
+ * expression is created, so that literal, prefix and suffix patterns are
+ * matched without invoking the regular expression engine.
+ *
  * @author Guido Rota 13/03/15.
  */
 public final class Like extends Expression {
 
     private final Expression e;
-    private final Pattern p;
+    private final LikePattern p;
 
     /**
      * Like expression node constructor
      */
     public Like(Expression e, String pattern) {
-        this(e, Pattern.compile(pattern));
+        this(e, LikePattern.compile(pattern));
     }
 
     /**
      * Like expression node constructor
      */
     public Like(Expression e, Pattern p) {
+        this(e, LikePattern.compile(p));
+    }
+
+    /**
+     * Like expression node constructor
+     */
+    public Like(Expression e, LikePattern p) {
         this.e = e;
         this.p = p;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
+    public Pattern getPattern() {
+        return p.getPattern();
+    }
+
+    public LikePattern getLikePattern() {
+        return p;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
@@ -52,7 +75,14 @@ public final class Like extends Expression {
     }
 
     public static LogicValue compute(Object o, String p) {
-        return compute(o, Pattern.compile(p));
+        return compute(o, LikePattern.compile(p));
+    }
+
+    public static LogicValue compute(Object o, LikePattern p) {
+        if (o == null) {
+            return LogicValue.UNKNOWN;
+        }
+        return LogicValue.fromBoolean(p.matches((String) o));
     }
 
     public static LogicValue compute(Object o, Pattern p) {
@@ -0,0 +1,228 @@
+package org.dei.perla.lang.query.expression;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled pattern of a {@link Like} expression.
+ *
+ * <p> LIKE patterns are regular expressions searched anywhere inside the
+ * operand string. Most of the patterns found in practice, however, are
+ * plain literals, optionally anchored at the beginning or at the end of the
+ * string (e.g. {@code 'pista'}, {@code '^pista'} or {@code 'nord$'}). Such
+ * patterns are recognized at compile time and matched through the {@code
+ * String.equals()}, {@code String.startsWith()}, {@code String.endsWith()}
+ * and {@code String.contains()} methods, without running the regular
+ * expression engine. All other patterns are matched with a {@link Pattern}.
+ *
+ * <p> Compiled patterns are immutable and are cached by source string, so
+ * that the same pattern is compiled only once.
+ *
+ * @author Guido Rota 20/02/16.
+ */
+public final class LikePattern {
+
+    private static final int CACHE_SIZE = 256;
+    private static final Map<String, LikePattern> cache =
+            new ConcurrentHashMap<>();
+
+    private static final String META = "\\.[]{}()*+?^$|";
+
+    private final Kind kind;
+    private final String literal;
+    private final Pattern pattern;
+
+    private LikePattern(Kind kind, String literal, Pattern pattern) {
+        this.kind = kind;
+        this.literal = literal;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Returns the compiled version of the pattern passed as parameter
+     *
+     * @param pattern regular expression
+     * @return compiled pattern
+     * @throws java.util.regex.PatternSyntaxException if the pattern is not
+     * a valid regular expression
+     */
+    public static LikePattern compile(String pattern) {
+        LikePattern p = cache.get(pattern);
+        if (p != null) {
+            return p;
+        }
+
+        p = create(Pattern.compile(pattern));
+        if (cache.size() < CACHE_SIZE) {
+            cache.putIfAbsent(pattern, p);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the compiled version of the {@link Pattern} passed as
+     * parameter. The result is not cached.
+     *
+     * @param pattern regular expression
+     * @return compiled pattern
+     */
+    public static LikePattern compile(Pattern pattern) {
+        return create(pattern);
+    }
+
+    private static LikePattern create(Pattern p) {
+        if (p.flags() != 0) {
+            return new LikePattern(Kind.REGEX, null, p);
+        }
+
+        String s = p.pattern();
+        int start = 0;
+        int end = s.length();
+        boolean head = s.startsWith("^");
+        if (head) {
+            start++;
+        }
+        boolean tail = end > start && s.charAt(end - 1) == '$' &&
+                !isEscaped(s, end - 1);
+        if (tail) {
+            end--;
+        }
+
+        // A .* at an unanchored end of the pattern does not restrict the
+        // strings found by the regular expression engine
+        while (!head && s.startsWith(".*", start) && start + 2 <= end) {
+            start += 2;
+        }
+        while (!tail && end - 2 >= start && s.startsWith(".*", end - 2) &&
+                !isEscaped(s, end - 2)) {
+            end -= 2;
+        }
+
+        String lit = literal(s, start, end);
+        if (lit == null) {
+            return new LikePattern(Kind.REGEX, null, p);
+        } else if (head && tail) {
+            return new LikePattern(Kind.EQUALS, lit, p);
+        } else if (head) {
+            return new LikePattern(Kind.PREFIX, lit, p);
+        } else if (tail) {
+            return new LikePattern(Kind.SUFFIX, lit, p);
+        } else {
+            return new LikePattern(Kind.CONTAINS, lit, p);
+        }
+    }
+
+    /*
+     * Indicates if the character at the specified position is preceded by
+     * an odd number of backslashes
+     */
+    private static boolean isEscaped(String s, int idx) {
+        int count = 0;
+        for (int i = idx - 1; i >= 0 && s.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    /*
+     * Returns the string matched by the regular expression contained in the
+     * specified portion of the pattern, null if the regular expression
+     * matches anything other than a plain literal
+     */
+    private static String literal(String s, int start, int end) {
+        StringBuilder bld = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+                // Escaped letters and digits denote character classes,
+                // back references or quoting constructs
+                if (i == end || Character.isLetterOrDigit(s.charAt(i))) {
+                    return null;
+                }
+                bld.append(s.charAt(i));
+            } else if (META.indexOf(c) != -1) {
+                return null;
+            } else {
+                bld.append(c);
+            }
+        }
+        return bld.toString();
+    }
+
+    /*
+     * Removes the line terminator that may follow the end anchor of a
+     * regular expression
+     */
+    private static String stripTerminator(String s) {
+        if (s.endsWith("\r\n")) {
+            return s.substring(0, s.length() - 2);
+        } else if (s.isEmpty()) {
+            return s;
+        }
+
+        switch (s.charAt(s.length() - 1)) {
+            case '\n':
+            case '\r':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return s.substring(0, s.length() - 1);
+            default:
+                return s;
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Indicates if the pattern can be found inside the string passed as
+     * parameter
+     *
+     * @param s string to search
+     * @return true if the pattern is found, false otherwise
+     */
+    public boolean matches(String s) {
+        switch (kind) {
+            case CONTAINS:
+                return s.contains(literal);
+            case PREFIX:
+                return s.startsWith(literal);
+            case SUFFIX:
+                // The $ anchor also matches before a final line terminator
+                return s.endsWith(literal) ||
+                        stripTerminator(s).endsWith(literal);
+            case EQUALS:
+                return s.equals(literal) ||
+                        stripTerminator(s).equals(literal);
+            case REGEX:
+                return pattern.matcher(s).find();
+            default:
+                throw new RuntimeException("Unknown LIKE pattern " + kind);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern.toString();
+    }
+
+    /**
+     * Matching strategies of a {@code LikePattern}
+     */
+    public enum Kind {
+        EQUALS,
+        PREFIX,
+        SUFFIX,
+        CONTAINS,
+        REGEX
+    }
+
+}
@@ -2,6 +2,8 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarCircularBuffer;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 import java.time.Instant;
@@ -27,6 +29,11 @@ public final class MaxAggregate extends Aggregate {
             return null;
         }
 
+        AttributeReference ref = columnOperand(buffer);
+        if (ref != null) {
+            return computeColumn((ColumnarBufferView) buffer, ref);
+        }
+
         if (type == DataType.INTEGER) {
             IntAccumulator maxi = new IntAccumulator(null);
             buffer.forEach((r, b) -> {
@@ -61,6 +68,68 @@ public final class MaxAggregate extends Aggregate {
         }
     }
 
+    private Object computeColumn(ColumnarBufferView view,
+            AttributeReference ref) {
+        boolean found = false;
+        if (type == DataType.INTEGER) {
+            int maxi = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                int vi = ref.getInt(view, i);
+                if (!found || vi > maxi) {
+                    maxi = vi;
+                    found = true;
+                }
+            }
+            return found ? maxi : null;
+        } else if (type == DataType.FLOAT) {
+            float maxf = 0f;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                float vf = ref.getFloat(view, i);
+                if (!found || vf > maxf) {
+                    maxf = vf;
+                    found = true;
+                }
+            }
+            return found ? maxf : null;
+        } else if (type == DataType.TIMESTAMP) {
+            long maxt = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                long vt = ref.getTimestamp(view, i);
+                if (!found || vt > maxt) {
+                    maxt = vt;
+                    found = true;
+                }
+            }
+            return found ? ColumnarCircularBuffer.toInstant(maxt) : null;
+        } else {
+            throw new RuntimeException(
+                    "max aggregation not defined for type " + type);
+        }
+    }
+
+    @Override
+    public AggregateState createState() {
+        if (e.equals(Constant.NULL)) {
+            return null;
+        }
+
+        if (type == DataType.INTEGER || type == DataType.FLOAT ||
+                type == DataType.TIMESTAMP) {
+            return new MaxState(this);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append("MAX(")
@@ -72,4 +141,39 @@ public final class MaxAggregate extends Aggregate {
                 .append(")");
     }
 
+
+
+    /**
+     * Incremental max aggregate state
+     */
+    private static final class MaxState extends AggregateState {
+
+        private final MonotonicQueue queue = new MonotonicQueue(false);
+
+        private MaxState(MaxAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            queue.push(seq, v);
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            queue.pop(seq);
+        }
+
+        @Override
+        protected void reset() {
+            queue.reset();
+        }
+
+        @Override
+        public Object value() {
+            return queue.value();
+        }
+
+    }
+
 }
@@ -2,6 +2,8 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarCircularBuffer;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 import java.time.Instant;
@@ -27,6 +29,11 @@ public final class MinAggregate extends Aggregate {
             return null;
         }
 
+        AttributeReference ref = columnOperand(buffer);
+        if (ref != null) {
+            return computeColumn((ColumnarBufferView) buffer, ref);
+        }
+
         if (type == DataType.INTEGER) {
             IntAccumulator mini = new IntAccumulator(null);
             buffer.forEach((r, b) -> {
@@ -61,6 +68,68 @@ public final class MinAggregate extends Aggregate {
         }
     }
 
+    private Object computeColumn(ColumnarBufferView view,
+            AttributeReference ref) {
+        boolean found = false;
+        if (type == DataType.INTEGER) {
+            int mini = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                int vi = ref.getInt(view, i);
+                if (!found || vi < mini) {
+                    mini = vi;
+                    found = true;
+                }
+            }
+            return found ? mini : null;
+        } else if (type == DataType.FLOAT) {
+            float minf = 0f;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                float vf = ref.getFloat(view, i);
+                if (!found || vf < minf) {
+                    minf = vf;
+                    found = true;
+                }
+            }
+            return found ? minf : null;
+        } else if (type == DataType.TIMESTAMP) {
+            long mint = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (ref.isNull(view, i)) {
+                    continue;
+                }
+                long vt = ref.getTimestamp(view, i);
+                if (!found || vt < mint) {
+                    mint = vt;
+                    found = true;
+                }
+            }
+            return found ? ColumnarCircularBuffer.toInstant(mint) : null;
+        } else {
+            throw new RuntimeException(
+                    "min aggregation not defined for type " + type);
+        }
+    }
+
+    @Override
+    public AggregateState createState() {
+        if (e.equals(Constant.NULL)) {
+            return null;
+        }
+
+        if (type == DataType.INTEGER || type == DataType.FLOAT ||
+                type == DataType.TIMESTAMP) {
+            return new MinState(this);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append("MIN(")
@@ -72,4 +141,39 @@ public final class MinAggregate extends Aggregate {
                 .append(")");
     }
 
+
+
+    /**
+     * Incremental min aggregate state
+     */
+    private static final class MinState extends AggregateState {
+
+        private final MonotonicQueue queue = new MonotonicQueue(true);
+
+        private MinState(MinAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            queue.push(seq, v);
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            queue.pop(seq);
+        }
+
+        @Override
+        protected void reset() {
+            queue.reset();
+        }
+
+        @Override
+        public Object value() {
+            return queue.value();
+        }
+
+    }
+
 }
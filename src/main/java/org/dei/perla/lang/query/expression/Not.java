@@ -19,6 +19,10 @@ public final class Not extends Expression {
         this.e = e;
     }
 
+    public Expression getOperand() {
+        return e;
+    }
+
     @Override
     public DataType getType() {
         return DataType.BOOLEAN;
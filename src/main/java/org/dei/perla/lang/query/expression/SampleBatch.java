@@ -0,0 +1,76 @@
+package org.dei.perla.lang.query.expression;
+
+import java.util.List;
+
+/**
+ * A batch of samples on which an {@link Expression} can be evaluated in a
+ * single pass through the {@code filter()} method.
+ *
+ * <p> The primitive accessors of this interface allow column-oriented
+ * batches to expose the attribute values without boxing. Their default
+ * implementations unbox the values of the samples returned by {@code
+ * get()}, and are therefore suitable for row-oriented batches.
+ *
+ * @author Guido Rota 19/02/16.
+ */
+public interface SampleBatch {
+
+    /**
+     * Returns a {@code SampleBatch} backed by the list of samples passed as
+     * parameter
+     *
+     * @param samples list of samples
+     * @return batch of samples
+     */
+    public static SampleBatch of(List<Object[]> samples) {
+        return new SampleBatch() {
+
+            @Override
+            public int size() {
+                return samples.size();
+            }
+
+            @Override
+            public Object[] get(int i) {
+                return samples.get(i);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the number of samples in the batch
+     *
+     * @return number of samples
+     */
+    public int size();
+
+    /**
+     * Returns the sample at the specified index
+     *
+     * @param i sample index
+     * @return sample at the specified index
+     */
+    public Object[] get(int i);
+
+    /**
+     * Indicates if the value of an attribute is NULL. The primitive
+     * accessors return meaningless values for NULL attributes.
+     *
+     * @param i sample index
+     * @param col attribute index
+     * @return true if the attribute value is NULL, false otherwise
+     */
+    public default boolean isNull(int i, int col) {
+        return get(i)[col] == null;
+    }
+
+    public default int getInt(int i, int col) {
+        return (Integer) get(i)[col];
+    }
+
+    public default float getFloat(int i, int col) {
+        return (Float) get(i)[col];
+    }
+
+}
@@ -2,6 +2,7 @@ package org.dei.perla.lang.query.expression;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.ColumnarBufferView;
 import org.dei.perla.lang.query.statement.WindowSize;
 
 /**
@@ -25,6 +26,11 @@ public final class SumAggregate extends Aggregate {
             return 0;
         }
 
+        AttributeReference ref = columnOperand(buffer);
+        if (ref != null) {
+            return computeColumn((ColumnarBufferView) buffer, ref);
+        }
+
         if (type == DataType.INTEGER) {
             IntAccumulator si = new IntAccumulator(0);
             buffer.forEach((r, b) -> {
@@ -49,6 +55,45 @@ public final class SumAggregate extends Aggregate {
         }
     }
 
+    private Object computeColumn(ColumnarBufferView view,
+            AttributeReference ref) {
+        if (type == DataType.INTEGER) {
+            int si = 0;
+            for (int i = 0; i < view.size(); i++) {
+                if (!ref.isNull(view, i)) {
+                    si += ref.getInt(view, i);
+                }
+            }
+            return si;
+        } else if (type == DataType.FLOAT) {
+            float sf = 0f;
+            for (int i = 0; i < view.size(); i++) {
+                if (!ref.isNull(view, i)) {
+                    sf += ref.getFloat(view, i);
+                }
+            }
+            return sf;
+        } else {
+            throw new RuntimeException(
+                    "sum aggregation not defined for type " + type);
+        }
+    }
+
+    @Override
+    public AggregateState createState() {
+        if (e.equals(Constant.NULL)) {
+            return null;
+        }
+
+        if (type == DataType.INTEGER) {
+            return new IntSumState(this);
+        } else if (type == DataType.FLOAT) {
+            return new FloatSumState(this);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     protected void buildString(StringBuilder bld) {
         bld.append("SUM(")
@@ -60,4 +105,73 @@ public final class SumAggregate extends Aggregate {
                 .append(")");
     }
 
+
+
+    /**
+     * Incremental integer sum aggregate state. Integer arithmetic is exact,
+     * hence values can be subtracted from the sum as they leave the window.
+     */
+    private static final class IntSumState extends AggregateState {
+
+        private int sum = 0;
+
+        private IntSumState(SumAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            sum += (Integer) v;
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            sum -= (Integer) v;
+        }
+
+        @Override
+        protected void reset() {
+            sum = 0;
+        }
+
+        @Override
+        public Object value() {
+            return sum;
+        }
+
+    }
+
+    /**
+     * Incremental float sum aggregate state
+     */
+    private static final class FloatSumState extends AggregateState {
+
+        private final FloatSum sum = new FloatSum();
+
+        private FloatSumState(SumAggregate agg) {
+            super(agg);
+        }
+
+        @Override
+        protected void push(long seq, Object v) {
+            sum.push((Float) v);
+        }
+
+        @Override
+        protected void pop(long seq, Object v) {
+            sum.pop();
+        }
+
+        @Override
+        protected void reset() {
+            sum.reset();
+        }
+
+        @Override
+        public Object value() {
+            return (float) sum.sum();
+        }
+
+    }
+
 }
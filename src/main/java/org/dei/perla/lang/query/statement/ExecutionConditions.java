@@ -3,6 +3,7 @@ package org.dei.perla.lang.query.statement;
 import org.dei.perla.core.fpc.Attribute;
 import org.dei.perla.lang.query.expression.Constant;
 import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 
 import java.util.Collections;
 import java.util.List;
@@ -65,6 +66,22 @@ public final class ExecutionConditions {
         return refresh;
     }
 
+    /**
+     * Returns a copy of this {@code ExecutionConditions} object whose
+     * condition has been compiled with the {@link ExpressionCompiler} passed
+     * as parameter
+     *
+     * @param c expression compiler
+     * @return compiled execution conditions
+     */
+    public ExecutionConditions compile(ExpressionCompiler c) {
+        Expression compiled = c.compile(cond);
+        if (compiled == cond) {
+            return this;
+        }
+        return new ExecutionConditions(specs, compiled, atts, refresh);
+    }
+
     public String toString(){
     	if(this == ExecutionConditions.ALL_NODES)
     		return "EXECUTE IF ALL NODES";
@@ -0,0 +1,192 @@
+package org.dei.perla.lang.query.statement;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Open-addressing hash table employed to partition the samples of a {@link
+ * org.dei.perla.lang.executor.buffer.BufferView} in GROUP BY groups.
+ *
+ * <p>
+ * The table is specialised for small composite keys. Group keys are read
+ * directly from the sample fields, and are stored in a single flat array,
+ * which avoids allocating a key object for every sample. Collisions are
+ * resolved through linear probing. For every group, the table records the
+ * indexes of the samples that belong to it, in insertion order.
+ *
+ * <p>
+ * NOTE: This class is not thread safe.
+ *
+ * @author Guido Rota 08/02/16.
+ */
+final class GroupTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Sample fields composing the group key
+    private final int[] keyIdx;
+    private final int keyLen;
+
+    // Hash slots, containing group id + 1 (0 marks an empty slot)
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    // Group keys, keyLen consecutive elements per group
+    private Object[] keys;
+    // Sample indexes of each group
+    private int[][] members = new int[INITIAL_CAPACITY][];
+    private int[] counts = new int[INITIAL_CAPACITY];
+
+    private int groups = 0;
+
+    /**
+     * Creates a new {@code GroupTable}
+     *
+     * @param keyIdx indexes of the sample fields composing the group key
+     */
+    protected GroupTable(int[] keyIdx) {
+        this.keyIdx = keyIdx;
+        keyLen = keyIdx.length;
+        keys = new Object[INITIAL_CAPACITY * keyLen];
+    }
+
+    /**
+     * Returns the number of groups in the table
+     *
+     * @return number of groups
+     */
+    protected int size() {
+        return groups;
+    }
+
+    /**
+     * Adds a sample to its group, creating a new group if none exists.
+     *
+     * @param sample sample
+     * @param i index of the sample
+     * @return id of the group the sample belongs to
+     */
+    protected int add(Object[] sample, int i) {
+        int g = find(sample);
+        if (g == -1) {
+            g = create(sample);
+        }
+        append(g, i);
+        return g;
+    }
+
+    /**
+     * Adds a sample to its group, only if the group already exists.
+     *
+     * @param sample sample
+     * @param i index of the sample
+     * @return id of the group the sample belongs to, -1 if there is no
+     * such group
+     */
+    protected int addIfPresent(Object[] sample, int i) {
+        int g = find(sample);
+        if (g != -1) {
+            append(g, i);
+        }
+        return g;
+    }
+
+    /**
+     * Returns the sample indexes belonging to the specified group. Only the
+     * first {@code count(g)} elements of the array are valid.
+     *
+     * @param g group id
+     * @return sample indexes
+     */
+    protected int[] members(int g) {
+        return members[g];
+    }
+
+    /**
+     * Returns the number of samples belonging to the specified group
+     *
+     * @param g group id
+     * @return number of samples in the group
+     */
+    protected int count(int g) {
+        return counts[g];
+    }
+
+    private int find(Object[] sample) {
+        int h = hash(sample);
+        int mask = slots.length - 1;
+        for (int s = h & mask; slots[s] != 0; s = (s + 1) & mask) {
+            int g = slots[s] - 1;
+            if (hashes[g] == h && keyEquals(g, sample)) {
+                return g;
+            }
+        }
+        return -1;
+    }
+
+    private int create(Object[] sample) {
+        // Keep load factor below 0.5
+        if ((groups + 1) * 2 > slots.length) {
+            grow();
+        }
+
+        int g = groups++;
+        int h = hash(sample);
+        hashes[g] = h;
+        for (int k = 0; k < keyLen; k++) {
+            keys[g * keyLen + k] = sample[keyIdx[k]];
+        }
+        members[g] = new int[4];
+        insert(g, h);
+        return g;
+    }
+
+    private void insert(int g, int h) {
+        int mask = slots.length - 1;
+        int s = h & mask;
+        while (slots[s] != 0) {
+            s = (s + 1) & mask;
+        }
+        slots[s] = g + 1;
+    }
+
+    private void append(int g, int i) {
+        int[] m = members[g];
+        if (counts[g] == m.length) {
+            m = Arrays.copyOf(m, m.length * 2);
+            members[g] = m;
+        }
+        m[counts[g]++] = i;
+    }
+
+    private void grow() {
+        int cap = slots.length * 2;
+        slots = new int[cap];
+        hashes = Arrays.copyOf(hashes, cap);
+        keys = Arrays.copyOf(keys, cap * keyLen);
+        members = Arrays.copyOf(members, cap);
+        counts = Arrays.copyOf(counts, cap);
+        for (int g = 0; g < groups; g++) {
+            insert(g, hashes[g]);
+        }
+    }
+
+    private int hash(Object[] sample) {
+        int h = 1;
+        for (int k = 0; k < keyLen; k++) {
+            h = 31 * h + Objects.hashCode(sample[keyIdx[k]]);
+        }
+        // Spread the high bits, as the slot index only uses the lower ones
+        return h ^ (h >>> 16);
+    }
+
+    private boolean keyEquals(int g, Object[] sample) {
+        int base = g * keyLen;
+        for (int k = 0; k < keyLen; k++) {
+            if (!Objects.equals(keys[base + k], sample[keyIdx[k]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.dei.perla.lang.query.statement;
 
 import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 import org.dei.perla.lang.query.expression.LogicValue;
 
 import java.time.Duration;
@@ -46,6 +47,18 @@ public final class IfEvery {
         return unit;
     }
 
+    /**
+     * Returns a copy of this {@code IfEvery} node whose condition and value
+     * have been compiled with the {@link ExpressionCompiler} passed as
+     * parameter
+     *
+     * @param c expression compiler
+     * @return compiled {@code IfEvery} node
+     */
+    public IfEvery compile(ExpressionCompiler c) {
+        return new IfEvery(c.compile(cond), c.compile(value), unit);
+    }
+
     /**
      * Utility method employed to evaluate the sampling rate. The {@code
      * Duration} object returned by this method corresponds to the first
@@ -29,6 +29,13 @@ public final class InsertionStatement implements Statement {
         return stream;
     }
 
+    /**
+     * Returns the stream fields populated by the insertion. The list is
+     * either {@code null} or empty when the selection columns are mapped to
+     * the stream fields by position.
+     *
+     * @return fields populated by the insertion
+     */
     public List<String> getFields() {
         return fields;
     }
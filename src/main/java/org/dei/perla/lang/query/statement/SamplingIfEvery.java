@@ -1,8 +1,10 @@
 package org.dei.perla.lang.query.statement;
 
 import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Executable SAMPLING IF EVERY clause
@@ -53,6 +55,20 @@ public final class SamplingIfEvery implements Sampling {
         return refresh;
     }
     
+    /**
+     * Returns a copy of this clause whose {@link IfEvery} conditions have
+     * been compiled with the {@link ExpressionCompiler} passed as parameter
+     *
+     * @param c expression compiler
+     * @return compiled SAMPLING IF EVERY clause
+     */
+    public SamplingIfEvery compile(ExpressionCompiler c) {
+        List<IfEvery> compiled = ifevery.stream()
+                .map(ife -> ife.compile(c))
+                .collect(Collectors.toList());
+        return new SamplingIfEvery(compiled, atts, ratePolicy, refresh);
+    }
+
     public String toString(){
     	StringBuffer s = new StringBuffer("SAMPLING ");
     	ifevery.forEach(f -> s.append(f.toString() + " "));
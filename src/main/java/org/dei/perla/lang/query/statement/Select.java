@@ -1,12 +1,17 @@
 package org.dei.perla.lang.query.statement;
 
 import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.executor.buffer.IndexedBufferView;
+import org.dei.perla.lang.query.expression.AttributeReference;
+import org.dei.perla.lang.query.expression.CompiledExpression;
 import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 import org.dei.perla.lang.query.expression.LogicValue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Guido Rota 02/03/15.
@@ -19,6 +24,9 @@ public final class Select {
     private final Expression having;
     private final Object[] def;
 
+    // Sample indexes of the GROUP BY attributes
+    private final int[] groupIdx;
+
     public Select(List<Expression> fields,
             WindowSize upto,
             GroupBy group,
@@ -29,6 +37,44 @@ public final class Select {
         this.group = group;
         this.having = having;
         this.def = def;
+        groupIdx = resolveGroups(group, fields);
+    }
+
+    /*
+     * Finds the sample indexes of the GROUP BY attributes, which are
+     * required to appear in the select field list
+     */
+    private static int[] resolveGroups(GroupBy group,
+            List<Expression> fields) {
+        if (group == GroupBy.NONE) {
+            return null;
+        }
+
+        List<String> gs = group.getFields();
+        int[] idx = new int[gs.size()];
+        for (int i = 0; i < gs.size(); i++) {
+            AttributeReference ref = findField(gs.get(i), fields);
+            if (ref == null) {
+                throw new IllegalArgumentException("GROUP BY attribute '" +
+                        gs.get(i) + "' is not declared as a SELECT field");
+            }
+            idx[i] = ref.getIndex();
+        }
+        return idx;
+    }
+
+    private static AttributeReference findField(String id,
+            List<Expression> fields) {
+        for (Expression e : fields) {
+            if (e instanceof CompiledExpression) {
+                e = ((CompiledExpression) e).getSource();
+            }
+            if (e instanceof AttributeReference &&
+                    ((AttributeReference) e).getId().equals(id)) {
+                return (AttributeReference) e;
+            }
+        }
+        return null;
     }
 
     public List<Expression> getFields() {
@@ -51,6 +97,21 @@ public final class Select {
         return def;
     }
 
+    /**
+     * Returns a copy of this {@code Select} clause whose fields and having
+     * condition have been compiled with the {@link ExpressionCompiler}
+     * passed as parameter
+     *
+     * @param c expression compiler
+     * @return compiled select clause
+     */
+    public Select compile(ExpressionCompiler c) {
+        List<Expression> compiled = fields.stream()
+                .map(c::compile)
+                .collect(Collectors.toList());
+        return new Select(compiled, upto, group, c.compile(having), def);
+    }
+
     public List<Object[]> select(BufferView buffer) {
         List<Object[]> rs = new ArrayList<>();
         //System.out.println("INSELECT 1");
@@ -68,7 +129,11 @@ public final class Select {
                         "Unexpected upto WindowSize type " + upto.getType());
         }
        // System.out.println(ut+"WindowSize type " + 	upto.getType());
-        selectBuffer(ut, buffer, rs);
+        if (groupIdx == null) {
+            selectBuffer(ut, buffer, rs);
+        } else {
+            selectGroups(ut, buffer, rs);
+        }
 
         if (def.length > 0 && rs.isEmpty()) {
             // ON EMPTY SELECTION INSERT DEFAULT
@@ -105,6 +170,49 @@ public final class Select {
         }
     }
     
+    /**
+     * Grouped selection. Groups are determined by the samples that fall
+     * within the UPTO clause, and each group produces a single record. The
+     * non-aggregate fields are evaluated on the newest sample of the group,
+     * while the aggregates and the HAVING clause are evaluated on all the
+     * buffered samples of the group.
+     */
+    private void selectGroups(int upto, BufferView buf, List<Object[]> rs) {
+        int n = Math.min(upto, buf.size());
+        if (n == 0) {
+            return;
+        }
+
+        GroupTable groups = new GroupTable(groupIdx);
+        for (int i = 0; i < n; i++) {
+            groups.add(buf.get(i), i);
+        }
+        // Older samples are read through a sub-view, in order not to alter
+        // the amount of samples retained by the buffer after the selection
+        BufferView all = buf.subView(buf.size());
+        for (int i = n; i < all.size(); i++) {
+            groups.addIfPresent(all.get(i), i);
+        }
+
+        for (int g = 0; g < groups.size(); g++) {
+            int[] ms = groups.members(g);
+            Object[] cur = all.get(ms[0]);
+            BufferView gv = new IndexedBufferView(all, ms, groups.count(g));
+            // HAVING CLAUSE
+            LogicValue valid = (LogicValue) having.run(cur, gv);
+            if (LogicValue.toBoolean(valid)) {
+                // SELECTION
+                Object[] out = new Object[fields.size()];
+                for (int j = 0; j < fields.size(); j++) {
+                    out[j] = fields.get(j).run(cur, gv);
+                }
+                rs.add(out);
+            }
+            gv.release();
+        }
+        all.release();
+    }
+
     public String toString(){
     	StringBuffer s = new StringBuffer("SELECT ");
     	for(int i=0; i < fields.size() - 1; i++){
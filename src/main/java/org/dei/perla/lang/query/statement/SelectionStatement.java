@@ -3,6 +3,7 @@ package org.dei.perla.lang.query.statement;
 import org.dei.perla.core.fpc.Attribute;
 import org.dei.perla.lang.executor.buffer.BufferView;
 import org.dei.perla.lang.query.expression.Expression;
+import org.dei.perla.lang.query.expression.ExpressionCompiler;
 
 import java.util.Collections;
 import java.util.List;
@@ -23,6 +24,10 @@ public final class SelectionStatement implements Statement {
     // having expression of the sampling clause
     private final List<Attribute> atts;
 
+    // Compiled copy of this statement, and the compiler used to create it
+    private ExpressionCompiler compiler;
+    private SelectionStatement compiled;
+
     /**
      * Creates an executable selection statement
      *
@@ -77,6 +82,48 @@ public final class SelectionStatement implements Statement {
         return terminate;
     }
 
+    /**
+     * Returns a copy of this {@code SelectionStatement} whose expressions
+     * (selection fields, HAVING, WHERE, IF EVERY and execution conditions)
+     * have been compiled with the {@link ExpressionCompiler} passed as
+     * parameter.
+     *
+     * <p> The compiled statement is cached, so that the compilation is
+     * only performed once for every compiler.
+     *
+     * @param c expression compiler
+     * @return compiled statement
+     */
+    public synchronized SelectionStatement compile(ExpressionCompiler c) {
+        if (c == ExpressionCompiler.INTERPRETER) {
+            return this;
+        } else if (compiled != null && compiler == c) {
+            return compiled;
+        }
+
+        compiled = recompile(c);
+        compiler = c;
+        return compiled;
+    }
+
+    /**
+     * Returns a new copy of this {@code SelectionStatement} whose
+     * expressions have been compiled with the {@link ExpressionCompiler}
+     * passed as parameter. Unlike {@code compile()}, the result is not
+     * cached, and this {@code SelectionStatement} is left untouched.
+     *
+     * @param c expression compiler
+     * @return compiled statement
+     */
+    public SelectionStatement recompile(ExpressionCompiler c) {
+        Sampling samp = sampling;
+        if (sampling instanceof SamplingIfEvery) {
+            samp = ((SamplingIfEvery) sampling).compile(c);
+        }
+        return new SelectionStatement(select.compile(c), atts, every,
+                samp, c.compile(where), cond.compile(c), terminate);
+    }
+
     public List<Object[]> select(BufferView buffer) {
         return select.select(buffer);
     }
@@ -0,0 +1,179 @@
+package org.dei.perla.lang;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.RecordStream.OverflowPolicy;
+import org.dei.perla.lang.executor.Record;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 14/02/16.
+ */
+public class RecordStreamTest {
+
+    private static final List<Attribute> atts =
+            Collections.singletonList(CommonAttributes.INTEGER);
+
+    private static Record record(int value) {
+        return new Record(atts, new Object[] { value });
+    }
+
+    private static List<Record> records(int... values) {
+        List<Record> rs = new ArrayList<>();
+        for (int v : values) {
+            rs.add(record(v));
+        }
+        return rs;
+    }
+
+    @Test
+    public void testDemand() {
+        RecordStream stream = new RecordStream(4, OverflowPolicy.DROP_OLDEST);
+        assertThat(stream.hasDemand(), equalTo(false));
+
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        assertThat(stream.hasDemand(), equalTo(false));
+
+        sub.subscription.request(2);
+        assertThat(stream.hasDemand(), equalTo(true));
+        stream.batch(null, records(1, 2, 3));
+        assertThat(sub.values, contains(1, 2));
+        assertThat(stream.hasDemand(), equalTo(false));
+
+        // Buffered results are delivered upon request
+        sub.subscription.request(2);
+        assertThat(sub.values, contains(1, 2, 3));
+        assertThat(stream.hasDemand(), equalTo(true));
+        stream.data(null, record(4));
+        assertThat(sub.values, contains(1, 2, 3, 4));
+    }
+
+    @Test
+    public void testDropOldest() {
+        RecordStream stream = new RecordStream(2, OverflowPolicy.DROP_OLDEST);
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        stream.batch(null, records(1, 2, 3, 4));
+        assertThat(stream.getDropped(), equalTo(2L));
+
+        sub.subscription.request(10);
+        assertThat(sub.values, contains(3, 4));
+    }
+
+    @Test
+    public void testCoalesce() {
+        RecordStream stream = new RecordStream(2, OverflowPolicy.COALESCE);
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        stream.batch(null, records(1, 2, 3, 4));
+        assertThat(stream.getDropped(), equalTo(2L));
+
+        sub.subscription.request(10);
+        assertThat(sub.values, contains(1, 4));
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        RecordStream stream = new RecordStream(2, OverflowPolicy.BLOCK);
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+
+        Thread producer = new Thread(() ->
+                stream.batch(null, records(1, 2, 3, 4, 5)));
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        assertThat(sub.values, empty());
+
+        sub.subscription.request(5);
+        producer.join();
+        assertThat(sub.values, contains(1, 2, 3, 4, 5));
+        assertThat(stream.getDropped(), equalTo(0L));
+    }
+
+    @Test
+    public void testCompletion() {
+        RecordStream stream = new RecordStream();
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        stream.batch(null, records(1, 2));
+        stream.complete();
+        assertThat(sub.completed, equalTo(false));
+
+        // Completion is signalled after the buffered results
+        sub.subscription.request(2);
+        assertThat(sub.values, contains(1, 2));
+        assertThat(sub.completed, equalTo(true));
+        assertThat(stream.hasDemand(), equalTo(false));
+    }
+
+    @Test
+    public void testError() {
+        RecordStream stream = new RecordStream();
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        Exception e = new RuntimeException();
+        stream.error(null, e);
+        assertThat(sub.error, sameInstance(e));
+    }
+
+    @Test
+    public void testCancel() {
+        RecordStream stream = new RecordStream();
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        sub.subscription.request(10);
+        sub.subscription.cancel();
+        assertThat(stream.hasDemand(), equalTo(false));
+        stream.batch(null, records(1, 2));
+        assertThat(sub.values, empty());
+    }
+
+    @Test
+    public void testSingleSubscriber() {
+        RecordStream stream = new RecordStream();
+        stream.subscribe(new TestSubscriber());
+        TestSubscriber sub = new TestSubscriber();
+        stream.subscribe(sub);
+        assertThat(sub.error, instanceOf(IllegalStateException.class));
+    }
+
+    private static final class TestSubscriber
+            implements Flow.Subscriber<Record> {
+
+        private final List<Object> values = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private boolean completed = false;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(Record item) {
+            values.add(item.getValues()[0]);
+        }
+
+        @Override
+        public void onError(Throwable cause) {
+            error = cause;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+    }
+
+}
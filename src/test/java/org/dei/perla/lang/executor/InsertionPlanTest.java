@@ -0,0 +1,100 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.parser.StatementCache;
+import org.dei.perla.lang.persistence.FieldDefinition;
+import org.dei.perla.lang.query.statement.InsertionStatement;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 25/02/16.
+ */
+public class InsertionPlanTest {
+
+    private static final FieldDefinition temp =
+            new FieldDefinition("temp", DataType.INTEGER);
+    private static final FieldDefinition hum =
+            new FieldDefinition("hum", DataType.INTEGER);
+    private static final FieldDefinition room =
+            new FieldDefinition("room", DataType.STRING, "hall");
+    private static final FieldDefinition note =
+            new FieldDefinition("note", DataType.STRING);
+
+    private static final List<FieldDefinition> fields =
+            Arrays.asList(temp, hum, room, note);
+
+    private static InsertionStatement parse(String fieldList)
+            throws Exception {
+        return (InsertionStatement) StatementCache.parse(
+                "insert into stream archive " + fieldList + " " +
+                "every one " +
+                "select temperature:integer, humidity:integer " +
+                "sampling every 30 milliseconds");
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        InsertionStatement ins = parse("(hum, temp)");
+        assertThat(ins.getStream(), equalTo("archive"));
+        assertThat(ins.getFields(), equalTo(Arrays.asList("hum", "temp")));
+        assertThat(ins.getSelectionStatement().getSelect().getFields().size(),
+                equalTo(2));
+    }
+
+    @Test
+    public void testPositional() throws Exception {
+        InsertionPlan p = InsertionPlan.create(parse(""),
+                Arrays.asList(temp, hum));
+        assertThat(p.isIdentity(), equalTo(true));
+        Object[] v = new Object[]{21, 40};
+        assertThat(p.map(v), sameInstance(v));
+    }
+
+    @Test
+    public void testFieldList() throws Exception {
+        InsertionPlan p = InsertionPlan.create(parse("(temp, hum)"), fields);
+        assertThat(p.isIdentity(), equalTo(false));
+        Object[] r = p.map(new Object[]{21, 40});
+        assertThat(r, equalTo(new Object[]{21, 40, "hall", null}));
+
+        p = InsertionPlan.create(parse("(hum, temp)"), fields);
+        r = p.map(new Object[]{21, 40});
+        assertThat(r[0], equalTo(40));
+        assertThat(r[1], equalTo(21));
+        assertThat(r[2], equalTo("hall"));
+        assertThat(r[3], nullValue());
+
+        // Records do not share the default template
+        r[2] = "kitchen";
+        assertThat(p.map(new Object[]{1, 2})[2], equalTo("hall"));
+    }
+
+    @Test(expected = QueryException.class)
+    public void testColumnCountMismatch() throws Exception {
+        InsertionPlan.create(parse(""), fields);
+    }
+
+    @Test(expected = QueryException.class)
+    public void testUnknownField() throws Exception {
+        InsertionPlan.create(parse("(temp, pressure)"), fields);
+    }
+
+    @Test(expected = QueryException.class)
+    public void testDuplicateField() throws Exception {
+        InsertionPlan.create(parse("(temp, temp)"), fields);
+    }
+
+    @Test(expected = QueryException.class)
+    public void testTypeMismatch() throws Exception {
+        InsertionPlan.create(parse("(temp, note)"), fields);
+    }
+
+}
@@ -2,6 +2,8 @@ package org.dei.perla.lang.executor;
 
 import org.dei.perla.lang.executor.statement.QueryHandler;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -14,6 +16,8 @@ public class LatchingQueryHandler<E, T>
 
     private Throwable error;
     private int dataCount = 0;
+    private int batchCount = 0;
+    private final List<Integer> batchSizes = new ArrayList<>();
 
     private final Lock lk = new ReentrantLock();
     private final Condition cond = lk.newCondition();
@@ -23,6 +27,8 @@ public class LatchingQueryHandler<E, T>
         try {
             error = null;
             dataCount = 0;
+            batchCount = 0;
+            batchSizes.clear();
         } finally {
             lk.unlock();
         }
@@ -64,6 +70,36 @@ public class LatchingQueryHandler<E, T>
         }
     }
 
+    @Override
+    public void batch(E source, List<T> values) {
+        lk.lock();
+        try {
+            batchCount++;
+            batchSizes.add(values.size());
+        } finally {
+            lk.unlock();
+        }
+        QueryHandler.super.batch(source, values);
+    }
+
+    public int getBatchCount() {
+        lk.lock();
+        try {
+            return batchCount;
+        } finally {
+            lk.unlock();
+        }
+    }
+
+    public List<Integer> getBatchSizes() {
+        lk.lock();
+        try {
+            return new ArrayList<>(batchSizes);
+        } finally {
+            lk.unlock();
+        }
+    }
+
     public int getDataCount() {
         lk.lock();
         try {
@@ -0,0 +1,179 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.executor.buffer.ArrayBuffer;
+import org.dei.perla.lang.executor.buffer.Buffer;
+import org.dei.perla.lang.executor.buffer.BufferView;
+import org.dei.perla.lang.parser.ParseException;
+import org.dei.perla.lang.parser.ParserAST;
+import org.dei.perla.lang.parser.ParserContext;
+import org.dei.perla.lang.parser.ast.SelectionStatementAST;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 16/02/16.
+ */
+public class PartialAggregationTest {
+
+    private static final StatementHandler noop = new StatementHandler() {
+
+        @Override
+        public void data(Statement stat, Record record) { }
+
+        @Override
+        public void complete() { }
+
+        @Override
+        public void error(Statement source, Throwable cause) { }
+
+    };
+
+    private static SelectionStatement getStatement(String query)
+            throws ParseException {
+        ParserContext ctx = new ParserContext();
+        ParserAST p = new ParserAST(new StringReader(query));
+        SelectionStatementAST sa = p.SelectionStatement(ctx);
+        SelectionStatement s = sa.compile(ctx);
+        if (ctx.hasErrors()) {
+            throw new RuntimeException(ctx.getErrorDescription());
+        }
+        return s;
+    }
+
+    private static Buffer createBuffer(List<Attribute> atts, Instant now,
+            Integer... values) {
+        // Samples only contain the temperature and the timestamp
+        int tsIdx = atts.indexOf(Attribute.TIMESTAMP);
+        int tempIdx = tsIdx == 0 ? 1 : 0;
+        Buffer b = new ArrayBuffer(atts);
+        for (int i = 0; i < values.length; i++) {
+            Object[] sample = new Object[atts.size()];
+            sample[tempIdx] = values[i];
+            sample[tsIdx] = now.minusMillis((values.length - i) * 100);
+            b.add(sample);
+        }
+        return b;
+    }
+
+    private static Object[] select(SelectionStatement s, Buffer b) {
+        BufferView v = b.createView();
+        List<Object[]> res = s.select(v);
+        v.release();
+        assertThat(res.size(), equalTo(1));
+        return res.get(0);
+    }
+
+    @Test
+    public void testCombine() throws Exception {
+        SelectionStatement sel = getStatement("every 1 seconds " +
+                "select avg(temperature:integer, 10 seconds), " +
+                "sum(temperature:integer, 10 seconds), " +
+                "count(*, 10 seconds), " +
+                "min(temperature:integer, 10 seconds), " +
+                "max(temperature:integer, 10 seconds) " +
+                "sampling every 100 milliseconds");
+        PartialAggregation plan = PartialAggregation.create(sel);
+        assertThat(plan, notNullValue());
+        SelectionStatement partial = plan.getPartialStatement();
+        assertThat(partial.getAttributes(), equalTo(sel.getAttributes()));
+
+        Instant now = Instant.now();
+        List<Attribute> atts = sel.getAttributes();
+        Buffer b1 = createBuffer(atts, now, 1, 2, 3);
+        Buffer b2 = createBuffer(atts, now, 10, 20);
+        Buffer all = createBuffer(atts, now, 1, 10, 2, 20, 3);
+
+        List<Object[]> partials = new ArrayList<>();
+        partials.add(select(partial, b1));
+        partials.add(select(partial, b2));
+        Object[] res = plan.combine(partials);
+
+        // The two-level plan yields the same result as the central one
+        Object[] expected = select(sel, all);
+        assertThat(res, equalTo(expected));
+        assertThat(res[0], equalTo(36f / 5));
+        assertThat(res[1], equalTo(36));
+        assertThat(res[2], equalTo(5));
+        assertThat(res[3], equalTo(1));
+        assertThat(res[4], equalTo(20));
+    }
+
+    @Test
+    public void testCombiner() throws Exception {
+        SelectionStatement sel = getStatement("every 1 seconds " +
+                "select sum(temperature:integer, 10 seconds), " +
+                "count(*, 10 seconds) " +
+                "sampling every 100 milliseconds");
+        PartialAggregation plan = PartialAggregation.create(sel);
+        SelectionStatement partial = plan.getPartialStatement();
+        Instant now = Instant.now();
+        List<Attribute> atts = sel.getAttributes();
+        Object[] p1 = select(partial, createBuffer(atts, now, 1, 2, 3));
+        Object[] p2 = select(partial, createBuffer(atts, now, 10, 20));
+
+        CombinerQueryHandler c = new CombinerQueryHandler(plan, noop);
+        try {
+            c.source(1).data(partial, p1);
+            c.source(1).data(partial, p1);
+            assertThat(c.getSourceCount(), equalTo(1));
+
+            // Rows delivered to the combiner belong to an anonymous source
+            c.batch(partial, Collections.singletonList(p2));
+            c.batch(partial, Collections.emptyList());
+            assertThat(c.getSourceCount(), equalTo(2));
+            c.data(partial, p2);
+            assertThat(c.getSourceCount(), equalTo(2));
+
+            Object[] res = c.combine();
+            assertThat(res[0], equalTo(36));
+            assertThat(res[1], equalTo(5));
+        } finally {
+            c.complete();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        SelectionStatement sel = getStatement("every 1 seconds " +
+                "select avg(temperature:integer, 10 seconds) " +
+                "sampling every 100 milliseconds");
+        PartialAggregation plan = PartialAggregation.create(sel);
+        Object[] res = plan.combine(Collections.emptyList());
+        assertThat(res, equalTo(sel.getSelect().getDefault()));
+    }
+
+    @Test
+    public void testNotDecomposable() throws Exception {
+        // Sample windows differ among FPCs
+        SelectionStatement sel = getStatement("every 1 seconds " +
+                "select avg(temperature:integer, 10 samples) " +
+                "sampling every 100 milliseconds");
+        assertThat(PartialAggregation.create(sel), nullValue());
+
+        // Non-aggregate fields
+        sel = getStatement("every 1 seconds " +
+                "select temperature:integer, " +
+                "avg(temperature:integer, 10 seconds) " +
+                "sampling every 100 milliseconds");
+        assertThat(PartialAggregation.create(sel), nullValue());
+
+        // Sample-based EVERY clause
+        sel = getStatement("every 10 samples " +
+                "select avg(temperature:integer, 10 seconds) " +
+                "sampling every 100 milliseconds");
+        assertThat(PartialAggregation.create(sel), nullValue());
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.query.statement.Statement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 17/02/16.
+ */
+public class QueryRegistryTest {
+
+    private static final class TestTask implements QueryTask {
+
+        private boolean running = true;
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+
+    }
+
+    private static final class TestHandler implements StatementHandler {
+
+        private int completed = 0;
+        private int errors = 0;
+
+        @Override
+        public void data(Statement source, Record record) { }
+
+        @Override
+        public void complete() {
+            completed++;
+        }
+
+        @Override
+        public void error(Statement source, Throwable cause) {
+            errors++;
+        }
+
+    }
+
+    @Test
+    public void testAddRemove() {
+        QueryRegistry r = new QueryRegistry();
+        TestTask t1 = new TestTask();
+        TestTask t2 = new TestTask();
+        QueryRegistry.Entry e1 = r.add(null, null, t1);
+        QueryRegistry.Entry e2 = r.add(null, null, t2);
+        assertThat(e1.getId(), not(equalTo(e2.getId())));
+        assertThat(r.size(), equalTo(2));
+        assertThat(r.get(e1.getId()), sameInstance(e1));
+        assertThat(r.get(e2.getId()).getTask(), sameInstance(t2));
+
+        // Removals do not affect the other entries
+        assertThat(r.remove(e1.getId()), sameInstance(e1));
+        assertThat(r.remove(e1.getId()), nullValue());
+        assertThat(r.get(e1.getId()), nullValue());
+        assertThat(r.get(e2.getId()), sameInstance(e2));
+        assertThat(r.size(), equalTo(1));
+    }
+
+    @Test
+    public void testSnapshot() {
+        QueryRegistry r = new QueryRegistry();
+        QueryRegistry.Entry e1 = r.add(null, null, new TestTask());
+        Collection<QueryRegistry.Entry> snap = r.snapshot();
+        r.add(null, null, new TestTask());
+        r.remove(e1.getId());
+        assertThat(snap, contains(e1));
+        assertThat(r.snapshot().size(), equalTo(1));
+    }
+
+    @Test
+    public void testListeners() {
+        QueryRegistry r = new QueryRegistry();
+        List<Long> added = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        QueryRegistry.Listener l = new QueryRegistry.Listener() {
+            @Override
+            public void added(QueryRegistry.Entry e) {
+                added.add(e.getId());
+            }
+
+            @Override
+            public void removed(QueryRegistry.Entry e) {
+                removed.add(e.getId());
+            }
+        };
+        r.addListener(l);
+
+        QueryRegistry.Entry e = r.add(null, null, new TestTask());
+        assertThat(added, contains(e.getId()));
+        r.remove(e.getId());
+        r.remove(e.getId());
+        assertThat(removed, contains(e.getId()));
+
+        r.removeListener(l);
+        r.add(null, null, new TestTask());
+        assertThat(added.size(), equalTo(1));
+    }
+
+    @Test
+    public void testCompletion() {
+        QueryRegistry r = new QueryRegistry();
+        List<Long> removed = new ArrayList<>();
+        r.addListener(new QueryRegistry.Listener() {
+            @Override
+            public void removed(QueryRegistry.Entry e) {
+                removed.add(e.getId());
+            }
+        });
+
+        // Completed queries are removed from the registry
+        TestHandler h = new TestHandler();
+        List<StatementHandler> ths = new ArrayList<>();
+        QueryRegistry.Entry e = r.add(null, h, th -> {
+            ths.add(th);
+            return new TestTask();
+        });
+        assertThat(e.getHandler(), sameInstance(h));
+        assertThat(r.get(e.getId()), sameInstance(e));
+        ths.get(0).complete();
+        ths.get(0).complete();
+        assertThat(h.completed, equalTo(1));
+        assertThat(r.get(e.getId()), nullValue());
+        assertThat(removed, contains(e.getId()));
+
+        // Failed queries are removed and stopped
+        long first = e.getId();
+        h = new TestHandler();
+        TestTask t = new TestTask();
+        e = r.add(null, h, th -> {
+            ths.add(th);
+            return t;
+        });
+        ths.get(1).error(null, new RuntimeException("error"));
+        ths.get(1).complete();
+        assertThat(h.errors, equalTo(1));
+        assertThat(h.completed, equalTo(0));
+        assertThat(t.isRunning(), equalTo(false));
+        assertThat(r.get(e.getId()), nullValue());
+        assertThat(removed, contains(first, e.getId()));
+
+        // Queries ending before being registered are removed as well
+        e = r.add(null, new TestHandler(), th -> {
+            th.complete();
+            return new TestTask();
+        });
+        assertThat(r.get(e.getId()), nullValue());
+        assertThat(r.size(), equalTo(0));
+    }
+
+}
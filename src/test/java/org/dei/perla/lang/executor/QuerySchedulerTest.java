@@ -0,0 +1,205 @@
+package org.dei.perla.lang.executor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guido Rota 02/02/16.
+ */
+public class QuerySchedulerTest {
+
+    @Test
+    public void testLaneOrder() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 4, 16, 100, false);
+        QueryScheduler.Lane lane = s.newLane();
+        List<Integer> res = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            final int v = i;
+            lane.execute(() -> {
+                int r = running.incrementAndGet();
+                maxRunning.accumulateAndGet(r, Math::max);
+                res.add(v);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertThat(maxRunning.get(), equalTo(1));
+        for (int i = 0; i < 50; i++) {
+            assertThat(res.get(i), equalTo(i));
+        }
+        s.shutdown();
+    }
+
+    @Test
+    public void testLaneCapacity() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 1, 16, 2, false);
+        QueryScheduler.Lane lane = s.newLane();
+        CountDownLatch block = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                block.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        lane.execute(() -> { });
+        lane.execute(() -> { });
+        assertThat(lane.getPending(), equalTo(2));
+
+        Exception ex = null;
+        try {
+            lane.execute(() -> { });
+        } catch (RejectedExecutionException e) {
+            ex = e;
+        }
+        assertThat(ex, notNullValue());
+        block.countDown();
+        s.shutdown();
+    }
+
+    @Test
+    public void testFairness() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 1, 16, 100, false);
+        QueryScheduler.Lane busy = s.newLane();
+        QueryScheduler.Lane other = s.newLane();
+        CountDownLatch block = new CountDownLatch(1);
+        List<String> res = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(21);
+
+        // Occupy the only worker until all tasks have been submitted
+        busy.execute(() -> {
+            try {
+                block.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        for (int i = 0; i < 10; i++) {
+            busy.execute(() -> {
+                res.add("busy");
+                done.countDown();
+            });
+        }
+        for (int i = 0; i < 10; i++) {
+            other.execute(() -> {
+                res.add("other");
+                done.countDown();
+            });
+        }
+        block.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The second lane must not wait for the first one to drain
+        assertThat(res.indexOf("other"), lessThan(2));
+        s.shutdown();
+    }
+
+    @Test
+    public void testRunAsync() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 1, 1, 1, false);
+        AtomicReference<Thread> t = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        s.runAsync(() -> {
+            t.set(Thread.currentThread());
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertThat(t.get(), not(sameInstance(Thread.currentThread())));
+        // Notifications are not delivered on the timer threads
+        assertThat(t.get().getName(), startsWith("perla-callback-"));
+        s.shutdown();
+    }
+
+    @Test
+    public void testWorkerQueueFull() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 1, 1, 16, false);
+        CountDownLatch block = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        // Occupy the only worker, and fill the worker queue
+        QueryScheduler.Lane busy = s.newLane();
+        busy.execute(() -> {
+            started.countDown();
+            try {
+                block.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        busy.execute(done::countDown);
+        QueryScheduler.Lane queued = s.newLane();
+        queued.execute(done::countDown);
+
+        // Tasks are rejected, and never run on the submitting thread
+        QueryScheduler.Lane rejected = s.newLane();
+        AtomicReference<Thread> t = new AtomicReference<>();
+        Exception ex = null;
+        try {
+            rejected.execute(() -> t.set(Thread.currentThread()));
+        } catch (RejectedExecutionException e) {
+            ex = e;
+        }
+        assertThat(ex, notNullValue());
+        assertThat(t.get(), nullValue());
+        assertThat(rejected.getPending(), equalTo(0));
+
+        // The tasks accepted by the lanes are run once the worker is free
+        block.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        CountDownLatch after = new CountDownLatch(1);
+        rejected.execute(after::countDown);
+        assertTrue(after.await(5, TimeUnit.SECONDS));
+        s.shutdown();
+    }
+
+    @Test
+    public void testPeriodic() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 1, 1, 1, false);
+        CountDownLatch done = new CountDownLatch(3);
+        TimerWheel.Timeout f = s.scheduleAtFixedRate(done::countDown,
+                10, 10, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        f.cancel();
+        s.shutdown();
+    }
+
+    @Test
+    public void testVirtual() throws Exception {
+        QueryScheduler s = new QueryScheduler(1, 2, 16, 16, true);
+        assertThat(s.isVirtual(), equalTo(QueryScheduler.isVirtualSupported()));
+        CountDownLatch done = new CountDownLatch(1);
+        s.newLane().execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        s.shutdown();
+
+        assertThat(new QueryScheduler().isVirtual(), equalTo(false));
+        assertThat(QueryScheduler.getDefault(),
+                sameInstance(QueryScheduler.getDefault()));
+    }
+
+}
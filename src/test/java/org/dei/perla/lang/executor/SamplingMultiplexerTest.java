@@ -0,0 +1,205 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.*;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guido Rota 10/02/16.
+ */
+public class SamplingMultiplexerTest {
+
+    private static final Attribute temp =
+            Attribute.create("temperature", DataType.INTEGER);
+    private static final Attribute hum =
+            Attribute.create("humidity", DataType.INTEGER);
+
+    private static final Map<Attribute, Object> values;
+    static {
+        Map<Attribute, Object> m = new HashMap<>();
+        m.put(temp, 24);
+        m.put(hum, 60);
+        values = Collections.unmodifiableMap(m);
+    }
+
+    @Test
+    public void testSharing() throws Exception {
+        SimulatorFpc sim = new SimulatorFpc(values);
+        SamplingMultiplexer mux = new SamplingMultiplexer(
+                QueryScheduler.getDefault());
+        Fpc fpc = mux.share(sim);
+        assertThat(mux.share(sim), sameInstance(fpc));
+        assertThat(fpc.getId(), equalTo(sim.getId()));
+
+        List<Attribute> atts = Collections.singletonList(temp);
+        CountingHandler h1 = new CountingHandler();
+        CountingHandler h2 = new CountingHandler();
+        Task t1 = fpc.get(atts, false, 100, h1);
+        Task t2 = fpc.get(atts, false, 100, h2);
+        assertTrue(t1.isRunning());
+        assertTrue(t2.isRunning());
+        assertThat(sim.countPeriodic(), equalTo(1));
+        assertThat(mux.getSharedTasks(), equalTo(1));
+
+        h1.awaitCount(3);
+        h2.awaitCount(3);
+        assertThat(h1.last.values()[0], equalTo(24));
+
+        // Different attributes are not shared
+        CountingHandler h3 = new CountingHandler();
+        Task t3 = fpc.get(Arrays.asList(temp, hum), false, 100, h3);
+        assertThat(sim.countPeriodic(), equalTo(2));
+        h3.awaitCount(1);
+
+        t3.stop();
+        h3.awaitComplete();
+        t1.stop();
+        h1.awaitComplete();
+        assertFalse(t1.isRunning());
+        assertThat(sim.countPeriodic(), equalTo(1));
+        int count = h2.count.get();
+        h2.awaitCount(count + 2);
+
+        t2.stop();
+        h2.awaitComplete();
+        sim.awaitStopped();
+        assertThat(sim.countPeriodic(), equalTo(0));
+        assertThat(mux.getSharedTasks(), equalTo(0));
+    }
+
+    @Test
+    public void testRate() throws Exception {
+        SimulatorFpc sim = new SimulatorFpc(values);
+        SamplingMultiplexer mux = new SamplingMultiplexer(
+                QueryScheduler.getDefault());
+        Fpc fpc = mux.share(sim);
+        List<Attribute> atts = Collections.singletonList(temp);
+
+        CountingHandler slow = new CountingHandler();
+        CountingHandler fast = new CountingHandler();
+        Task ts = fpc.get(atts, false, 200, slow);
+        assertTrue(sim.hasPeriod(200));
+
+        // The shared task is replaced by a faster one
+        Task tf = fpc.get(atts, false, 50, fast);
+        sim.awaitPeriod(50);
+        assertThat(sim.countPeriodic(), equalTo(1));
+
+        fast.awaitCount(20);
+        int s = slow.count.get();
+        int f = fast.count.get();
+        // Slow subscriber only receives samples at its own rate
+        assertThat(s, greaterThan(0));
+        assertThat(s, lessThan(f / 2));
+
+        // The shared task is slowed down when the fast subscriber leaves
+        tf.stop();
+        sim.awaitPeriod(200);
+        assertThat(sim.countPeriodic(), equalTo(1));
+
+        ts.stop();
+        sim.awaitStopped();
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        SimulatorFpc sim = new SimulatorFpc(values);
+        SamplingMultiplexer mux = new SamplingMultiplexer(
+                QueryScheduler.getDefault());
+        Fpc fpc = mux.share(sim);
+        List<Attribute> atts = Collections.singletonList(temp);
+        assertThat(mux.getSharedFpcs(), equalTo(1));
+
+        CountingHandler h1 = new CountingHandler();
+        Task t1 = fpc.get(atts, false, 100, h1);
+        t1.stop();
+        h1.awaitComplete();
+        assertThat(mux.getSharedFpcs(), equalTo(0));
+
+        // Released wrappers can still be used
+        CountingHandler h2 = new CountingHandler();
+        Task t2 = fpc.get(atts, false, 100, h2);
+        assertThat(mux.getSharedFpcs(), equalTo(1));
+        assertThat(mux.share(sim), sameInstance(fpc));
+        h2.awaitCount(1);
+
+        // Released wrappers join the current wrapper of the same Fpc
+        t2.stop();
+        h2.awaitComplete();
+        assertThat(mux.getSharedFpcs(), equalTo(0));
+        Fpc cur = mux.share(sim);
+        assertThat(cur, not(sameInstance(fpc)));
+        CountingHandler h3 = new CountingHandler();
+        CountingHandler h4 = new CountingHandler();
+        Task t3 = cur.get(atts, false, 100, h3);
+        Task t4 = fpc.get(atts, false, 100, h4);
+        assertThat(sim.countPeriodic(), equalTo(1));
+        assertThat(mux.getSharedFpcs(), equalTo(1));
+        h4.awaitCount(1);
+
+        t3.stop();
+        t4.stop();
+        sim.awaitStopped();
+        assertThat(mux.getSharedFpcs(), equalTo(0));
+    }
+
+    @Test
+    public void testRejectedCompletion() throws Exception {
+        SimulatorFpc sim = new SimulatorFpc(values);
+        QueryScheduler scheduler = new QueryScheduler();
+        SamplingMultiplexer mux = new SamplingMultiplexer(scheduler);
+        Fpc fpc = mux.share(sim);
+        CountingHandler h = new CountingHandler();
+        Task t = fpc.get(Collections.singletonList(temp), false, 100, h);
+        scheduler.shutdown();
+
+        // Completion is notified inline when the scheduler is shut down
+        t.stop();
+        assertThat(h.complete.getCount(), equalTo(0L));
+        sim.awaitStopped();
+    }
+
+    private static final class CountingHandler implements TaskHandler {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch complete = new CountDownLatch(1);
+        private volatile Sample last;
+
+        private void awaitCount(int c) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5000;
+            while (count.get() < c && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertThat(count.get(), greaterThanOrEqualTo(c));
+        }
+
+        private void awaitComplete() throws InterruptedException {
+            assertTrue(complete.await(5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void complete(Task task) {
+            complete.countDown();
+        }
+
+        @Override
+        public void data(Task task, Sample sample) {
+            last = sample;
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void error(Task task, Throwable cause) { }
+
+    }
+
+}
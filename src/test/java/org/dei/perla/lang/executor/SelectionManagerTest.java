@@ -0,0 +1,105 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.core.registry.TreeRegistry;
+import org.dei.perla.lang.CommonAttributes;
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.StatementTask;
+import org.dei.perla.lang.parser.StatementCache;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 26/02/16.
+ */
+public class SelectionManagerTest {
+
+    private static final Attribute ROOM =
+            Attribute.create("room", DataType.STRING);
+
+    private static SimulatorFpc createFpc(int id, String room) {
+        Map<Attribute, Object> values = new HashMap<>();
+        values.put(ROOM, room);
+        values.put(CommonAttributes.TEMP_INT, 1);
+        return new SimulatorFpc(values, id);
+    }
+
+    @Test
+    public void testGroupByMultipleFpcs() throws Exception {
+        TreeRegistry registry = new TreeRegistry();
+        registry.add(createFpc(1, "a"));
+        registry.add(createFpc(2, "b"));
+
+        // GROUP BY queries are not decomposed into partial aggregates, the
+        // FPCs ship the samples of their window to the central handler
+        SelectionStatement sel = (SelectionStatement) StatementCache.parse(
+                "every 100 milliseconds " +
+                "select room:string, " +
+                "sum(temperature:integer, 500 milliseconds) " +
+                "group by room " +
+                "up to 500 milliseconds " +
+                "sampling every 20 milliseconds");
+        assertThat(PartialAggregation.create(sel), nullValue());
+
+        SumHandler h = new SumHandler();
+        SelectionManager sm = new SelectionManager(registry);
+        StatementTask t = sm.insertQuery(sel, h);
+
+        // Each FPC samples about 25 times every 500 milliseconds. The sums
+        // can only reach the threshold if the samples are not collapsed
+        // into one record per group before reaching the central handler.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((h.get("a") < 20 || h.get("b") < 20) &&
+                h.error == null &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        t.stop();
+
+        assertThat(h.error, nullValue());
+        assertThat(h.get("a"), greaterThanOrEqualTo(20));
+        assertThat(h.get("b"), greaterThanOrEqualTo(20));
+    }
+
+    /**
+     * Records the highest sum computed for each group
+     */
+    private static final class SumHandler implements StatementHandler {
+
+        private final Map<Object, Integer> sums = new ConcurrentHashMap<>();
+        private volatile Throwable error;
+
+        private int get(String room) {
+            return sums.getOrDefault(room, 0);
+        }
+
+        @Override
+        public void error(Statement source, Throwable cause) {
+            error = cause;
+        }
+
+        @Override
+        public void data(Statement source, Record record) {
+            Object[] v = record.getValues();
+            if (v[1] == null) {
+                return;
+            }
+            sums.merge(v[0], ((Number) v[1]).intValue(), Math::max);
+        }
+
+        @Override
+        public void complete() { }
+
+    }
+
+}
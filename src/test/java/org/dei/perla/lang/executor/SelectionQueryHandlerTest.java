@@ -0,0 +1,71 @@
+package org.dei.perla.lang.executor;
+
+import org.dei.perla.lang.StatementHandler;
+import org.dei.perla.lang.parser.StatementCache;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 27/02/16.
+ */
+public class SelectionQueryHandlerTest {
+
+    private static final StatementHandler noop = new StatementHandler() {
+
+        @Override
+        public void data(Statement stat, Record record) { }
+
+        @Override
+        public void complete() { }
+
+        @Override
+        public void error(Statement source, Throwable cause) { }
+
+    };
+
+    private static boolean isRegistered(SelectionQueryHandler h)
+            throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        return server.isRegistered(new ObjectName(
+                "org.dei.perla.lang:type=Query,id=" +
+                h.getMetrics().getId()));
+    }
+
+    @Test
+    public void testRegistration() throws Exception {
+        SelectionStatement sel = (SelectionStatement) StatementCache.parse(
+                "every 100 milliseconds " +
+                "select temperature:integer " +
+                "sampling every 30 milliseconds");
+
+        SelectionQueryHandler h = new SelectionQueryHandler(sel, noop);
+        assertThat(isRegistered(h), equalTo(true));
+        h.complete();
+        assertThat(isRegistered(h), equalTo(false));
+
+        // Failed queries are unregistered as well
+        h = new SelectionQueryHandler(sel, noop);
+        assertThat(isRegistered(h), equalTo(true));
+        h.error(sel, new RuntimeException("error"));
+        assertThat(isRegistered(h), equalTo(false));
+        assertThat(h.getMetrics().getErrors(), equalTo(1L));
+
+        // Handlers without a statement are never published
+        h = new SelectionQueryHandler(noop);
+        assertThat(isRegistered(h), equalTo(false));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullStatement() {
+        new SelectionQueryHandler(null, noop);
+    }
+
+}
@@ -87,25 +87,33 @@ public class SimulatorFpc implements Fpc {
      * Triggers the production of a new sample on all event tasks
      */
     public void triggerEvent() {
+        // The handlers are invoked outside of the lock, as they may in turn
+        // invoke this FPC from a different thread
+        List<AsyncSimTask> ts;
         lk.lock();
         try {
-            asyncTasks.forEach(AsyncSimTask::trigger);
+            ts = new ArrayList<>(asyncTasks);
         } finally {
             lk.unlock();
         }
+        ts.forEach(AsyncSimTask::trigger);
     }
 
     /**
      * Triggers the production of an error
      */
     public void triggerError() {
+        List<PeriodicSimTask> pts;
+        List<AsyncSimTask> ats;
         lk.lock();
         try {
-            periodicTasks.forEach(PeriodicSimTask::triggerError);
-            asyncTasks.forEach(AsyncSimTask::triggerError);
+            pts = new ArrayList<>(periodicTasks);
+            ats = new ArrayList<>(asyncTasks);
         } finally {
             lk.unlock();
         }
+        pts.forEach(PeriodicSimTask::triggerError);
+        ats.forEach(AsyncSimTask::triggerError);
     }
 
     public void pausePeriodicSampling() {
@@ -186,6 +194,22 @@ public class SimulatorFpc implements Fpc {
         }
     }
 
+    /**
+     * Awaits until at least one event sampling operation has started.
+     *
+     * @throws InterruptedException
+     */
+    public void awaitAsync() throws InterruptedException {
+        lk.lock();
+        try {
+            while (asyncTasks.isEmpty()) {
+                cond.await();
+            }
+        } finally {
+            lk.unlock();
+        }
+    }
+
     /**
      * Awaits until all long-running sampling operations have stopped.
      *
@@ -0,0 +1,103 @@
+package org.dei.perla.lang.executor;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guido Rota 04/02/16.
+ */
+public class TimerWheelTest {
+
+    /*
+     * Advances the wheel for the specified amount of milliseconds
+     */
+    private static void run(TimerWheel w, long ms) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+        while (System.nanoTime() < end) {
+            w.advance();
+            Thread.sleep(1);
+        }
+        w.advance();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        TimerWheel w = new TimerWheel(1, TimeUnit.MILLISECONDS, 8, Runnable::run);
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+        AtomicInteger c = new AtomicInteger();
+
+        w.schedule(a::incrementAndGet, 20, 20, TimeUnit.MILLISECONDS);
+        w.schedule(b::incrementAndGet, 20, 20, TimeUnit.MILLISECONDS);
+        assertThat(w.getPeriods(), equalTo(1));
+        w.schedule(c::incrementAndGet, 30, 30, TimeUnit.MILLISECONDS);
+        assertThat(w.getPeriods(), equalTo(2));
+
+        run(w, 200);
+        assertThat(a.get(), greaterThan(3));
+        assertThat(b.get(), equalTo(a.get()));
+        assertThat(c.get(), greaterThan(2));
+        assertThat(c.get(), lessThan(a.get()));
+    }
+
+    @Test
+    public void testInitialDelay() throws Exception {
+        TimerWheel w = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, Runnable::run);
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+
+        w.schedule(a::incrementAndGet, 10, 10, TimeUnit.MILLISECONDS);
+        run(w, 5);
+        w.schedule(b::incrementAndGet, 100, 10, TimeUnit.MILLISECONDS);
+        assertThat(w.getPeriods(), equalTo(1));
+
+        run(w, 80);
+        assertThat(a.get(), greaterThan(0));
+        assertThat(b.get(), equalTo(0));
+        run(w, 60);
+        assertThat(b.get(), greaterThan(0));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        TimerWheel w = new TimerWheel(1, TimeUnit.MILLISECONDS, 16, Runnable::run);
+        AtomicInteger a = new AtomicInteger();
+
+        TimerWheel.Timeout t = w.schedule(a::incrementAndGet, 5, 5,
+                TimeUnit.MILLISECONDS);
+        run(w, 30);
+        assertThat(a.get(), greaterThan(0));
+        t.cancel();
+        assertTrue(t.isCancelled());
+        int count = a.get();
+
+        run(w, 30);
+        assertThat(a.get(), equalTo(count));
+        assertThat(w.getPeriods(), equalTo(0));
+    }
+
+    @Test
+    public void testException() throws Exception {
+        TimerWheel w = new TimerWheel(1, TimeUnit.MILLISECONDS, 16, Runnable::run);
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+
+        TimerWheel.Timeout t = w.schedule(() -> {
+            a.incrementAndGet();
+            throw new RuntimeException();
+        }, 5, 5, TimeUnit.MILLISECONDS);
+        w.schedule(b::incrementAndGet, 5, 5, TimeUnit.MILLISECONDS);
+
+        run(w, 50);
+        assertThat(a.get(), equalTo(1));
+        assertTrue(t.isCancelled());
+        assertThat(b.get(), greaterThan(1));
+    }
+
+}
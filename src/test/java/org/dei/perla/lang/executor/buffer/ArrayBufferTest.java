@@ -136,11 +136,60 @@ public class ArrayBufferTest {
         assertThat(buf.size(), equalTo(1));
     }
 
-    @Test(expected = UnreleasedViewException.class)
-    public void testDuplicateView() throws Exception {
-        ArrayBuffer buf = new ArrayBuffer(atts);
-        buf.createView();
-        buf.createView();
+    @Test
+    public void testMultipleViews() throws Exception {
+        ArrayBuffer buf = createBuffer(10);
+        ArrayBufferView v1 = buf.createView();
+        Object[] sample = newSample(Instant.ofEpochMilli(10));
+        sample[0] = 10;
+        buf.add(sample);
+        ArrayBufferView v2 = buf.createView();
+        assertThat(v1.size(), equalTo(10));
+        assertThat(v2.size(), equalTo(11));
+        assertThat(v1.get(0)[0], equalTo(9));
+        assertThat(v2.get(0)[0], equalTo(10));
+
+        // Samples are pinned by the oldest view
+        v2.get(1);
+        v2.release();
+        assertThat(buf.size(), equalTo(11));
+
+        // Memory is reclaimed when the oldest view is released
+        v1.release();
+        assertThat(buf.size(), equalTo(2));
+    }
+
+    @Test
+    public void testViewSnapshot() throws Exception {
+        ArrayBuffer buf = createBuffer(60);
+        ArrayBufferView v = buf.createView();
+        v.get(9);
+        v.release();
+        assertThat(buf.size(), equalTo(10));
+
+        // Adding samples past the end of the circular array, and out of
+        // order, must not alter the content of an active view
+        v = buf.createView();
+        for (int i = 60; i < 100; i++) {
+            Object[] sample = newSample(Instant.ofEpochMilli(i));
+            sample[0] = i;
+            buf.add(sample);
+        }
+        Object[] late = newSample(Instant.ofEpochMilli(55).plusNanos(1));
+        late[0] = -1;
+        buf.add(late);
+
+        assertThat(v.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(v.get(i)[0], equalTo(59 - i));
+        }
+        v.release();
+
+        v = buf.createView();
+        assertThat(v.size(), equalTo(51));
+        assertThat(v.get(0)[0], equalTo(99));
+        assertThat(v.get(44)[0], equalTo(-1));
+        v.release();
     }
 
     @Test
@@ -197,4 +197,28 @@ public class CircularBufferTest {
         assertThat(buf.samplesIn(d), equalTo(count));
     }
 
+    @Test
+    public void testSamplesInDuplicateTimestamps() {
+        CircularBuffer buf = new CircularBuffer(atts, 8);
+        assertThat(buf.samplesIn(Duration.ofMillis(10)), equalTo(0));
+
+        // Three samples for each millisecond, from 0 to 19
+        int count = 20;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 3; j++) {
+                buf.add(newSample(Instant.ofEpochMilli(i)));
+            }
+        }
+        buf.deleteLast(5);
+        assertThat(buf.size(), equalTo(count * 3 - 5));
+
+        for (int i = 0; i < count; i++) {
+            Duration d = Duration.ofMillis(i);
+            int expected = Math.min(i * 3, buf.size());
+            assertThat(buf.samplesIn(d), equalTo(expected));
+        }
+        assertThat(buf.samplesIn(Duration.ofMillis(count)),
+                equalTo(buf.size()));
+    }
+
 }
@@ -0,0 +1,245 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.CommonAttributes;
+import org.dei.perla.lang.query.expression.*;
+import org.dei.perla.lang.query.statement.WindowSize;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Guido Rota 20/01/16.
+ */
+public class ColumnarBufferTest {
+
+    private static final List<Attribute> atts =
+            Arrays.asList(new Attribute[]{
+                    CommonAttributes.INTEGER,
+                    CommonAttributes.FLOAT,
+                    Attribute.TIMESTAMP,
+                    CommonAttributes.STRING
+            });
+
+    private Object[] newSample(int i) {
+        return new Object[]{i, (float) i, Instant.ofEpochMilli(i), "s" + i};
+    }
+
+    @Test
+    public void testAdd() {
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts, 8);
+        int count = 6;
+        for (int i = 0; i < count; i++) {
+            buf.add(newSample(i));
+        }
+        assertThat(buf.size(), equalTo(count));
+
+        for (int i = 0; i < count; i++) {
+            int v = count - i - 1;
+            assertThat(buf.getInt(i, 0), equalTo(v));
+            assertThat(buf.getFloat(i, 1), equalTo((float) v));
+            assertThat(buf.getTimestamp(i),
+                    equalTo(Instant.ofEpochMilli(v).toEpochMilli() * 1_000_000));
+            assertThat(buf.get(i), equalTo(newSample(v)));
+        }
+    }
+
+    @Test
+    public void testNull() {
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts);
+        buf.add(new Object[]{null, 1f, Instant.ofEpochMilli(1), null});
+        buf.add(new Object[]{2, null, Instant.ofEpochMilli(2), "a"});
+
+        assertFalse(buf.isNull(0, 0));
+        assertTrue(buf.isNull(0, 1));
+        assertFalse(buf.isNull(0, 3));
+        assertTrue(buf.isNull(1, 0));
+        assertFalse(buf.isNull(1, 1));
+        assertTrue(buf.isNull(1, 3));
+
+        Object[] s = buf.get(1);
+        assertThat(s[0], nullValue());
+        assertThat(s[1], equalTo(1f));
+        assertThat(s[3], nullValue());
+    }
+
+    @Test
+    public void testOutOfOrderAdd() {
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts, 4);
+        int[] order = {2, 0, 1, 3, 5, 4};
+        for (int i : order) {
+            buf.add(newSample(i));
+        }
+        assertThat(buf.size(), equalTo(order.length));
+        for (int i = 0; i < order.length; i++) {
+            assertThat(buf.getInt(i, 0), equalTo(order.length - i - 1));
+        }
+    }
+
+    @Test
+    public void testWrapAndExpand() {
+        int cap = 4;
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts, cap);
+
+        // Move the head around the end of the column arrays
+        for (int i = 0; i < 3; i++) {
+            buf.add(newSample(i));
+        }
+        buf.deleteLast(2);
+        for (int i = 3; i < 6; i++) {
+            buf.add(newSample(i));
+        }
+        assertThat(buf.capacity(), equalTo(cap));
+        assertThat(buf.size(), equalTo(cap));
+
+        buf.add(newSample(6));
+        assertThat(buf.capacity(), equalTo(cap * 2));
+        assertThat(buf.size(), equalTo(cap + 1));
+        for (int i = 0; i < buf.size(); i++) {
+            assertThat(buf.get(i), equalTo(newSample(6 - i)));
+        }
+    }
+
+    @Test
+    public void testSamplesIn() {
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts);
+        int count = 5;
+        for (int i = 0; i < count; i++) {
+            buf.add(newSample(i));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertThat(buf.samplesIn(Duration.ofMillis(i)), equalTo(i));
+        }
+        assertThat(buf.samplesIn(Duration.ofMillis(count * 2)),
+                equalTo(count));
+    }
+
+    @Test
+    public void testSamplesInWrapped() {
+        ColumnarCircularBuffer buf = new ColumnarCircularBuffer(atts, 8);
+        for (int i = 0; i < 6; i++) {
+            buf.add(newSample(i));
+        }
+        buf.deleteLast(4);
+        // Samples 6 and 7 share the same timestamp
+        for (int i = 6; i < 12; i++) {
+            buf.add(newSample(i == 7 ? 6 : i));
+        }
+        assertThat(buf.size(), equalTo(8));
+
+        assertThat(buf.samplesIn(Duration.ofMillis(0)), equalTo(0));
+        assertThat(buf.samplesIn(Duration.ofMillis(5)), equalTo(4));
+        assertThat(buf.samplesIn(Duration.ofMillis(6)), equalTo(6));
+        assertThat(buf.samplesIn(Duration.ofMillis(11)), equalTo(8));
+    }
+
+    @Test
+    public void testViewRelease() throws Exception {
+        ColumnarBuffer buf = new ColumnarBuffer(atts);
+        for (int i = 0; i < 10; i++) {
+            buf.add(newSample(i));
+        }
+
+        ColumnarBufferView view = buf.createView();
+        assertThat(view.size(), equalTo(10));
+        assertThat(view.getInt(3, 0), equalTo(6));
+        view.release();
+        assertThat(buf.size(), equalTo(4));
+
+        view = buf.createView();
+        assertThat(view.get(0), equalTo(newSample(9)));
+        view.release();
+        assertThat(buf.size(), equalTo(1));
+    }
+
+    @Test
+    public void testMultipleViews() throws Exception {
+        ColumnarBuffer buf = new ColumnarBuffer(atts);
+        for (int i = 0; i < 10; i++) {
+            buf.add(newSample(i));
+        }
+
+        ColumnarBufferView v1 = buf.createView();
+        ColumnarBufferView v2 = buf.createView();
+        assertThat(v2.getInt(3, 0), equalTo(6));
+        v2.release();
+        assertThat(buf.size(), equalTo(10));
+        v1.release();
+        assertThat(buf.size(), equalTo(4));
+    }
+
+    @Test
+    public void testViewSnapshot() throws Exception {
+        ColumnarBuffer buf = new ColumnarBuffer(atts);
+        for (int i = 0; i < 10; i++) {
+            buf.add(newSample(i * 2));
+        }
+
+        // Out of order samples must not alter the content of an active view
+        ColumnarBufferView v = buf.createView();
+        buf.add(newSample(5));
+        buf.add(newSample(11));
+        assertThat(v.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(v.get(i), equalTo(newSample(18 - i * 2)));
+        }
+        v.release();
+
+        v = buf.createView();
+        assertThat(v.size(), equalTo(12));
+        assertThat(v.get(4), equalTo(newSample(11)));
+        assertThat(v.get(8), equalTo(newSample(5)));
+        v.release();
+    }
+
+    @Test
+    public void testColumnAggregates() throws Exception {
+        ColumnarBuffer cbuf = new ColumnarBuffer(atts);
+        ArrayBuffer abuf = new ArrayBuffer(atts);
+        for (int i = 0; i < 20; i++) {
+            Object[] s = newSample(i);
+            if (i % 3 == 0) {
+                s[0] = null;
+                s[1] = null;
+            }
+            cbuf.add(s);
+            abuf.add(s.clone());
+        }
+
+        Expression intRef = new AttributeReference("integer",
+                DataType.INTEGER, 0);
+        Expression floatRef = new AttributeReference("float",
+                DataType.FLOAT, 1);
+        Expression tsRef = new AttributeReference("timestamp",
+                DataType.TIMESTAMP, 2);
+        WindowSize ws = new WindowSize(7);
+        Aggregate[] aggs = new Aggregate[]{
+                new SumAggregate(intRef, ws, Constant.TRUE),
+                new SumAggregate(floatRef, ws, Constant.TRUE),
+                new AvgAggregate(intRef, ws, Constant.TRUE),
+                new AvgAggregate(floatRef, ws, Constant.TRUE),
+                new MinAggregate(intRef, ws, Constant.TRUE),
+                new MaxAggregate(floatRef, ws, Constant.TRUE),
+                new MinAggregate(tsRef, ws, Constant.TRUE),
+                new MaxAggregate(tsRef, ws, Constant.TRUE),
+                new CountAggregate(ws, Constant.TRUE)
+        };
+
+        ColumnarBufferView cv = cbuf.createView();
+        ArrayBufferView av = abuf.createView();
+        for (Aggregate a : aggs) {
+            assertThat(a.run(null, cv), equalTo(a.run(null, av)));
+        }
+        cv.release();
+        av.release();
+    }
+
+}
@@ -0,0 +1,229 @@
+package org.dei.perla.lang.executor.buffer;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.CommonAttributes;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 12/02/16.
+ */
+public class RingBufferTest {
+
+    private static final List<Attribute> atts =
+            Arrays.asList(new Attribute[] {
+                    CommonAttributes.INTEGER,
+                    CommonAttributes.FLOAT,
+                    Attribute.TIMESTAMP
+            });
+
+    private Object[] newSample(int value, long ts) {
+        Object[] sample = new Object[atts.size()];
+        sample[0] = value;
+        sample[2] = Instant.ofEpochMilli(ts);
+        return sample;
+    }
+
+    private RingBuffer createBuffer(int count) {
+        RingBuffer buf = new RingBuffer(atts, 4);
+        for (int i = 0; i < count; i++) {
+            buf.add(newSample(i, i));
+        }
+        return buf;
+    }
+
+    @Test
+    public void testCreation() {
+        RingBuffer buf = new RingBuffer(atts);
+        assertThat(buf, notNullValue());
+        assertThat(buf.size(), equalTo(0));
+    }
+
+    @Test
+    public void testInsertion() throws Exception {
+        int count = 100;
+        RingBuffer buf = createBuffer(count);
+        assertThat(buf.size(), equalTo(count));
+
+        RingBufferView view = buf.createView();
+        assertThat(view.size(), equalTo(count));
+        for (int i = 0; i < count; i++) {
+            assertThat(view.get(i)[0], equalTo(count - i - 1));
+        }
+        view.release();
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        RingBuffer buf = createBuffer(3);
+        RingBufferView old = buf.createView();
+
+        buf.add(newSample(10, 10));
+        buf.add(newSample(5, 5));
+        buf.add(newSample(1, 1));
+
+        // The existing view is not affected by the insertion
+        assertThat(old.size(), equalTo(3));
+        int[] next = new int[] { 2 };
+        old.forEach((sample, v) -> assertThat(sample[0], equalTo(next[0]--)));
+        old.release();
+
+        RingBufferView view = buf.createView();
+        int[] expected = new int[] { 10, 5, 2, 1, 1, 0 };
+        assertThat(view.size(), equalTo(expected.length));
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(view.get(i)[0], equalTo(expected[i]));
+        }
+        view.release();
+    }
+
+    @Test
+    public void testViewRelease() throws Exception {
+        int count = 10;
+        RingBuffer buf = createBuffer(count);
+
+        RingBufferView view = buf.createView();
+        assertThat(view.get(5)[0], equalTo(4));
+        view.release();
+        assertThat(buf.size(), equalTo(6));
+
+        view = buf.createView();
+        view.release();
+        assertThat(buf.size(), equalTo(6));
+
+        view = buf.createView();
+        view.get(0);
+        view.release();
+        assertThat(buf.size(), equalTo(1));
+    }
+
+    @Test
+    public void testReuseSlots() throws Exception {
+        RingBuffer buf = createBuffer(4);
+        for (int i = 4; i < 100; i++) {
+            RingBufferView view = buf.createView();
+            view.get(1);
+            view.release();
+            assertThat(buf.size(), equalTo(2));
+            buf.add(newSample(i, i));
+        }
+
+        RingBufferView view = buf.createView();
+        assertThat(view.size(), equalTo(3));
+        assertThat(view.get(0)[0], equalTo(99));
+        assertThat(view.get(2)[0], equalTo(97));
+        view.release();
+    }
+
+    @Test
+    public void testMultipleViews() throws Exception {
+        RingBuffer buf = createBuffer(4);
+        RingBufferView v1 = buf.createView();
+        v1.get(0);
+        buf.add(newSample(4, 4));
+        RingBufferView v2 = buf.createView();
+        v2.get(0);
+        v1.release();
+        assertThat(buf.size(), equalTo(5));
+
+        // Slots pinned by the active view are not reused
+        for (int i = 5; i < 20; i++) {
+            buf.add(newSample(i, i));
+        }
+        assertThat(v2.size(), equalTo(5));
+        for (int i = 0; i < v2.size(); i++) {
+            assertThat(v2.get(i)[0], equalTo(4 - i));
+        }
+
+        RingBufferView v3 = buf.createView();
+        assertThat(v3.size(), equalTo(20));
+        v2.release();
+        assertThat(buf.size(), equalTo(20));
+        v3.get(0);
+        v3.release();
+        assertThat(buf.size(), equalTo(1));
+    }
+
+    @Test
+    public void testSamplesIn() throws Exception {
+        int count = 20;
+        RingBuffer buf = createBuffer(count);
+
+        BufferView view = buf.createView();
+        for (int i = 0; i < count + 1; i++) {
+            assertThat(view.samplesIn(Duration.ofMillis(i)), equalTo(i));
+        }
+        assertThat(view.samplesIn(Duration.ofDays(1)), equalTo(count));
+        view.release();
+    }
+
+    @Test
+    public void testSubView() throws Exception {
+        int count = 20;
+        RingBuffer buf = createBuffer(count);
+
+        BufferView view = buf.createView();
+        BufferView subView = view.subView(Duration.ofMillis(10));
+        assertThat(subView.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(subView.get(i)[0], equalTo(count - i - 1));
+        }
+        subView.release();
+        view.release();
+        assertThat(buf.size(), equalTo(count));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWrongReleaseOrder() throws Exception {
+        RingBuffer buf = createBuffer(20);
+        RingBufferView view = buf.createView();
+        RingBufferView sub1 = view.subView(10);
+        sub1.subView(5);
+        sub1.release();
+    }
+
+    @Test
+    public void testConcurrentIngestion() throws Exception {
+        int count = 100_000;
+        RingBuffer buf = new RingBuffer(atts, 4);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    buf.add(newSample(i, i));
+                }
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        producer.start();
+
+        int newest = -1;
+        while (producer.isAlive() || newest < count - 1) {
+            RingBufferView view = buf.createView();
+            if (view.size() > 0) {
+                // Views are consistent snapshots of the buffer
+                int[] next = new int[] { (Integer) view.get(0)[0] };
+                assertThat(next[0], greaterThanOrEqualTo(newest));
+                newest = next[0];
+                view.forEach((sample, v) ->
+                        assertThat(sample[0], equalTo(next[0]--)));
+            }
+            view.release();
+        }
+        producer.join();
+        assertThat(error.get(), nullValue());
+    }
+
+}
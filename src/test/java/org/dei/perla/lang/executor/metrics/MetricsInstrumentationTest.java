@@ -0,0 +1,115 @@
+package org.dei.perla.lang.executor.metrics;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.lang.CommonAttributes;
+import org.dei.perla.lang.executor.LatchingQueryHandler;
+import org.dei.perla.lang.executor.QueryScheduler;
+import org.dei.perla.lang.executor.SimulatorFpc;
+import org.dei.perla.lang.executor.statement.SelectionExecutor;
+import org.dei.perla.lang.parser.ParserAST;
+import org.dei.perla.lang.parser.ParserContext;
+import org.dei.perla.lang.parser.ast.SelectionStatementAST;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 18/02/16.
+ */
+public class MetricsInstrumentationTest {
+
+    private static SelectionStatement getStatement(String query)
+            throws Exception {
+        ParserContext ctx = new ParserContext();
+        ParserAST p = new ParserAST(new StringReader(query));
+        SelectionStatementAST sa = p.SelectionStatement(ctx);
+        SelectionStatement s = sa.compile(ctx);
+        if (ctx.hasErrors()) {
+            throw new RuntimeException(ctx.getErrorDescription());
+        }
+        return s;
+    }
+
+    private static Map<Attribute, Object> createDefaultValues() {
+        Map<Attribute, Object> values = new HashMap<>();
+        values.put(CommonAttributes.TEMP_INT, 24);
+        values.put(CommonAttributes.HUM_INT, 12);
+        values.put(Attribute.TIMESTAMP, Instant.now());
+        return values;
+    }
+
+    @Test
+    public void testExecutorProbe() throws Exception {
+        SimulatorFpc fpc = new SimulatorFpc(createDefaultValues());
+        SelectionStatement query = getStatement("every 50 milliseconds " +
+                "select temperature:integer " +
+                "sampling every 10 milliseconds " +
+                "where temperature > 30");
+
+        MetricsInstrumentation inst = new MetricsInstrumentation();
+        LatchingQueryHandler<SelectionStatement, Object[]> handler =
+                new LatchingQueryHandler<>();
+        SelectionExecutor exec = new SelectionExecutor(query, fpc, handler,
+                QueryScheduler.getDefault(), inst.createProbe(query, fpc));
+        assertThat(inst.snapshot().size(), equalTo(1));
+        ExecutorMetrics m = inst.snapshot().iterator().next();
+        assertThat(m.getFpcId(), equalTo(fpc.getId()));
+
+        exec.start();
+        fpc.awaitStarted();
+        Thread.sleep(200);
+
+        // All samples are rejected by the WHERE clause
+        assertThat(m.getSamplesReceived(), greaterThan(0L));
+        assertThat(m.getSamplesRejected(), equalTo(m.getSamplesReceived()));
+        assertThat(m.getSelections(), greaterThan(0L));
+        assertThat(m.getTickLag().getCount(), greaterThan(0L));
+        assertThat(m.getSelectLatency().getCount(), greaterThan(0L));
+
+        // Metrics are discarded when the executor stops
+        exec.stop();
+        assertThat(inst.snapshot().size(), equalTo(0));
+    }
+
+    @Test
+    public void testTextExporter() throws Exception {
+        SimulatorFpc fpc = new SimulatorFpc(createDefaultValues());
+        SelectionStatement query = getStatement("every 50 milliseconds " +
+                "select temperature:integer " +
+                "sampling every 10 milliseconds");
+
+        MetricsInstrumentation inst = new MetricsInstrumentation();
+        TextExporter exp = new TextExporter(inst);
+        ExecutionProbe p = inst.createProbe(query, fpc);
+        p.sampleReceived();
+        p.sampleReceived();
+        p.sampleRejected();
+        p.selected(3, 1_000_000);
+
+        String text = exp.scrape();
+        String labels = "{id=\"0\",fpc=\"" + fpc.getId() + "\",query=\"";
+        assertThat(text, containsString(
+                "# TYPE perla_samples_received_total counter"));
+        assertThat(text, containsString(
+                "perla_samples_received_total" + labels));
+        assertThat(text, containsString("} 2\n"));
+        assertThat(text, containsString(
+                "perla_rows_emitted_total" + labels));
+        assertThat(text, containsString(
+                "# TYPE perla_select_latency_seconds summary"));
+        assertThat(text, containsString(
+                "perla_select_latency_seconds_count" + labels));
+
+        // Closed probes are no longer exported
+        p.close();
+        assertThat(exp.scrape(), not(containsString(labels)));
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.dei.perla.lang.executor.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 15/02/16.
+ */
+public class QueryMetricsTest {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertThat(h.getPercentileNanos(50), equalTo(0L));
+
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000);
+        }
+        assertThat(h.getCount(), equalTo(100L));
+        assertThat(h.getMaxNanos(), equalTo(100_000L));
+        assertThat(h.getMeanNanos(), closeTo(50_500, 0.1));
+
+        // Percentiles are upper bounds, at most twice the exact value
+        long p50 = h.getPercentileNanos(50);
+        assertThat(p50, greaterThanOrEqualTo(50_000L));
+        assertThat(p50, lessThan(100_000L));
+        assertThat(h.getPercentileNanos(100), equalTo(100_000L));
+    }
+
+    @Test
+    public void testCounters() {
+        QueryMetrics m = new QueryMetrics("query");
+        m.record(3, 2000);
+        m.record(0, 4000);
+        m.error();
+        assertThat(m.getEvaluations(), equalTo(2L));
+        assertThat(m.getRowsEmitted(), equalTo(3L));
+        assertThat(m.getErrors(), equalTo(1L));
+        assertThat(m.getMeanLatencyMicros(), closeTo(3, 0.001));
+        assertThat(m.getMaxLatencyMicros(), equalTo(4L));
+    }
+
+    @Test
+    public void testJmxRegistration() throws Exception {
+        QueryMetrics m = new QueryMetrics("query");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+                "org.dei.perla.lang:type=Query,id=" + m.getId());
+
+        m.register();
+        assertThat(server.isRegistered(name), equalTo(true));
+        m.record(5, 1000);
+        assertThat(server.getAttribute(name, "RowsEmitted"), equalTo(5L));
+        assertThat(server.getAttribute(name, "Query"), equalTo("query"));
+
+        m.unregister();
+        assertThat(server.isRegistered(name), equalTo(false));
+    }
+
+}
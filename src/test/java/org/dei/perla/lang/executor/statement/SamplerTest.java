@@ -263,6 +263,7 @@ public class SamplerTest {
                 Collections.emptyList(), new NoopQueryHandler());
         sampler.start();
         fpc.awaitPeriod(1000);
+        fpc.awaitAsync();
         assertTrue(sampler.isRunning());
         assertThat(fpc.countPeriodic(), equalTo(1));
         assertThat(fpc.countAsync(), equalTo(1));
@@ -291,6 +292,7 @@ public class SamplerTest {
         // Restart sampler
         sampler.start();
         fpc.awaitStarted();
+        fpc.awaitAsync();
         assertTrue(sampler.isRunning());
 
         // Trigger event, check if sampling rate changes
@@ -357,6 +359,7 @@ public class SamplerTest {
                 Collections.emptyList(), new NoopQueryHandler());
         sampler.start();
         fpc.awaitPeriod(1000);
+        fpc.awaitAsync();
         assertTrue(sampler.isRunning());
         assertThat(fpc.countPeriodic(), equalTo(1));
         assertThat(fpc.countAsync(), equalTo(1));
@@ -3,7 +3,9 @@ package org.dei.perla.lang.executor.statement;
 import org.dei.perla.core.fpc.Attribute;
 import org.dei.perla.lang.CommonAttributes;
 import org.dei.perla.lang.executor.LatchingQueryHandler;
+import org.dei.perla.lang.executor.QueryScheduler;
 import org.dei.perla.lang.executor.SimulatorFpc;
+import org.dei.perla.lang.executor.metrics.ExecutionProbe;
 import org.dei.perla.lang.parser.ParseException;
 import org.dei.perla.lang.parser.ParserAST;
 import org.dei.perla.lang.parser.ParserContext;
@@ -18,6 +20,7 @@ import java.util.*;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.*;
 
 /**
@@ -37,6 +40,27 @@ public class SelectionExecutorTest {
         return s;
     }
 
+    /**
+     * Records the number of rows produced by the evaluations that returned
+     * at least one row
+     */
+    private static final class SelectionProbe implements ExecutionProbe {
+
+        private final List<Integer> rows = new ArrayList<>();
+
+        @Override
+        public synchronized void selected(int rows, long nanos) {
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+        }
+
+        private synchronized List<Integer> getRows() {
+            return new ArrayList<>(rows);
+        }
+
+    }
+
     private static final List<Attribute> atts = Arrays.asList(new Attribute[] {
             Attribute.TIMESTAMP,
             CommonAttributes.TEMP_INT,
@@ -90,11 +114,14 @@ public class SelectionExecutorTest {
 
         SelectionStatement query = getStatement("every 100 milliseconds " +
                         "select temperature:integer, humidity:integer " +
+                        "up to 3 samples " +
                         "sampling every 30 milliseconds ");
 
         LatchingQueryHandler<SelectionStatement, Object[]> handler =
                 new LatchingQueryHandler<>();
-        SelectionExecutor exec = new SelectionExecutor(query, fpc, handler);
+        SelectionProbe probe = new SelectionProbe();
+        SelectionExecutor exec = new SelectionExecutor(query, fpc, handler,
+                QueryScheduler.getDefault(), probe);
 
         assertFalse(exec.isRunning());
         exec.start();
@@ -110,6 +137,21 @@ public class SelectionExecutorTest {
         assertFalse(exec.isRunning());
         Thread.sleep(300);
         assertThat(handler.getDataCount(), equalTo(count));
+
+        // Every evaluation delivers all of its rows in a single batch. The
+        // results of the last evaluation may have been discarded by stop.
+        List<Integer> batches = handler.getBatchSizes();
+        List<Integer> evals = probe.getRows();
+        assertThat(evals.size() - batches.size(), lessThanOrEqualTo(1));
+        assertThat(batches, equalTo(evals.subList(0, batches.size())));
+        int rows = 0;
+        int max = 0;
+        for (int b : batches) {
+            rows += b;
+            max = Math.max(max, b);
+        }
+        assertThat(rows, equalTo(count));
+        assertThat(max, greaterThan(1));
     }
 
     @Test
@@ -7,6 +7,7 @@ import org.dei.perla.lang.parser.ast.NodeSpecificationsAST.NodeSpecificationsTyp
 import org.dei.perla.lang.query.expression.*;
 import org.dei.perla.lang.query.statement.RatePolicy;
 import org.dei.perla.lang.query.statement.RefreshType;
+import org.dei.perla.lang.query.statement.SelectionStatement;
 import org.dei.perla.lang.query.statement.WindowSize;
 import org.dei.perla.lang.query.statement.WindowSize.WindowType;
 import org.junit.Test;
@@ -15,6 +16,7 @@ import java.io.StringReader;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -853,6 +855,28 @@ public class ParserASTTest {
         assertTrue(fields.contains("pressure"));
     }
 
+    @Test
+    public void testGroupByStatement() throws Exception {
+        ParserAST p = getParser("every 10 samples " +
+                "select room:string, sum(temp:integer, 10 samples) " +
+                "group by room " +
+                "sampling every 1 seconds");
+        ParserContext ctx = new ParserContext();
+        SelectionStatement s = p.SelectionStatement(ctx).compile(ctx);
+        assertFalse(ctx.hasErrors());
+        assertThat(s.getSelect().getGroupBy().getFields(),
+                equalTo(Collections.singletonList("room")));
+
+        // Group by attributes must be selected
+        p = getParser("every 10 samples " +
+                "select sum(temp:integer, 10 samples) " +
+                "group by room " +
+                "sampling every 1 seconds");
+        ctx = new ParserContext();
+        p.SelectionStatement(ctx).compile(ctx);
+        assertTrue(ctx.hasErrors());
+    }
+
     @Test
     public void testEvery() throws Exception {
         ParserAST p = getParser("every 10 seconds");
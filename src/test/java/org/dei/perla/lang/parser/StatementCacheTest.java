@@ -0,0 +1,130 @@
+package org.dei.perla.lang.parser;
+
+import org.dei.perla.lang.executor.QueryException;
+import org.dei.perla.lang.query.statement.SelectionStatement;
+import org.dei.perla.lang.query.statement.Statement;
+import org.dei.perla.lang.query.statement.WindowSize;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 11/02/16.
+ */
+public class StatementCacheTest {
+
+    private static String query(String every, String temp) {
+        return "every " + every + " milliseconds " +
+                "select temperature:integer, humidity:integer " +
+                "sampling every 30 milliseconds " +
+                "where temperature > " + temp;
+    }
+
+    @Test
+    public void testExactHit() throws Exception {
+        StatementCache c = new StatementCache();
+        Statement s1 = c.get(query("100", "30"));
+        assertThat(c.getMisses(), equalTo(1L));
+        assertThat(c.getHits(), equalTo(0L));
+
+        // Whitespace, keyword case and literal representation are ignored
+        Statement s2 = c.get("EVERY  100 MILLISECONDS\n" +
+                "SELECT temperature:integer,humidity:integer " +
+                "SAMPLING EVERY 30 MILLISECONDS " +
+                "WHERE temperature > 0x1e");
+        assertThat(s2, sameInstance(s1));
+        assertThat(c.getHits(), equalTo(1L));
+        assertThat(c.getMisses(), equalTo(1L));
+        assertThat(c.size(), equalTo(1));
+    }
+
+    @Test
+    public void testSharedPlan() throws Exception {
+        StatementCache c = new StatementCache();
+        SelectionStatement s1 = (SelectionStatement) c.get(query("100", "30"));
+        SelectionStatement s2 = (SelectionStatement) c.get(query("100", "35"));
+        assertThat(c.getMisses(), equalTo(2L));
+        assertThat(s2.getWhere().toString(),
+                equalTo(s1.getWhere().toString().replace("30", "35")));
+
+        // The WHERE literal is bound to the shared plan
+        SelectionStatement s3 = (SelectionStatement) c.get(query("100", "40"));
+        assertThat(c.getMisses(), equalTo(2L));
+        assertThat(c.getHits(), equalTo(1L));
+        assertThat(c.getSharedHits(), equalTo(1L));
+        assertThat(s3.getWhere().toString(),
+                equalTo(s1.getWhere().toString().replace("30", "40")));
+        assertThat(s3.getEvery(), equalTo(s1.getEvery()));
+        assertThat(s3.getEvery().getDuration(),
+                equalTo(Duration.ofMillis(100)));
+
+        // Sampling periods are not parameters of the plan
+        SelectionStatement s4 = (SelectionStatement) c.get(query("200", "40"));
+        assertThat(c.getMisses(), equalTo(3L));
+        assertThat(c.getSharedHits(), equalTo(1L));
+        WindowSize every = s4.getEvery();
+        assertThat(every.getDuration(), equalTo(Duration.ofMillis(200)));
+
+        // Bound statements are cached as well
+        assertThat(c.get(query("100", "40")), sameInstance(s3));
+        assertThat(c.getHits(), equalTo(2L));
+        assertThat(c.getSharedHits(), equalTo(1L));
+    }
+
+    @Test
+    public void testLiteralKind() throws Exception {
+        StatementCache c = new StatementCache();
+        c.get(query("100", "40"));
+        c.get(query("100", "41"));
+        c.get(query("100", "42"));
+        assertThat(c.getSharedHits(), equalTo(1L));
+
+        // Float literals are not bound to the plan of the integer query
+        SelectionStatement s = (SelectionStatement) c.get(
+                query("100", "35.5"));
+        SelectionStatement p = (SelectionStatement) StatementCache.parse(
+                query("100", "35.5"));
+        assertThat(c.getSharedHits(), equalTo(1L));
+        assertThat(c.getMisses(), equalTo(3L));
+        assertThat(s.getWhere().toString(),
+                equalTo(p.getWhere().toString()));
+
+        // Float literals share the plan of float queries
+        String q = query("100", "35.5").replace("temperature:integer",
+                "temperature:float");
+        c.get(q);
+        c.get(q.replace("35.5", "36.5"));
+        s = (SelectionStatement) c.get(q.replace("35.5", "37.5"));
+        assertThat(c.getSharedHits(), equalTo(2L));
+        assertThat(s.getWhere().toString(),
+                equalTo("(temperature > 37.5)"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        StatementCache c = new StatementCache(2);
+        Statement s1 = c.get(query("100", "30"));
+        Statement s2 = c.get(query("200", "30"));
+        assertThat(c.get(query("100", "30")), sameInstance(s1));
+        c.get(query("300", "30"));
+        assertThat(c.size(), equalTo(2));
+
+        // The least recently used statement has been evicted
+        assertThat(c.get(query("100", "30")), sameInstance(s1));
+        assertThat(c.get(query("200", "30")), not(sameInstance(s2)));
+    }
+
+    @Test(expected = QueryException.class)
+    public void testInvalidQuery() throws Exception {
+        StatementCache c = new StatementCache();
+        try {
+            c.get("every select sampling");
+        } finally {
+            assertThat(c.size(), equalTo(0));
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.dei.perla.lang.persistence;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Guido Rota 22/02/16.
+ */
+public class TimeIndexTest {
+
+    private static Instant ts(long s) {
+        return Instant.ofEpochSecond(s);
+    }
+
+    private static TimeIndex create() {
+        TimeIndex idx = new TimeIndex(4);
+        for (int i = 0; i < 10; i++) {
+            idx.add(i * 10, ts(100 + i));
+        }
+        return idx;
+    }
+
+    @Test
+    public void testChunks() {
+        TimeIndex idx = create();
+        assertThat(idx.getCount(), equalTo(10L));
+        assertThat(idx.size(), equalTo(3));
+        assertThat(idx.getPosition(0), equalTo(0L));
+        assertThat(idx.getPosition(1), equalTo(40L));
+        assertThat(idx.getPosition(2), equalTo(80L));
+        assertThat(idx.getRecords(0), equalTo(4));
+        assertThat(idx.getRecords(2), equalTo(2));
+    }
+
+    @Test
+    public void testOverlaps() {
+        TimeIndex idx = create();
+        assertTrue(idx.overlaps(0, null, null));
+        assertTrue(idx.overlaps(0, ts(103), ts(104)));
+        assertFalse(idx.overlaps(0, ts(104), null));
+        assertFalse(idx.overlaps(1, null, ts(104)));
+        assertTrue(idx.overlaps(1, null, ts(105)));
+        assertTrue(idx.overlaps(2, ts(109), null));
+
+        assertTrue(idx.overlaps(ts(105), ts(106)));
+        assertFalse(idx.overlaps(ts(110), null));
+        assertFalse(idx.overlaps(null, ts(100)));
+    }
+
+    @Test
+    public void testUnorderedAndNull() {
+        TimeIndex idx = new TimeIndex(2);
+        idx.add(0, ts(200));
+        idx.add(1, ts(100));
+        idx.add(2, null);
+        assertTrue(idx.overlaps(0, ts(150), ts(160)));
+        assertFalse(idx.overlaps(1, ts(150), ts(160)));
+        assertTrue(idx.overlaps(1, null, null));
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        TimeIndex idx = create();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        idx.write(new DataOutputStream(bos));
+
+        TimeIndex read = TimeIndex.read(new DataInputStream(
+                new ByteArrayInputStream(bos.toByteArray())));
+        assertThat(read.getChunkSize(), equalTo(4));
+        assertThat(read.getCount(), equalTo(10L));
+        assertThat(read.size(), equalTo(3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(read.getPosition(i), equalTo(idx.getPosition(i)));
+            assertThat(read.overlaps(i, ts(104), ts(108)),
+                    equalTo(idx.overlaps(i, ts(104), ts(108))));
+        }
+        assertFalse(read.overlaps(ts(110), null));
+
+        read.add(100, ts(500));
+        read.add(110, ts(501));
+        read.add(120, ts(502));
+        assertThat(read.size(), equalTo(4));
+        assertThat(read.getPosition(3), equalTo(120L));
+        assertTrue(read.overlaps(2, ts(501), null));
+    }
+
+}
@@ -0,0 +1,225 @@
+package org.dei.perla.lang.persistence;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.WriteBehindStream.OverflowPolicy;
+import org.dei.perla.lang.persistence.memory.MemoryStreamDriver;
+import org.dei.perla.lang.query.expression.Expression;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 24/02/16.
+ */
+public class WriteBehindStreamTest {
+
+    private static final FieldDefinition field1 =
+            new FieldDefinition("field1", DataType.INTEGER);
+
+    private static Stream create() throws StreamException {
+        StreamDefinition def = new StreamDefinition("test",
+                Arrays.asList(field1));
+        return new MemoryStreamDriver().create(def);
+    }
+
+    private static List<Integer> readAll(Stream s) throws Exception {
+        List<Integer> res = new ArrayList<>();
+        try (StreamCursor c = s.scan(null, null, null, null)) {
+            Object[] r;
+            while ((r = c.next()) != null) {
+                res.add((Integer) r[0]);
+            }
+        }
+        return res;
+    }
+
+    private static void awaitEmpty(WriteBehindStream s)
+            throws InterruptedException {
+        while (s.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        Stream target = create();
+        WriteBehindStream s = new WriteBehindStream(target);
+        assertThat(s.getId(), equalTo("test"));
+        assertThat(s.getFields(), equalTo(target.getFields()));
+        for (int i = 0; i < 1000; i++) {
+            s.add(new Object[]{i});
+        }
+
+        List<Integer> res = readAll(s);
+        assertThat(res.size(), equalTo(1000));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(res.get(i), equalTo(i));
+        }
+        assertThat(s.getWritten(), equalTo(1000L));
+        assertThat(s.getDropped(), equalTo(0L));
+        assertThat(s.getQueueDepth(), equalTo(0));
+        assertThat(s.getFlushLatency().getCount(), greaterThan(0L));
+        assertThat(s.getFlushLatency().getCount(),
+                lessThanOrEqualTo(1000L));
+        s.close();
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        GatedStream target = new GatedStream(create());
+        WriteBehindStream s = new WriteBehindStream(target, 4, 1,
+                OverflowPolicy.DROP_OLDEST);
+        s.add(new Object[]{0});
+        awaitEmpty(s);
+        for (int i = 1; i < 7; i++) {
+            s.add(new Object[]{i});
+        }
+        assertThat(s.getQueueDepth(), equalTo(4));
+        assertThat(s.getDropped(), equalTo(2L));
+
+        target.open();
+        assertThat(readAll(s), equalTo(Arrays.asList(0, 3, 4, 5, 6)));
+        s.close();
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        GatedStream target = new GatedStream(create());
+        WriteBehindStream s = new WriteBehindStream(target, 4, 1,
+                OverflowPolicy.DROP_NEWEST);
+        s.add(new Object[]{0});
+        awaitEmpty(s);
+        for (int i = 1; i < 7; i++) {
+            s.add(new Object[]{i});
+        }
+        assertThat(s.getDropped(), equalTo(2L));
+
+        target.open();
+        assertThat(readAll(s), equalTo(Arrays.asList(0, 1, 2, 3, 4)));
+        s.close();
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        GatedStream target = new GatedStream(create());
+        WriteBehindStream s = new WriteBehindStream(target, 4, 2,
+                OverflowPolicy.DROP_OLDEST);
+        s.add(new Object[]{0});
+        awaitEmpty(s);
+        List<Object[]> records = new ArrayList<>();
+        for (int i = 1; i < 7; i++) {
+            records.add(new Object[]{i});
+        }
+        s.addAll(records);
+        assertThat(s.getQueueDepth(), equalTo(4));
+        assertThat(s.getDropped(), equalTo(2L));
+
+        target.open();
+        assertThat(readAll(s), equalTo(Arrays.asList(0, 3, 4, 5, 6)));
+        s.close();
+    }
+
+    @Test(expected = StreamException.class)
+    public void testAddAllSizeMismatch() throws Exception {
+        WriteBehindStream s = new WriteBehindStream(create());
+        s.addAll(Arrays.asList(new Object[]{1}, new Object[]{1, 2}));
+    }
+
+    @Test
+    public void testFail() throws Exception {
+        GatedStream target = new GatedStream(create());
+        WriteBehindStream s = new WriteBehindStream(target, 2, 1,
+                OverflowPolicy.FAIL);
+        s.add(new Object[]{0});
+        awaitEmpty(s);
+        s.add(new Object[]{1});
+        s.add(new Object[]{2});
+        try {
+            s.add(new Object[]{3});
+            throw new AssertionError("StreamException expected");
+        } catch (StreamException e) {
+            // expected
+        }
+        target.open();
+        s.close();
+        assertThat(readAll(target), equalTo(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    public void testTargetFailure() throws Exception {
+        StreamDefinition def = new StreamDefinition("test", Arrays.asList(
+                new FieldDefinition("timestamp", DataType.TIMESTAMP)));
+        WriteBehindStream s = new WriteBehindStream(
+                new MemoryStreamDriver().create(def));
+        s.add(new Object[]{Instant.now()});
+        // The record size is checked by the WriteBehindStream, while the
+        // record values are only checked by the target stream
+        s.add(new Object[]{"wrong"});
+        s.flush();
+        s.close();
+        assertThat(s.getWritten() + s.getFailed(), equalTo(2L));
+        assertThat(s.getFailed(), greaterThan(0L));
+    }
+
+    @Test(expected = StreamException.class)
+    public void testClosed() throws Exception {
+        WriteBehindStream s = new WriteBehindStream(create());
+        s.close();
+        s.add(new Object[]{1});
+    }
+
+    /**
+     * Stream that blocks all writes until opened
+     */
+    private static final class GatedStream implements Stream {
+
+        private final Stream target;
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        private GatedStream(Stream target) {
+            this.target = target;
+        }
+
+        private void open() {
+            gate.countDown();
+        }
+
+        @Override
+        public String getId() {
+            return target.getId();
+        }
+
+        @Override
+        public List<FieldDefinition> getFields() {
+            return target.getFields();
+        }
+
+        @Override
+        public void add(Object[] record) throws StreamException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new StreamException(e);
+            }
+            target.add(record);
+        }
+
+        @Override
+        public StreamCursor scan(Instant from, Instant to,
+                List<FieldDefinition> fields, Expression where)
+                throws StreamException {
+            return target.scan(from, to, fields, where);
+        }
+
+    }
+
+}
@@ -0,0 +1,361 @@
+package org.dei.perla.lang.persistence.file;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.*;
+import org.dei.perla.lang.query.expression.AttributeReference;
+import org.dei.perla.lang.query.expression.Comparison;
+import org.dei.perla.lang.query.expression.ComparisonOperation;
+import org.dei.perla.lang.query.expression.Constant;
+import org.dei.perla.lang.query.expression.Expression;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 21/02/16.
+ */
+public class FileStreamTest {
+
+    private static final FieldDefinition field1 =
+            new FieldDefinition("field1", DataType.INTEGER);
+    private static final FieldDefinition field2 =
+            new FieldDefinition("field2", DataType.FLOAT);
+    private static final FieldDefinition field3 =
+            new FieldDefinition("field3", DataType.BOOLEAN);
+    private static final FieldDefinition field4 =
+            new FieldDefinition("field4", DataType.STRING, "none");
+    private static final FieldDefinition field5 =
+            new FieldDefinition("field5", DataType.TIMESTAMP);
+    private static final FieldDefinition field6 =
+            new FieldDefinition("field6", DataType.ID, 12);
+
+    private static final StreamDefinition def = new StreamDefinition("test",
+            Arrays.asList(field1, field2, field3, field4, field5, field6));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static Object[] record(int i) {
+        return new Object[]{i, i * 1.5f, i % 2 == 0, "record " + i,
+                Instant.ofEpochSecond(1455000000L + i, i), i};
+    }
+
+    private static List<Object[]> readAll(FileStream s) throws Exception {
+        List<Object[]> records = new ArrayList<>();
+        s.forEach(records::add);
+        return records;
+    }
+
+    private static List<Object[]> readAll(StreamCursor c) throws Exception {
+        List<Object[]> records = new ArrayList<>();
+        try (StreamCursor cur = c) {
+            Object[] r;
+            while ((r = cur.next()) != null) {
+                records.add(r);
+            }
+        }
+        return records;
+    }
+
+    private static void assertRecords(List<Object[]> records, int count) {
+        assertThat(records.size(), equalTo(count));
+        for (int i = 0; i < count; i++) {
+            assertThat(records.get(i), equalTo(record(i)));
+        }
+    }
+
+    @Test
+    public void testCreateAndOpen() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FileStreamDriver sd = new FileStreamDriver(dir);
+        FileStream s = sd.create(def);
+        assertThat(s.getId(), equalTo("test"));
+        assertThat(s.getFields().size(), equalTo(6));
+        for (int i = 0; i < 10; i++) {
+            s.add(record(i));
+        }
+        s.add(new Object[]{null, null, null, null, null, null});
+        assertThat(sd.open("test") == s, equalTo(true));
+        sd.close();
+
+        sd = new FileStreamDriver(dir);
+        s = sd.open("test");
+        assertThat(s.getId(), equalTo("test"));
+        assertThat(s.size(), equalTo(11L));
+        List<FieldDefinition> fields = s.getFields();
+        assertThat(fields.size(), equalTo(6));
+        for (int i = 0; i < fields.size(); i++) {
+            FieldDefinition f = def.getFields().get(i);
+            assertThat(fields.get(i).getName(), equalTo(f.getName()));
+            assertThat(fields.get(i).getType(), equalTo(f.getType()));
+            assertThat(fields.get(i).getDefaultValue(),
+                    equalTo(f.getDefaultValue()));
+        }
+
+        List<Object[]> records = readAll(s);
+        assertRecords(records.subList(0, 10), 10);
+        assertThat(records.get(10),
+                equalTo(new Object[]{null, null, null, null, null, null}));
+
+        s.add(record(11));
+        assertThat(readAll(s).size(), equalTo(12));
+        sd.close();
+    }
+
+    @Test
+    public void testSegmentRoll() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FileStreamDriver sd = new FileStreamDriver(dir, 512, 0);
+        FileStream s = sd.create(def);
+        for (int i = 0; i < 100; i++) {
+            s.add(record(i));
+        }
+        assertRecords(readAll(s), 100);
+        sd.close();
+
+        long segments = Files.list(dir.resolve("test"))
+                .filter(p -> Segment.parseBase(p) != -1).count();
+        assertThat(segments, greaterThan(1L));
+
+        sd = new FileStreamDriver(dir, 512, 0);
+        s = sd.open("test");
+        assertThat(s.size(), equalTo(100L));
+        assertRecords(readAll(s), 100);
+        sd.close();
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FileStreamDriver sd = new FileStreamDriver(dir, 1024, 0);
+        FileStream s = sd.create(def);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            batch.add(record(i));
+        }
+        s.addAll(batch);
+        sd.open("test", Arrays.asList(field1)).addAll(
+                Arrays.asList(new Object[]{50}, new Object[]{51}));
+        sd.close();
+
+        sd = new FileStreamDriver(dir, 1024, 0);
+        List<Object[]> records = readAll(sd.open("test"));
+        assertRecords(records.subList(0, 50), 50);
+        assertThat(records.size(), equalTo(52));
+        assertThat(records.get(51)[0], equalTo(51));
+        assertThat(records.get(51)[5], equalTo(12));
+        sd.close();
+    }
+
+    @Test(expected = StreamException.class)
+    public void testRecordTooLarge() throws Exception {
+        FileStreamDriver sd =
+                new FileStreamDriver(folder.getRoot().toPath(), 48, 0);
+        FileStream s = sd.create(def);
+        s.add(record(0));
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FileStreamDriver sd = new FileStreamDriver(dir, 4096, 0);
+        FileStream s = sd.create(def);
+        for (int i = 0; i < 10; i++) {
+            s.add(record(i));
+        }
+        s.commit();
+
+        // Simulate a torn write by corrupting the payload of the last
+        // record without closing the stream
+        Path seg = dir.resolve("test").resolve(Segment.fileName(0));
+        long last = -1;
+        try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate((int) ch.size());
+            ch.read(b, 0);
+            int pos = 16;
+            while (b.getInt(pos) != 0) {
+                last = pos;
+                pos += 8 + b.getInt(pos);
+            }
+            ch.write(ByteBuffer.wrap(new byte[]{0x7f, 0x7f}), last + 10);
+        }
+
+        FileStreamDriver recovered = new FileStreamDriver(dir, 4096, 0);
+        s = recovered.open("test");
+        assertThat(s.size(), equalTo(9L));
+        assertRecords(readAll(s), 9);
+        s.add(record(9));
+        assertRecords(readAll(s), 10);
+        recovered.close();
+
+        recovered = new FileStreamDriver(dir, 4096, 0);
+        s = recovered.open("test");
+        assertRecords(readAll(s), 10);
+        recovered.close();
+    }
+
+    @Test(expected = StreamException.class)
+    public void testDuplicateStream() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FileStreamDriver sd = new FileStreamDriver(dir);
+        sd.create(def);
+        sd.close();
+
+        sd = new FileStreamDriver(dir);
+        sd.create(def);
+    }
+
+    @Test(expected = StreamException.class)
+    public void testUnexistingStream() throws Exception {
+        StreamDriver sd = new FileStreamDriver(folder.getRoot().toPath());
+        sd.open("not_created");
+    }
+
+    @Test(expected = StreamException.class)
+    public void testInvalidValue() throws Exception {
+        FileStreamDriver sd = new FileStreamDriver(folder.getRoot().toPath());
+        FileStream s = sd.create(def);
+        s.add(new Object[]{"wrong", null, null, null, null, null});
+    }
+
+    @Test
+    public void testFieldSubset() throws Exception {
+        FileStreamDriver sd = new FileStreamDriver(folder.getRoot().toPath());
+        FileStream s = sd.create(def);
+        Stream sub = sd.open("test", Arrays.asList(field3, field1));
+        assertThat(sub.getId(), equalTo("test"));
+        assertThat(sub.getFields().size(), equalTo(2));
+        sub.add(new Object[]{true, 5});
+
+        List<Object[]> records = readAll(s);
+        assertThat(records.size(), equalTo(1));
+        Object[] r = records.get(0);
+        assertThat(r[0], equalTo(5));
+        assertThat(r[1], nullValue());
+        assertThat(r[2], equalTo(true));
+        assertThat(r[3], equalTo("none"));
+        assertThat(r[4], nullValue());
+        assertThat(r[5], equalTo(12));
+        sd.close();
+    }
+
+    @Test(expected = StreamException.class)
+    public void testFieldSubsetTypeMismatch() throws Exception {
+        FileStreamDriver sd = new FileStreamDriver(folder.getRoot().toPath());
+        sd.create(def);
+        sd.open("test", Arrays.asList(
+                new FieldDefinition("field1", DataType.STRING)));
+    }
+
+    @Test
+    public void testConcurrentCommit() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        for (long interval : new long[]{0, 10}) {
+            Path d = dir.resolve("interval" + interval);
+            FileStreamDriver sd = new FileStreamDriver(d, 64 * 1024,
+                    interval);
+            FileStream s = sd.create(def);
+            Thread[] ts = new Thread[4];
+            for (int i = 0; i < ts.length; i++) {
+                ts[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < 200; j++) {
+                            s.add(record(j));
+                        }
+                    } catch (StreamException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                ts[i].start();
+            }
+            for (Thread t : ts) {
+                t.join();
+            }
+            sd.close();
+
+            sd = new FileStreamDriver(d, 64 * 1024, interval);
+            assertThat(readAll(sd.open("test")).size(), equalTo(800));
+            sd.close();
+        }
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        FieldDefinition ts = new FieldDefinition("timestamp",
+                DataType.TIMESTAMP);
+        StreamDefinition tsDef = new StreamDefinition("scan",
+                Arrays.asList(field4, ts, field1));
+        FileStreamDriver sd = new FileStreamDriver(dir, 4096, 0);
+        FileStream s = sd.create(tsDef);
+        for (int i = 0; i < 2000; i++) {
+            s.add(new Object[]{"record " + i, Instant.ofEpochSecond(i), i});
+        }
+        assertScan(s);
+        sd.close();
+
+        Path sdir = dir.resolve("scan");
+        long idx = Files.list(sdir)
+                .filter(p -> p.toString().endsWith(".idx")).count();
+        assertThat(idx, greaterThan(0L));
+
+        // Index files are loaded on open, and rebuilt when missing
+        sd = new FileStreamDriver(dir, 4096, 0);
+        assertScan(sd.open("scan"));
+        sd.close();
+        Files.delete(sdir.resolve("00000000000000000000.idx"));
+        sd = new FileStreamDriver(dir, 4096, 0);
+        s = sd.open("scan");
+        assertScan(s);
+
+        Stream sub = sd.open("scan", Arrays.asList(field1));
+        Expression where = new Comparison(ComparisonOperation.GT,
+                new AttributeReference("field1", DataType.INTEGER, 0),
+                Constant.create(1995, DataType.INTEGER));
+        List<Object[]> res = readAll(sub.scan(Instant.ofEpochSecond(1990),
+                null, null, where));
+        assertThat(res.size(), equalTo(4));
+        assertThat(res.get(0), equalTo(new Object[]{1996}));
+        sd.close();
+    }
+
+    private static void assertScan(Stream s) throws Exception {
+        assertThat(readAll(s.scan(null, null, null, null)).size(),
+                equalTo(2000));
+
+        List<Object[]> res = readAll(s.scan(Instant.ofEpochSecond(1500),
+                Instant.ofEpochSecond(1510), null, null));
+        assertThat(res.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(res.get(i)[0], equalTo("record " + (1500 + i)));
+        }
+
+        res = readAll(s.scan(null, Instant.ofEpochSecond(3), Arrays.asList(
+                new FieldDefinition("field1", DataType.INTEGER)), null));
+        assertThat(res.size(), equalTo(3));
+        assertThat(res.get(2), equalTo(new Object[]{2}));
+
+        Expression where = new Comparison(ComparisonOperation.LT,
+                new AttributeReference("field1", DataType.INTEGER, 2),
+                Constant.create(1000, DataType.INTEGER));
+        res = readAll(s.scan(Instant.ofEpochSecond(995), null, null, where));
+        assertThat(res.size(), equalTo(5));
+    }
+
+}
@@ -0,0 +1,268 @@
+package org.dei.perla.lang.persistence.jdbc;
+
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.persistence.*;
+import org.dei.perla.lang.query.expression.AttributeReference;
+import org.dei.perla.lang.query.expression.Comparison;
+import org.dei.perla.lang.query.expression.ComparisonOperation;
+import org.dei.perla.lang.query.expression.Constant;
+import org.dei.perla.lang.query.expression.Expression;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 23/02/16.
+ */
+public class JdbcStreamTest {
+
+    private static final AtomicInteger dbCount = new AtomicInteger();
+
+    private static final FieldDefinition timestamp =
+            new FieldDefinition("timestamp", DataType.TIMESTAMP);
+    private static final FieldDefinition field1 =
+            new FieldDefinition("field1", DataType.INTEGER);
+    private static final FieldDefinition field2 =
+            new FieldDefinition("field2", DataType.FLOAT);
+    private static final FieldDefinition field3 =
+            new FieldDefinition("field3", DataType.BOOLEAN);
+    private static final FieldDefinition field4 =
+            new FieldDefinition("field4", DataType.STRING, "it's none");
+    private static final FieldDefinition field5 =
+            new FieldDefinition("field5", DataType.ID, 12);
+
+    private static final StreamDefinition def = new StreamDefinition("test",
+            Arrays.asList(timestamp, field1, field2, field3, field4, field5));
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setup() {
+        String url = "jdbc:h2:mem:perla" + dbCount.incrementAndGet() +
+                ";DB_CLOSE_DELAY=-1";
+        pool = new ConnectionPool(url, "sa", "", 4);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        Connection c = pool.acquire();
+        try (Statement s = c.createStatement()) {
+            s.execute("SHUTDOWN");
+        }
+        pool.release(c);
+        pool.close();
+    }
+
+    private static Object[] record(int i) {
+        return new Object[]{Instant.ofEpochSecond(1455000000L + i, i * 1000),
+                i, i * 1.5f, i % 2 == 0, "record " + i, i};
+    }
+
+    private static List<Object[]> readAll(StreamCursor c) throws Exception {
+        List<Object[]> res = new ArrayList<>();
+        try (StreamCursor cur = c) {
+            Object[] r;
+            while ((r = cur.next()) != null) {
+                res.add(r);
+            }
+        }
+        return res;
+    }
+
+    private int countRows(String table) throws Exception {
+        Connection c = pool.acquire();
+        try (Statement s = c.createStatement();
+                ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM \"" +
+                        table + "\"")) {
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            pool.release(c);
+        }
+    }
+
+    @Test
+    public void testCreateAndScan() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 10, 0);
+        JdbcStream s = sd.create(def);
+        assertThat(s.getId(), equalTo("test"));
+        assertThat(s.getFields(), equalTo(def.getFields()));
+        for (int i = 0; i < 25; i++) {
+            s.add(record(i));
+        }
+        s.add(new Object[]{null, null, null, null, null, null});
+        assertThat(countRows("test"), equalTo(20));
+        s.flush();
+        assertThat(countRows("test"), equalTo(26));
+
+        List<Object[]> res = readAll(s.scan(null, null, null, null));
+        assertThat(res.size(), equalTo(26));
+        for (int i = 0; i < 25; i++) {
+            assertThat(res.get(i), equalTo(record(i)));
+        }
+        assertThat(res.get(25),
+                equalTo(new Object[]{null, null, null, null, null, null}));
+
+        res = readAll(s.scan(Instant.ofEpochSecond(1455000010L),
+                Instant.ofEpochSecond(1455000015L),
+                Arrays.asList(field1), null));
+        assertThat(res.size(), equalTo(5));
+        assertThat(res.get(0), equalTo(new Object[]{10}));
+
+        Expression where = new Comparison(ComparisonOperation.LT,
+                new AttributeReference("field1", DataType.INTEGER, 1),
+                Constant.create(3, DataType.INTEGER));
+        res = readAll(s.scan(null, Instant.ofEpochSecond(1455000010L),
+                null, where));
+        assertThat(res.size(), equalTo(3));
+        sd.close();
+    }
+
+    @Test
+    public void testScanFlushesPendingRecords() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 100, 0);
+        JdbcStream s = sd.create(def);
+        s.add(record(0));
+        Stream sub = sd.open("test", Arrays.asList(field1));
+        sub.add(new Object[]{1});
+        assertThat(readAll(s.scan(null, null, null, null)).size(),
+                equalTo(2));
+        sd.close();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 4, 0);
+        JdbcStream s = sd.create(def);
+        for (int i = 0; i < 10; i++) {
+            s.add(record(i));
+        }
+        sd.close();
+
+        sd = new JdbcStreamDriver(pool, 4, 0);
+        s = sd.open("test");
+        List<FieldDefinition> fields = s.getFields();
+        assertThat(fields.size(), equalTo(def.getFields().size()));
+        for (int i = 0; i < fields.size(); i++) {
+            FieldDefinition f = def.getFields().get(i);
+            assertThat(fields.get(i).getName(), equalTo(f.getName()));
+            assertThat(fields.get(i).getType(), equalTo(f.getType()));
+        }
+        for (int i = 10; i < 20; i++) {
+            s.add(record(i));
+        }
+
+        List<Object[]> res = readAll(s.scan(null, null, null, null));
+        assertThat(res.size(), equalTo(20));
+        for (int i = 0; i < 20; i++) {
+            assertThat(res.get(i), equalTo(record(i)));
+        }
+        sd.close();
+    }
+
+    @Test
+    public void testFieldSubset() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 10, 0);
+        JdbcStream s = sd.create(def);
+        Stream sub = sd.open("test", Arrays.asList(field3, field1));
+        assertThat(sub.getFields().size(), equalTo(2));
+        sub.add(new Object[]{true, 5});
+
+        List<Object[]> res = readAll(s.scan(null, null, null, null));
+        assertThat(res.size(), equalTo(1));
+        Object[] r = res.get(0);
+        assertThat(r[0], nullValue());
+        assertThat(r[1], equalTo(5));
+        assertThat(r[2], nullValue());
+        assertThat(r[3], equalTo(true));
+        assertThat(r[4], equalTo("it's none"));
+        assertThat(r[5], equalTo(12));
+
+        res = readAll(sub.scan(null, null, null, null));
+        assertThat(res.get(0), equalTo(new Object[]{true, 5}));
+        sd.close();
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 100, 10);
+        JdbcStream s = sd.create(def);
+        for (int i = 0; i < 3; i++) {
+            s.add(record(i));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countRows("test") < 3 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(countRows("test"), equalTo(3));
+        sd.close();
+    }
+
+    @Test(expected = StreamException.class)
+    public void testDuplicateStream() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 10, 0);
+        sd.create(def);
+        sd.close();
+
+        sd = new JdbcStreamDriver(pool, 10, 0);
+        sd.create(def);
+    }
+
+    @Test(expected = StreamException.class)
+    public void testUnexistingStream() throws Exception {
+        StreamDriver sd = new JdbcStreamDriver(pool, 10, 0);
+        sd.open("not_created");
+    }
+
+    @Test(expected = StreamException.class)
+    public void testInvalidValue() throws Exception {
+        JdbcStreamDriver sd = new JdbcStreamDriver(pool, 10, 0);
+        JdbcStream s = sd.create(def);
+        s.add(new Object[]{null, "wrong", null, null, null, null});
+    }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        ConnectionPool p = new ConnectionPool(
+                "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "", 1);
+        Connection c = p.acquire();
+        Connection[] other = new Connection[1];
+        Thread t = new Thread(() -> {
+            try {
+                other[0] = p.acquire();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        t.join(100);
+        assertThat(other[0], nullValue());
+
+        p.release(c);
+        t.join();
+        assertThat(other[0] == c, equalTo(true));
+
+        // Closed connections are replaced
+        other[0].close();
+        p.release(other[0]);
+        c = p.acquire();
+        assertThat(c.isClosed(), equalTo(false));
+        p.release(c);
+        p.close();
+    }
+
+}
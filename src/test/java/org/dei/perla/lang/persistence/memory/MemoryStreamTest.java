@@ -2,9 +2,16 @@ package org.dei.perla.lang.persistence.memory;
 
 import org.dei.perla.core.fpc.DataType;
 import org.dei.perla.lang.persistence.*;
+import org.dei.perla.lang.query.expression.AttributeReference;
+import org.dei.perla.lang.query.expression.Comparison;
+import org.dei.perla.lang.query.expression.ComparisonOperation;
+import org.dei.perla.lang.query.expression.Constant;
+import org.dei.perla.lang.query.expression.Expression;
 import org.junit.Test;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -46,6 +53,64 @@ public class MemoryStreamTest {
         assertThat(s.getFields().size(), equalTo(fields.size()));
     }
 
+    @Test
+    public void testScan() throws Exception {
+        FieldDefinition ts = new FieldDefinition("timestamp",
+                DataType.TIMESTAMP);
+        StreamDefinition def = new StreamDefinition("test",
+                Arrays.asList(ts, field1, field2));
+        MemoryStream s = new MemoryStreamDriver().create(def);
+        for (int i = 0; i < 1000; i++) {
+            s.add(new Object[]{Instant.ofEpochSecond(i), i, i * 0.5f});
+        }
+        s.add(new Object[]{null, 1000, 0f});
+
+        List<Object[]> res = readAll(s.scan(null, null, null, null));
+        assertThat(res.size(), equalTo(1001));
+
+        res = readAll(s.scan(Instant.ofEpochSecond(300),
+                Instant.ofEpochSecond(310), null, null));
+        assertThat(res.size(), equalTo(10));
+        assertThat(res.get(0)[1], equalTo(300));
+        assertThat(res.get(9)[1], equalTo(309));
+
+        res = readAll(s.scan(Instant.ofEpochSecond(990), null,
+                Arrays.asList(field2), null));
+        assertThat(res.size(), equalTo(10));
+        assertThat(res.get(0).length, equalTo(1));
+        assertThat(res.get(0)[0], equalTo(495f));
+
+        Expression where = new Comparison(ComparisonOperation.LT,
+                new AttributeReference("field1", DataType.INTEGER, 1),
+                Constant.create(5, DataType.INTEGER));
+        res = readAll(s.scan(null, Instant.ofEpochSecond(500), null, where));
+        assertThat(res.size(), equalTo(5));
+
+        // Records added after the scan was started are not returned
+        StreamCursor c = s.scan(Instant.ofEpochSecond(999), null, null, null);
+        s.add(new Object[]{Instant.ofEpochSecond(2000), 2000, 0f});
+        assertThat(readAll(c).size(), equalTo(1));
+    }
+
+    @Test(expected = StreamException.class)
+    public void testScanWithoutTimestamp() throws Exception {
+        StreamDefinition def = new StreamDefinition("test",
+                Arrays.asList(field1));
+        Stream s = new MemoryStreamDriver().create(def);
+        s.scan(Instant.now(), null, null, null);
+    }
+
+    private static List<Object[]> readAll(StreamCursor c) throws Exception {
+        List<Object[]> res = new ArrayList<>();
+        try (StreamCursor cur = c) {
+            Object[] r;
+            while ((r = cur.next()) != null) {
+                res.add(r);
+            }
+        }
+        return res;
+    }
+
     @Test(expected = StreamException.class)
     public void testUnexistingStream() throws Exception {
         StreamDriver sd = new MemoryStreamDriver();
@@ -10,6 +10,7 @@ import org.dei.perla.lang.query.statement.WindowSize;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
@@ -327,4 +328,59 @@ public class AggregateTest {
         assertThat(res, equalTo(5));
     }
 
+    @Test
+    public void testIncrementalAggregates() throws Exception {
+        List<Attribute> bufAtts = Arrays.asList(new Attribute[]{
+                CommonAttributes.INTEGER,
+                CommonAttributes.STRING,
+                CommonAttributes.FLOAT,
+                Attribute.TIMESTAMP
+        });
+        Expression filter = new Comparison(ComparisonOperation.NE, intExpr,
+                Constant.create(7, DataType.INTEGER));
+        WindowSize ws = new WindowSize(4);
+        WindowSize wt = new WindowSize(Duration.ofMillis(5));
+        Aggregate[] aggs = new Aggregate[]{
+                new SumAggregate(intExpr, ws, filter),
+                new SumAggregate(floatExpr, wt, Constant.TRUE),
+                new AvgAggregate(intExpr, wt, filter),
+                new AvgAggregate(floatExpr, ws, Constant.TRUE),
+                new MinAggregate(intExpr, ws, Constant.TRUE),
+                new MinAggregate(floatExpr, wt, filter),
+                new MaxAggregate(intExpr, wt, Constant.TRUE),
+                new MaxAggregate(floatExpr, ws, filter),
+                new CountAggregate(ws, filter),
+                new CountAggregate(wt, Constant.TRUE)
+        };
+
+        Buffer b = new ArrayBuffer(bufAtts);
+        Instant start = Instant.ofEpochMilli(0);
+        for (int i = 0; i < 30; i++) {
+            // Values follow a sawtooth pattern with some NULLs, to exercise
+            // both eviction and replacement of the window extremes
+            Integer iv = i % 5 == 4 ? null : (i * 7) % 11;
+            Float fv = iv == null ? null : iv * 0.5f;
+            b.add(new Object[]{iv, "test", fv, start.plusMillis(i * 2)});
+            if (i == 20) {
+                // Out of order sample
+                b.add(new Object[]{3, "test", 1.5f, start.plusMillis(39)});
+            }
+
+            BufferView v = b.createView();
+            for (Aggregate a : aggs) {
+                Object res = a.run(null, v);
+                BufferView sub = a.getWindowSize().getType() ==
+                        WindowSize.WindowType.SAMPLE ?
+                        v.subView(a.getWindowSize().getSamples()) :
+                        v.subView(a.getWindowSize().getDuration());
+                assertThat(a.toString(), res, equalTo(a.compute(sub)));
+                sub.release();
+            }
+            // Access older samples every now and then, to force the
+            // deletion of old samples from the buffer on release
+            v.get(Math.min(v.size() - 1, i % 3 == 0 ? 2 : 10));
+            v.release();
+        }
+    }
+
 }
@@ -0,0 +1,140 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.core.fpc.DataType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 25/01/16.
+ */
+public class ClosureCompilerTest {
+
+    private static final Expression intRef =
+            new AttributeReference("integer", DataType.INTEGER, 0);
+    private static final Expression floatRef =
+            new AttributeReference("float", DataType.FLOAT, 1);
+    private static final Expression boolRef =
+            new AttributeReference("boolean", DataType.BOOLEAN, 2);
+    private static final Expression stringRef =
+            new AttributeReference("string", DataType.STRING, 3);
+
+    private static final Object[][] samples = new Object[][]{
+            {1, 1.5f, true, "a"},
+            {-7, -0.0f, false, "b"},
+            {0, 0.0f, true, "c"},
+            {Integer.MAX_VALUE, Float.NaN, null, null},
+            {Integer.MIN_VALUE, Float.NEGATIVE_INFINITY, false, "a"},
+            {null, null, null, null},
+            {12, 3.25f, true, "z"}
+    };
+
+    private static List<Expression> expressions() {
+        List<Expression> es = new ArrayList<>();
+        Expression i3 = Constant.create(3, DataType.INTEGER);
+        Expression f2 = Constant.create(2.5f, DataType.FLOAT);
+        Expression s = Constant.create("b", DataType.STRING);
+
+        for (ArithmeticOperation op : ArithmeticOperation.values()) {
+            es.add(new Arithmetic(op, intRef, i3, DataType.INTEGER));
+            es.add(new Arithmetic(op, i3, Constant.NULL, DataType.INTEGER));
+            if (op != ArithmeticOperation.MODULO) {
+                es.add(new Arithmetic(op, floatRef, f2, DataType.FLOAT));
+                es.add(new Arithmetic(op, new CastFloat(intRef), floatRef,
+                        DataType.FLOAT));
+            }
+        }
+        for (BitwiseOperation op : BitwiseOperation.values()) {
+            es.add(new Bitwise(op, intRef, i3));
+        }
+        es.add(new BitwiseNot(intRef));
+        es.add(new Inverse(intRef, DataType.INTEGER));
+        es.add(new Inverse(floatRef, DataType.FLOAT));
+        es.add(new CastInteger(floatRef));
+
+        for (ComparisonOperation op : ComparisonOperation.values()) {
+            es.add(new Comparison(op, intRef, i3));
+            es.add(new Comparison(op, floatRef, f2));
+            es.add(new Comparison(op, floatRef, new Inverse(floatRef,
+                    DataType.FLOAT)));
+            es.add(new Comparison(op, stringRef, s));
+            es.add(new Comparison(op, boolRef, Constant.TRUE));
+            es.add(new Comparison(op, intRef, Constant.NULL));
+        }
+        es.add(new Between(intRef, Constant.INTEGER_0, i3));
+        es.add(new Between(floatRef, new Inverse(f2, DataType.FLOAT), f2));
+        es.add(new Between(stringRef, Constant.create("a", DataType.STRING),
+                s));
+
+        Expression c1 = new Comparison(ComparisonOperation.GT, intRef,
+                Constant.INTEGER_0);
+        Expression c2 = new Comparison(ComparisonOperation.LT, floatRef, f2);
+        for (BoolOperation op : BoolOperation.values()) {
+            es.add(new Bool(op, c1, c2));
+            es.add(new Bool(op, boolRef, c1));
+            es.add(new Bool(op, Constant.UNKNOWN, boolRef));
+        }
+        es.add(new Not(c1));
+        es.add(new Not(boolRef));
+        es.add(new IsNull(intRef));
+        es.add(new IsNull(new Arithmetic(ArithmeticOperation.ADDITION,
+                intRef, i3, DataType.INTEGER)));
+        for (LogicValue l : LogicValue.values()) {
+            es.add(new Is(c2, l));
+            es.add(new Is(boolRef, l));
+        }
+        es.add(new Like(stringRef, "[a-b]"));
+        es.add(intRef);
+        es.add(boolRef);
+        return es;
+    }
+
+    @Test
+    public void testEquivalence() {
+        ExpressionCompiler c = new ClosureCompiler();
+        for (Expression e : expressions()) {
+            Expression ce = c.compile(e);
+            assertThat(ce, instanceOf(CompiledExpression.class));
+            assertThat(ce.getType(), equalTo(e.getType()));
+            assertThat(ce.toString(), equalTo(e.toString()));
+            for (Object[] sample : samples) {
+                Object expected = e.run(sample, null);
+                assertThat(e.toString(), ce.run(sample, null),
+                        equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testDivisionByZero() {
+        ExpressionCompiler c = new ClosureCompiler();
+        Expression e = c.compile(new Arithmetic(ArithmeticOperation.DIVISION,
+                intRef, Constant.INTEGER_0, DataType.INTEGER));
+
+        Exception ex = null;
+        try {
+            e.run(samples[0], null);
+        } catch (ArithmeticException ae) {
+            ex = ae;
+        }
+        assertThat(ex, notNullValue());
+        assertThat(e.run(samples[5], null), nullValue());
+    }
+
+    @Test
+    public void testConstant() {
+        ExpressionCompiler c = new ClosureCompiler();
+        assertThat(c.compile(Constant.TRUE), sameInstance(Constant.TRUE));
+        assertThat(c.compile(null), nullValue());
+
+        Expression e = c.compile(intRef);
+        assertThat(c.compile(e), sameInstance(e));
+        assertThat(ExpressionCompiler.INTERPRETER.compile(intRef),
+                sameInstance(intRef));
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.dei.perla.lang.query.expression;
+
+import org.dei.perla.core.fpc.Attribute;
+import org.dei.perla.core.fpc.DataType;
+import org.dei.perla.lang.CommonAttributes;
+import org.dei.perla.lang.executor.buffer.ColumnarCircularBuffer;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 19/02/16.
+ */
+public class FilterTest {
+
+    private static final List<Attribute> atts = Arrays.asList(
+            Attribute.TIMESTAMP,
+            CommonAttributes.INTEGER,
+            CommonAttributes.FLOAT,
+            CommonAttributes.STRING
+    );
+
+    private static final Expression intRef =
+            new AttributeReference("integer", DataType.INTEGER, 1);
+    private static final Expression floatRef =
+            new AttributeReference("float", DataType.FLOAT, 2);
+    private static final Expression stringRef =
+            new AttributeReference("string", DataType.STRING, 3);
+
+    private static List<Object[]> samples() {
+        List<Object[]> samples = new ArrayList<>();
+        Instant ts = Instant.parse("2016-02-19T10:00:00.000Z");
+        for (int i = 0; i < 40; i++) {
+            Integer iv = i % 7 == 0 ? null : i - 20;
+            Float fv = i % 5 == 0 ? null : i * 0.5f;
+            String sv = i % 3 == 0 ? "a" : "b";
+            samples.add(new Object[]{ts.plusSeconds(i), iv, fv, sv});
+        }
+        return samples;
+    }
+
+    private static List<Expression> expressions() {
+        Expression i3 = Constant.create(3, DataType.INTEGER);
+        Expression in5 = Constant.create(-5, DataType.INTEGER);
+        Expression f4 = Constant.create(4.5f, DataType.FLOAT);
+        Expression f12 = Constant.create(12f, DataType.FLOAT);
+        Expression s = Constant.create("a", DataType.STRING);
+
+        List<Expression> es = new ArrayList<>();
+        for (ComparisonOperation op : ComparisonOperation.values()) {
+            es.add(new Comparison(op, intRef, i3));
+            es.add(new Comparison(op, i3, intRef));
+            es.add(new Comparison(op, floatRef, f4));
+            es.add(new Comparison(op, f4, floatRef));
+            es.add(new Comparison(op, stringRef, s));
+            es.add(new Comparison(op, intRef, Constant.NULL));
+        }
+        es.add(new Between(intRef, in5, i3));
+        es.add(new Between(floatRef, f4, f12));
+        es.add(new Between(intRef, Constant.NULL, i3));
+        Expression c1 = new Comparison(ComparisonOperation.GT, intRef, in5);
+        Expression c2 = new Comparison(ComparisonOperation.LT, floatRef, f12);
+        for (BoolOperation op : BoolOperation.values()) {
+            es.add(new Bool(op, c1, c2));
+            es.add(new Bool(op, new Not(c1), c2));
+        }
+        es.add(new Not(c1));
+        es.add(new IsNull(intRef));
+        es.add(Constant.TRUE);
+        es.add(Constant.UNKNOWN);
+        return es;
+    }
+
+    private static BitSet expected(Expression e, SampleBatch batch) {
+        BitSet exp = new BitSet();
+        for (int i = 0; i < batch.size(); i++) {
+            if (e.run(batch.get(i), null) == LogicValue.TRUE) {
+                exp.set(i);
+            }
+        }
+        return exp;
+    }
+
+    private static BitSet filter(Expression e, SampleBatch batch) {
+        BitSet sel = new BitSet();
+        sel.set(0, batch.size());
+        e.filter(batch, sel, null);
+        return sel;
+    }
+
+    @Test
+    public void testRowBatch() {
+        SampleBatch batch = SampleBatch.of(samples());
+        ExpressionCompiler compiler = new ClosureCompiler();
+        for (Expression e : expressions()) {
+            BitSet exp = expected(e, batch);
+            assertThat(e.toString(), filter(e, batch), equalTo(exp));
+            assertThat(e.toString(), filter(compiler.compile(e), batch),
+                    equalTo(exp));
+        }
+    }
+
+    @Test
+    public void testColumnBatch() {
+        ColumnarCircularBuffer batch = new ColumnarCircularBuffer(atts);
+        samples().forEach(batch::add);
+        for (Expression e : expressions()) {
+            assertThat(e.toString(), filter(e, batch),
+                    equalTo(expected(e, batch)));
+        }
+    }
+
+    @Test
+    public void testPartialSelection() {
+        SampleBatch batch = SampleBatch.of(samples());
+        Expression e = new Comparison(ComparisonOperation.GE, intRef,
+                Constant.create(0, DataType.INTEGER));
+
+        // Samples that are not selected on input are never selected on
+        // output, even if they satisfy the expression
+        BitSet sel = new BitSet();
+        sel.set(30, 35);
+        e.filter(batch, sel, null);
+        BitSet exp = expected(e, batch);
+        exp.and(sel);
+        assertThat(sel, equalTo(exp));
+        assertThat(sel.nextSetBit(0), equalTo(30));
+    }
+
+}
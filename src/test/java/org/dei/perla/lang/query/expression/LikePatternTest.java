@@ -0,0 +1,74 @@
+package org.dei.perla.lang.query.expression;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Guido Rota 20/02/16.
+ */
+public class LikePatternTest {
+
+    private static final String[] patterns = new String[] {
+            "", "^", "$", "^$", ".*", "^.*", ".*$",
+            "pista", "^pista", "pista$", "^pista$",
+            ".*pista", "pista.*", ".*pista.*", "^pista.*", ".*pista$",
+            "pista\\.1", "pista\\.*", "\\^pista", "pista\\$", "pista\\\\$",
+            "pi.ta", "pist[a-z]", "^pista|nord", "\\dpista", "(?i)pista",
+            "pista_1", "pista%"
+    };
+
+    private static final String[] strings = new String[] {
+            "", "pista", "pista\n", "pista\r\n", "la pista", "pista nord",
+            "PISTA", "pista.1", "pista..", "^pista", "pista$", "pista\\",
+            "pistb", "nord", "1pista", "pista_1", "pista%", "pi\nsta"
+    };
+
+    @Test
+    public void testKind() {
+        assertThat(LikePattern.compile("pista").getKind(),
+                equalTo(LikePattern.Kind.CONTAINS));
+        assertThat(LikePattern.compile(".*pista.*").getKind(),
+                equalTo(LikePattern.Kind.CONTAINS));
+        assertThat(LikePattern.compile("^pista").getKind(),
+                equalTo(LikePattern.Kind.PREFIX));
+        assertThat(LikePattern.compile("^pista.*").getKind(),
+                equalTo(LikePattern.Kind.PREFIX));
+        assertThat(LikePattern.compile("pista$").getKind(),
+                equalTo(LikePattern.Kind.SUFFIX));
+        assertThat(LikePattern.compile("^pista$").getKind(),
+                equalTo(LikePattern.Kind.EQUALS));
+        assertThat(LikePattern.compile("pista\\.1").getKind(),
+                equalTo(LikePattern.Kind.CONTAINS));
+        assertThat(LikePattern.compile("pi.ta").getKind(),
+                equalTo(LikePattern.Kind.REGEX));
+        assertThat(LikePattern.compile("\\dpista").getKind(),
+                equalTo(LikePattern.Kind.REGEX));
+        assertThat(LikePattern.compile(
+                Pattern.compile("pista", Pattern.CASE_INSENSITIVE)).getKind(),
+                equalTo(LikePattern.Kind.REGEX));
+    }
+
+    @Test
+    public void testMatches() {
+        for (String p : patterns) {
+            LikePattern lp = LikePattern.compile(p);
+            Pattern rp = Pattern.compile(p);
+            for (String s : strings) {
+                assertThat("'" + p + "' on '" + s + "'", lp.matches(s),
+                        equalTo(rp.matcher(s).find()));
+            }
+        }
+    }
+
+    @Test
+    public void testCache() {
+        LikePattern p = LikePattern.compile("^cached");
+        assertThat(LikePattern.compile("^cached"), sameInstance(p));
+    }
+
+}
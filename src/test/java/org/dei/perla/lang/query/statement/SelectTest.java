@@ -351,4 +351,89 @@ public class SelectTest {
         assertThat(r[1], equalTo(def[1]));
     }
 */
+
+    private static final Expression roomRef =
+            new AttributeReference("room", DataType.STRING, 0);
+    private static final Expression tempRef =
+            new AttributeReference("temp", DataType.INTEGER, 1);
+
+    private static BufferView groupView() throws Exception {
+        List<Attribute> atts = Arrays.asList(new Attribute[]{
+                Attribute.create("room", DataType.STRING),
+                Attribute.create("temp", DataType.INTEGER),
+                Attribute.TIMESTAMP
+        });
+        Object[][] samples = new Object[][]{
+                {"d", 7}, {"a", 1}, {"b", 10}, {"a", 2},
+                {"b", 20}, {"a", 3}, {"c", 100}
+        };
+        Buffer b = new ArrayBuffer(atts);
+        for (int i = 0; i < samples.length; i++) {
+            b.add(new Object[]{samples[i][0], samples[i][1],
+                    Instant.ofEpochSecond(i)});
+        }
+        return b.createView();
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        Expression sum = new SumAggregate(tempRef, new WindowSize(10),
+                Constant.TRUE);
+        List<Expression> fields = Arrays.asList(roomRef, tempRef, sum);
+        GroupBy group = new GroupBy(Arrays.asList("room"));
+
+        // Groups are taken from the UPTO samples, aggregates are computed
+        // on all the samples of the group
+        Select sel = new Select(fields, new WindowSize(3), group,
+                Constant.TRUE, new Object[0]);
+        BufferView view = groupView();
+        List<Object[]> rs = sel.select(view);
+        view.release();
+        assertThat(rs.size(), equalTo(3));
+        assertThat(rs.get(0), equalTo(new Object[]{"c", 100, 100}));
+        assertThat(rs.get(1), equalTo(new Object[]{"a", 3, 6}));
+        assertThat(rs.get(2), equalTo(new Object[]{"b", 20, 30}));
+
+        // Having is evaluated per group
+        Expression having = new Comparison(ComparisonOperation.GT, sum,
+                Constant.create(10, DataType.INTEGER));
+        sel = new Select(fields, new WindowSize(3), group, having,
+                new Object[0]);
+        view = groupView();
+        rs = sel.select(view);
+        view.release();
+        assertThat(rs.size(), equalTo(2));
+        assertThat(rs.get(0)[0], equalTo("c"));
+        assertThat(rs.get(1)[0], equalTo("b"));
+
+        // Time windows are relative to the newest sample in the buffer
+        Expression count = new CountAggregate(new WindowSize(
+                Duration.ofMillis(3500)), Constant.TRUE);
+        sel = new Select(Arrays.asList(roomRef, count), new WindowSize(7),
+                group, Constant.TRUE, new Object[0]);
+        view = groupView();
+        rs = sel.select(view);
+        view.release();
+        assertThat(rs.size(), equalTo(4));
+        assertThat(rs.get(0), equalTo(new Object[]{"c", 1}));
+        assertThat(rs.get(1), equalTo(new Object[]{"a", 2}));
+        assertThat(rs.get(2), equalTo(new Object[]{"b", 1}));
+        assertThat(rs.get(3), equalTo(new Object[]{"d", 0}));
+
+        // Compiled fields
+        sel = new Select(fields, new WindowSize(3), group, having,
+                new Object[0]).compile(new ClosureCompiler());
+        view = groupView();
+        rs = sel.select(view);
+        view.release();
+        assertThat(rs.size(), equalTo(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGroupByMissingField() {
+        new Select(Arrays.asList(tempRef), WindowSize.ONE,
+                new GroupBy(Arrays.asList("room")), Constant.TRUE,
+                new Object[0]);
+    }
+
 }
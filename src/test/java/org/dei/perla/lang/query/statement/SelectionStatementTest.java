@@ -13,6 +13,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -83,4 +85,37 @@ public class SelectionStatementTest {
                 equalTo(ExecutionConditions.ALL_NODES));
     }
 
+    @Test
+    public void testCompile() {
+        List<Expression> fields = new ArrayList<>();
+        fields.add(tempField);
+        Expression having = new Comparison(ComparisonOperation.GE,
+                humField, Constant.INTEGER_0);
+        Select sel = new Select(fields, WindowSize.ONE, GroupBy.NONE, having,
+                new Object[0]);
+        Expression where = new Comparison(ComparisonOperation.LT,
+                tempField, Constant.INTEGER_2);
+        Sampling samp = new SamplingEvent(Collections.emptyList());
+        SelectionStatement query = new SelectionStatement(sel,
+                Collections.emptyList(), WindowSize.ONE, samp,
+                where, ExecutionConditions.ALL_NODES, WindowSize.ZERO);
+
+        assertThat(query.compile(ExpressionCompiler.INTERPRETER),
+                sameInstance(query));
+
+        ExpressionCompiler c = new ClosureCompiler();
+        SelectionStatement comp = query.compile(c);
+        assertThat(query.compile(c), sameInstance(comp));
+        assertThat(comp.getWhere(), instanceOf(CompiledExpression.class));
+        assertThat(comp.getSelect().getHaving(),
+                instanceOf(CompiledExpression.class));
+        assertThat(comp.getSampling(), sameInstance(samp));
+        assertThat(comp.getExecutionConditions(),
+                sameInstance(ExecutionConditions.ALL_NODES));
+
+        Object[] sample = new Object[]{1, 4, false};
+        assertThat(comp.getWhere().run(sample, null),
+                equalTo(where.run(sample, null)));
+    }
+
 }